@@ -30,6 +30,7 @@ package rsb;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
@@ -43,6 +44,11 @@ import org.junit.Test;
  */
 public class EventTest extends RsbTestCase {
 
+    private static final String KEY = "key";
+    private static final String VALUE = "value";
+    private static final String DATA = "data";
+    private static final String OTHER = "other";
+
     // for this test I want to test the different orders of calling equals
     // manually, so the warning about using assertEquals is explicitly not
     // wanted here
@@ -140,6 +146,61 @@ public class EventTest extends RsbTestCase {
 
     }
 
+    @Test
+    public void copy() {
+        final Scope scope = new Scope("/copy/");
+        final Event original = new Event(scope, String.class, DATA);
+        original.setId(new ParticipantId(), 1);
+        original.addCause(new EventId(new ParticipantId(), 2));
+        original.getMetaData().setUserInfo(KEY, VALUE);
+
+        final Event copy = new Event(original);
+        assertEquals(original, copy);
+        assertSame(original.getData(), copy.getData());
+
+        copy.getMetaData().setUserInfo(KEY, OTHER);
+        copy.addCause(new EventId(new ParticipantId(), 2));
+        copy.setScope(new Scope("/other/"));
+        assertEquals(VALUE, original.getMetaData().getUserInfo(KEY));
+        assertEquals(1, original.getCauses().size());
+        assertEquals(scope, original.getScope());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void frozenRejectsModification() {
+        final Event event = new Event(String.class, DATA).freeze();
+        assertTrue(event.isFrozen());
+        event.setData(OTHER);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void frozenRejectsMetaDataModification() {
+        final Event event = new Event(String.class, DATA).freeze();
+        event.getMetaData().setDeliverTime(0);
+    }
+
+    @Test
+    public void copyOfFrozen() {
+        final Event original = new Event(new Scope("/frozen/"), String.class,
+                DATA);
+        original.addCause(new EventId(new ParticipantId(), 1));
+        original.getMetaData().setUserInfo(KEY, VALUE);
+        original.freeze();
+
+        final Event copy = new Event(original);
+        assertFalse(copy.isFrozen());
+        assertEquals(original, copy);
+        assertSame(original.getData(), copy.getData());
+
+        copy.getMetaData().setDeliverTime(0);
+        copy.getMetaData().setUserInfo(KEY, OTHER);
+        copy.addCause(new EventId(new ParticipantId(), 2));
+        assertEquals(0, original.getMetaData().getDeliverTime());
+        assertEquals(VALUE, original.getMetaData().getUserInfo(KEY));
+        assertEquals(1, original.getCauses().size());
+        assertEquals(2, copy.getCauses().size());
+    }
+
     @Test
     public void testToString() {
         // ensure that an empty event can be converted to a string
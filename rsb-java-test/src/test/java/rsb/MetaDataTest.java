@@ -42,6 +42,10 @@ import rsb.util.ExactTime;
  */
 public class MetaDataTest extends RsbTestCase {
 
+    private static final String VALUE = "value";
+    private static final String OTHER = "other";
+    private static final String KEY = "key";
+
     private static final int MILLIS_TO_MICROS = 1000;
     private static final int ALLOWED_DELTA_MICROS = 100000;
 
@@ -192,4 +196,50 @@ public class MetaDataTest extends RsbTestCase {
         assertEquals(meta1, meta2);
 
     }
+
+    @Test
+    public void copy() {
+        final MetaData meta = new MetaData();
+        meta.setSendTime(meta.getCreateTime() + 1);
+        meta.setUserInfo(KEY, VALUE);
+        meta.setUserTime(KEY, meta.getCreateTime());
+
+        final MetaData copy = new MetaData(meta);
+        assertEquals(meta, copy);
+
+        copy.setUserInfo(KEY, OTHER);
+        assertEquals(VALUE, meta.getUserInfo(KEY));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void frozenRejectsUserInfo() {
+        final MetaData meta = new MetaData();
+        meta.freeze();
+        meta.setUserInfo(KEY, VALUE);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void frozenKeysNotModifiable() {
+        final MetaData meta = new MetaData();
+        meta.setUserTime(KEY, 0);
+        meta.freeze();
+        meta.userTimeKeys().clear();
+    }
+
+    @Test
+    public void copyOfFrozen() {
+        final MetaData meta = new MetaData();
+        meta.setUserInfo(KEY, VALUE);
+        meta.freeze();
+
+        final MetaData copy = new MetaData(meta);
+        assertFalse(copy.isFrozen());
+        assertEquals(meta, copy);
+
+        copy.setUserInfo(KEY, OTHER);
+        copy.setUserTime(KEY, 0);
+        assertEquals(VALUE, meta.getUserInfo(KEY));
+        assertFalse(meta.hasUserTime(KEY));
+    }
+
 }
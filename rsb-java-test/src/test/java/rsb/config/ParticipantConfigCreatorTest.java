@@ -27,12 +27,17 @@
  */
 package rsb.config;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
 
 import rsb.RsbTestCase;
+import rsb.eventprocessing.ParallelReceivingOptions;
+import rsb.eventprocessing.RejectionPolicy;
+import rsb.eventprocessing.SingleThreadFactory;
+import rsb.eventprocessing.UnorderedParallelFactory;
 import rsb.util.Properties;
 
 /**
@@ -44,6 +49,13 @@ public class ParticipantConfigCreatorTest extends RsbTestCase {
 
     private static final String FALSE_STRING = "false";
     private static final String SOCKET_TRANSPORT = "socket";
+    private static final String STRATEGY_KEY = "receivingstrategy";
+    private static final String THREADS_KEY =
+            "receivingstrategy.parallel.threads";
+    private static final String PARALLEL = "parallel";
+    private static final int THREADS = 3;
+    private static final int MAX_THREADS = 5;
+    private static final int QUEUE_SIZE = 7;
 
     @Test
     public void reconfigurePreservesEnabled() {
@@ -123,4 +135,60 @@ public class ParticipantConfigCreatorTest extends RsbTestCase {
         assertTrue(config.getTransports().get("strange").isEnabled());
     }
 
+    @Test
+    public void parallelReceivingStrategy() {
+        final Properties props = new Properties();
+        props.setProperty(STRATEGY_KEY, PARALLEL);
+        props.setProperty(THREADS_KEY, String.valueOf(THREADS));
+        props.setProperty("receivingstrategy.parallel.maxthreads",
+                String.valueOf(MAX_THREADS));
+        props.setProperty("receivingstrategy.parallel.queuesize",
+                String.valueOf(QUEUE_SIZE));
+        props.setProperty("receivingstrategy.parallel.executor", "forkjoin");
+        props.setProperty("receivingstrategy.parallel.rejection",
+                "caller-runs");
+
+        final ParticipantConfig config = new ParticipantConfig();
+        new ParticipantConfigCreator().reconfigure(config, props);
+
+        assertEquals(new UnorderedParallelFactory(
+                new ParallelReceivingOptions().withThreads(THREADS)
+                        .withMaxThreads(MAX_THREADS).withQueueSize(QUEUE_SIZE)
+                        .withWorkStealing(true)
+                        .withRejectionPolicy(RejectionPolicy.CALLER_RUNS)),
+                config.getReceivingStrategy());
+    }
+
+    @Test
+    public void parallelOptionsKeepExistingStrategy() {
+        final Properties props = new Properties();
+        props.setProperty(THREADS_KEY, String.valueOf(THREADS));
+
+        final ParticipantConfig config = new ParticipantConfig();
+        new ParticipantConfigCreator().reconfigure(config, props);
+        assertTrue(config.getReceivingStrategy() instanceof SingleThreadFactory);
+
+        props.setProperty(STRATEGY_KEY, "singlethread");
+        config.setReceivingStrategy(new UnorderedParallelFactory());
+        new ParticipantConfigCreator().reconfigure(config, props);
+        assertTrue(config.getReceivingStrategy() instanceof SingleThreadFactory);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidThreads() {
+        final Properties props = new Properties();
+        props.setProperty(STRATEGY_KEY, PARALLEL);
+        props.setProperty(THREADS_KEY, "0");
+        new ParticipantConfigCreator().reconfigure(new ParticipantConfig(),
+                props);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownReceivingStrategy() {
+        final Properties props = new Properties();
+        props.setProperty(STRATEGY_KEY, "magic");
+        new ParticipantConfigCreator().reconfigure(new ParticipantConfig(),
+                props);
+    }
+
 }
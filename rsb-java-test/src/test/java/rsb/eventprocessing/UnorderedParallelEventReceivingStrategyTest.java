@@ -28,21 +28,76 @@
 package rsb.eventprocessing;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.Test;
 
 import rsb.AbstractEventHandler;
 import rsb.Event;
 import rsb.RsbTestCase;
+import rsb.util.ExactTime;
 
 /**
  * @author swrede
  */
 public class UnorderedParallelEventReceivingStrategyTest extends RsbTestCase {
 
+    private static final int THREADS = 4;
+    private static final int NUM_EVENTS = 200;
+    private static final long TIMEOUT_SECS = 10;
+
+    /**
+     * Handler which only returns once {@link #THREADS} handler calls are
+     * running concurrently.
+     */
+    private final class BarrierHandler extends AbstractEventHandler {
+
+        private final CyclicBarrier barrier = new CyclicBarrier(THREADS);
+        private final CountDownLatch passed = new CountDownLatch(THREADS);
+
+        @Override
+        public void handleEvent(final Event event) {
+            try {
+                this.barrier.await(TIMEOUT_SECS, TimeUnit.SECONDS);
+                this.passed.countDown();
+            } catch (final Exception e) {
+                // the latch is not counted down then
+                return;
+            }
+        }
+
+        public boolean awaitPassed() throws InterruptedException {
+            return this.passed.await(TIMEOUT_SECS, TimeUnit.SECONDS);
+        }
+
+    }
+
+    /**
+     * Handler counting received events.
+     */
+    private final class CountingHandler extends AbstractEventHandler {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public void handleEvent(final Event event) {
+            this.count.incrementAndGet();
+        }
+
+        public int getCount() {
+            return this.count.get();
+        }
+
+    }
+
     private final class TestHandler extends AbstractEventHandler {
 
         private boolean notified = false;
@@ -69,7 +124,9 @@ public class UnorderedParallelEventReceivingStrategyTest extends RsbTestCase {
         final UnorderedParallelEventReceivingStrategy strategy =
                 new UnorderedParallelEventReceivingStrategy();
         assertNotNull(strategy);
-        // TODO test configuration
+        // handlers are not called concurrently unless configured
+        assertEquals(1, strategy.getOptions().getThreads());
+        assertEquals(1, strategy.getOptions().getMaxThreads());
     }
 
     @Test
@@ -100,14 +157,137 @@ public class UnorderedParallelEventReceivingStrategyTest extends RsbTestCase {
         strategy.activate();
         final TestHandler handler = new TestHandler();
         strategy.addHandler(handler, true);
-        final long beforeFire = System.currentTimeMillis() * 1000;
+        final long beforeFire = ExactTime.currentTimeMicros();
         final Event event = new Event();
         strategy.handle(event);
         strategy.deactivate();
-        final long afterShutdown = System.currentTimeMillis() * 1000;
+        final long afterShutdown = ExactTime.currentTimeMicros();
         assertTrue(handler.isNotified());
         assertSame(event, handler.getEvent());
         assertTrue(event.getMetaData().getDeliverTime() >= beforeFire);
         assertTrue(event.getMetaData().getDeliverTime() <= afterShutdown);
     }
+
+    private void assertConcurrentDispatch(
+            final ParallelReceivingOptions options) throws Throwable {
+        final UnorderedParallelEventReceivingStrategy strategy =
+                new UnorderedParallelEventReceivingStrategy(options);
+        strategy.activate();
+        final BarrierHandler handler = new BarrierHandler();
+        strategy.addHandler(handler, true);
+        for (int i = 0; i < THREADS; ++i) {
+            strategy.handle(new Event());
+        }
+        assertTrue(handler.awaitPassed());
+        strategy.deactivate();
+    }
+
+    @Test
+    public final void dispatchesConcurrently() throws Throwable {
+        assertConcurrentDispatch(new ParallelReceivingOptions()
+                .withThreads(THREADS));
+    }
+
+    @Test
+    public final void dispatchesConcurrentlyWithWorkStealing()
+            throws Throwable {
+        assertConcurrentDispatch(new ParallelReceivingOptions().withThreads(
+                THREADS).withWorkStealing(true));
+    }
+
+    private void assertNoEventLost(final RejectionPolicy policy)
+            throws Throwable {
+        final UnorderedParallelEventReceivingStrategy strategy =
+                new UnorderedParallelEventReceivingStrategy(
+                        new ParallelReceivingOptions().withThreads(1)
+                                .withQueueSize(1).withRejectionPolicy(policy));
+        strategy.activate();
+        final CountingHandler handler = new CountingHandler();
+        strategy.addHandler(handler, true);
+        for (int i = 0; i < NUM_EVENTS; ++i) {
+            strategy.handle(new Event());
+        }
+        strategy.removeHandler(handler, true);
+        strategy.deactivate();
+        assertEquals(NUM_EVENTS, handler.getCount());
+    }
+
+    @Test
+    public final void blockingPolicyKeepsAllEvents() throws Throwable {
+        assertNoEventLost(RejectionPolicy.BLOCK);
+    }
+
+    @Test
+    public final void callerRunsPolicyKeepsAllEvents() throws Throwable {
+        assertNoEventLost(RejectionPolicy.CALLER_RUNS);
+    }
+
+    @Test
+    public final void reactivate() throws Throwable {
+        final UnorderedParallelEventReceivingStrategy strategy =
+                new UnorderedParallelEventReceivingStrategy();
+        strategy.activate();
+        strategy.deactivate();
+        assertFalse(strategy.isActive());
+        strategy.activate();
+        assertTrue(strategy.isActive());
+        strategy.deactivate();
+    }
+
+    @Test(timeout = 20000)
+    public final void blockingPolicyReleasedByDeactivate() throws Throwable {
+        final UnorderedParallelEventReceivingStrategy strategy =
+                new UnorderedParallelEventReceivingStrategy(
+                        new ParallelReceivingOptions().withQueueSize(1)
+                                .withRejectionPolicy(RejectionPolicy.BLOCK));
+        strategy.activate();
+        final CountDownLatch running = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger handled = new AtomicInteger();
+        strategy.addHandler(new AbstractEventHandler() {
+
+            @Override
+            public void handleEvent(final Event event)
+                    throws InterruptedException {
+                running.countDown();
+                release.await();
+                handled.incrementAndGet();
+            }
+
+        }, true);
+        // occupy the only thread and fill the queue
+        strategy.handle(new Event());
+        running.await();
+        strategy.handle(new Event());
+
+        final Thread sender = new Thread() {
+
+            @Override
+            public void run() {
+                strategy.handle(new Event());
+            }
+
+        };
+        sender.start();
+        final Thread deactivator = new Thread() {
+
+            @Override
+            public void run() {
+                try {
+                    strategy.deactivate();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+        };
+        deactivator.start();
+
+        // the blocked sender is rejected once the executor is shut down
+        sender.join();
+        release.countDown();
+        deactivator.join();
+        assertEquals(2, handled.get());
+    }
+
 }
@@ -0,0 +1,143 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import rsb.Event;
+import rsb.ParticipantId;
+import rsb.QualityOfServiceSpec;
+import rsb.QualityOfServiceSpec.Ordering;
+import rsb.QualityOfServiceSpec.Reliability;
+import rsb.RsbTestCase;
+import rsb.Scope;
+import rsb.converter.StringConverter;
+import rsb.converter.UnambiguousConverterMap;
+import rsb.protocol.EventIdType.EventId;
+import rsb.protocol.NotificationType.Notification;
+
+import com.google.protobuf.ByteString;
+
+// CHECKSTYLE.OFF: MagicNumber - test values
+
+/**
+ * Tests the filtering of {@link NotificationBusInConnector}. Notifications
+ * are passed directly to the connector without any bus.
+ *
+ * @author jwienke
+ */
+public class NotificationBusInConnectorTest extends RsbTestCase {
+
+    private static final String WIRE_SCHEMA = "utf-8-string";
+    private static final String SCOPE = "/a/";
+    private static final ParticipantId SENDER = new ParticipantId();
+    private static final ParticipantId OTHER = new ParticipantId();
+
+    private final List<Long> received = new ArrayList<Long>();
+
+    private NotificationBusInConnector createConnector(
+            final Ordering ordering) {
+        final UnambiguousConverterMap<ByteBuffer> converters =
+                new UnambiguousConverterMap<ByteBuffer>();
+        converters.addConverter(WIRE_SCHEMA, new StringConverter());
+        final NotificationBusInConnector connector =
+                new NotificationBusInConnector(null, converters);
+        connector.setScope(new Scope(SCOPE));
+        connector.setQualityOfServiceSpec(new QualityOfServiceSpec(ordering,
+                Reliability.UNRELIABLE));
+        connector.addHandler(new EventHandler() {
+
+            @Override
+            public void handle(final Event event) {
+                NotificationBusInConnectorTest.this.received.add(event.getId()
+                        .getSequenceNumber());
+            }
+
+        });
+        return connector;
+    }
+
+    private static Notification notification(final ParticipantId sender,
+            final int sequenceNumber, final String scope) {
+        return Notification
+                .newBuilder()
+                .setEventId(
+                        EventId.newBuilder()
+                                .setSenderId(ByteString.copyFrom(sender.toByteArray()))
+                                .setSequenceNumber(sequenceNumber))
+                .setScope(ByteString.copyFromUtf8(scope))
+                .setWireSchema(ByteString.copyFromUtf8(WIRE_SCHEMA))
+                .setData(ByteString.copyFromUtf8("data")).build();
+    }
+
+    @Test
+    public void filtersScopes() {
+        final NotificationBusInConnector connector =
+                createConnector(Ordering.UNORDERED);
+        connector.handle(notification(SENDER, 1, SCOPE));
+        connector.handle(notification(SENDER, 2, "/a/b/"));
+        connector.handle(notification(SENDER, 3, "/ab/"));
+        connector.handle(notification(SENDER, 4, "/"));
+        assertEquals(2, this.received.size());
+        assertEquals(Long.valueOf(1), this.received.get(0));
+        assertEquals(Long.valueOf(2), this.received.get(1));
+    }
+
+    @Test
+    public void unorderedDeliversLateEvents() {
+        final NotificationBusInConnector connector =
+                createConnector(Ordering.UNORDERED);
+        connector.handle(notification(SENDER, 2, SCOPE));
+        connector.handle(notification(SENDER, 1, SCOPE));
+        assertEquals(2, this.received.size());
+    }
+
+    @Test
+    public void orderedDropsLateEvents() {
+        final NotificationBusInConnector connector =
+                createConnector(Ordering.ORDERED);
+        connector.handle(notification(SENDER, 2, SCOPE));
+        connector.handle(notification(SENDER, 1, SCOPE));
+        connector.handle(notification(SENDER, 2, SCOPE));
+        connector.handle(notification(OTHER, 1, SCOPE));
+        connector.handle(notification(SENDER, 3, SCOPE));
+        assertEquals(3, this.received.size());
+        assertEquals(Long.valueOf(2), this.received.get(0));
+        assertEquals(Long.valueOf(1), this.received.get(1));
+        assertEquals(Long.valueOf(3), this.received.get(2));
+    }
+
+}
+
+// CHECKSTYLE.ON: MagicNumber
@@ -0,0 +1,126 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+
+package rsb.transport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import rsb.RsbTestCase;
+import rsb.Scope;
+
+// CHECKSTYLE.OFF: MultipleStringLiterals - we are testing scope matching.
+// CHECKSTYLE.OFF: MagicNumber - test values
+
+/**
+ * @author jwienke
+ */
+public class ScopeTrieTest extends RsbTestCase {
+
+    private ScopeTrie<String> trie;
+
+    @Before
+    public void setUp() {
+        this.trie = new ScopeTrie<String>();
+        this.trie.add(new Scope("/"), "root");
+        this.trie.add(new Scope("/a/"), "a");
+        this.trie.add(new Scope("/a/b/"), "ab");
+        this.trie.add(new Scope("/a/b/"), "ab2");
+        this.trie.add(new Scope("/c/"), "c");
+    }
+
+    private List<String> collect(final String scope) {
+        final List<String> result = new ArrayList<String>();
+        this.trie.collect(scope, result);
+        final List<String> fromScope = new ArrayList<String>();
+        this.trie.collect(new Scope(scope), fromScope);
+        assertEquals(result, fromScope);
+        return result;
+    }
+
+    @Test
+    public void superScopes() {
+        assertEquals(Arrays.asList("root"), collect("/"));
+        assertEquals(Arrays.asList("root", "a"), collect("/a/"));
+        assertEquals(new HashSet<String>(Arrays.asList("root", "a", "ab",
+                "ab2")), new HashSet<String>(collect("/a/b/c/")));
+        assertEquals(Arrays.asList("root"), collect("/b/"));
+        assertEquals(Arrays.asList("root"), collect("/ab/"));
+    }
+
+    @Test
+    public void duplicates() {
+        assertFalse(this.trie.add(new Scope("/a/"), "a"));
+        assertEquals(Arrays.asList("root", "a"), collect("/a/"));
+    }
+
+    @Test
+    public void remove() {
+        assertTrue(this.trie.remove(new Scope("/a/"), "a"));
+        assertFalse(this.trie.remove(new Scope("/a/"), "a"));
+        assertFalse(this.trie.remove(new Scope("/x/y/"), "a"));
+        assertEquals(Arrays.asList("root"), collect("/a/"));
+        assertEquals(3, collect("/a/b/").size());
+
+        assertTrue(this.trie.remove(new Scope("/a/b/"), "ab"));
+        assertTrue(this.trie.remove(new Scope("/a/b/"), "ab2"));
+        assertEquals(Arrays.asList("root"), collect("/a/b/"));
+    }
+
+    @Test
+    public void empty() {
+        final ScopeTrie<String> other = new ScopeTrie<String>();
+        assertTrue(other.isEmpty());
+        other.add(new Scope("/a/"), "a");
+        assertFalse(other.isEmpty());
+        other.remove(new Scope("/a/"), "a");
+        assertTrue(other.isEmpty());
+        assertFalse(this.trie.isEmpty());
+    }
+
+    @Test
+    public void addAfterPruning() {
+        this.trie.add(new Scope("/a/b/c/"), "abc");
+        this.trie.remove(new Scope("/a/b/c/"), "abc");
+        this.trie.add(new Scope("/a/b/c/"), "abc");
+        assertTrue(collect("/a/b/c/").contains("abc"));
+    }
+
+}
+
+// CHECKSTYLE.ON: MagicNumber
+// CHECKSTYLE.ON: MultipleStringLiterals
@@ -0,0 +1,180 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.inprocess;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import rsb.Event;
+import rsb.RsbTestCase;
+import rsb.Scope;
+import rsb.transport.EventHandler;
+
+// CHECKSTYLE.OFF: MultipleStringLiterals - we are testing scope matching.
+
+/**
+ * @author jwienke
+ */
+public class BusTest extends RsbTestCase {
+
+    private final Bus bus = new Bus();
+
+    /**
+     * Records the scopes of all received events.
+     */
+    private static class RecordingHandler implements EventHandler {
+
+        private final List<Scope> received = new ArrayList<Scope>();
+
+        @Override
+        public void handle(final Event event) {
+            this.received.add(event.getScope());
+        }
+
+    }
+
+    private RecordingHandler register(final String scope) {
+        final RecordingHandler handler = new RecordingHandler();
+        this.bus.addHandler(new Scope(scope), handler);
+        return handler;
+    }
+
+    private void push(final String scope) {
+        this.bus.push(new Event(new Scope(scope), String.class, "test"));
+    }
+
+    @Test
+    public void dispatchesToSuperScopesOnly() {
+        final RecordingHandler root = register("/");
+        final RecordingHandler sensors = register("/sensors/");
+        final RecordingHandler lidar = register("/sensors/lidar/");
+        final RecordingHandler camera = register("/sensors/camera/");
+        final RecordingHandler front = register("/sensors/lidar/front/");
+
+        push("/sensors/lidar/");
+
+        assertEquals(1, root.received.size());
+        assertEquals(1, sensors.received.size());
+        assertEquals(1, lidar.received.size());
+        assertTrue(camera.received.isEmpty());
+        assertTrue(front.received.isEmpty());
+    }
+
+    @Test
+    public void handlerWithoutScopeReceivesEverything() {
+        final RecordingHandler handler = new RecordingHandler();
+        this.bus.addHandler(handler);
+        push("/a/");
+        push("/b/c/");
+        assertEquals(2, handler.received.size());
+    }
+
+    @Test
+    public void duplicateRegistrationDeliversOnce() {
+        final RecordingHandler handler = register("/a/");
+        this.bus.addHandler(new Scope("/a/"), handler);
+        push("/a/");
+        assertEquals(1, handler.received.size());
+    }
+
+    @Test
+    public void removedHandlerReceivesNothing() {
+        final RecordingHandler handler = register("/a/");
+        final RecordingHandler other = register("/a/");
+        this.bus.removeHandler(new Scope("/a/"), handler);
+        push("/a/b/");
+        assertTrue(handler.received.isEmpty());
+        assertEquals(1, other.received.size());
+    }
+
+    @Test
+    public void sharesFrozenCopy() {
+        final List<Event> received = new ArrayList<Event>();
+        final EventHandler handler = new EventHandler() {
+
+            @Override
+            public void handle(final Event event) {
+                received.add(event);
+            }
+
+        };
+        this.bus.addHandler(handler);
+        this.bus.addHandler(new Scope("/a/"), handler);
+        final Event sent = new Event(new Scope("/a/"), String.class, "test");
+        this.bus.push(sent);
+
+        assertEquals(2, received.size());
+        assertSame(received.get(0), received.get(1));
+        assertTrue(received.get(0).isFrozen());
+        assertSame(sent.getData(), received.get(0).getData());
+        assertFalse(sent.isFrozen());
+        assertEquals(0, sent.getMetaData().getReceiveTime());
+    }
+
+    @Test
+    public void removeUnknownHandler() {
+        final RecordingHandler handler = register("/a/");
+        this.bus.removeHandler(new Scope("/b/"), handler);
+        this.bus.removeHandler(new Scope("/a/"), new RecordingHandler());
+        push("/a/");
+        assertEquals(1, handler.received.size());
+    }
+
+    @Test(timeout = 20000)
+    public void sharesDispatcher() throws Throwable {
+        final InProcessOptions options =
+                new InProcessOptions().withAsyncDispatch(true);
+        this.bus.acquireDispatcher(options);
+        this.bus.acquireDispatcher(options);
+        this.bus.releaseDispatcher();
+        final RecordingHandler handler = register("/a/");
+        final Event event = new Event(new Scope("/a/"), String.class, "test");
+        this.bus.publish(event);
+        this.bus.releaseDispatcher();
+        assertEquals(1, handler.received.size());
+        try {
+            this.bus.publish(event);
+            fail("Publishing without a dispatcher must fail");
+        } catch (final IllegalStateException e) {
+            // expected
+        }
+        this.bus.acquireDispatcher(options);
+        this.bus.publish(event);
+        this.bus.releaseDispatcher();
+        assertEquals(2, handler.received.size());
+    }
+
+}
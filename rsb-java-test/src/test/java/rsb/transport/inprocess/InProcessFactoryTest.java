@@ -0,0 +1,84 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.inprocess;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import rsb.Event;
+import rsb.RsbTestCase;
+import rsb.Scope;
+import rsb.transport.EventHandler;
+import rsb.transport.InConnector;
+import rsb.transport.OutConnector;
+import rsb.util.Properties;
+
+/**
+ * @author jwienke
+ */
+public class InProcessFactoryTest extends RsbTestCase {
+
+    private static final Scope SCOPE = new Scope("/factory/");
+
+    @Test(timeout = 20000)
+    public void differentShardingSharesBus() throws Throwable {
+        final InProcessFactory factory = new InProcessFactory();
+
+        final Properties sharded = new Properties();
+        sharded.setProperty("transport.inprocess.shards", "4");
+        final InConnector in = factory.createInConnector(sharded, null);
+        in.setScope(SCOPE);
+        final List<Event> received = new ArrayList<Event>();
+        in.addHandler(new EventHandler() {
+
+            @Override
+            public void handle(final Event event) {
+                received.add(event);
+            }
+
+        });
+        in.activate();
+
+        final OutConnector out =
+                factory.createOutConnector(new Properties(), null);
+        out.setScope(SCOPE);
+        out.activate();
+        try {
+            out.push(new Event(SCOPE, String.class, "test"));
+        } finally {
+            out.deactivate();
+            in.deactivate();
+        }
+        assertEquals(1, received.size());
+    }
+
+}
@@ -59,6 +59,15 @@ public class InprocessConnectorTest extends ConnectorCheck {
     private final rsb.transport.inprocess.Bus bus =
             new rsb.transport.inprocess.Bus();
 
+    /**
+     * Returns the bus shared by the connectors of this test.
+     *
+     * @return the bus
+     */
+    protected rsb.transport.inprocess.Bus getBus() {
+        return this.bus;
+    }
+
     @Override
     protected InConnector createInConnector(
             final UnambiguousConverterMap<ByteBuffer> converters)
@@ -0,0 +1,319 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.inprocess;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import rsb.Event;
+import rsb.RsbTestCase;
+import rsb.Scope;
+import rsb.transport.EventHandler;
+
+/**
+ * @author jwienke
+ */
+public class RingDispatcherTest extends RsbTestCase {
+
+    private static final int EVENTS = 1000;
+    private static final int HANDLERS = 5;
+    private static final int RING_SIZE = 8;
+    private static final int CONSUMERS = 3;
+    private static final int SENDERS = 4;
+    private static final Scope SCOPE = new Scope("/a/");
+
+    private final Bus bus = new Bus();
+
+    /**
+     * Records the data of received events.
+     */
+    private static class RecordingHandler implements EventHandler {
+
+        private final List<Object> received = new ArrayList<Object>();
+
+        @Override
+        public void handle(final Event event) {
+            this.received.add(event.getData());
+        }
+
+    }
+
+    private List<RecordingHandler> register() {
+        final List<RecordingHandler> handlers =
+                new ArrayList<RecordingHandler>();
+        for (int i = 0; i < HANDLERS; ++i) {
+            final RecordingHandler handler = new RecordingHandler();
+            this.bus.addHandler(handler);
+            handlers.add(handler);
+        }
+        return handlers;
+    }
+
+    private void publishAndCheck(final InProcessOptions options)
+            throws Throwable {
+        final List<RecordingHandler> handlers = register();
+        final RingDispatcher dispatcher = new RingDispatcher(this.bus, options);
+        dispatcher.start();
+        for (int i = 0; i < EVENTS; ++i) {
+            dispatcher.publish(new Event(SCOPE, Integer.class, i));
+        }
+        dispatcher.stop();
+        for (final RecordingHandler handler : handlers) {
+            assertEquals(EVENTS, handler.received.size());
+            for (int i = 0; i < EVENTS; ++i) {
+                assertEquals(i, handler.received.get(i));
+            }
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void blockingInOrder() throws Throwable {
+        publishAndCheck(new InProcessOptions().withRingSize(RING_SIZE));
+    }
+
+    @Test(timeout = 20000)
+    public void multipleConsumersInOrder() throws Throwable {
+        publishAndCheck(new InProcessOptions().withRingSize(RING_SIZE)
+                .withConsumers(CONSUMERS));
+    }
+
+    @Test(timeout = 20000)
+    public void otherWaitStrategies() throws Throwable {
+        for (final WaitStrategy strategy : new WaitStrategy[] {
+                WaitStrategy.SLEEPING, WaitStrategy.YIELDING,
+                WaitStrategy.BUSY_SPIN }) {
+            publishAndCheck(new InProcessOptions().withRingSize(RING_SIZE)
+                    .withConsumers(2).withWaitStrategy(strategy));
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void senderNotBlockedByReceivers() throws Throwable {
+        final CountDownLatch release = new CountDownLatch(1);
+        final RecordingHandler recorder = new RecordingHandler();
+        this.bus.addHandler(new EventHandler() {
+
+            @Override
+            public void handle(final Event event) {
+                try {
+                    release.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                recorder.handle(event);
+            }
+
+        });
+        final RingDispatcher dispatcher =
+                new RingDispatcher(this.bus,
+                        new InProcessOptions().withRingSize(RING_SIZE));
+        dispatcher.start();
+        // the ring can hold all of these while the receiver is blocked
+        for (int i = 0; i < RING_SIZE; ++i) {
+            dispatcher.publish(new Event(SCOPE, Integer.class, i));
+        }
+        release.countDown();
+        dispatcher.stop();
+        assertEquals(RING_SIZE, recorder.received.size());
+    }
+
+    @Test(timeout = 20000, expected = IllegalStateException.class)
+    public void rejectsAfterStop() throws Throwable {
+        final RingDispatcher dispatcher =
+                new RingDispatcher(this.bus, new InProcessOptions());
+        dispatcher.start();
+        dispatcher.stop();
+        dispatcher.publish(new Event(SCOPE, Integer.class, 0));
+    }
+
+    @Test(timeout = 20000)
+    public void stopFromConsumerThread() throws Throwable {
+        final RingDispatcher dispatcher =
+                new RingDispatcher(this.bus,
+                        new InProcessOptions().withRingSize(RING_SIZE));
+        final CountDownLatch stopped = new CountDownLatch(1);
+        this.bus.addHandler(new EventHandler() {
+
+            @Override
+            public void handle(final Event event) {
+                try {
+                    dispatcher.stop();
+                    stopped.countDown();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+        });
+        dispatcher.start();
+        dispatcher.publish(new Event(SCOPE, Integer.class, 0));
+        stopped.await();
+        dispatcher.stop();
+    }
+
+    @Test(timeout = 20000)
+    public void interruptedSenderLeavesNoGap() throws Throwable {
+        final CountDownLatch release = new CountDownLatch(1);
+        final RecordingHandler recorder = new RecordingHandler();
+        this.bus.addHandler(new EventHandler() {
+
+            @Override
+            public void handle(final Event event) {
+                try {
+                    release.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                recorder.handle(event);
+            }
+
+        });
+        final RingDispatcher dispatcher =
+                new RingDispatcher(this.bus,
+                        new InProcessOptions().withRingSize(RING_SIZE));
+        dispatcher.start();
+        for (int i = 0; i < RING_SIZE; ++i) {
+            dispatcher.publish(new Event(SCOPE, Integer.class, i));
+        }
+
+        // waits for a free slot until interrupted
+        final AtomicBoolean interrupted = new AtomicBoolean();
+        final Thread sender = new Thread() {
+
+            @Override
+            public void run() {
+                try {
+                    dispatcher.publish(new Event(SCOPE, Integer.class, -1));
+                } catch (final InterruptedException e) {
+                    interrupted.set(true);
+                }
+            }
+
+        };
+        sender.start();
+        sender.interrupt();
+        sender.join();
+        assertTrue(interrupted.get());
+
+        release.countDown();
+        dispatcher.publish(new Event(SCOPE, Integer.class, RING_SIZE));
+        dispatcher.stop();
+        assertEquals(RING_SIZE + 1, recorder.received.size());
+        assertEquals(RING_SIZE, recorder.received.get(RING_SIZE));
+    }
+
+    @Test(timeout = 20000)
+    public void handlerPublishesIntoFullRing() throws Throwable {
+        final RingDispatcher dispatcher =
+                new RingDispatcher(this.bus,
+                        new InProcessOptions().withRingSize(RING_SIZE));
+        final RecordingHandler recorder = new RecordingHandler();
+        final CountDownLatch received = new CountDownLatch(2 * RING_SIZE + 1);
+        final AtomicBoolean failed = new AtomicBoolean();
+        this.bus.addHandler(new EventHandler() {
+
+            @Override
+            public void handle(final Event event) {
+                recorder.handle(event);
+                received.countDown();
+                if (!event.getData().equals(0)) {
+                    return;
+                }
+                try {
+                    // more than the ring can hold while this handler runs
+                    for (int i = 1; i <= 2 * RING_SIZE; ++i) {
+                        dispatcher.publish(new Event(SCOPE, Integer.class, i));
+                    }
+                } catch (final InterruptedException e) {
+                    failed.set(true);
+                }
+            }
+
+        });
+        dispatcher.start();
+        dispatcher.publish(new Event(SCOPE, Integer.class, 0));
+        received.await();
+        dispatcher.stop();
+        assertFalse(failed.get());
+        assertEquals(2 * RING_SIZE + 1, recorder.received.size());
+    }
+
+    @Test(timeout = 20000)
+    public void noEventLostWhileStopping() throws Throwable {
+        final RecordingHandler recorder = new RecordingHandler();
+        this.bus.addHandler(recorder);
+        final RingDispatcher dispatcher =
+                new RingDispatcher(this.bus,
+                        new InProcessOptions().withRingSize(RING_SIZE)
+                                .withConsumers(2));
+        dispatcher.start();
+        final AtomicInteger accepted = new AtomicInteger();
+        final List<Thread> senders = new ArrayList<Thread>();
+        for (int i = 0; i < SENDERS; ++i) {
+            final Thread sender = new Thread() {
+
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < EVENTS; ++i) {
+                            dispatcher.publish(new Event(SCOPE,
+                                    Integer.class, i));
+                            accepted.incrementAndGet();
+                        }
+                    } catch (final IllegalStateException e) {
+                        return;
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+
+            };
+            sender.start();
+            senders.add(sender);
+        }
+        while (accepted.get() < EVENTS) {
+            Thread.yield();
+        }
+        dispatcher.stop();
+        for (final Thread sender : senders) {
+            sender.join();
+        }
+        assertTrue(accepted.get() >= EVENTS);
+        assertEquals(accepted.get(), recorder.received.size());
+    }
+
+}
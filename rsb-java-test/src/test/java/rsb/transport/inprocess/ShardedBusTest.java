@@ -0,0 +1,178 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.inprocess;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import rsb.Event;
+import rsb.RsbTestCase;
+import rsb.Scope;
+import rsb.transport.EventHandler;
+
+// CHECKSTYLE.OFF: MultipleStringLiterals - we are testing scope matching.
+
+/**
+ * @author jwienke
+ */
+public class ShardedBusTest extends RsbTestCase {
+
+    private static final int SHARDS = 7;
+    private static final int MAX_DEPTH = 4;
+
+    private static final String[] SCOPES = { "/", "/sensors/",
+            "/sensors/lidar/", "/sensors/lidar/front/", "/sensors/camera/",
+            "/actuators/", "/actuators/arm/", "/actuators/arm/left/", "/x/",
+            "/x/y/z/" };
+
+    /**
+     * Counts received events.
+     */
+    private static class CountingHandler implements EventHandler {
+
+        private int count = 0;
+
+        @Override
+        public void handle(final Event event) {
+            ++this.count;
+        }
+
+    }
+
+    private static int[] deliver(final Bus bus) {
+        final CountingHandler[] handlers = new CountingHandler[SCOPES.length];
+        for (int i = 0; i < SCOPES.length; ++i) {
+            handlers[i] = new CountingHandler();
+            bus.addHandler(new Scope(SCOPES[i]), handlers[i]);
+        }
+        for (final String scope : SCOPES) {
+            bus.push(new Event(new Scope(scope), String.class, scope));
+        }
+        final int[] counts = new int[SCOPES.length];
+        for (int i = 0; i < SCOPES.length; ++i) {
+            counts[i] = handlers[i].count;
+        }
+        return counts;
+    }
+
+    private static void assertSameDelivery(final int depth) {
+        final int[] expected = deliver(new Bus());
+        final int[] actual = deliver(new ShardedBus(SHARDS, depth));
+        for (int i = 0; i < SCOPES.length; ++i) {
+            assertEquals(SCOPES[i], expected[i], actual[i]);
+        }
+    }
+
+    @Test
+    public void sameDeliveryAsSingleBus() {
+        for (int depth = 1; depth <= MAX_DEPTH; ++depth) {
+            assertSameDelivery(depth);
+        }
+    }
+
+    @Test
+    public void subScopesShareShard() {
+        final ShardedBus bus = new ShardedBus(SHARDS, 1);
+        assertEquals(bus.getShardIndex(new Scope("/sensors/")),
+                bus.getShardIndex(new Scope("/sensors/lidar/front/")));
+    }
+
+    @Test
+    public void scopesAreDistributed() {
+        final ShardedBus bus = new ShardedBus(SHARDS, 1);
+        final Set<Integer> used = new HashSet<Integer>();
+        for (int i = 0; i < SHARDS * SHARDS; ++i) {
+            used.add(bus.getShardIndex(new Scope("/pipeline" + i + "/")));
+        }
+        assertTrue(used.size() > 1);
+    }
+
+    @Test
+    public void removeFromAllShards() {
+        final ShardedBus bus = new ShardedBus(SHARDS, 1);
+        final CountingHandler handler = new CountingHandler();
+        bus.addHandler(handler);
+        bus.removeHandler(handler);
+        for (final String scope : SCOPES) {
+            bus.push(new Event(new Scope(scope), String.class, scope));
+        }
+        assertEquals(0, handler.count);
+    }
+
+    @Test(timeout = 20000)
+    public void shardsDispatchIndependently() throws Throwable {
+        final ShardedBus bus = new ShardedBus(SHARDS, 1);
+        final Scope blockedScope = new Scope("/pipeline0/");
+        Scope otherScope = blockedScope;
+        for (int i = 1; bus.getShardIndex(otherScope) == bus
+                .getShardIndex(blockedScope); ++i) {
+            otherScope = new Scope("/pipeline" + i + "/");
+        }
+
+        final CountDownLatch release = new CountDownLatch(1);
+        bus.addHandler(blockedScope, new EventHandler() {
+
+            @Override
+            public void handle(final Event event) {
+                try {
+                    release.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+        });
+        final CountDownLatch received = new CountDownLatch(1);
+        bus.addHandler(otherScope, new EventHandler() {
+
+            @Override
+            public void handle(final Event event) {
+                received.countDown();
+            }
+
+        });
+
+        bus.acquireDispatcher(new InProcessOptions().withAsyncDispatch(true));
+        try {
+            bus.publish(new Event(blockedScope, String.class, "blocked"));
+            bus.publish(new Event(otherScope, String.class, "other"));
+            // only possible if the shards do not share a consumer thread
+            received.await();
+        } finally {
+            release.countDown();
+            bus.releaseDispatcher();
+        }
+    }
+
+}
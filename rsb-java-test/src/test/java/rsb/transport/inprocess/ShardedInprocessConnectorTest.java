@@ -0,0 +1,62 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.inprocess;
+
+import java.nio.ByteBuffer;
+
+import rsb.converter.UnambiguousConverterMap;
+import rsb.transport.InConnector;
+import rsb.transport.OutConnector;
+
+/**
+ * Test for in process connectors operating on a {@link ShardedBus}.
+ *
+ * @author jwienke
+ */
+@SuppressWarnings("PMD.TestClassWithoutTestCases")
+public class ShardedInprocessConnectorTest extends InprocessConnectorTest {
+
+    private static final int SHARDS = 4;
+
+    private final ShardedBus shardedBus = new ShardedBus(SHARDS, 1);
+
+    @Override
+    protected InConnector createInConnector(
+            final UnambiguousConverterMap<ByteBuffer> converters)
+            throws Throwable {
+        return new rsb.transport.inprocess.InConnector(this.shardedBus);
+    }
+
+    @Override
+    protected OutConnector createOutConnector(
+            final UnambiguousConverterMap<ByteBuffer> converters)
+            throws Throwable {
+        return new rsb.transport.inprocess.OutConnector(this.shardedBus);
+    }
+
+}
@@ -0,0 +1,223 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.shm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import rsb.RsbTestCase;
+
+// CHECKSTYLE.OFF: MagicNumber - test values
+
+/**
+ * @author jwienke
+ */
+public class RingBufferTest extends RsbTestCase {
+
+    private static final int CAPACITY = RingBuffer.MIN_CAPACITY;
+    private static final String PREFIX = "rsb-ring-test";
+    private static final String RING_SUFFIX = ".ring";
+
+    private File path;
+    private RingBuffer ring;
+
+    @Before
+    public void setUp() throws Throwable {
+        this.path = File.createTempFile(PREFIX, RING_SUFFIX);
+        this.ring = RingBuffer.open(this.path, CAPACITY);
+    }
+
+    @After
+    public void tearDown() throws Throwable {
+        this.ring.close();
+        assertTrue(this.path.delete());
+    }
+
+    private static byte[] record(final int length, final int seed) {
+        final byte[] data = new byte[length];
+        for (int i = 0; i < length; ++i) {
+            data[i] = (byte) (seed + i);
+        }
+        return data;
+    }
+
+    private static byte[] bytes(final ByteBuffer buffer) {
+        final byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+        return data;
+    }
+
+    @Test
+    public void cursorsStartAtTail() throws Throwable {
+        this.ring.publish(record(10, 0));
+        final RingBuffer.Cursor cursor = this.ring.newCursor();
+        assertNull(cursor.poll());
+        this.ring.publish(record(20, 1));
+        assertArrayEquals(record(20, 1), bytes(cursor.poll()));
+        assertNull(cursor.poll());
+    }
+
+    @Test
+    public void allCursorsReceiveAllRecords() throws Throwable {
+        final RingBuffer.Cursor first = this.ring.newCursor();
+        final RingBuffer.Cursor second = this.ring.newCursor();
+        for (int i = 0; i < 5; ++i) {
+            this.ring.publish(record(i * 3, i));
+        }
+        for (int i = 0; i < 5; ++i) {
+            assertArrayEquals(record(i * 3, i), bytes(first.poll()));
+            assertArrayEquals(record(i * 3, i), bytes(second.poll()));
+        }
+        assertNull(first.poll());
+        assertNull(second.poll());
+    }
+
+    @Test
+    public void wrapsAround() throws Throwable {
+        final RingBuffer.Cursor cursor = this.ring.newCursor();
+        // sizes which do not divide the capacity to exercise padding
+        for (int i = 0; i < 100; ++i) {
+            final byte[] data = record(100 + i % 7 * 50, i);
+            this.ring.publish(data);
+            assertArrayEquals(data, bytes(cursor.poll()));
+        }
+        assertEquals(0, cursor.getOverruns());
+    }
+
+    @Test
+    public void detectsOverruns() throws Throwable {
+        final RingBuffer.Cursor cursor = this.ring.newCursor();
+        for (int i = 0; i < 10; ++i) {
+            this.ring.publish(record(1000, i));
+        }
+        assertNull(cursor.poll());
+        assertEquals(1, cursor.getOverruns());
+        this.ring.publish(record(10, 42));
+        assertArrayEquals(record(10, 42), bytes(cursor.poll()));
+    }
+
+    @Test(timeout = 10000)
+    public void concurrentProducers() throws Throwable {
+        final int producers = 4;
+        final int records = 200;
+        // large enough for the reader to never be overrun
+        this.ring.close();
+        assertTrue(this.path.delete());
+        this.path = File.createTempFile(PREFIX, RING_SUFFIX);
+        this.ring = RingBuffer.open(this.path, CAPACITY * 16);
+        final RingBuffer.Cursor cursor = this.ring.newCursor();
+        final Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; ++p) {
+            final byte producer = (byte) p;
+            threads[p] = new Thread() {
+
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < records; ++i) {
+                            RingBufferTest.this.ring.publish(new byte[] {
+                                    producer, (byte) i });
+                        }
+                    } catch (final IOException e) {
+                        throw new AssertionError(e);
+                    }
+                }
+
+            };
+            threads[p].start();
+        }
+
+        final int[] next = new int[producers];
+        int received = 0;
+        while (received < producers * records) {
+            final ByteBuffer data = cursor.poll();
+            if (data == null) {
+                Thread.yield();
+                continue;
+            }
+            final byte[] record = bytes(data);
+            assertEquals((byte) next[record[0]]++, record[1]);
+            ++received;
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, cursor.getOverruns());
+        assertNull(cursor.poll());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsLargeRecords() throws Throwable {
+        this.ring.publish(new byte[this.ring.getMaxLength() + 1]);
+    }
+
+    @Test
+    public void sharedBetweenMappings() throws Throwable {
+        final RingBuffer other = RingBuffer.open(this.path, CAPACITY * 2);
+        try {
+            assertEquals(CAPACITY, other.getCapacity());
+            final RingBuffer.Cursor cursor = this.ring.newCursor();
+            other.publish(record(33, 3));
+            this.ring.publish(record(44, 4));
+            assertArrayEquals(record(33, 3), bytes(cursor.poll()));
+            assertArrayEquals(record(44, 4), bytes(cursor.poll()));
+        } finally {
+            other.close();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsForeignFiles() throws Throwable {
+        final File foreign = File.createTempFile(PREFIX, ".foreign");
+        try {
+            final FileOutputStream stream = new FileOutputStream(foreign);
+            try {
+                stream.write(record(RingBuffer.HEADER_SIZE, 7));
+            } finally {
+                stream.close();
+            }
+            RingBuffer.open(foreign, CAPACITY).close();
+        } finally {
+            assertTrue(foreign.delete());
+        }
+    }
+
+}
+
+// CHECKSTYLE.ON: MagicNumber
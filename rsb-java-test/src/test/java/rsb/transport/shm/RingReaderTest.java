@@ -0,0 +1,67 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.shm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import rsb.RsbTestCase;
+
+/**
+ * @author jwienke
+ */
+public class RingReaderTest extends RsbTestCase {
+
+    private static final int MANY_POLLS = 1000;
+
+    @Test
+    public void yieldsFirst() {
+        assertEquals(0, RingReader.idleParkNanos(1));
+    }
+
+    @Test
+    public void backsOffToMaximum() {
+        long previous = 0;
+        boolean parked = false;
+        for (int polls = 1; polls <= MANY_POLLS; ++polls) {
+            final long park = RingReader.idleParkNanos(polls);
+            assertTrue("park time must not decrease", park >= previous);
+            assertTrue("park time must be bounded",
+                    park <= RingReader.MAX_IDLE_PARK_NANOS);
+            parked |= park > 0;
+            previous = park;
+        }
+        assertTrue(parked);
+        assertEquals(RingReader.MAX_IDLE_PARK_NANOS, previous);
+        assertEquals(RingReader.MAX_IDLE_PARK_NANOS,
+                RingReader.idleParkNanos(Integer.MAX_VALUE));
+    }
+
+}
@@ -0,0 +1,119 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.socket;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import rsb.RsbTestCase;
+
+// CHECKSTYLE.OFF: MagicNumber - test values
+
+/**
+ * @author jwienke
+ */
+public class BufferPoolTest extends RsbTestCase {
+
+    @Test
+    public void reuse() {
+        final BufferPool pool = new BufferPool(true, 16, 64, 32);
+        final ByteBuffer buffer = pool.acquire(10);
+        assertTrue(buffer.isDirect());
+        assertEquals(0, buffer.position());
+        assertEquals(10, buffer.limit());
+        buffer.put((byte) 1);
+
+        pool.release(buffer);
+        assertEquals(1, pool.getAvailable());
+        final ByteBuffer reused = pool.acquire(12);
+        assertSame(buffer, reused);
+        assertEquals(0, reused.position());
+        assertEquals(12, reused.limit());
+        assertEquals(0, pool.getAvailable());
+    }
+
+    @Test
+    public void sizeClasses() {
+        final BufferPool pool = new BufferPool(false, 16, 64, 128);
+        assertEquals(64, pool.getMaxSize());
+        final ByteBuffer small = pool.acquire(3);
+        assertFalse(small.isDirect());
+        assertEquals(16, small.capacity());
+        final ByteBuffer medium = pool.acquire(17);
+        assertEquals(32, medium.capacity());
+        final ByteBuffer large = pool.acquire(64);
+        assertEquals(64, large.capacity());
+
+        pool.release(small);
+        pool.release(medium);
+        pool.release(large);
+        assertEquals(3, pool.getAvailable());
+        assertSame(medium, pool.acquire(20));
+        assertSame(large, pool.acquire(33));
+        assertSame(small, pool.acquire(16));
+    }
+
+    @Test
+    public void foreignBuffersNotRetained() {
+        final BufferPool pool = new BufferPool(true, 16, 64, 128);
+        final ByteBuffer buffer = pool.acquire(65);
+        assertEquals(65, buffer.capacity());
+        pool.release(buffer);
+        assertEquals(0, pool.getAvailable());
+        pool.release(ByteBuffer.allocate(16));
+        assertEquals(0, pool.getAvailable());
+        pool.release(ByteBuffer.allocateDirect(24));
+        assertEquals(0, pool.getAvailable());
+    }
+
+    @Test
+    public void capacityPerClass() {
+        final BufferPool pool = new BufferPool(true, 16, 64, 32);
+        final ByteBuffer first = pool.acquire(16);
+        final ByteBuffer second = pool.acquire(16);
+        final ByteBuffer third = pool.acquire(16);
+        assertNotSame(first, second);
+        pool.release(first);
+        pool.release(second);
+        pool.release(third);
+        assertEquals(2, pool.getAvailable());
+        // at least one buffer is retained per class
+        pool.release(pool.acquire(64));
+        assertEquals(3, pool.getAvailable());
+    }
+
+}
+
+// CHECKSTYLE.ON: MagicNumber
@@ -30,6 +30,11 @@ package rsb.transport.socket;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 
+import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -37,6 +42,9 @@ import org.junit.Test;
 import rsb.RsbTestCase;
 import rsb.RSBException;
 import rsb.protocol.NotificationType.Notification;
+import rsb.transport.socket.Bus.NotificationReceiver;
+
+import com.google.protobuf.UnsafeByteOperations;
 
 /**
  * Tests the roundtrip of data through bus server and client.
@@ -45,10 +53,13 @@ import rsb.protocol.NotificationType.Notification;
  */
 public class BusRoundtripTest extends RsbTestCase {
 
+    private static final int BURST_SIZE = 200;
+    private static final long BURST_TIMEOUT_SEC = 20;
+
     private ResultWaiter serverResult;
     private ResultWaiter clientResult;
     private ResultWaiter secondClientResult;
-    private BusServer server;
+    private BusBase server;
     private BusClient client;
     private BusClient secondClient;
 
@@ -56,22 +67,53 @@ public class BusRoundtripTest extends RsbTestCase {
     public void setUp() throws Throwable {
 
         this.serverResult = new ResultWaiter();
-        this.server = new BusServer(Utilities.getSocketOptions());
+        this.server = createServer(getSocketOptions());
         this.server.activate();
         this.server.addNotificationReceiver(this.serverResult);
 
         this.clientResult = new ResultWaiter();
-        this.client = new BusClient(Utilities.getSocketOptions());
+        this.client = new BusClient(getSocketOptions());
         this.client.activate();
         this.client.addNotificationReceiver(this.clientResult);
 
         this.secondClientResult = new ResultWaiter();
-        this.secondClient = new BusClient(Utilities.getSocketOptions());
+        this.secondClient = new BusClient(getSocketOptions());
         this.secondClient.activate();
         this.secondClient.addNotificationReceiver(this.secondClientResult);
 
     }
 
+    /**
+     * Returns the first client connected to the server.
+     *
+     * @return active client
+     */
+    protected BusClient getClient() {
+        return this.client;
+    }
+
+    /**
+     * Returns the options to use for server and clients.
+     *
+     * @return socket options
+     * @throws Throwable
+     *             error creating the options
+     */
+    protected SocketOptions getSocketOptions() throws Throwable {
+        return Utilities.getSocketOptions();
+    }
+
+    /**
+     * Creates the server instance to test with.
+     *
+     * @param options
+     *            the options to use for the server
+     * @return new server instance, not activated
+     */
+    protected BusBase createServer(final SocketOptions options) {
+        return new BusServer(options);
+    }
+
     @After
     public void tearDown() throws Throwable {
 
@@ -165,4 +207,69 @@ public class BusRoundtripTest extends RsbTestCase {
 
     }
 
+    private static Notification createLargeNotification() throws Throwable {
+        final ByteBuffer payload =
+                ByteBuffer.allocateDirect(2 * Frame.ZERO_COPY_THRESHOLD);
+        while (payload.hasRemaining()) {
+            payload.put((byte) payload.position());
+        }
+        payload.flip();
+        return Utilities.createNotification().toBuilder()
+                .setData(UnsafeByteOperations.unsafeWrap(payload)).build();
+    }
+
+    // asserts are delegated to a separate method
+    @SuppressWarnings("PMD.JUnitTestsShouldIncludeAssert")
+    @Test
+    public void largeFromServer() throws Throwable {
+
+        final Notification sent = createLargeNotification();
+        this.server.handleOutgoing(sent);
+
+        checkResults(sent);
+
+    }
+
+    // asserts are delegated to a separate method
+    @SuppressWarnings("PMD.JUnitTestsShouldIncludeAssert")
+    @Test
+    public void largeFromClient() throws Throwable {
+
+        final Notification sent = createLargeNotification();
+        this.client.handleOutgoing(sent);
+
+        checkResults(sent);
+
+    }
+
+    @Test
+    public void burstFromClient() throws Throwable {
+
+        final BlockingQueue<Notification> received =
+                new LinkedBlockingQueue<Notification>();
+        this.server.addNotificationReceiver(new NotificationReceiver() {
+
+            @Override
+            public void handle(final Notification notification) {
+                received.add(notification);
+            }
+
+        });
+
+        final Notification template = Utilities.createNotification();
+        for (int i = 0; i < BURST_SIZE; ++i) {
+            this.client.handleOutgoing(template.toBuilder()
+                    .setEventId(template.getEventId().toBuilder()
+                            .setSequenceNumber(i)).build());
+        }
+
+        for (int i = 0; i < BURST_SIZE; ++i) {
+            final Notification notification =
+                    received.poll(BURST_TIMEOUT_SEC, TimeUnit.SECONDS);
+            assertNotNull(notification);
+            assertEquals(i, notification.getEventId().getSequenceNumber());
+        }
+
+    }
+
 }
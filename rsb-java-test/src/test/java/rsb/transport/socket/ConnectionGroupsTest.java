@@ -0,0 +1,100 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.socket;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import rsb.RsbTestCase;
+
+/**
+ * @author jwienke
+ */
+public class ConnectionGroupsTest extends RsbTestCase {
+
+    private static final String TOKEN = "client";
+
+    private BusConnection primary;
+    private BusConnection stripe;
+    private ConnectionGroups groups;
+
+    @Before
+    public void setUp() throws Throwable {
+        this.primary = new BusClientConnection(Utilities.getSocketOptions());
+        this.stripe = new BusClientConnection(Utilities.getSocketOptions());
+        this.groups = new ConnectionGroups();
+    }
+
+    private boolean control(final String verb, final BusConnection source,
+            final String... arguments) throws Throwable {
+        return this.groups.handleControl(
+                ControlMessages.create(verb, arguments).getNotification(),
+                source);
+    }
+
+    @Test
+    public void ungroupedConnections() throws Throwable {
+        assertFalse(this.groups.isStripe(this.stripe));
+        assertSame(this.stripe, this.groups.getPrimary(this.stripe));
+    }
+
+    @Test
+    public void ignoresOtherControl() throws Throwable {
+        assertFalse(control(Protocol.CONTROL_SUBSCRIPTIONS, this.primary));
+    }
+
+    @Test
+    public void stripesMapToPrimary() throws Throwable {
+        assertTrue(control(Protocol.CONTROL_GROUP, this.primary, TOKEN));
+        assertTrue(control(Protocol.CONTROL_STRIPE, this.stripe, TOKEN));
+        assertFalse(this.groups.isStripe(this.primary));
+        assertTrue(this.groups.isStripe(this.stripe));
+        assertSame(this.primary, this.groups.getPrimary(this.stripe));
+        assertSame(this.primary, this.groups.getPrimary(this.primary));
+    }
+
+    @Test
+    public void unknownToken() throws Throwable {
+        assertTrue(control(Protocol.CONTROL_STRIPE, this.stripe, TOKEN));
+        assertFalse(this.groups.isStripe(this.stripe));
+    }
+
+    @Test
+    public void removingPrimaryReleasesStripes() throws Throwable {
+        control(Protocol.CONTROL_GROUP, this.primary, TOKEN);
+        control(Protocol.CONTROL_STRIPE, this.stripe, TOKEN);
+        this.groups.remove(this.primary);
+        assertFalse(this.groups.isStripe(this.stripe));
+        assertSame(this.stripe, this.groups.getPrimary(this.stripe));
+    }
+
+}
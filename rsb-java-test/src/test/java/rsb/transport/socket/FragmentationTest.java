@@ -0,0 +1,207 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.socket;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import rsb.RsbTestCase;
+import rsb.protocol.FragmentedNotificationType.FragmentedNotification;
+import rsb.protocol.NotificationType.Notification;
+
+import com.google.protobuf.ByteString;
+
+// CHECKSTYLE.OFF: MagicNumber - test values
+
+/**
+ * @author jwienke
+ */
+public class FragmentationTest extends RsbTestCase {
+
+    private static final int FRAGMENT_SIZE = 1024;
+
+    /**
+     * Collects sent frames as they would be received by the remote peer.
+     */
+    private static class CollectingSender implements
+            Fragmentation.WireSender {
+
+        private final List<Frame> frames = new ArrayList<Frame>();
+
+        @Override
+        public void sendWireFrame(final Frame frame) throws IOException {
+            final ByteBuffer buffer = frame.toBuffer();
+            final byte[] data = new byte[buffer.remaining()];
+            buffer.get(data);
+            this.frames.add(Frame.wrap(data));
+        }
+
+    }
+
+    private static Notification createNotification(final int size)
+            throws Throwable {
+        final byte[] data = new byte[size];
+        for (int i = 0; i < data.length; ++i) {
+            data[i] = (byte) i;
+        }
+        return Utilities.createNotification().toBuilder()
+                .setData(ByteString.copyFrom(data)).build();
+    }
+
+    private static Fragmentation create(final int fragmentSize,
+            final long maxReassemblyBytes) throws Throwable {
+        final Fragmentation fragmentation =
+                new Fragmentation(Utilities.getSocketOptions()
+                        .withFragmentation(fragmentSize, maxReassemblyBytes));
+        fragmentation.enableFragmentation();
+        return fragmentation;
+    }
+
+    private static List<Frame> fragment(final Notification notification)
+            throws Throwable {
+        final CollectingSender sender = new CollectingSender();
+        create(FRAGMENT_SIZE, SocketOptions.DEFAULT_REASSEMBLY_BYTES).send(
+                Frame.encode(notification), sender);
+        return sender.frames;
+    }
+
+    @Test
+    public void fragmentAndReassemble() throws Throwable {
+        final Notification notification =
+                createNotification(3 * FRAGMENT_SIZE + 1);
+        final List<Frame> fragments = fragment(notification);
+        assertEquals(4, fragments.size());
+
+        final Fragmentation receiver =
+                create(0, SocketOptions.DEFAULT_REASSEMBLY_BYTES);
+        for (int i = 0; i < fragments.size() - 1; ++i) {
+            assertTrue(fragments.get(i).isFragment());
+            assertNull(receiver.reassemble(fragments.get(i)));
+        }
+        final Frame complete =
+                receiver.reassemble(fragments.get(fragments.size() - 1));
+        assertFalse(complete.isFragment());
+        assertEquals(notification, complete.getNotification());
+    }
+
+    @Test
+    public void smallFramesNotFragmented() throws Throwable {
+        final Frame frame = Frame.encode(createNotification(FRAGMENT_SIZE));
+        final CollectingSender sender = new CollectingSender();
+        create(2 * FRAGMENT_SIZE, SocketOptions.DEFAULT_REASSEMBLY_BYTES)
+                .send(frame, sender);
+        assertEquals(1, sender.frames.size());
+        assertFalse(sender.frames.get(0).isFragment());
+    }
+
+    @Test
+    public void notFragmentedWithoutNegotiation() throws Throwable {
+        final Fragmentation fragmentation =
+                new Fragmentation(Utilities.getSocketOptions()
+                        .withFragmentation(FRAGMENT_SIZE,
+                                SocketOptions.DEFAULT_REASSEMBLY_BYTES));
+        final Frame frame =
+                Frame.encode(createNotification(4 * FRAGMENT_SIZE));
+        assertFalse(fragmentation.isFragmented(frame));
+    }
+
+    @Test
+    public void interleaved() throws Throwable {
+        final Notification first = createNotification(2 * FRAGMENT_SIZE);
+        final Notification second = createNotification(2 * FRAGMENT_SIZE);
+        final Notification small = createNotification(10);
+        final List<Frame> firstFragments = fragment(first);
+        final List<Frame> secondFragments = fragment(second);
+
+        final Fragmentation receiver =
+                create(0, SocketOptions.DEFAULT_REASSEMBLY_BYTES);
+        assertNull(receiver.reassemble(firstFragments.get(0)));
+        assertNull(receiver.reassemble(secondFragments.get(0)));
+        final Frame plain = fragment(small).get(0);
+        assertSame(plain, receiver.reassemble(plain));
+        assertEquals(second, receiver.reassemble(secondFragments.get(1))
+                .getNotification());
+        assertEquals(first, receiver.reassemble(firstFragments.get(1))
+                .getNotification());
+    }
+
+    @Test
+    public void reassemblyLimitDropsOldest() throws Throwable {
+        final Notification first = createNotification(2 * FRAGMENT_SIZE);
+        final Notification second = createNotification(2 * FRAGMENT_SIZE);
+        final List<Frame> firstFragments = fragment(first);
+        final List<Frame> secondFragments = fragment(second);
+
+        final Fragmentation receiver = create(0, 2 * FRAGMENT_SIZE);
+        assertNull(receiver.reassemble(firstFragments.get(0)));
+        assertNull(receiver.reassemble(secondFragments.get(0)));
+        // the first notification has been dropped for the second one
+        assertEquals(second, receiver.reassemble(secondFragments.get(1))
+                .getNotification());
+        assertNull(receiver.reassemble(firstFragments.get(1)));
+    }
+
+    @Test
+    public void oversizedNotificationDropped() throws Throwable {
+        final List<Frame> fragments =
+                fragment(createNotification(3 * FRAGMENT_SIZE));
+
+        final Fragmentation receiver = create(0, 2 * FRAGMENT_SIZE);
+        for (final Frame fragment : fragments) {
+            assertNull(receiver.reassemble(fragment));
+        }
+
+        final Notification next = createNotification(2 * FRAGMENT_SIZE);
+        final List<Frame> nextFragments = fragment(next);
+        assertNull(receiver.reassemble(nextFragments.get(0)));
+        assertEquals(next, receiver.reassemble(nextFragments.get(1))
+                .getNotification());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsForgedPartCount() throws Throwable {
+        final CollectingSender sender = new CollectingSender();
+        sender.sendWireFrame(Frame.encodeFragment(FragmentedNotification
+                .newBuilder().setNotification(createNotification(10))
+                .setNumDataParts(Integer.MAX_VALUE).setDataPart(0).build()));
+        create(0, 2 * FRAGMENT_SIZE).reassemble(sender.frames.get(0));
+    }
+
+}
+
+// CHECKSTYLE.ON: MagicNumber
@@ -0,0 +1,112 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.socket;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Test;
+
+import rsb.RsbTestCase;
+
+// CHECKSTYLE.OFF: MagicNumber - test values
+
+/**
+ * @author jwienke
+ */
+public class FrameDecoderTest extends RsbTestCase {
+
+    private static ByteBuffer frames(final byte[]... contents) {
+        int size = 0;
+        for (final byte[] content : contents) {
+            size += Protocol.DATA_SIZE_BYTES + content.length;
+        }
+        final ByteBuffer buffer =
+                ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        for (final byte[] content : contents) {
+            buffer.putInt(content.length);
+            buffer.put(content);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static byte[] payload(final Frame frame) {
+        final ByteBuffer payload = frame.getPayload();
+        final byte[] bytes = new byte[payload.remaining()];
+        payload.get(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void multipleFramesInOneChunk() throws Throwable {
+        final byte[] first = new byte[] { 1, 2, 3 };
+        final byte[] second = new byte[] { 4 };
+        final ByteBuffer input = frames(first, new byte[0], second);
+
+        final FrameDecoder decoder = new FrameDecoder();
+        assertArrayEquals(first, payload(decoder.decode(input)));
+        assertArrayEquals(new byte[0], payload(decoder.decode(input)));
+        assertArrayEquals(second, payload(decoder.decode(input)));
+        assertNull(decoder.decode(input));
+    }
+
+    @Test
+    public void byteWiseChunks() throws Throwable {
+        final byte[] content = new byte[] { 1, 2, 3, 4, 5, 6 };
+        final ByteBuffer input = frames(content);
+
+        final FrameDecoder decoder = new FrameDecoder();
+        Frame result = null;
+        while (input.hasRemaining()) {
+            assertNull(result);
+            final ByteBuffer chunk = ByteBuffer.allocate(1);
+            chunk.put(input.get());
+            chunk.flip();
+            result = decoder.decode(chunk);
+        }
+        assertArrayEquals(content, payload(result));
+    }
+
+    @Test(expected = IOException.class)
+    public void invalidLength() throws Throwable {
+        final ByteBuffer input =
+                ByteBuffer.allocate(Protocol.DATA_SIZE_BYTES).order(
+                        ByteOrder.LITTLE_ENDIAN);
+        input.putInt(-1);
+        input.flip();
+        new FrameDecoder().decode(input);
+    }
+
+}
+
+// CHECKSTYLE.ON: MagicNumber
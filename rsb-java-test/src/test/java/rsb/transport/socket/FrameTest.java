@@ -0,0 +1,213 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.socket;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import rsb.RsbTestCase;
+import rsb.protocol.NotificationType.Notification;
+
+import com.google.protobuf.UnsafeByteOperations;
+
+/**
+ * @author jwienke
+ */
+public class FrameTest extends RsbTestCase {
+
+    private static final int HEADER_POOL_SIZE = 4096;
+
+    @Test
+    public void encode() throws Throwable {
+        final Notification notification = Utilities.createNotification();
+        final Frame frame = Frame.encode(notification);
+
+        assertSame(notification, frame.getNotification());
+        assertEquals(notification.getSerializedSize(), frame.getPayloadSize());
+        assertEquals(Protocol.DATA_SIZE_BYTES + frame.getPayloadSize(),
+                frame.getSize());
+
+        final ByteBuffer buffer =
+                frame.toBuffer().order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(frame.getPayloadSize(), buffer.getInt());
+        assertEquals(frame.getPayload(), buffer);
+    }
+
+    @Test
+    public void wrapDecodesLazily() throws Throwable {
+        final Notification notification = Utilities.createNotification();
+        final ByteBuffer buffer = Frame.encode(notification).toBuffer();
+        final byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+
+        final Frame frame = Frame.wrap(data);
+        assertEquals(notification, frame.getNotification());
+        assertSame(frame.getNotification(), frame.getNotification());
+    }
+
+    @Test
+    public void scopeWithoutDecoding() throws Throwable {
+        final Notification notification = Utilities.createNotification();
+        final ByteBuffer buffer = Frame.encode(notification).toBuffer();
+        final byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+
+        final Frame frame = Frame.wrap(data);
+        assertEquals(notification.getScope().toStringUtf8(), frame.getScope());
+    }
+
+    @Test
+    public void unreliableWithoutDecoding() throws Throwable {
+        final Notification notification = Utilities.createNotification();
+        final ByteBuffer marked =
+                Frame.encode(Frame.markUnreliable(notification)).toBuffer();
+        final byte[] data = new byte[marked.remaining()];
+        marked.get(data);
+        assertTrue(Frame.wrap(data).isUnreliable());
+
+        final ByteBuffer plain = Frame.encode(notification).toBuffer();
+        final byte[] plainData = new byte[plain.remaining()];
+        plain.get(plainData);
+        assertFalse(Frame.wrap(plainData).isUnreliable());
+        assertFalse(Frame.encode(notification).isUnreliable());
+    }
+
+    @Test
+    public void unmarkedVariantRemainsUnreliable() throws Throwable {
+        final Notification notification = Utilities.createNotification();
+        final Frame marked = Frame.encode(Frame.markUnreliable(notification));
+        final Frame unmarked = marked.getUnmarked();
+
+        assertEquals(notification, unmarked.getNotification());
+        assertEquals(notification.getSerializedSize(),
+                unmarked.toBuffer().order(ByteOrder.LITTLE_ENDIAN).getInt(0));
+        assertTrue(unmarked.isUnreliable());
+        assertSame(unmarked, marked.getUnmarked());
+        assertSame(unmarked, unmarked.getUnmarked());
+
+        final Frame plain = Frame.encode(notification);
+        assertSame(plain, plain.getUnmarked());
+        marked.release();
+        plain.release();
+    }
+
+    @Test
+    public void encodeLargePayloadWithoutCopying() throws Throwable {
+        final ByteBuffer payload =
+                ByteBuffer.allocateDirect(Frame.ZERO_COPY_THRESHOLD);
+        final Notification notification =
+                Utilities.createNotification().toBuilder()
+                        .setData(UnsafeByteOperations.unsafeWrap(payload))
+                        .build();
+        final Frame frame = Frame.encode(notification);
+
+        assertSame(notification, frame.getNotification());
+        assertEquals(notification.getSerializedSize(), frame.getPayloadSize());
+
+        final ByteBuffer[] buffers = frame.toBuffers();
+        assertEquals(2, buffers.length);
+        assertEquals(frame.getSize(), buffers[0].remaining()
+                + buffers[1].remaining());
+        assertFalse(buffers[0].isDirect());
+        // the payload is referenced and not copied
+        payload.put(0, (byte) 1);
+        assertEquals(1, buffers[1].get(0));
+
+        final ByteBuffer buffer = frame.toBuffer();
+        final byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+        assertEquals(notification, Frame.wrap(data).getNotification());
+        assertEquals(notification.getScope().toStringUtf8(), Frame.wrap(data)
+                .getScope());
+
+        frame.release();
+    }
+
+    @Test
+    public void encodeSplitIntoPooledHeader() throws Throwable {
+        final BufferPool pool = new BufferPool(false, HEADER_POOL_SIZE,
+                HEADER_POOL_SIZE, HEADER_POOL_SIZE);
+        final byte[] data = new byte[Frame.ZERO_COPY_THRESHOLD];
+        Arrays.fill(data, (byte) 1);
+        final Notification notification =
+                Utilities.createNotification().toBuilder()
+                        .setData(UnsafeByteOperations.unsafeWrap(data))
+                        .build();
+        final Frame frame = Frame.encodeSplit(notification, pool);
+        final ByteBuffer buffer = frame.toBuffer();
+        final byte[] encoded = new byte[buffer.remaining()];
+        buffer.get(encoded);
+        assertEquals(notification, Frame.wrap(encoded).getNotification());
+        frame.release();
+        assertEquals(1, pool.getAvailable());
+    }
+
+    @Test
+    public void receiveIntoPooledBuffer() throws Throwable {
+        final Notification notification = Utilities.createNotification();
+        final ByteBuffer encoded = Frame.encode(notification).getPayload();
+
+        final ByteBuffer buffer = Frame.acquireBuffer(encoded.remaining());
+        buffer.put(encoded);
+        final Frame frame = Frame.wrap(buffer);
+        assertEquals(notification.getSerializedSize(), frame.getPayloadSize());
+        assertEquals(notification.getScope().toStringUtf8(), frame.getScope());
+
+        final Notification transientNotification =
+                frame.getTransientNotification();
+        assertEquals(notification, transientNotification);
+        final Notification copied = frame.getNotification();
+        assertEquals(notification, copied);
+
+        // only the transient notification references the frame memory
+        for (int i = Protocol.DATA_SIZE_BYTES; i < frame.getSize(); ++i) {
+            buffer.put(i, (byte) ~buffer.get(i));
+        }
+        assertEquals(notification, copied);
+        assertFalse(notification.getData().equals(
+                transientNotification.getData()));
+
+        frame.release();
+    }
+
+    @Test(expected = IOException.class)
+    public void wrapRejectsWrongLength() throws Throwable {
+        final byte[] data = Frame.allocate(2);
+        Frame.wrap(Arrays.copyOf(data, data.length - 1));
+    }
+
+}
@@ -0,0 +1,152 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.socket;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataInputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import rsb.RsbTestCase;
+import rsb.protocol.NotificationType.Notification;
+
+import com.google.protobuf.ByteString;
+
+/**
+ * Tests that clients only use optional protocol features after negotiating
+ * them and hence interoperate with servers unaware of control notifications.
+ * The server is simulated with a plain socket which only performs the
+ * handshake and reads frames.
+ *
+ * @author jwienke
+ */
+public class LegacyServerTest extends RsbTestCase {
+
+    private static final int FRAGMENT_SIZE = 1024;
+    private static final int COMPRESSION_THRESHOLD = 16;
+    private static final int CONNECTIONS = 2;
+
+    private final ExecutorService executor = Executors
+            .newSingleThreadExecutor();
+    private ServerSocket serverSocket;
+    private Socket accepted;
+    private BusClient client;
+
+    @Before
+    public void setUp() throws Throwable {
+        this.serverSocket = new ServerSocket();
+        this.serverSocket.setReuseAddress(true);
+        this.serverSocket.bind(new InetSocketAddress(
+                Utilities.getSocketHost(), Utilities.getSocketPort()));
+    }
+
+    @After
+    public void tearDown() throws Throwable {
+        // the simulated server does not take part in the shutdown protocol
+        if (this.accepted != null) {
+            this.accepted.close();
+        }
+        if (this.client != null && this.client.isActive()) {
+            this.client.deactivate();
+        }
+        this.serverSocket.close();
+        this.executor.shutdownNow();
+    }
+
+    private Future<Socket> acceptClient() {
+        return this.executor.submit(new Callable<Socket>() {
+
+            @Override
+            public Socket call() throws Exception {
+                final Socket socket =
+                        LegacyServerTest.this.serverSocket.accept();
+                socket.getOutputStream().write(
+                        new byte[Protocol.HANDSHAKE_BYTES]);
+                return socket;
+            }
+
+        });
+    }
+
+    private Notification readNotification() throws Throwable {
+        final DataInputStream input =
+                new DataInputStream(this.accepted.getInputStream());
+        final byte[] length = new byte[Protocol.DATA_SIZE_BYTES];
+        input.readFully(length);
+        final byte[] data =
+                Frame.allocate(ByteBuffer.wrap(length)
+                        .order(ByteOrder.LITTLE_ENDIAN).getInt());
+        input.readFully(data, Protocol.DATA_SIZE_BYTES, data.length
+                - Protocol.DATA_SIZE_BYTES);
+        return Frame.wrap(data).getNotification();
+    }
+
+    @Test
+    public void noOptionalFeaturesWithoutNegotiation() throws Throwable {
+        final Future<Socket> socket = acceptClient();
+        this.client =
+                new BusClient(Utilities.getSocketOptions()
+                        .withCompression(true, COMPRESSION_THRESHOLD)
+                        .withFragmentation(FRAGMENT_SIZE, Long.MAX_VALUE)
+                        .withConnections(CONNECTIONS));
+        this.client.activate();
+        this.accepted = socket.get();
+
+        // without an answer to the hello, no additional connection is used
+        assertEquals(1, this.client.getSendingConnections());
+
+        // the hello is the only control notification and a valid notification
+        final Notification hello = readNotification();
+        assertEquals(Protocol.CONTROL_SCOPE, hello.getScope().toStringUtf8());
+        assertEquals(Protocol.CONTROL_HELLO, ControlMessages.getVerb(hello));
+
+        // neither compressed nor fragmented
+        final Notification sent =
+                Utilities.createNotification().toBuilder()
+                        .setData(ByteString.copyFrom(
+                                new byte[2 * FRAGMENT_SIZE])).build();
+        this.client.handleOutgoing(sent);
+        final Notification received = readNotification();
+        assertTrue(received.getUnknownFields().asMap().isEmpty());
+        assertEquals(sent, received);
+    }
+
+}
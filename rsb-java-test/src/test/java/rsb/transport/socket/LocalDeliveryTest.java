@@ -0,0 +1,298 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.socket;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import rsb.Event;
+import rsb.ParticipantId;
+import rsb.RSBException;
+import rsb.RsbTestCase;
+import rsb.Scope;
+import rsb.converter.ConversionException;
+import rsb.converter.ConverterSelectionStrategy;
+import rsb.converter.ConverterSignature;
+import rsb.converter.StringConverter;
+import rsb.converter.UnambiguousConverterMap;
+import rsb.converter.UserData;
+import rsb.protocol.NotificationType.Notification;
+import rsb.transport.socket.Bus.EventReceiver;
+
+/**
+ * Tests that events sent through a bus reach local receivers without
+ * serialization while remote participants still get notifications.
+ *
+ * @author jwienke
+ */
+public class LocalDeliveryTest extends RsbTestCase {
+
+    private static final String PAYLOAD = "local payload";
+
+    private BusServer server;
+    private BusClient client;
+    private UnambiguousConverterMap<ByteBuffer> converters;
+
+    /**
+     * String converter counting deserialized payloads.
+     */
+    private static class CountingConverter extends StringConverter {
+
+        private int decoded = 0;
+
+        @Override
+        public UserData<ByteBuffer> deserialize(final String wireSchema,
+                final ByteBuffer bytes) throws ConversionException {
+            synchronized (this) {
+                this.decoded++;
+            }
+            return super.deserialize(wireSchema, bytes);
+        }
+
+        public int getDecoded() {
+            synchronized (this) {
+                return this.decoded;
+            }
+        }
+
+    }
+
+    /**
+     * Converter decoding the same wire schema as {@link StringConverter} into
+     * {@link StringBuilder} instances.
+     */
+    private static class BuilderConverter extends CountingConverter {
+
+        @Override
+        public UserData<ByteBuffer> deserialize(final String wireSchema,
+                final ByteBuffer bytes) throws ConversionException {
+            return new UserData<ByteBuffer>(new StringBuilder((String) super
+                    .deserialize(wireSchema, bytes).getData()),
+                    StringBuilder.class);
+        }
+
+        @Override
+        public ConverterSignature getSignature() {
+            return new ConverterSignature(super.getSignature().getSchema(),
+                    StringBuilder.class);
+        }
+
+    }
+
+    /**
+     * Receiver recording the received events.
+     */
+    private static class RecordingReceiver implements EventReceiver {
+
+        private final ConverterSelectionStrategy<ByteBuffer> converters;
+        private final List<Event> events = new ArrayList<Event>();
+        private int notifications = 0;
+
+        RecordingReceiver(final CountingConverter converter) {
+            final UnambiguousConverterMap<ByteBuffer> map =
+                    new UnambiguousConverterMap<ByteBuffer>();
+            final ConverterSignature signature = converter.getSignature();
+            map.addConverter(signature.getSchema(), converter);
+            this.converters = map;
+        }
+
+        @Override
+        public void handle(final Notification notification) {
+            this.notifications++;
+        }
+
+        @Override
+        public ConverterSelectionStrategy<ByteBuffer> getConverters() {
+            return this.converters;
+        }
+
+        @Override
+        public void handle(final Event event) {
+            this.events.add(event);
+        }
+
+    }
+
+    @Before
+    public void setUp() throws Throwable {
+        this.server = new BusServer(Utilities.getSocketOptions());
+        this.server.activate();
+        this.converters = new UnambiguousConverterMap<ByteBuffer>();
+        this.converters.addConverter(String.class.getName(),
+                new StringConverter());
+    }
+
+    @After
+    public void tearDown() throws Throwable {
+        if (this.client != null) {
+            try {
+                this.client.deactivate();
+            } catch (final RSBException e) {
+                // we can't do anything
+            }
+        }
+        try {
+            this.server.deactivate();
+        } catch (final RSBException e) {
+            // we can't do anything
+        }
+    }
+
+    private Event createEvent() {
+        final Event event =
+                new Event(new Scope("/local/delivery"), String.class,
+                        PAYLOAD);
+        event.setId(new ParticipantId(), 1);
+        event.getMetaData().setSendTime(0);
+        return event;
+    }
+
+    @Test
+    public void localReceiversSkipSerialization() throws Throwable {
+        final CountingConverter converter = new CountingConverter();
+        final RecordingReceiver receiver = new RecordingReceiver(converter);
+        this.server.addNotificationReceiver(receiver);
+
+        final Event sent = createEvent();
+        this.server.handleOutgoing(sent, this.converters, false);
+
+        assertEquals(0, converter.getDecoded());
+        assertEquals(0, receiver.notifications);
+        assertEquals(1, receiver.events.size());
+        final Event received = receiver.events.get(0);
+        assertNotSame(sent, received);
+        assertSame(sent.getData(), received.getData());
+        assertEquals(sent.getId(), received.getId());
+        assertEquals(sent.getScope(), received.getScope());
+        assertEquals(sent.getMetaData().getSendTime(),
+                received.getMetaData().getSendTime());
+        assertTrue(received.getMetaData().getReceiveTime() > 0);
+        assertEquals(0, sent.getMetaData().getReceiveTime());
+    }
+
+    @Test
+    public void differentConvertersDecodeNotifications() throws Throwable {
+        final CountingConverter plain = new CountingConverter();
+        final RecordingReceiver plainReceiver = new RecordingReceiver(plain);
+        this.server.addNotificationReceiver(plainReceiver);
+        final CountingConverter builder = new BuilderConverter();
+        final RecordingReceiver builderReceiver =
+                new RecordingReceiver(builder);
+        this.server.addNotificationReceiver(builderReceiver);
+
+        final Event sent = createEvent();
+        this.server.handleOutgoing(sent, this.converters, false);
+
+        assertEquals(1, plain.getDecoded());
+        assertEquals(1, builder.getDecoded());
+        assertEquals(1, plainReceiver.events.size());
+        assertEquals(PAYLOAD, plainReceiver.events.get(0).getData());
+        assertEquals(1, builderReceiver.events.size());
+        final Event received = builderReceiver.events.get(0);
+        assertEquals(StringBuilder.class, received.getType());
+        assertEquals(PAYLOAD, received.getData().toString());
+        assertFalse(sent.getData() == received.getData());
+    }
+
+    @Test
+    public void remoteParticipantsGetNotifications() throws Throwable {
+        this.client = new BusClient(Utilities.getSocketOptions());
+        this.client.activate();
+        final ResultWaiter remote = new ResultWaiter();
+        this.client.addNotificationReceiver(remote);
+        final CountingConverter converter = new CountingConverter();
+        final RecordingReceiver receiver = new RecordingReceiver(converter);
+        this.server.addNotificationReceiver(receiver);
+
+        final Event sent = createEvent();
+        this.server.handleOutgoing(sent, this.converters, false);
+
+        assertEquals(0, converter.getDecoded());
+        assertEquals(1, receiver.events.size());
+        final Notification notification = remote.waitForResult();
+        assertNotNull(notification);
+        assertEquals(PAYLOAD, notification.getData().toStringUtf8());
+        assertEquals(sent.getId().getSequenceNumber(),
+                notification.getEventId().getSequenceNumber());
+    }
+
+    @Test
+    public void unreliableNotificationsAreMarked() throws Throwable {
+        this.client = new BusClient(Utilities.getSocketOptions());
+        this.client.activate();
+        final ResultWaiter remote = new ResultWaiter();
+        this.client.addNotificationReceiver(remote);
+
+        this.server.handleOutgoing(createEvent(), this.converters, true);
+
+        final Notification notification = remote.waitForResult();
+        assertNotNull(notification);
+        assertTrue(notification.getUnknownFields().hasField(
+                Protocol.UNRELIABLE_FIELD));
+        assertTrue(Frame.encode(notification).isUnreliable());
+    }
+
+    @Test
+    public void legacyClientsGetNoUnreliableMarker() throws Throwable {
+        final BlockingBusConnection legacyClient =
+                new BusClientConnection(Utilities.getSocketOptions());
+        legacyClient.activate();
+        try {
+            this.server.handleOutgoing(createEvent(), this.converters, true);
+
+            final Notification notification = legacyClient.readNotification();
+            assertEquals(PAYLOAD, notification.getData().toStringUtf8());
+            assertFalse(notification.getUnknownFields().hasField(
+                    Protocol.UNRELIABLE_FIELD));
+        } finally {
+            legacyClient.shutdown();
+            legacyClient.deactivate();
+        }
+    }
+
+    @Test(expected = ConversionException.class)
+    public void missingConverterFailsWithoutConnections() throws Throwable {
+        this.server.addNotificationReceiver(new RecordingReceiver(
+                new CountingConverter()));
+        this.server.handleOutgoing(createEvent(),
+                new UnambiguousConverterMap<ByteBuffer>(), false);
+    }
+
+}
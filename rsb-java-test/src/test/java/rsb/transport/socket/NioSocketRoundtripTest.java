@@ -0,0 +1,61 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.socket;
+
+/**
+ * Roundtrip tests for connectors using a {@link NioBusServer}. The in connector
+ * acts as the server so that notifications have to pass the wire.
+ *
+ * @author jwienke
+ */
+@SuppressWarnings("PMD.TestClassWithoutTestCases")
+public class NioSocketRoundtripTest extends SocketRoundtripTest {
+
+    private static final int SELECTOR_THREADS = 2;
+
+    public NioSocketRoundtripTest(final int size) {
+        super(size);
+    }
+
+    @Override
+    protected SocketOptions getSocketOptions() throws Throwable {
+        return super.getSocketOptions().withIoMode(IoMode.NIO,
+                SELECTOR_THREADS);
+    }
+
+    @Override
+    protected ServerMode getInServerMode() {
+        return ServerMode.YES;
+    }
+
+    @Override
+    protected ServerMode getOutServerMode() {
+        return ServerMode.NO;
+    }
+
+}
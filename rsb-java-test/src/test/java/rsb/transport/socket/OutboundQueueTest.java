@@ -0,0 +1,279 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.socket;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import rsb.RsbTestCase;
+import rsb.protocol.NotificationType.Notification;
+
+import com.google.protobuf.ByteString;
+
+// CHECKSTYLE.OFF: MagicNumber - test values
+
+/**
+ * @author jwienke
+ */
+public class OutboundQueueTest extends RsbTestCase {
+
+    private static final long WAIT_TIME = 200;
+
+    private static Frame frame(final int size) throws IOException {
+        return Frame.wrap(Frame.allocate(size - Protocol.DATA_SIZE_BYTES));
+    }
+
+    /**
+     * Creates a frame with a valid notification, which can be dropped by
+     * slow consumer policies.
+     */
+    private static Frame notificationFrame(final int size) {
+        return Frame.encode(Notification.newBuilder()
+                .setData(ByteString.copyFrom(new byte[size - 6])).buildPartial());
+    }
+
+    private Thread startProducer(final OutboundQueue queue,
+            final Frame frame, final AtomicBoolean done) {
+        final Thread producer = new Thread() {
+
+            @Override
+            public void run() {
+                try {
+                    queue.put(frame);
+                    done.set(true);
+                } catch (final InterruptedException e) {
+                    // terminate
+                }
+            }
+
+        };
+        producer.start();
+        return producer;
+    }
+
+    @Test
+    public void fifo() throws Throwable {
+        final OutboundQueue queue = new OutboundQueue(10, 100, 50);
+        final Frame first = frame(5);
+        final Frame second = frame(7);
+        assertTrue(queue.put(first));
+        assertTrue(queue.put(second));
+        assertEquals(2, queue.size());
+        assertEquals(12, queue.getBytes());
+        assertSame(first, queue.take());
+        assertSame(second, queue.take());
+        assertEquals(0, queue.getBytes());
+    }
+
+    @Test
+    public void depthBlocksProducers() throws Throwable {
+        final OutboundQueue queue = new OutboundQueue(1, 100, 50);
+        queue.put(frame(4));
+
+        final AtomicBoolean done = new AtomicBoolean(false);
+        final Thread producer =
+                startProducer(queue, frame(4), done);
+        producer.join(WAIT_TIME);
+        assertFalse(done.get());
+
+        queue.take();
+        producer.join();
+        assertTrue(done.get());
+    }
+
+    @Test
+    public void watermarks() throws Throwable {
+        final OutboundQueue queue = new OutboundQueue(100, 10, 4);
+        queue.put(frame(6));
+        assertTrue(queue.isWritable());
+        queue.put(frame(6));
+        assertFalse(queue.isWritable());
+
+        final AtomicBoolean done = new AtomicBoolean(false);
+        final Thread producer =
+                startProducer(queue, frame(4), done);
+        producer.join(WAIT_TIME);
+        assertFalse(done.get());
+
+        // still above the low watermark after this
+        queue.take();
+        assertFalse(queue.isWritable());
+        producer.join(WAIT_TIME);
+        assertFalse(done.get());
+
+        queue.take();
+        producer.join();
+        assertTrue(done.get());
+    }
+
+    @Test
+    public void closeDrainsAndRejects() throws Throwable {
+        final OutboundQueue queue = new OutboundQueue(10, 100, 50);
+        final Frame frame = frame(4);
+        queue.put(frame);
+        queue.close();
+        assertTrue(queue.isClosed());
+        assertFalse(queue.put(frame(4)));
+        assertSame(frame, queue.take());
+        assertNull(queue.take());
+    }
+
+    @Test
+    public void pollDoesNotWait() throws Throwable {
+        final OutboundQueue queue = new OutboundQueue(10, 100, 50);
+        assertNull(queue.poll());
+        final Frame frame = frame(4);
+        queue.put(frame);
+        assertSame(frame, queue.poll());
+        assertEquals(0, queue.getBytes());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void blockingIsCounted() throws Throwable {
+        final SlowConsumerStatistics statistics = new SlowConsumerStatistics();
+        final OutboundQueue queue =
+                new OutboundQueue(1, 100, 50, SlowConsumerPolicy.BLOCK,
+                        statistics);
+        queue.put(frame(4));
+
+        final AtomicBoolean done = new AtomicBoolean(false);
+        final Thread producer = startProducer(queue, frame(4), done);
+        producer.join(WAIT_TIME);
+        queue.take();
+        producer.join();
+        assertTrue(done.get());
+        assertEquals(1, statistics.getCount(SlowConsumerPolicy.BLOCK));
+    }
+
+    @Test
+    public void dropNewest() throws Throwable {
+        final SlowConsumerStatistics statistics = new SlowConsumerStatistics();
+        final OutboundQueue queue =
+                new OutboundQueue(10, 10, 4, SlowConsumerPolicy.DROP_NEWEST,
+                        statistics);
+        final Frame first = notificationFrame(6);
+        assertTrue(queue.put(first));
+        assertFalse(queue.put(notificationFrame(6)));
+        assertEquals(1, queue.size());
+        assertSame(first, queue.poll());
+        assertEquals(1, statistics.getCount(SlowConsumerPolicy.DROP_NEWEST));
+    }
+
+    @Test
+    public void dropOldest() throws Throwable {
+        final SlowConsumerStatistics statistics = new SlowConsumerStatistics();
+        final OutboundQueue queue =
+                new OutboundQueue(2, 100, 50, SlowConsumerPolicy.DROP_OLDEST,
+                        statistics);
+        queue.put(notificationFrame(8));
+        final Frame second = notificationFrame(8);
+        final Frame third = notificationFrame(8);
+        assertTrue(queue.put(second));
+        assertTrue(queue.put(third));
+        assertEquals(2, queue.size());
+        assertEquals(16, queue.getBytes());
+        assertSame(second, queue.poll());
+        assertSame(third, queue.poll());
+        assertEquals(1, statistics.getCount(SlowConsumerPolicy.DROP_OLDEST));
+    }
+
+    @Test
+    public void dropUnreliable() throws Throwable {
+        final Notification notification = Utilities.createNotification();
+        final Frame unreliable =
+                Frame.encode(Frame.markUnreliable(notification));
+        final Frame reliable = Frame.encode(notification);
+        final SlowConsumerStatistics statistics = new SlowConsumerStatistics();
+        final OutboundQueue queue =
+                new OutboundQueue(10, reliable.getSize()
+                        + unreliable.getSize(), 0,
+                        SlowConsumerPolicy.DROP_UNRELIABLE, statistics);
+
+        assertTrue(queue.put(unreliable));
+        assertTrue(queue.put(reliable));
+        // the queued unreliable frame makes room for another reliable one
+        final Frame second = Frame.encode(notification);
+        assertTrue(queue.put(second));
+        assertEquals(1,
+                statistics.getCount(SlowConsumerPolicy.DROP_UNRELIABLE));
+        // new unreliable frames are dropped if nothing else can be dropped
+        assertFalse(queue.put(Frame.encode(Frame.markUnreliable(notification))));
+        assertEquals(2,
+                statistics.getCount(SlowConsumerPolicy.DROP_UNRELIABLE));
+
+        assertSame(reliable, queue.poll());
+        assertSame(second, queue.poll());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void disconnectClosesQueue() throws Throwable {
+        final SlowConsumerStatistics statistics = new SlowConsumerStatistics();
+        final OutboundQueue queue =
+                new OutboundQueue(10, 10, 4, SlowConsumerPolicy.DISCONNECT,
+                        statistics);
+        assertTrue(queue.put(frame(6)));
+        assertFalse(queue.isOverflowed());
+        assertFalse(queue.put(frame(6)));
+        assertTrue(queue.isOverflowed());
+        assertTrue(queue.isClosed());
+        assertEquals(1, statistics.getCount(SlowConsumerPolicy.DISCONNECT));
+    }
+
+    @Test
+    public void clearReleasesFrames() throws Throwable {
+        final int poolSize = 4096;
+        final BufferPool pool =
+                new BufferPool(false, poolSize, poolSize, poolSize);
+        final Frame frame =
+                Frame.encodeSplit(Utilities.createNotification().toBuilder()
+                        .setData(ByteString.copyFrom(
+                                new byte[Frame.ZERO_COPY_THRESHOLD]))
+                        .build(), pool);
+        final OutboundQueue queue = new OutboundQueue(10, Long.MAX_VALUE, 0);
+        assertTrue(queue.put(frame));
+        assertEquals(0, pool.getAvailable());
+
+        queue.clear();
+        assertTrue(queue.isClosed());
+        assertEquals(0, queue.size());
+        assertEquals(1, pool.getAvailable());
+    }
+
+}
+
+// CHECKSTYLE.ON: MagicNumber
@@ -0,0 +1,230 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.socket;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import org.junit.Test;
+
+import rsb.RsbTestCase;
+import rsb.protocol.NotificationType.Notification;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnknownFieldSet;
+
+// CHECKSTYLE.OFF: MagicNumber - test values
+
+/**
+ * @author jwienke
+ */
+public class PayloadCompressionTest extends RsbTestCase {
+
+    private static final int THRESHOLD = 1024;
+
+    private static Notification createNotification(final byte[] data)
+            throws Throwable {
+        return Utilities.createNotification().toBuilder()
+                .setData(ByteString.copyFrom(data)).build();
+    }
+
+    private static Notification createCompressible(final int size)
+            throws Throwable {
+        final byte[] data = new byte[size];
+        for (int i = 0; i < data.length; ++i) {
+            data[i] = (byte) (i % 16);
+        }
+        return createNotification(data);
+    }
+
+    /**
+     * Replaces payload and announced uncompressed size of a notification.
+     */
+    private static Notification withCompressed(final Notification original,
+            final ByteString data, final long size) {
+        return original.toBuilder().setData(data)
+                .setUnknownFields(UnknownFieldSet.newBuilder()
+                        .addField(Protocol.COMPRESSED_SIZE_FIELD,
+                                UnknownFieldSet.Field.newBuilder()
+                                        .addVarint(size).build()).build())
+                .build();
+    }
+
+    private static Frame transfer(final Frame frame) throws Throwable {
+        final ByteBuffer buffer = frame.toBuffer();
+        final byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+        return Frame.wrap(data);
+    }
+
+    private static PayloadCompression create(final boolean enabled)
+            throws Throwable {
+        return new PayloadCompression(Utilities.getSocketOptions()
+                .withCompression(enabled, THRESHOLD));
+    }
+
+    @Test
+    public void compressNotification() throws Throwable {
+        final Notification notification = createCompressible(4 * THRESHOLD);
+        final Notification compressed =
+                PayloadCompression.compress(notification, THRESHOLD);
+        assertTrue(PayloadCompression.isCompressed(compressed));
+        assertTrue(compressed.getData().size() < THRESHOLD);
+        assertEquals(notification.getScope(), compressed.getScope());
+
+        final Notification decompressed =
+                PayloadCompression.decompress(compressed, 4 * THRESHOLD);
+        assertFalse(PayloadCompression.isCompressed(decompressed));
+        assertEquals(notification, decompressed);
+    }
+
+    @Test
+    public void smallPayloadsUntouched() throws Throwable {
+        final Notification notification = createCompressible(THRESHOLD - 1);
+        assertSame(notification,
+                PayloadCompression.compress(notification, THRESHOLD));
+    }
+
+    @Test
+    public void incompressiblePayloadsUntouched() throws Throwable {
+        final byte[] data = new byte[4 * THRESHOLD];
+        new Random(42).nextBytes(data);
+        final Notification notification = createNotification(data);
+        assertSame(notification,
+                PayloadCompression.compress(notification, THRESHOLD));
+    }
+
+    @Test
+    public void negotiatedFrames() throws Throwable {
+        final PayloadCompression sender = create(true);
+        final PayloadCompression receiver = create(false);
+        sender.enableCompression();
+        receiver.enableDecompression();
+
+        final Notification notification = createCompressible(4 * THRESHOLD);
+        final Frame frame = Frame.encode(notification);
+        final Frame compressed = sender.compress(frame);
+        assertTrue(compressed.getSize() < frame.getSize());
+        assertSame(compressed, sender.compress(frame));
+
+        final Frame received = receiver.decompress(transfer(compressed));
+        assertEquals(notification, received.getNotification());
+        assertArrayEquals(notification.getData().toByteArray(), received
+                .getNotification().getData().toByteArray());
+        frame.release();
+        received.release();
+    }
+
+    @Test
+    public void disabledWithoutNegotiation() throws Throwable {
+        final PayloadCompression sender = create(true);
+        final Frame frame = Frame.encode(createCompressible(4 * THRESHOLD));
+        assertSame(frame, sender.compress(frame));
+
+        final PayloadCompression disabled = create(false);
+        disabled.enableCompression();
+        assertSame(frame, disabled.compress(frame));
+        frame.release();
+    }
+
+    @Test
+    public void plainFramesPassDecompression() throws Throwable {
+        final PayloadCompression receiver = create(false);
+        receiver.enableDecompression();
+        final Frame frame = Frame.encode(createCompressible(4 * THRESHOLD));
+        assertSame(frame, receiver.decompress(frame));
+        frame.release();
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsSizeAboveLimit() throws Throwable {
+        final Notification compressed =
+                PayloadCompression.compress(createCompressible(4 * THRESHOLD),
+                        THRESHOLD);
+        PayloadCompression.decompress(compressed, 4 * THRESHOLD - 1);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsNegativeSize() throws Throwable {
+        final Notification compressed =
+                PayloadCompression.compress(createCompressible(4 * THRESHOLD),
+                        THRESHOLD);
+        PayloadCompression.decompress(withCompressed(compressed,
+                compressed.getData(), -1), Long.MAX_VALUE);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsLargerPayload() throws Throwable {
+        final Notification compressed =
+                PayloadCompression.compress(createCompressible(4 * THRESHOLD),
+                        THRESHOLD);
+        PayloadCompression.decompress(withCompressed(compressed,
+                compressed.getData(), THRESHOLD), Long.MAX_VALUE);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTruncatedPayload() throws Throwable {
+        final Notification compressed =
+                PayloadCompression.compress(createCompressible(4 * THRESHOLD),
+                        THRESHOLD);
+        final ByteString data = compressed.getData();
+        PayloadCompression.decompress(withCompressed(compressed,
+                data.substring(0, data.size() / 2), 4 * THRESHOLD),
+                Long.MAX_VALUE);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsPresetDictionary() throws Throwable {
+        final Notification notification = createCompressible(4 * THRESHOLD);
+        final Deflater deflater = new Deflater();
+        final byte[] output = new byte[4 * THRESHOLD];
+        final int size;
+        try {
+            deflater.setDictionary(new byte[] { 1, 2, 3 });
+            deflater.setInput(notification.getData().toByteArray());
+            deflater.finish();
+            size = deflater.deflate(output);
+        } finally {
+            deflater.end();
+        }
+        PayloadCompression.decompress(withCompressed(notification,
+                ByteString.copyFrom(output, 0, size), 4 * THRESHOLD),
+                Long.MAX_VALUE);
+    }
+
+}
+
+// CHECKSTYLE.ON: MagicNumber
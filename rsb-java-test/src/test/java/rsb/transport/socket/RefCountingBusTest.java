@@ -0,0 +1,173 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.socket;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import rsb.RSBException;
+import rsb.RsbTestCase;
+import rsb.protocol.NotificationType.Notification;
+import rsb.transport.socket.RefCountingBus.DeactivationHandler;
+
+/**
+ * @author jwienke
+ */
+public class RefCountingBusTest extends RsbTestCase {
+
+    private static final int PORT = 2547;
+    private static final long LONG_LINGER_MS = 60000;
+    private static final long SHORT_LINGER_MS = 50;
+    private static final long EXPIRY_TIMEOUT_SEC = 10;
+
+    /**
+     * Bus counting activation and deactivation calls.
+     */
+    private static class CountingBus extends BusBase {
+
+        private int activations = 0;
+        private int deactivations = 0;
+
+        CountingBus(final SocketOptions options) {
+            super(options);
+        }
+
+        @Override
+        public void activate() throws RSBException {
+            synchronized (this) {
+                this.activations++;
+            }
+        }
+
+        @Override
+        public void deactivate() throws RSBException, InterruptedException {
+            synchronized (this) {
+                this.deactivations++;
+            }
+        }
+
+        @Override
+        public boolean isActive() {
+            synchronized (this) {
+                return this.activations > this.deactivations;
+            }
+        }
+
+        @Override
+        public void handleIncoming(final Notification notification,
+                final BusConnection source) throws RSBException {
+            // dummy method
+        }
+
+    }
+
+    /**
+     * Handler recording the deactivation.
+     */
+    private static class LatchHandler implements DeactivationHandler {
+
+        private final CountDownLatch latch = new CountDownLatch(1);
+
+        @Override
+        public void deactivated(final RefCountingBus bus) {
+            this.latch.countDown();
+        }
+
+        public boolean isDeactivated() {
+            return this.latch.getCount() == 0;
+        }
+
+    }
+
+    private CountingBus createBus(final long linger) throws Throwable {
+        return new CountingBus(new SocketOptions(InetAddress.getLocalHost(),
+                PORT, true).withLingerTime(linger));
+    }
+
+    @Test
+    public void deactivatesImmediatelyWithoutLinger() throws Throwable {
+        final CountingBus inner = createBus(0);
+        final LatchHandler handler = new LatchHandler();
+        final RefCountingBus bus = new RefCountingBus(inner, handler);
+
+        bus.activate();
+        bus.activate();
+        bus.deactivate();
+        assertTrue(inner.isActive());
+        bus.deactivate();
+
+        assertFalse(inner.isActive());
+        assertTrue(handler.isDeactivated());
+    }
+
+    @Test
+    public void reusesLingeringBus() throws Throwable {
+        final CountingBus inner = createBus(LONG_LINGER_MS);
+        final LatchHandler handler = new LatchHandler();
+        final RefCountingBus bus = new RefCountingBus(inner, handler);
+
+        bus.activate();
+        bus.deactivate();
+        assertTrue(inner.isActive());
+        assertFalse(handler.isDeactivated());
+
+        bus.activate();
+        assertEquals(1, inner.activations);
+        assertEquals(0, inner.deactivations);
+        bus.deactivate();
+    }
+
+    @Test
+    public void deactivatesAfterLingerTime() throws Throwable {
+        final CountingBus inner = createBus(SHORT_LINGER_MS);
+        final LatchHandler handler = new LatchHandler();
+        final RefCountingBus bus = new RefCountingBus(inner, handler);
+
+        bus.activate();
+        bus.deactivate();
+
+        assertTrue(handler.latch.await(EXPIRY_TIMEOUT_SEC, TimeUnit.SECONDS));
+        assertFalse(inner.isActive());
+        assertEquals(1, inner.deactivations);
+    }
+
+    @Test
+    public void lingerTimeDoesNotSplitCache() throws Throwable {
+        final SocketOptions options =
+                new SocketOptions(InetAddress.getLocalHost(), PORT, true);
+        assertEquals(options, options.withLingerTime(LONG_LINGER_MS));
+    }
+
+}
@@ -0,0 +1,246 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+
+package rsb.transport.socket;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import rsb.Event;
+import rsb.RsbTestCase;
+import rsb.converter.Converter;
+import rsb.converter.ConverterSelectionStrategy;
+import rsb.converter.ConverterSignature;
+import rsb.converter.UnambiguousConverterMap;
+import rsb.converter.UserData;
+import rsb.converter.WireContents;
+import rsb.protocol.NotificationType.Notification;
+import rsb.transport.socket.Bus.EventReceiver;
+import rsb.transport.socket.Bus.NotificationReceiver;
+
+/**
+ * @author jwienke
+ */
+public class SharedEventDecoderTest extends RsbTestCase {
+
+    private SharedEventDecoder decoder;
+    private Notification notification;
+
+    /**
+     * Converter counting the decoded notifications. Decodes into immutable
+     * strings or mutable string builders.
+     */
+    private static class CountingConverter implements Converter<ByteBuffer> {
+
+        private final boolean mutable;
+        private int decoded = 0;
+
+        CountingConverter() {
+            this(false);
+        }
+
+        CountingConverter(final boolean mutable) {
+            this.mutable = mutable;
+        }
+
+        @Override
+        public WireContents<ByteBuffer> serialize(final Class<?> typeInfo,
+                final Object obj) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        @SuppressWarnings("rawtypes")
+        public UserData deserialize(final String wireSchema,
+                final ByteBuffer buffer) {
+            this.decoded++;
+            if (this.mutable) {
+                return new UserData<Object>(new StringBuilder(wireSchema),
+                        StringBuilder.class);
+            }
+            return new UserData<Object>(wireSchema, String.class);
+        }
+
+        @Override
+        public ConverterSignature getSignature() {
+            final Class<?> type;
+            if (this.mutable) {
+                type = StringBuilder.class;
+            } else {
+                type = String.class;
+            }
+            return new ConverterSignature("counting", type);
+        }
+
+    }
+
+    /**
+     * Receiver recording the received events and notifications.
+     */
+    private static class RecordingReceiver implements EventReceiver {
+
+        private final ConverterSelectionStrategy<ByteBuffer> converters;
+        private final List<Event> events = new ArrayList<Event>();
+        private final List<Notification> notifications =
+                new ArrayList<Notification>();
+
+        RecordingReceiver(final Converter<ByteBuffer> converter,
+                final String wireSchema) {
+            final UnambiguousConverterMap<ByteBuffer> map =
+                    new UnambiguousConverterMap<ByteBuffer>();
+            map.addConverter(wireSchema, converter);
+            this.converters = map;
+        }
+
+        @Override
+        public void handle(final Notification received) {
+            this.notifications.add(received);
+        }
+
+        @Override
+        public ConverterSelectionStrategy<ByteBuffer> getConverters() {
+            return this.converters;
+        }
+
+        @Override
+        public void handle(final Event event) {
+            this.events.add(event);
+        }
+
+    }
+
+    @Before
+    public void setUp() throws Throwable {
+        this.decoder = new SharedEventDecoder();
+        this.notification = Utilities.createNotification();
+    }
+
+    private String getWireSchema() {
+        return this.notification.getWireSchema().toStringUtf8();
+    }
+
+    @Test
+    public void equalConfigurationsDecodeOnce() {
+        final CountingConverter converter = new CountingConverter();
+        final RecordingReceiver first =
+                new RecordingReceiver(converter, getWireSchema());
+        final RecordingReceiver second =
+                new RecordingReceiver(converter, getWireSchema());
+        this.decoder.register(first);
+        this.decoder.register(second);
+
+        this.decoder.dispatch(this.notification,
+                Arrays.<NotificationReceiver>asList(first, second));
+
+        assertEquals(1, converter.decoded);
+        assertEquals(1, first.events.size());
+        assertEquals(1, second.events.size());
+        final Event firstEvent = first.events.get(0);
+        final Event secondEvent = second.events.get(0);
+        assertNotSame(firstEvent, secondEvent);
+        assertEquals(firstEvent, secondEvent);
+        assertSame(firstEvent.getData(), secondEvent.getData());
+
+        // copies are independent
+        firstEvent.getMetaData().setUserInfo("key", "value");
+        assertTrue(secondEvent.getMetaData().userInfoKeys().isEmpty());
+    }
+
+    @Test
+    public void mutableDataDecodedPerReceiver() {
+        final CountingConverter converter = new CountingConverter(true);
+        final RecordingReceiver first =
+                new RecordingReceiver(converter, getWireSchema());
+        final RecordingReceiver second =
+                new RecordingReceiver(converter, getWireSchema());
+        this.decoder.register(first);
+        this.decoder.register(second);
+
+        this.decoder.dispatch(this.notification,
+                Arrays.<NotificationReceiver>asList(first, second));
+
+        assertEquals(2, converter.decoded);
+        final Object firstData = first.events.get(0).getData();
+        final Object secondData = second.events.get(0).getData();
+        assertNotSame(firstData, secondData);
+        assertEquals(firstData.toString(), secondData.toString());
+    }
+
+    @Test
+    public void differentConfigurationsDecodeSeparately() {
+        final CountingConverter firstConverter = new CountingConverter();
+        final CountingConverter secondConverter = new CountingConverter();
+        final RecordingReceiver first =
+                new RecordingReceiver(firstConverter, getWireSchema());
+        final RecordingReceiver second =
+                new RecordingReceiver(secondConverter, getWireSchema());
+        this.decoder.register(first);
+        this.decoder.register(second);
+
+        this.decoder.dispatch(this.notification,
+                Arrays.<NotificationReceiver>asList(first, second));
+
+        assertEquals(1, firstConverter.decoded);
+        assertEquals(1, secondConverter.decoded);
+        assertEquals(1, first.events.size());
+        assertEquals(1, second.events.size());
+    }
+
+    @Test
+    public void unregisteredReceiversGetNotifications() {
+        final CountingConverter converter = new CountingConverter();
+        final RecordingReceiver registered =
+                new RecordingReceiver(converter, getWireSchema());
+        final RecordingReceiver unregistered =
+                new RecordingReceiver(converter, getWireSchema());
+        this.decoder.register(registered);
+        this.decoder.register(unregistered);
+        this.decoder.unregister(unregistered);
+
+        this.decoder.dispatch(this.notification,
+                Arrays.<NotificationReceiver>asList(registered,
+                        unregistered));
+
+        assertEquals(1, registered.events.size());
+        assertTrue(registered.notifications.isEmpty());
+        assertTrue(unregistered.events.isEmpty());
+        assertEquals(Arrays.asList(this.notification),
+                unregistered.notifications);
+    }
+
+}
@@ -0,0 +1,160 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.socket;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+import org.junit.After;
+import org.junit.Test;
+
+import rsb.RsbTestCase;
+import rsb.protocol.NotificationType.Notification;
+
+import com.google.protobuf.ByteString;
+
+// CHECKSTYLE.OFF: MagicNumber - test values
+
+/**
+ * Tests the {@link SlowConsumerPolicy} of bus servers with a remote peer
+ * which never reads.
+ *
+ * @author jwienke
+ */
+public class SlowConsumerTest extends RsbTestCase {
+
+    private static final int PAYLOAD_SIZE = 64 * 1024;
+    private static final int BUFFER_SIZE = 8 * 1024;
+    private static final int MAX_NOTIFICATIONS = 1000;
+    private static final long HIGH_WATERMARK = 256 * 1024;
+    private static final long WAIT_TIME = 5000;
+    private static final long POLL_TIME = 10;
+
+    private BusServerBase server;
+    private Socket consumer;
+
+    @After
+    public void tearDown() throws Throwable {
+        if (this.consumer != null) {
+            this.consumer.close();
+        }
+        if (this.server != null && this.server.isActive()) {
+            this.server.deactivate();
+        }
+    }
+
+    private void startServer(final IoMode ioMode,
+            final SlowConsumerPolicy policy) throws Throwable {
+        final SocketOptions options =
+                Utilities.getSocketOptions()
+                        .withIoMode(ioMode, 1)
+                        .withSendQueue(false, 100, HIGH_WATERMARK,
+                                HIGH_WATERMARK / 2)
+                        .withBuffers(BUFFER_SIZE, BUFFER_SIZE)
+                        .withSlowConsumerPolicy(policy);
+        if (ioMode == IoMode.NIO) {
+            this.server = new NioBusServer(options);
+        } else {
+            this.server = new BusServer(options);
+        }
+        this.server.activate();
+
+        this.consumer = new Socket();
+        this.consumer.setReceiveBufferSize(BUFFER_SIZE);
+        this.consumer.connect(new InetSocketAddress(options.getAddress(),
+                options.getPort()));
+        waitForConnections(1);
+    }
+
+    private void waitForConnections(final int expected) throws Throwable {
+        final long end = System.currentTimeMillis() + WAIT_TIME;
+        while (this.server.numberOfConnections() != expected
+                && System.currentTimeMillis() < end) {
+            Thread.sleep(POLL_TIME);
+        }
+        assertEquals(expected, this.server.numberOfConnections());
+    }
+
+    private long sendUntil(final SlowConsumerPolicy policy,
+            final Notification notification) throws Throwable {
+        for (int i = 0; i < MAX_NOTIFICATIONS; ++i) {
+            this.server.handleOutgoing(notification);
+            final long count =
+                    this.server.getSlowConsumerStatistics().getCount(policy);
+            if (count > 0) {
+                return count;
+            }
+        }
+        return 0;
+    }
+
+    private static Notification createLargeNotification() throws Throwable {
+        return Utilities.createNotification().toBuilder()
+                .setData(ByteString.copyFrom(new byte[PAYLOAD_SIZE])).build();
+    }
+
+    @Test
+    public void disconnectClosesConnection() throws Throwable {
+        startServer(IoMode.BLOCKING, SlowConsumerPolicy.DISCONNECT);
+        assertEquals(1,
+                sendUntil(SlowConsumerPolicy.DISCONNECT,
+                        createLargeNotification()));
+        waitForConnections(0);
+    }
+
+    @Test
+    public void dropNewestKeepsConnection() throws Throwable {
+        startServer(IoMode.BLOCKING, SlowConsumerPolicy.DROP_NEWEST);
+        assertTrue(sendUntil(SlowConsumerPolicy.DROP_NEWEST,
+                createLargeNotification()) > 0);
+        assertEquals(1, this.server.numberOfConnections());
+    }
+
+    @Test
+    public void nioDropsUnreliable() throws Throwable {
+        startServer(IoMode.NIO, SlowConsumerPolicy.DROP_UNRELIABLE);
+        assertTrue(sendUntil(SlowConsumerPolicy.DROP_UNRELIABLE,
+                Frame.markUnreliable(createLargeNotification())) > 0);
+        assertEquals(1, this.server.numberOfConnections());
+    }
+
+    @Test
+    public void nioDisconnectClosesConnection() throws Throwable {
+        startServer(IoMode.NIO, SlowConsumerPolicy.DISCONNECT);
+        assertEquals(1,
+                sendUntil(SlowConsumerPolicy.DISCONNECT,
+                        createLargeNotification()));
+        waitForConnections(0);
+    }
+
+}
+
+// CHECKSTYLE.ON: MagicNumber
@@ -70,6 +70,35 @@ public class SocketRoundtripTest extends ConnectorRoundtripCheck {
         return Arrays.asList(data);
     }
 
+    /**
+     * Returns the socket options to use for the tested connectors.
+     *
+     * @return socket options
+     * @throws Throwable
+     *             error creating the options
+     */
+    protected SocketOptions getSocketOptions() throws Throwable {
+        return Utilities.getSocketOptions();
+    }
+
+    /**
+     * Returns the server mode to use for the tested out connector.
+     *
+     * @return server mode
+     */
+    protected ServerMode getOutServerMode() {
+        return ServerMode.AUTO;
+    }
+
+    /**
+     * Returns the server mode to use for the tested in connector.
+     *
+     * @return server mode
+     */
+    protected ServerMode getInServerMode() {
+        return ServerMode.AUTO;
+    }
+
     @Override
     protected OutConnector createOutConnector() throws Throwable {
 
@@ -77,8 +106,8 @@ public class SocketRoundtripTest extends ConnectorRoundtripCheck {
                 new UnambiguousConverterMap<ByteBuffer>();
         outStrategy.addConverter(String.class.getName(), new StringConverter());
 
-        return new SocketOutConnector(Utilities.getSocketOptions(),
-                ServerMode.AUTO, outStrategy);
+        return new SocketOutConnector(getSocketOptions(),
+                getOutServerMode(), outStrategy);
 
     }
 
@@ -89,9 +118,8 @@ public class SocketRoundtripTest extends ConnectorRoundtripCheck {
                 new UnambiguousConverterMap<ByteBuffer>();
         inStrategy.addConverter("utf-8-string", new StringConverter());
 
-        return new SocketInConnector(
-                rsb.transport.socket.Utilities.getSocketOptions(),
-                ServerMode.AUTO, inStrategy);
+        return new SocketInConnector(getSocketOptions(), getInServerMode(),
+                inStrategy);
 
     }
 
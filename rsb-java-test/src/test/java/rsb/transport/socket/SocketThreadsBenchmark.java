@@ -0,0 +1,243 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.socket;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import rsb.protocol.NotificationType.Notification;
+import rsb.transport.socket.Bus.NotificationReceiver;
+
+// CHECKSTYLE.OFF: MagicNumber - benchmark parameters
+// CHECKSTYLE.OFF: RegexpSinglelineJava - results are printed to the console
+
+/**
+ * Compares a {@link BusServer} using {@link ThreadMode#PLATFORM} with one
+ * using {@link ThreadMode#VIRTUAL}. Not a unit test; run it manually with the
+ * test class path and optionally pass the number of clients and of
+ * notifications per client:
+ *
+ * <pre>
+ * java -cp ... rsb.transport.socket.SocketThreadsBenchmark [clients] [notifications]
+ * </pre>
+ *
+ * The clients are plain sockets without threads of their own so that only
+ * the threads of the server are measured. For each mode, the benchmark
+ * reports the number of platform threads and the memory used with all
+ * clients connected. Afterwards, every client sends the same number of
+ * notifications at once and the time until the server has received all of
+ * them shows the cost of scheduling the receiving loops. Virtual threads
+ * require running the benchmark on Java 21 or newer.
+ *
+ * @author jwienke
+ */
+@SuppressWarnings("PMD.SystemPrintln")
+public final class SocketThreadsBenchmark {
+
+    private static final int DEFAULT_CLIENTS = 500;
+    private static final int DEFAULT_NOTIFICATIONS = 100;
+    private static final long TIMEOUT_SEC = 120;
+    private static final long POLL_TIME = 10;
+    private static final double MEGABYTE = 1024.0 * 1024.0;
+
+    private SocketThreadsBenchmark() {
+        super();
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args
+     *            optional number of clients and notifications per client
+     * @throws Throwable
+     *             any error
+     */
+    public static void main(final String[] args) throws Throwable {
+        int clients = DEFAULT_CLIENTS;
+        int notifications = DEFAULT_NOTIFICATIONS;
+        if (args.length > 0) {
+            clients = Integer.parseInt(args[0]);
+        }
+        if (args.length > 1) {
+            notifications = Integer.parseInt(args[1]);
+        }
+
+        System.out.println("Java " + System.getProperty("java.version")
+                + ", virtual threads available: "
+                + SocketThreads.isVirtualAvailable());
+        System.out.println("mode      clients  platform-threads  heap-mb  "
+                + "rss-mb  receive-ms  notifications/s");
+        run(ThreadMode.PLATFORM, clients, notifications);
+        if (SocketThreads.isVirtualAvailable()) {
+            run(ThreadMode.VIRTUAL, clients, notifications);
+        }
+    }
+
+    private static void run(final ThreadMode mode, final int clients,
+            final int notifications) throws Throwable {
+
+        final SocketOptions options =
+                Utilities.getSocketOptions().withThreadMode(mode);
+        final BusServer server = new BusServer(options);
+        final CountDownLatch received =
+                new CountDownLatch(clients * notifications);
+        server.addNotificationReceiver(new NotificationReceiver() {
+
+            @Override
+            public void handle(final Notification notification) {
+                received.countDown();
+            }
+
+        });
+        server.activate();
+
+        final List<Socket> sockets = new ArrayList<Socket>();
+        try {
+            final Frame frame = Frame.encode(Utilities.createNotification());
+            final byte[] data = new byte[frame.getSize()];
+            frame.toBuffer().get(data);
+            final byte[] batch = new byte[data.length * notifications];
+            for (int i = 0; i < notifications; ++i) {
+                System.arraycopy(data, 0, batch, i * data.length, data.length);
+            }
+
+            for (int i = 0; i < clients; ++i) {
+                sockets.add(connect(options));
+            }
+            waitForConnections(server, clients);
+
+            System.gc();
+            final int threads =
+                    ManagementFactory.getThreadMXBean().getThreadCount();
+            final Runtime runtime = Runtime.getRuntime();
+            final double heap =
+                    (runtime.totalMemory() - runtime.freeMemory()) / MEGABYTE;
+            final double rss = getResidentSetSize() / MEGABYTE;
+
+            final long start = System.nanoTime();
+            for (final Socket socket : sockets) {
+                final OutputStream output = socket.getOutputStream();
+                output.write(batch);
+                output.flush();
+            }
+            if (!received.await(TIMEOUT_SEC, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Timeout while receiving.");
+            }
+            final double millis =
+                    (System.nanoTime() - start) / (double) TimeUnit.MILLISECONDS
+                            .toNanos(1);
+
+            System.out.println(String.format(Locale.US,
+                    "%-8s  %7d  %16d  %7.1f  %6.1f  %10.1f  %15.0f", mode,
+                    clients, threads, heap, rss, millis, clients
+                            * notifications / millis * 1000));
+        } finally {
+            for (final Socket socket : sockets) {
+                socket.close();
+            }
+            server.deactivate();
+        }
+
+    }
+
+    /**
+     * Connects a plain socket which subscribes to nothing so that the server
+     * does not forward the notifications of the other clients to it.
+     */
+    private static Socket connect(final SocketOptions options)
+            throws IOException {
+        final Socket socket = new Socket();
+        socket.connect(new InetSocketAddress(options.getAddress(), options
+                .getPort()));
+        final Frame subscriptions =
+                ControlMessages.create(Protocol.CONTROL_SUBSCRIPTIONS);
+        final byte[] data = new byte[subscriptions.getSize()];
+        subscriptions.toBuffer().get(data);
+        socket.getOutputStream().write(data);
+        return socket;
+    }
+
+    private static void waitForConnections(final BusServer server,
+            final int expected) throws InterruptedException {
+        final long end =
+                System.currentTimeMillis()
+                        + TimeUnit.SECONDS.toMillis(TIMEOUT_SEC);
+        while (server.numberOfConnections() < expected) {
+            if (System.currentTimeMillis() > end) {
+                throw new IllegalStateException(
+                        "Timeout while waiting for clients.");
+            }
+            Thread.sleep(POLL_TIME);
+        }
+    }
+
+    /**
+     * Returns the resident set size of this process on Linux.
+     *
+     * @return size in bytes, 0 if unknown
+     */
+    private static long getResidentSetSize() throws IOException {
+        final String prefix = "VmRSS:";
+        try {
+            final BufferedReader reader =
+                    new BufferedReader(new FileReader("/proc/self/status"));
+            try {
+                String line = reader.readLine();
+                while (line != null) {
+                    if (line.startsWith(prefix)) {
+                        final String kilobytes =
+                                line.substring(prefix.length()).trim()
+                                        .split("\\s+")[0];
+                        return Long.parseLong(kilobytes) * 1024;
+                    }
+                    line = reader.readLine();
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (final FileNotFoundException e) {
+            return 0;
+        }
+        return 0;
+    }
+
+}
+
+// CHECKSTYLE.ON: RegexpSinglelineJava
+// CHECKSTYLE.ON: MagicNumber
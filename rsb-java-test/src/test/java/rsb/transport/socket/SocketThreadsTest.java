@@ -0,0 +1,114 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.socket;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+import org.junit.Test;
+
+import rsb.RsbTestCase;
+
+/**
+ * @author jwienke
+ */
+public class SocketThreadsTest extends RsbTestCase {
+
+    private static boolean isVirtual(final Thread thread) throws Throwable {
+        try {
+            return (Boolean) Thread.class.getMethod("isVirtual").invoke(
+                    thread);
+        } catch (final NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static boolean runsVirtual(final SocketOptions options)
+            throws Throwable {
+        final boolean[] result = new boolean[1];
+        final Thread thread =
+                SocketThreads.newThread(options, new Runnable() {
+
+                    @Override
+                    public void run() {
+                        try {
+                            result[0] = isVirtual(Thread.currentThread());
+                        } catch (final Throwable e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }
+
+                });
+        thread.start();
+        thread.join();
+        return result[0];
+    }
+
+    @Test
+    public void platformByDefault() throws Throwable {
+        final SocketOptions options = Utilities.getSocketOptions();
+        assertEquals(ThreadMode.PLATFORM, options.getThreadMode());
+        assertFalse(runsVirtual(options));
+    }
+
+    @Test
+    public void virtualIfAvailable() throws Throwable {
+        final SocketOptions options =
+                Utilities.getSocketOptions().withThreadMode(
+                        ThreadMode.VIRTUAL);
+        assertEquals(SocketThreads.isVirtualAvailable(), runsVirtual(options));
+    }
+
+    @Test
+    public void executorUsesThreadMode() throws Throwable {
+        final ExecutorService executor =
+                SocketThreads.newSingleThreadExecutor(Utilities
+                        .getSocketOptions().withThreadMode(ThreadMode.VIRTUAL));
+        try {
+            final boolean virtual = executor.submit(new Callable<Boolean>() {
+
+                @Override
+                public Boolean call() throws Exception {
+                    try {
+                        return isVirtual(Thread.currentThread());
+                    } catch (final Throwable e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+
+            }).get();
+            assertEquals(SocketThreads.isVirtualAvailable(), virtual);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+}
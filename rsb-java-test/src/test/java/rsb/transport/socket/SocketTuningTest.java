@@ -0,0 +1,125 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.socket;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import org.junit.Test;
+
+import rsb.RsbTestCase;
+
+/**
+ * @author jwienke
+ */
+public class SocketTuningTest extends RsbTestCase {
+
+    private static final int BUFFER_SIZE = 32 * 1024;
+    private static final int BACKLOG = 4;
+
+    private static SocketOptions createOptions() {
+        return new SocketOptions(InetAddress.getLoopbackAddress(), 0, true);
+    }
+
+    @Test
+    public void configureAppliesOptions() throws Throwable {
+        final Socket socket = new Socket();
+        try {
+            SocketTuning.configure(socket, createOptions()
+                    .withBuffers(BUFFER_SIZE, BUFFER_SIZE)
+                    .withKeepAlive(true));
+            assertTrue(socket.getTcpNoDelay());
+            assertTrue(socket.getKeepAlive());
+            assertTrue(socket.getSendBufferSize() >= BUFFER_SIZE);
+            assertTrue(socket.getReceiveBufferSize() >= BUFFER_SIZE);
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void defaultsLeaveSocketUnchanged() throws Throwable {
+        final Socket reference = new Socket();
+        final Socket socket = new Socket();
+        try {
+            SocketTuning.configure(socket, createOptions());
+            assertEquals(reference.getSendBufferSize(),
+                    socket.getSendBufferSize());
+            assertEquals(reference.getReceiveBufferSize(),
+                    socket.getReceiveBufferSize());
+            assertEquals(reference.getKeepAlive(), socket.getKeepAlive());
+            assertEquals(reference.getTrafficClass(),
+                    socket.getTrafficClass());
+        } finally {
+            socket.close();
+            reference.close();
+        }
+    }
+
+    @Test
+    public void bindServerUsesAddress() throws Throwable {
+        final InetAddress loopback = InetAddress.getLoopbackAddress();
+        final ServerSocket socket = new ServerSocket();
+        try {
+            SocketTuning.bindServer(socket,
+                    createOptions().withBinding(loopback, BACKLOG));
+            assertTrue(socket.isBound());
+            assertEquals(loopback, socket.getInetAddress());
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void bindClientUsesAddress() throws Throwable {
+        final InetAddress loopback = InetAddress.getLoopbackAddress();
+        final Socket socket = new Socket();
+        try {
+            SocketTuning.bindClient(socket,
+                    createOptions().withBinding(loopback, 0));
+            assertEquals(loopback, socket.getLocalAddress());
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void tuningIsPartOfEquality() {
+        final SocketOptions options = createOptions();
+        assertFalse(options.equals(options.withKeepAlive(true)));
+        assertFalse(options.equals(options.withBuffers(BUFFER_SIZE, 0)));
+        assertEquals(options.withBuffers(BUFFER_SIZE, 0),
+                createOptions().withBuffers(BUFFER_SIZE, 0));
+    }
+
+}
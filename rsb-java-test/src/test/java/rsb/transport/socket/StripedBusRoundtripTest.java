@@ -0,0 +1,131 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.socket;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import rsb.protocol.NotificationType.Notification;
+import rsb.transport.socket.Bus.NotificationReceiver;
+
+import com.google.protobuf.ByteString;
+
+/**
+ * Tests the roundtrip of data through bus server and clients sending on
+ * multiple connections.
+ *
+ * @author jwienke
+ */
+public class StripedBusRoundtripTest extends BusRoundtripTest {
+
+    private static final int CONNECTIONS = 4;
+    private static final int SCOPES = 8;
+    private static final int MESSAGES = 400;
+    private static final long TIMEOUT_SEC = 20;
+    private static final long ECHO_WAIT_MS = 200;
+
+    @Override
+    protected SocketOptions getSocketOptions() throws Throwable {
+        return super.getSocketOptions().withConnections(CONNECTIONS);
+    }
+
+    @Test
+    public void opensAllConnections() {
+        assertEquals(CONNECTIONS, getClient().getSendingConnections());
+    }
+
+    @Test
+    public void scopesKeepOrderWithoutEchoes() throws Throwable {
+
+        final BlockingQueue<Notification> received =
+                new LinkedBlockingQueue<Notification>();
+        final BusClient receiver = new BusClient(getSocketOptions());
+        receiver.activate();
+        try {
+            receiver.addNotificationReceiver(new NotificationReceiver() {
+
+                @Override
+                public void handle(final Notification notification) {
+                    received.add(notification);
+                }
+
+            });
+            final AtomicInteger local = new AtomicInteger();
+            getClient().addNotificationReceiver(new NotificationReceiver() {
+
+                @Override
+                public void handle(final Notification notification) {
+                    local.incrementAndGet();
+                }
+
+            });
+
+            final Notification template = Utilities.createNotification();
+            for (int i = 0; i < MESSAGES; ++i) {
+                getClient().handleOutgoing(template.toBuilder()
+                        .setScope(ByteString.copyFromUtf8("/striped/"
+                                + i % SCOPES + "/"))
+                        .setEventId(template.getEventId().toBuilder()
+                                .setSequenceNumber(i)).build());
+            }
+
+            final Map<String, Long> last = new HashMap<String, Long>();
+            for (int i = 0; i < MESSAGES; ++i) {
+                final Notification notification =
+                        received.poll(TIMEOUT_SEC, TimeUnit.SECONDS);
+                assertNotNull(notification);
+                final String scope = notification.getScope().toStringUtf8();
+                final long sequence =
+                        notification.getEventId().getSequenceNumber();
+                if (last.containsKey(scope)) {
+                    assertEquals(last.get(scope) + SCOPES, sequence);
+                }
+                last.put(scope, sequence);
+            }
+
+            // notifications relayed back to the sending client would arrive
+            // in the meantime
+            Thread.sleep(ECHO_WAIT_MS);
+            assertEquals(0, received.size());
+            assertEquals(MESSAGES, local.get());
+        } finally {
+            receiver.deactivate();
+        }
+
+    }
+
+}
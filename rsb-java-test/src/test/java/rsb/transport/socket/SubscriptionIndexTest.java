@@ -0,0 +1,121 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+
+package rsb.transport.socket;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import rsb.RsbTestCase;
+import rsb.protocol.NotificationType.Notification;
+
+import com.google.protobuf.ByteString;
+
+// CHECKSTYLE.OFF: MultipleStringLiterals - we are testing scope matching.
+
+/**
+ * @author jwienke
+ */
+public class SubscriptionIndexTest extends RsbTestCase {
+
+    private BusConnection connection;
+    private SubscriptionIndex index;
+
+    @Before
+    public void setUp() throws Throwable {
+        this.connection =
+                new BusClientConnection(Utilities.getSocketOptions());
+        this.index = new SubscriptionIndex();
+    }
+
+    private boolean isForwarded(final String scope) throws Throwable {
+        return this.index.isForwarded(this.connection, Frame
+                .encode(Notification
+                        .newBuilder(Utilities.createNotification())
+                        .setScope(ByteString.copyFromUtf8(scope)).build()));
+    }
+
+    private void control(final String verb, final String... scopes)
+            throws Throwable {
+        this.index.handleControl(ControlMessages.create(verb, scopes)
+                .getNotification(), this.connection);
+    }
+
+    @Test
+    public void unannouncedForwardsEverything() throws Throwable {
+        assertTrue(isForwarded("/a/"));
+        assertTrue(isForwarded("/b/c/"));
+    }
+
+    @Test
+    public void emptySubscriptionsForwardNothing() throws Throwable {
+        control(Protocol.CONTROL_SUBSCRIPTIONS);
+        assertFalse(isForwarded("/a/"));
+    }
+
+    @Test
+    public void subScopes() throws Throwable {
+        control(Protocol.CONTROL_SUBSCRIPTIONS, "/a/b/", "/c/");
+        assertTrue(isForwarded("/a/b/"));
+        assertTrue(isForwarded("/a/b/x/"));
+        assertTrue(isForwarded("/c/"));
+        assertFalse(isForwarded("/a/"));
+        assertFalse(isForwarded("/a/bb/"));
+        assertFalse(isForwarded("/"));
+    }
+
+    @Test
+    public void rootScope() throws Throwable {
+        control(Protocol.CONTROL_SUBSCRIPTIONS, "/");
+        assertTrue(isForwarded("/"));
+        assertTrue(isForwarded("/a/b/"));
+    }
+
+    @Test
+    public void incrementalChanges() throws Throwable {
+        control(Protocol.CONTROL_SUBSCRIPTIONS, "/a/");
+        control(Protocol.CONTROL_SUBSCRIBE, "/b");
+        assertTrue(isForwarded("/b/"));
+        control(Protocol.CONTROL_UNSUBSCRIBE, "/a/");
+        assertFalse(isForwarded("/a/"));
+        assertTrue(isForwarded("/b/"));
+    }
+
+    @Test
+    public void remove() throws Throwable {
+        control(Protocol.CONTROL_SUBSCRIPTIONS, "/a/");
+        this.index.remove(this.connection);
+        assertTrue(isForwarded("/b/"));
+    }
+
+}
+
+// CHECKSTYLE.ON: MultipleStringLiterals
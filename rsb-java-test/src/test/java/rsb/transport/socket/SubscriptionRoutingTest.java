@@ -0,0 +1,216 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+
+package rsb.transport.socket;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import rsb.RSBException;
+import rsb.RsbTestCase;
+import rsb.Scope;
+import rsb.protocol.NotificationType.Notification;
+import rsb.transport.socket.Bus.NotificationReceiver;
+
+import com.google.protobuf.ByteString;
+
+/**
+ * Tests that servers only forward notifications on subscribed scopes to
+ * clients announcing their subscriptions.
+ *
+ * @author jwienke
+ */
+public class SubscriptionRoutingTest extends RsbTestCase {
+
+    private static final long TIMEOUT = 25000;
+    private static final long ABSENCE_TIMEOUT = 200;
+
+    private static final Scope SCOPE_A = new Scope("/a/");
+    private static final Scope SCOPE_B = new Scope("/b/");
+    private static final String SUB_SCOPE_A = "/a/c/";
+    private static final String SUB_SCOPE_B = "/b/c/";
+
+    private final Semaphore controlReceived = new Semaphore(0);
+    private BusServer server;
+    private BusClient client;
+    private BusClientConnection legacyClient;
+
+    /**
+     * Receiver collecting all notifications in the order of arrival.
+     */
+    private static class QueueReceiver implements NotificationReceiver {
+
+        private final BlockingQueue<Notification> received =
+                new LinkedBlockingQueue<Notification>();
+
+        @Override
+        public void handle(final Notification notification) {
+            this.received.add(notification);
+        }
+
+        public Notification next(final long timeout)
+                throws InterruptedException {
+            return this.received.poll(timeout, TimeUnit.MILLISECONDS);
+        }
+
+    }
+
+    @Before
+    public void setUp() throws Throwable {
+        this.server = new BusServer(Utilities.getSocketOptions()) {
+
+            @Override
+            public void handleIncoming(final Frame frame,
+                    final BusConnection sourceConnection)
+                    throws RSBException {
+                super.handleIncoming(frame, sourceConnection);
+                if (ControlMessages.isControl(frame)) {
+                    SubscriptionRoutingTest.this.controlReceived.release();
+                }
+            }
+
+        };
+        this.server.activate();
+
+        this.legacyClient =
+                new BusClientConnection(Utilities.getSocketOptions());
+        this.legacyClient.activate();
+
+        this.client = new BusClient(Utilities.getSocketOptions());
+    }
+
+    @After
+    public void tearDown() throws Throwable {
+        if (this.client.isActive()) {
+            this.client.deactivate();
+        }
+        this.legacyClient.shutdown();
+        this.legacyClient.deactivate();
+        this.server.deactivate();
+    }
+
+    private static Notification createNotification(final String scope)
+            throws Throwable {
+        return Notification.newBuilder(Utilities.createNotification())
+                .setScope(ByteString.copyFromUtf8(scope)).build();
+    }
+
+    private void awaitControl() throws InterruptedException {
+        assertTrue(this.controlReceived.tryAcquire(TIMEOUT,
+                TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void onlySubscribedScopes() throws Throwable {
+        final QueueReceiver receiver = new QueueReceiver();
+        this.client.addNotificationReceiver(receiver, SCOPE_A);
+        this.client.activate();
+        awaitControl();
+
+        final Notification other = createNotification(SUB_SCOPE_B);
+        final Notification subScope = createNotification(SUB_SCOPE_A);
+        this.server.handleOutgoing(other);
+        this.server.handleOutgoing(subScope);
+
+        assertEquals(subScope, receiver.next(TIMEOUT));
+        assertNull(receiver.next(ABSENCE_TIMEOUT));
+    }
+
+    @Test
+    public void legacyClientReceivesEverything() throws Throwable {
+        // the server must not send control notifications without a hello
+        final Notification first = createNotification(SUB_SCOPE_B);
+        final Notification second = createNotification(SUB_SCOPE_A);
+        this.server.handleOutgoing(first);
+        this.server.handleOutgoing(second);
+
+        assertEquals(first, this.legacyClient.readNotification());
+        assertEquals(second, this.legacyClient.readNotification());
+    }
+
+    @Test
+    public void subscriptionChanges() throws Throwable {
+        final QueueReceiver receiverA = new QueueReceiver();
+        this.client.addNotificationReceiver(receiverA, SCOPE_A);
+        this.client.activate();
+        awaitControl();
+
+        final QueueReceiver receiverB = new QueueReceiver();
+        this.client.addNotificationReceiver(receiverB, SCOPE_B);
+        awaitControl();
+        this.client.removeNotificationReceiver(receiverA);
+        awaitControl();
+
+        final Notification onA = createNotification(SCOPE_A.toString());
+        final Notification onB = createNotification(SCOPE_B.toString());
+        this.server.handleOutgoing(onA);
+        this.server.handleOutgoing(onB);
+
+        assertEquals(onB, receiverB.next(TIMEOUT));
+        assertNull(receiverB.next(ABSENCE_TIMEOUT));
+        assertNull(receiverA.next(ABSENCE_TIMEOUT));
+    }
+
+    @Test
+    public void localReceiversByScope() throws Throwable {
+        final QueueReceiver receiver = new QueueReceiver();
+        this.server.addNotificationReceiver(receiver, SCOPE_A);
+
+        final Notification other = createNotification(SUB_SCOPE_B);
+        final Notification subScope = createNotification(SUB_SCOPE_A);
+        this.server.handleOutgoing(other);
+        this.server.handleOutgoing(subScope);
+
+        assertEquals(subScope, receiver.next(TIMEOUT));
+        assertNull(receiver.next(ABSENCE_TIMEOUT));
+    }
+
+    @Test
+    public void controlNotDelivered() throws Throwable {
+        final QueueReceiver serverReceiver = new QueueReceiver();
+        this.server.addNotificationReceiver(serverReceiver);
+        final QueueReceiver receiver = new QueueReceiver();
+        this.client.addNotificationReceiver(receiver);
+        this.client.activate();
+        awaitControl();
+
+        assertNull(serverReceiver.next(ABSENCE_TIMEOUT));
+        assertNull(receiver.next(ABSENCE_TIMEOUT));
+    }
+
+}
@@ -0,0 +1,197 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.udp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import rsb.RsbTestCase;
+import rsb.protocol.EventIdType.EventId;
+import rsb.protocol.FragmentedNotificationType.FragmentedNotification;
+import rsb.protocol.NotificationType.Notification;
+
+import com.google.protobuf.ByteString;
+
+// CHECKSTYLE.OFF: MagicNumber - test values
+
+/**
+ * @author jwienke
+ */
+public class ReassemblerTest extends RsbTestCase {
+
+    private static final int DATAGRAM_SIZE = 256;
+    private static final long TIMEOUT = 100;
+    private static final long MILLIS = 1000 * 1000;
+
+    private static Notification notification(final int sequenceNumber,
+            final int size) {
+        final byte[] data = new byte[size];
+        for (int i = 0; i < size; ++i) {
+            data[i] = (byte) i;
+        }
+        return Notification
+                .newBuilder()
+                .setEventId(
+                        EventId.newBuilder()
+                                .setSenderId(ByteString.copyFromUtf8("sender"))
+                                .setSequenceNumber(sequenceNumber))
+                .setScope(ByteString.copyFromUtf8("/a/scope/"))
+                .setWireSchema(ByteString.copyFromUtf8("bytes"))
+                .setData(ByteString.copyFrom(data)).build();
+    }
+
+    private static List<FragmentedNotification> fragments(
+            final Notification notification) throws Throwable {
+        final List<FragmentedNotification> fragments =
+                new ArrayList<FragmentedNotification>();
+        for (final byte[] datagram : Fragmenter.split(notification,
+                DATAGRAM_SIZE)) {
+            assertTrue(datagram.length <= DATAGRAM_SIZE);
+            fragments.add(FragmentedNotification.parseFrom(datagram));
+        }
+        return fragments;
+    }
+
+    @Test
+    public void singleFragment() throws Throwable {
+        final Notification notification = notification(1, 10);
+        final List<FragmentedNotification> fragments = fragments(notification);
+        assertEquals(1, fragments.size());
+        assertEquals(notification,
+                new Reassembler(TIMEOUT).add(fragments.get(0), 0));
+    }
+
+    @Test
+    public void outOfOrder() throws Throwable {
+        final Notification notification = notification(1, 2000);
+        final List<FragmentedNotification> fragments = fragments(notification);
+        assertTrue(fragments.size() > 2);
+        Collections.reverse(fragments);
+
+        final Reassembler reassembler = new Reassembler(TIMEOUT);
+        for (int i = 0; i < fragments.size() - 1; ++i) {
+            assertNull(reassembler.add(fragments.get(i), 0));
+            // duplicates are ignored
+            assertNull(reassembler.add(fragments.get(i), 0));
+        }
+        assertEquals(notification,
+                reassembler.add(fragments.get(fragments.size() - 1), 0));
+        assertEquals(0, reassembler.getPending());
+    }
+
+    @Test
+    public void incompleteDoesNotBlock() throws Throwable {
+        final List<FragmentedNotification> first =
+                fragments(notification(1, 2000));
+        final Notification second = notification(2, 2000);
+
+        final Reassembler reassembler = new Reassembler(TIMEOUT);
+        assertNull(reassembler.add(first.get(0), 0));
+        Notification result = null;
+        for (final FragmentedNotification fragment : fragments(second)) {
+            result = reassembler.add(fragment, 0);
+        }
+        assertEquals(second, result);
+        assertEquals(1, reassembler.getPending());
+    }
+
+    @Test
+    public void expires() throws Throwable {
+        final List<FragmentedNotification> fragments =
+                fragments(notification(1, 2000));
+        final Reassembler reassembler = new Reassembler(TIMEOUT);
+        assertNull(reassembler.add(fragments.get(0), 0));
+        reassembler.expire((TIMEOUT - 1) * MILLIS);
+        assertEquals(1, reassembler.getPending());
+        reassembler.expire(TIMEOUT * MILLIS);
+        assertEquals(0, reassembler.getPending());
+        assertEquals(1, reassembler.getDropped());
+
+        // late fragments start a new reassembly which never completes
+        for (int i = 1; i < fragments.size(); ++i) {
+            assertNull(reassembler.add(fragments.get(i), TIMEOUT * MILLIS));
+        }
+    }
+
+    @Test
+    public void limitsPending() throws Throwable {
+        final Reassembler reassembler = new Reassembler(TIMEOUT);
+        for (int i = 0; i <= Reassembler.MAX_PENDING; ++i) {
+            reassembler.add(fragments(notification(i, 1000)).get(0), 0);
+        }
+        assertEquals(Reassembler.MAX_PENDING, reassembler.getPending());
+        assertEquals(1, reassembler.getDropped());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidParts() throws Throwable {
+        final FragmentedNotification fragment =
+                fragments(notification(1, 10)).get(0).toBuilder()
+                        .setDataPart(1).build();
+        new Reassembler(TIMEOUT).add(fragment, 0);
+    }
+
+    @Test
+    public void limitsBytes() throws Throwable {
+        final List<FragmentedNotification> first =
+                fragments(notification(1, 2000));
+        final List<FragmentedNotification> second =
+                fragments(notification(2, 2000));
+        final long limit = 300;
+        final Reassembler reassembler = new Reassembler(TIMEOUT, limit);
+        assertNull(reassembler.add(first.get(0), 0));
+        assertNull(reassembler.add(second.get(0), 0));
+        // the first notification has been dropped for the second one
+        assertEquals(1, reassembler.getPending());
+        assertEquals(1, reassembler.getDropped());
+        assertTrue(reassembler.getPendingBytes() <= limit);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsForgedPartCount() throws Throwable {
+        final FragmentedNotification fragment =
+                fragments(notification(1, 10)).get(0).toBuilder()
+                        .setNumDataParts(Integer.MAX_VALUE).build();
+        new Reassembler(TIMEOUT).add(fragment, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsOversizedHeaders() throws Throwable {
+        Fragmenter.split(notification(1, 10), 16);
+    }
+
+}
+
+// CHECKSTYLE.ON: MagicNumber
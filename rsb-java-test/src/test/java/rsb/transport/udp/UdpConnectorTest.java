@@ -0,0 +1,106 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.udp;
+
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+
+import org.junit.Rule;
+
+import rsb.Utilities;
+import rsb.converter.UnambiguousConverterMap;
+import rsb.testutils.ConnectorCheck;
+import rsb.testutils.ParticipantConfigSetter;
+import rsb.transport.InConnector;
+import rsb.transport.NotificationBusInConnector;
+import rsb.transport.NotificationBusOutConnector;
+import rsb.transport.OutConnector;
+
+/**
+ * Test for UDP connectors on the loopback interface.
+ *
+ * @author jwienke
+ */
+@SuppressWarnings("PMD.TestClassWithoutTestCases")
+public class UdpConnectorTest extends ConnectorCheck {
+
+    // CHECKSTYLE.OFF: VisibilityModifier - required by junit
+    /**
+     * Rule to set a default participant config.
+     */
+    @Rule
+    public final ParticipantConfigSetter setter = new ParticipantConfigSetter(
+            Utilities.createParticipantConfig());
+    // CHECKSTYLE.ON: VisibilityModifier
+
+    private final Bus bus;
+
+    public UdpConnectorTest() throws SocketException {
+        super();
+        this.bus = new Bus(loopbackOptions(UdpOptions.DEFAULT_DATAGRAM_SIZE));
+    }
+
+    /**
+     * Creates options for a currently unused port on the loopback interface.
+     *
+     * @param datagramSize
+     *            the datagram size to use
+     * @return new options
+     * @throws SocketException
+     *             unable to find a free port
+     */
+    public static UdpOptions loopbackOptions(final int datagramSize)
+            throws SocketException {
+        final DatagramSocket probe =
+                new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        try {
+            return new UdpOptions(InetAddress.getLoopbackAddress(),
+                    probe.getLocalPort(), datagramSize,
+                    UdpOptions.DEFAULT_TIMEOUT, UdpOptions.DEFAULT_TTL);
+        } finally {
+            probe.close();
+        }
+    }
+
+    @Override
+    protected InConnector createInConnector(
+            final UnambiguousConverterMap<ByteBuffer> converters)
+            throws Throwable {
+        return new NotificationBusInConnector(this.bus, converters);
+    }
+
+    @Override
+    protected OutConnector createOutConnector(
+            final UnambiguousConverterMap<ByteBuffer> converters)
+            throws Throwable {
+        return new NotificationBusOutConnector(this.bus, converters);
+    }
+
+}
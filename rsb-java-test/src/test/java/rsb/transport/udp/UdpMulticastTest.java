@@ -0,0 +1,121 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.udp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeNoException;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.MulticastSocket;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import rsb.RsbTestCase;
+import rsb.protocol.EventIdType.EventId;
+import rsb.protocol.NotificationType.Notification;
+import rsb.transport.NotificationBus.NotificationReceiver;
+
+import com.google.protobuf.ByteString;
+
+/**
+ * Tests the UDP transport with a multicast group. Skipped on hosts without
+ * multicast support.
+ *
+ * @author jwienke
+ */
+public class UdpMulticastTest extends RsbTestCase {
+
+    private static final String GROUP = "239.255.42.99";
+    private static final long WAIT_SECONDS = 5;
+    private static final int PAYLOAD_SIZE = 5000;
+
+    @Test(timeout = 20000)
+    public void multicastRoundtrip() throws Throwable {
+
+        final InetAddress group = InetAddress.getByName(GROUP);
+        final UdpOptions loopback =
+                UdpConnectorTest.loopbackOptions(UdpOptions.DEFAULT_DATAGRAM_SIZE);
+        final UdpOptions options =
+                new UdpOptions(group, loopback.getPort(),
+                        UdpOptions.DEFAULT_DATAGRAM_SIZE,
+                        UdpOptions.DEFAULT_TIMEOUT, UdpOptions.DEFAULT_TTL);
+        try {
+            final MulticastSocket probe =
+                    new MulticastSocket(options.getPort());
+            try {
+                probe.joinGroup(group);
+            } finally {
+                probe.close();
+            }
+        } catch (final IOException e) {
+            assumeNoException(e);
+        }
+
+        final BlockingQueue<Notification> received =
+                new LinkedBlockingQueue<Notification>();
+        final Bus bus = new Bus(options);
+        bus.activate();
+        bus.addReceiver(new NotificationReceiver() {
+
+            @Override
+            public void handle(final Notification notification) {
+                received.add(notification);
+            }
+
+        });
+        try {
+            final Notification notification =
+                    Notification
+                            .newBuilder()
+                            .setEventId(
+                                    EventId.newBuilder()
+                                            .setSenderId(
+                                                    ByteString
+                                                            .copyFromUtf8("s"))
+                                            .setSequenceNumber(1))
+                            .setScope(ByteString.copyFromUtf8("/multicast/"))
+                            .setData(ByteString.copyFrom(new byte[PAYLOAD_SIZE]))
+                            .build();
+            bus.publish(notification);
+            final Notification result =
+                    received.poll(WAIT_SECONDS, TimeUnit.SECONDS);
+            // loopback of multicast datagrams may be disabled on this host
+            if (result != null) {
+                assertEquals(notification, result);
+            }
+        } finally {
+            bus.deactivate();
+        }
+
+    }
+
+}
@@ -0,0 +1,105 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.udp;
+
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.junit.Rule;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import rsb.Utilities;
+import rsb.converter.StringConverter;
+import rsb.converter.UnambiguousConverterMap;
+import rsb.testutils.ConnectorRoundtripCheck;
+import rsb.testutils.ParticipantConfigSetter;
+import rsb.transport.InConnector;
+import rsb.transport.NotificationBusInConnector;
+import rsb.transport.NotificationBusOutConnector;
+import rsb.transport.OutConnector;
+
+/**
+ * Roundtrip test for the UDP transport on the loopback interface. Large
+ * payloads are split into many datagrams.
+ *
+ * @author jwienke
+ */
+@RunWith(value = Parameterized.class)
+@SuppressWarnings("PMD.TestClassWithoutTestCases")
+public class UdpRoundtripTest extends ConnectorRoundtripCheck {
+
+    // CHECKSTYLE.OFF: VisibilityModifier - required by junit
+    /**
+     * Rule to set a default participant config.
+     */
+    @Rule
+    public final ParticipantConfigSetter setter = new ParticipantConfigSetter(
+            Utilities.createParticipantConfig());
+    // CHECKSTYLE.ON: VisibilityModifier
+
+    private final Bus bus;
+
+    public UdpRoundtripTest(final int size) throws SocketException {
+        super(size);
+        this.bus = new Bus(UdpConnectorTest
+                .loopbackOptions(UdpOptions.DEFAULT_DATAGRAM_SIZE));
+    }
+
+    @Parameters
+    public static Collection<Object[]> data() {
+        // CHECKSTYLE.OFF: MagicNumber - test values
+        final Object[][] data = new Object[][] { { 100 }, { 100000 } };
+        // CHECKSTYLE.ON: MagicNumber
+        return Arrays.asList(data);
+    }
+
+    private static UnambiguousConverterMap<ByteBuffer> converters(
+            final String key) {
+        final UnambiguousConverterMap<ByteBuffer> strategy =
+                new UnambiguousConverterMap<ByteBuffer>();
+        strategy.addConverter(key, new StringConverter());
+        return strategy;
+    }
+
+    @Override
+    protected OutConnector createOutConnector() throws Throwable {
+        return new NotificationBusOutConnector(this.bus,
+                converters(String.class.getName()));
+    }
+
+    @Override
+    protected InConnector createInConnector() throws Throwable {
+        return new NotificationBusInConnector(this.bus,
+                converters("utf-8-string"));
+    }
+
+}
@@ -44,6 +44,12 @@ import java.util.Set;
  * Cause handling is inspired by the ideas proposed in: David Luckham, The Power
  * of Events, Addison-Wessley, 2007
  *
+ * An event can be frozen using {@link #freeze()}. Afterwards, it rejects all
+ * modifications and can be shared between threads without copying. Receivers
+ * which need to modify a frozen event, e.g. to set delivery times, create a
+ * copy using {@link #Event(Event)}. Such a copy shares the payload, causes and
+ * user meta data with the frozen event until they are modified.
+ *
  * @author swrede
  */
 // TODO check if we want to provide the type via a template parameter
@@ -57,12 +63,19 @@ public class Event {
     private Scope scope;
     private String method;
     private Object data;
-    private final MetaData metaData = new MetaData();
+    private final MetaData metaData;
 
     /**
      * The causes of one event as a set of causing IDs.
      */
-    private final Set<EventId> causes = new HashSet<EventId>();
+    private Set<EventId> causes = new HashSet<EventId>();
+
+    /**
+     * Indicates that the causes belong to a frozen event and need to be copied
+     * before modifying them.
+     */
+    private boolean sharedCauses = false;
+    private boolean frozen = false;
 
     // TODO move event creation into factory?
 
@@ -90,6 +103,7 @@ public class Event {
      *            class object describing the data type
      */
     public Event(final Class<?> type) {
+        this();
         this.setType(type);
     }
 
@@ -111,7 +125,69 @@ public class Event {
      * Construct empty event. Only metadata is initialized.
      */
     public Event() {
-        // meta data is initialized in the filed declaration already0
+        this.metaData = new MetaData();
+    }
+
+    /**
+     * Creates a shallow copy of another event. Meta data and causes are copied
+     * so that they can be modified independently of the original event. The
+     * data object is shared between both instances. The copy is never frozen.
+     * In case the other event is frozen, causes and user meta data are only
+     * copied once they are modified.
+     *
+     * @param other
+     *            the event to copy
+     */
+    public Event(final Event other) {
+        this.id = other.id;
+        this.type = other.type;
+        this.scope = other.scope;
+        this.method = other.method;
+        this.data = other.data;
+        this.metaData = new MetaData(other.metaData);
+        if (other.frozen) {
+            this.causes = other.causes;
+            this.sharedCauses = true;
+        } else {
+            this.causes.addAll(other.causes);
+        }
+    }
+
+    /**
+     * Prevents all further modifications of this event and its meta data. The
+     * payload itself is not affected and must not be modified by receivers.
+     *
+     * @return this instance for chaining
+     */
+    public Event freeze() {
+        this.metaData.freeze();
+        this.frozen = true;
+        return this;
+    }
+
+    /**
+     * Tells whether this event is frozen and rejects modifications.
+     *
+     * @return <code>true</code> if frozen
+     */
+    public boolean isFrozen() {
+        return this.frozen;
+    }
+
+    private void checkModifiable() {
+        if (this.frozen) {
+            throw new IllegalStateException(
+                    "A frozen event cannot be modified. "
+                            + "Modify a copy of the event instead.");
+        }
+    }
+
+    private void prepareCauses() {
+        checkModifiable();
+        if (this.sharedCauses) {
+            this.causes = new HashSet<EventId>(this.causes);
+            this.sharedCauses = false;
+        }
     }
 
     /**
@@ -127,6 +203,7 @@ public class Event {
      *            the Java type to set for the Event payload
      */
     public void setType(final Class<?> type) {
+        checkModifiable();
         if (type == null) {
             throw new IllegalArgumentException(
                     "Event types must be class instances. "
@@ -147,6 +224,7 @@ public class Event {
      *            the data to set
      */
     public void setData(final Object data) {
+        checkModifiable();
         this.data = data;
     }
 
@@ -167,6 +245,7 @@ public class Event {
      *            sequence number within the specified participant
      */
     public void setId(final ParticipantId senderId, final long sequenceNumber) {
+        checkModifiable();
         this.id = new EventId(senderId, sequenceNumber);
     }
 
@@ -178,6 +257,7 @@ public class Event {
      */
     @SuppressWarnings("PMD.ShortVariable")
     public void setId(final EventId id) {
+        checkModifiable();
         this.id = id;
     }
 
@@ -186,6 +266,7 @@ public class Event {
      *            the scope to set
      */
     public void setScope(final Scope scope) {
+        checkModifiable();
         this.scope = scope;
     }
 
@@ -228,6 +309,7 @@ public class Event {
      *            the method to set
      */
     public void setMethod(final String method) {
+        checkModifiable();
         this.method = method;
     }
 
@@ -331,6 +413,7 @@ public class Event {
      */
     @SuppressWarnings("PMD.ShortVariable")
     public boolean addCause(final EventId id) {
+        prepareCauses();
         return this.causes.add(id);
     }
 
@@ -345,6 +428,7 @@ public class Event {
      */
     @SuppressWarnings("PMD.ShortVariable")
     public boolean removeCause(final EventId id) {
+        prepareCauses();
         return this.causes.remove(id);
     }
 
@@ -176,6 +176,8 @@ public final class Factory {
         // default plugins
         pluginNames.add("rsb.transport.inprocess");
         pluginNames.add("rsb.transport.socket");
+        pluginNames.add("rsb.transport.shm");
+        pluginNames.add("rsb.transport.udp");
         for (final String pluginName : this.properties
                 .getProperty(PLUGIN_LOAD_KEY, "").asString().split(":")) {
             final String trimmed = pluginName.trim();
@@ -27,6 +27,7 @@
  */
 package rsb;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -40,16 +41,30 @@ import rsb.util.ExactTime;
  * In case you are setting timestamps manually, ensure to create these
  * timestamps using {@link ExactTime} to get the highest possible resolution.
  *
+ * Instances of frozen events are frozen as well and reject all
+ * modifications (see {@link Event#freeze()}). Overlays created with
+ * {@link #MetaData(MetaData)} from a frozen instance share the user times and
+ * infos with it until they are modified for the first time.
+ *
  * @author jwienke
  */
+// each timestamp and user data kind comes with its own accessors
+@SuppressWarnings({ "PMD.GodClass", "PMD.TooManyMethods" })
 public class MetaData {
 
     private long createTime = ExactTime.currentTimeMicros();
     private long sendTime = 0;
     private long receiveTime = 0;
     private long deliverTime = 0;
-    private final Map<String, Long> userTimes = new HashMap<String, Long>();
-    private final Map<String, String> userInfos = new HashMap<String, String>();
+    private Map<String, Long> userTimes = new HashMap<String, Long>();
+    private Map<String, String> userInfos = new HashMap<String, String>();
+
+    /**
+     * Indicates that the user maps belong to a frozen instance and need to be
+     * copied before modifying them.
+     */
+    private boolean sharedMaps = false;
+    private boolean frozen = false;
 
     /**
      * Creates a new {@link MetaData} instance with creation time now.
@@ -58,6 +73,70 @@ public class MetaData {
         super();
     }
 
+    /**
+     * Creates a modifiable copy of another {@link MetaData} instance. In case
+     * the other instance is frozen, its user times and infos are only copied
+     * once the copy is modified.
+     *
+     * @param other
+     *            the instance to copy
+     */
+    public MetaData(final MetaData other) {
+        super();
+        this.createTime = other.createTime;
+        this.sendTime = other.sendTime;
+        this.receiveTime = other.receiveTime;
+        this.deliverTime = other.deliverTime;
+        if (other.frozen) {
+            this.userTimes = other.userTimes;
+            this.userInfos = other.userInfos;
+            this.sharedMaps = true;
+        } else {
+            this.userTimes.putAll(other.userTimes);
+            this.userInfos.putAll(other.userInfos);
+        }
+    }
+
+    /**
+     * Prevents all further modifications of this instance.
+     */
+    void freeze() {
+        this.frozen = true;
+    }
+
+    /**
+     * Tells whether this instance is frozen and rejects modifications.
+     *
+     * @return <code>true</code> if frozen
+     */
+    public boolean isFrozen() {
+        return this.frozen;
+    }
+
+    private void checkModifiable() {
+        if (this.frozen) {
+            throw new IllegalStateException(
+                    "Meta data of a frozen event cannot be modified.");
+        }
+    }
+
+    private void prepareUserMaps() {
+        checkModifiable();
+        if (this.sharedMaps) {
+            this.userTimes = new HashMap<String, Long>(this.userTimes);
+            this.userInfos = new HashMap<String, String>(this.userInfos);
+            this.sharedMaps = false;
+        }
+    }
+
+    private static Set<String> keys(final Map<String, ?> map,
+            final boolean modifiable) {
+        if (modifiable) {
+            return map.keySet();
+        }
+        return Collections.unmodifiableSet(map.keySet());
+    }
+
     /**
      * Returns a time stamp that is automatically filled with the time the event
      * instance was created by the language binding. This should usually reflect
@@ -83,8 +162,11 @@ public class MetaData {
      *
      * @param time
      *            timestamp in microseconds or 0 to use current system time
+     * @throws IllegalStateException
+     *             instance is frozen
      */
     public void setCreateTime(final long time) {
+        checkModifiable();
         if (time <= 0) {
             this.createTime = ExactTime.currentTimeMicros();
         } else {
@@ -108,8 +190,11 @@ public class MetaData {
      *
      * @param time
      *            timestamp in microseconds or 0 to use current system time
+     * @throws IllegalStateException
+     *             instance is frozen
      */
     public void setSendTime(final long time) {
+        checkModifiable();
         if (time <= 0) {
             this.sendTime = ExactTime.currentTimeMicros();
         } else {
@@ -133,8 +218,11 @@ public class MetaData {
      *
      * @param time
      *            timestamp in microseconds or 0 to use current system time
+     * @throws IllegalStateException
+     *             instance is frozen
      */
     public void setReceiveTime(final long time) {
+        checkModifiable();
         if (time <= 0) {
             this.receiveTime = ExactTime.currentTimeMicros();
         } else {
@@ -160,8 +248,11 @@ public class MetaData {
      *
      * @param time
      *            timestamp in microseconds or 0 to use current system time
+     * @throws IllegalStateException
+     *             instance is frozen
      */
     public void setDeliverTime(final long time) {
+        checkModifiable();
         if (time <= 0) {
             this.deliverTime = ExactTime.currentTimeMicros();
         } else {
@@ -172,10 +263,11 @@ public class MetaData {
     /**
      * Returns the keys of all available user times.
      *
-     * @return set of all keys
+     * @return set of all keys, not modifiable in case of frozen or shared
+     *         user times
      */
     public Set<String> userTimeKeys() {
-        return this.userTimes.keySet();
+        return keys(this.userTimes, !this.frozen && !this.sharedMaps);
     }
 
     /**
@@ -213,8 +305,11 @@ public class MetaData {
      *            the key for the timestamp
      * @param time
      *            time in microseconds or 0 to use current system time
+     * @throws IllegalStateException
+     *             instance is frozen
      */
     public void setUserTime(final String key, final long time) {
+        prepareUserMaps();
         if (time <= 0) {
             this.userTimes.put(key,  ExactTime.currentTimeMicros());
         } else {
@@ -225,10 +320,11 @@ public class MetaData {
     /**
      * Returns all keys of user-defined infos.
      *
-     * @return set of all defined keys
+     * @return set of all defined keys, not modifiable in case of frozen or
+     *         shared user infos
      */
     public Set<String> userInfoKeys() {
-        return this.userInfos.keySet();
+        return keys(this.userInfos, !this.frozen && !this.sharedMaps);
     }
 
     /**
@@ -268,8 +364,11 @@ public class MetaData {
      *            the key to set
      * @param value
      *            the user value
+     * @throws IllegalStateException
+     *             instance is frozen
      */
     public void setUserInfo(final String key, final String value) {
+        prepareUserMaps();
         this.userInfos.put(key, value);
     }
 
@@ -28,8 +28,13 @@
 package rsb.config;
 
 import java.util.HashSet;
+import java.util.Locale;
 import java.util.Set;
 
+import rsb.eventprocessing.ParallelReceivingOptions;
+import rsb.eventprocessing.RejectionPolicy;
+import rsb.eventprocessing.SingleThreadFactory;
+import rsb.eventprocessing.UnorderedParallelFactory;
 import rsb.util.Properties;
 
 /**
@@ -42,6 +47,15 @@ public class ParticipantConfigCreator {
 
     private static final String TRANSPORT_PREFIX = "transport.";
 
+    private static final String STRATEGY_KEY = "receivingstrategy";
+    private static final String PARALLEL_PREFIX = STRATEGY_KEY + ".parallel.";
+    private static final String STRATEGY_PARALLEL = "parallel";
+    private static final String STRATEGY_SINGLE = "singlethread";
+    private static final String EXECUTOR_POOL = "pool";
+    private static final String EXECUTOR_FORKJOIN = "forkjoin";
+    private static final String FOR_KEY = "' for ";
+    private static final String POSITIVE_NUMBER = " must be a number > 0";
+
     /**
      * Create a new {@link ParticipantConfig} from the given properties.
      *
@@ -76,6 +90,8 @@ public class ParticipantConfigCreator {
         config.setIntrospectionEnabled(properties.getProperty(
                 "introspection.enabled", true).asBoolean());
 
+        reconfigureReceivingStrategy(config, properties);
+
         // extract names of transports in the config
         final Set<String> configuredTransportNames = new HashSet<>();
         for (final String key : properties.getAvailableKeys()) {
@@ -115,4 +131,118 @@ public class ParticipantConfigCreator {
         }
 
     }
+
+    /**
+     * Selects the receiving strategy with the key "receivingstrategy" (values
+     * "singlethread" or "parallel") and applies the
+     * "receivingstrategy.parallel.*" options in case the parallel strategy is
+     * used.
+     */
+    private void reconfigureReceivingStrategy(final ParticipantConfig config,
+            final Properties properties) {
+
+        boolean parallel =
+                config.getReceivingStrategy() instanceof UnorderedParallelFactory;
+        if (properties.hasProperty(STRATEGY_KEY)) {
+            final String name =
+                    properties.getProperty(STRATEGY_KEY).asString().trim()
+                            .toLowerCase(Locale.US);
+            if (STRATEGY_SINGLE.equals(name)) {
+                config.setReceivingStrategy(new SingleThreadFactory());
+                parallel = false;
+            } else if (STRATEGY_PARALLEL.equals(name)) {
+                parallel = true;
+            } else {
+                throw new IllegalArgumentException("Unknown receiving strategy '"
+                        + name + "'");
+            }
+        }
+        if (!parallel) {
+            return;
+        }
+
+        ParallelReceivingOptions options = new ParallelReceivingOptions();
+        if (config.getReceivingStrategy() instanceof UnorderedParallelFactory) {
+            options =
+                    ((UnorderedParallelFactory) config.getReceivingStrategy())
+                            .getOptions();
+        }
+        options = reconfigureThreads(options, properties);
+        options = reconfigureExecutor(options, properties);
+        config.setReceivingStrategy(new UnorderedParallelFactory(options));
+
+    }
+
+    private ParallelReceivingOptions reconfigureThreads(
+            final ParallelReceivingOptions options, final Properties properties) {
+        ParallelReceivingOptions result = options;
+        final String threadsKey = PARALLEL_PREFIX + "threads";
+        if (properties.hasProperty(threadsKey)) {
+            result = result.withThreads(parsePositive(properties, threadsKey));
+        }
+        final String maxThreadsKey = PARALLEL_PREFIX + "maxthreads";
+        if (properties.hasProperty(maxThreadsKey)) {
+            final int maxThreads = parsePositive(properties, maxThreadsKey);
+            if (maxThreads < result.getThreads()) {
+                throw new IllegalArgumentException(maxThreadsKey
+                        + " must not be smaller than the number of threads");
+            }
+            result = result.withMaxThreads(maxThreads);
+        }
+        return result;
+    }
+
+    private ParallelReceivingOptions reconfigureExecutor(
+            final ParallelReceivingOptions options, final Properties properties) {
+        ParallelReceivingOptions result = options;
+        final String queueSizeKey = PARALLEL_PREFIX + "queuesize";
+        if (properties.hasProperty(queueSizeKey)) {
+            result =
+                    result.withQueueSize(parsePositive(properties, queueSizeKey));
+        }
+        final String executorKey = PARALLEL_PREFIX + "executor";
+        if (properties.hasProperty(executorKey)) {
+            final String executor =
+                    properties.getProperty(executorKey).asString().trim();
+            if (EXECUTOR_FORKJOIN.equalsIgnoreCase(executor)) {
+                result = result.withWorkStealing(true);
+            } else if (EXECUTOR_POOL.equalsIgnoreCase(executor)) {
+                result = result.withWorkStealing(false);
+            } else {
+                throw new IllegalArgumentException("Unknown executor '"
+                        + executor + FOR_KEY + executorKey);
+            }
+        }
+        final String rejectionKey = PARALLEL_PREFIX + "rejection";
+        if (properties.hasProperty(rejectionKey)) {
+            final String policy =
+                    properties.getProperty(rejectionKey).asString().trim()
+                            .replace('-', '_').toUpperCase(Locale.US);
+            try {
+                result =
+                        result.withRejectionPolicy(RejectionPolicy
+                                .valueOf(policy));
+            } catch (final IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown rejection policy '"
+                        + policy + FOR_KEY + rejectionKey, e);
+            }
+        }
+        return result;
+    }
+
+    private static int parsePositive(final Properties properties,
+            final String key) {
+        final int value;
+        try {
+            value = properties.getProperty(key).asInteger();
+        } catch (final NumberFormatException e) {
+            throw new IllegalArgumentException(key + POSITIVE_NUMBER,
+                    e);
+        }
+        if (value <= 0) {
+            throw new IllegalArgumentException(key + POSITIVE_NUMBER);
+        }
+        return value;
+    }
+
 }
@@ -95,8 +95,20 @@ public class MatchAndDispatchTask implements Callable<Boolean> {
             }
             return false;
         } finally {
-            synchronized (this.handlerTasks) {
-                this.handlerTasks.get(this.handler).remove(this);
+            discard();
+        }
+    }
+
+    /**
+     * Removes this task from the tasks pending for its handler and wakes up
+     * threads waiting for the handler to become idle.
+     */
+    void discard() {
+        synchronized (this.handlerTasks) {
+            final Set<MatchAndDispatchTask> tasks =
+                    this.handlerTasks.get(this.handler);
+            if (tasks != null) {
+                tasks.remove(this);
             }
             this.handlerTasks.notifyAll();
         }
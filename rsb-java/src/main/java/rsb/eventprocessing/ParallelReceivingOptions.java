@@ -0,0 +1,250 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.eventprocessing;
+
+/**
+ * A class representing the options of
+ * {@link UnorderedParallelEventReceivingStrategy} instances.
+ *
+ * @author jwienke
+ */
+public final class ParallelReceivingOptions {
+
+    /**
+     * Default maximum number of pending dispatching tasks.
+     */
+    public static final int DEFAULT_QUEUE_SIZE = 1000;
+
+    private int threads = 1;
+    private int maxThreads = 1;
+    private int queueSize = DEFAULT_QUEUE_SIZE;
+    private boolean workStealing = false;
+    private RejectionPolicy rejectionPolicy = RejectionPolicy.DISCARD;
+
+    /**
+     * Creates options with a single dispatching thread, which preserves the
+     * behavior of earlier versions. Handlers are only called concurrently
+     * once more threads are configured.
+     */
+    public ParallelReceivingOptions() {
+        // defaults are set in the declarations
+    }
+
+    /**
+     * Copy constructor used to derive modified instances.
+     *
+     * @param other
+     *            the instance to copy
+     */
+    private ParallelReceivingOptions(final ParallelReceivingOptions other) {
+        this.threads = other.threads;
+        this.maxThreads = other.maxThreads;
+        this.queueSize = other.queueSize;
+        this.workStealing = other.workStealing;
+        this.rejectionPolicy = other.rejectionPolicy;
+    }
+
+    /**
+     * Returns the number of threads which are kept for dispatching. For the
+     * work-stealing executor, this is the parallelism of the pool.
+     *
+     * @return number of threads, at least one
+     */
+    public int getThreads() {
+        return this.threads;
+    }
+
+    /**
+     * Returns a copy of these options with a different number of threads.
+     * The maximum number of threads is raised to this value if required.
+     *
+     * @param threads
+     *            number of threads, at least one
+     * @return new options instance
+     */
+    public ParallelReceivingOptions withThreads(final int threads) {
+        assert threads > 0;
+        final ParallelReceivingOptions copy =
+                new ParallelReceivingOptions(this);
+        copy.threads = threads;
+        copy.maxThreads = Math.max(threads, this.maxThreads);
+        return copy;
+    }
+
+    /**
+     * Returns the maximum number of threads. Threads beyond
+     * {@link #getThreads()} are only started while the queue is full and
+     * terminate after being idle for a while. Not used by the work-stealing
+     * executor.
+     *
+     * @return maximum number of threads, at least {@link #getThreads()}
+     */
+    public int getMaxThreads() {
+        return this.maxThreads;
+    }
+
+    /**
+     * Returns a copy of these options with a different maximum number of
+     * threads.
+     *
+     * @param maxThreads
+     *            maximum number of threads, at least {@link #getThreads()}
+     * @return new options instance
+     */
+    public ParallelReceivingOptions withMaxThreads(final int maxThreads) {
+        assert maxThreads >= this.threads;
+        final ParallelReceivingOptions copy =
+                new ParallelReceivingOptions(this);
+        copy.maxThreads = maxThreads;
+        return copy;
+    }
+
+    /**
+     * Returns the maximum number of pending dispatching tasks before the
+     * {@link #getRejectionPolicy()} is applied. Not used by the
+     * work-stealing executor, which queues without limits.
+     *
+     * @return maximum number of pending tasks, at least one
+     */
+    public int getQueueSize() {
+        return this.queueSize;
+    }
+
+    /**
+     * Returns a copy of these options with a different queue size.
+     *
+     * @param queueSize
+     *            maximum number of pending tasks, at least one
+     * @return new options instance
+     */
+    public ParallelReceivingOptions withQueueSize(final int queueSize) {
+        assert queueSize > 0;
+        final ParallelReceivingOptions copy =
+                new ParallelReceivingOptions(this);
+        copy.queueSize = queueSize;
+        return copy;
+    }
+
+    /**
+     * Indicates whether a work-stealing {@link java.util.concurrent.ForkJoinPool}
+     * is used instead of a {@link java.util.concurrent.ThreadPoolExecutor}.
+     *
+     * @return <code>true</code> for work stealing
+     */
+    public boolean isWorkStealing() {
+        return this.workStealing;
+    }
+
+    /**
+     * Returns a copy of these options with a different executor.
+     *
+     * @param workStealing
+     *            <code>true</code> for work stealing
+     * @return new options instance
+     */
+    public ParallelReceivingOptions withWorkStealing(
+            final boolean workStealing) {
+        final ParallelReceivingOptions copy =
+                new ParallelReceivingOptions(this);
+        copy.workStealing = workStealing;
+        return copy;
+    }
+
+    /**
+     * Returns the policy applied once the queue is full.
+     *
+     * @return the policy
+     */
+    public RejectionPolicy getRejectionPolicy() {
+        return this.rejectionPolicy;
+    }
+
+    /**
+     * Returns a copy of these options with a different rejection policy.
+     *
+     * @param rejectionPolicy
+     *            the new policy, not <code>null</code>
+     * @return new options instance
+     */
+    public ParallelReceivingOptions withRejectionPolicy(
+            final RejectionPolicy rejectionPolicy) {
+        assert rejectionPolicy != null;
+        final ParallelReceivingOptions copy =
+                new ParallelReceivingOptions(this);
+        copy.rejectionPolicy = rejectionPolicy;
+        return copy;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+
+        if (!(obj instanceof ParallelReceivingOptions)) {
+            return false;
+        }
+
+        final ParallelReceivingOptions other = (ParallelReceivingOptions) obj;
+
+        return this.threads == other.threads
+                && this.maxThreads == other.maxThreads
+                && this.queueSize == other.queueSize
+                && this.workStealing == other.workStealing
+                && this.rejectionPolicy == other.rejectionPolicy;
+
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 17;
+        int result = 1;
+        result = prime * result + this.threads;
+        result = prime * result + this.maxThreads;
+        result = prime * result + this.queueSize;
+        result = prime * result + Boolean.valueOf(this.workStealing).hashCode();
+        result = prime * result + this.rejectionPolicy.hashCode();
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder(120);
+        builder.append(getClass().getName());
+        builder.append("[threads=");
+        builder.append(this.threads);
+        builder.append(", maxThreads=");
+        builder.append(this.maxThreads);
+        builder.append(", queueSize=");
+        builder.append(this.queueSize);
+        builder.append(", workStealing=");
+        builder.append(this.workStealing);
+        builder.append(", rejectionPolicy=");
+        builder.append(this.rejectionPolicy);
+        builder.append(']');
+        return builder.toString();
+    }
+
+}
@@ -0,0 +1,56 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.eventprocessing;
+
+/**
+ * Policies applied by {@link UnorderedParallelEventReceivingStrategy} in case
+ * its queue of pending dispatching tasks is full.
+ *
+ * @author jwienke
+ */
+public enum RejectionPolicy {
+
+    /**
+     * The task is discarded and an error is logged. The affected handler does
+     * not receive the event.
+     */
+    DISCARD,
+
+    /**
+     * The thread passing the event to the strategy, usually a transport
+     * thread, is blocked until the queue has space again.
+     */
+    BLOCK,
+
+    /**
+     * The thread passing the event to the strategy dispatches the event
+     * itself. This slows down the transport while keeping all events.
+     */
+    CALLER_RUNS
+
+}
@@ -27,13 +27,18 @@
  */
 package rsb.eventprocessing;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
@@ -48,6 +53,11 @@ import rsb.filter.Filter;
  * An {@link EventReceivingStrategy} that dispatches {@link Event}s using a
  * thread pool but without any ordering guarantees.
  *
+ * The pool is configured through {@link ParallelReceivingOptions}. Either a
+ * {@link ThreadPoolExecutor} with a bounded queue and a
+ * {@link RejectionPolicy} for the case that the queue is full is used, or a
+ * work-stealing {@link ForkJoinPool} with an unbounded queue.
+ *
  * @author swrede
  */
 public class UnorderedParallelEventReceivingStrategy
@@ -58,10 +68,10 @@ public class UnorderedParallelEventReceivingStrategy
 
     private static final int TERMINATE_TIMEOUT_SECS = 1000;
 
-    private static final int QUEUE_SIZE = 1000;
-
     private static final int KEEP_ALIVE_SECS = 60;
 
+    private static final long OFFER_TIMEOUT_MS = 100;
+
     private static final Logger LOG = Logger
             .getLogger(UnorderedParallelEventReceivingStrategy.class.getName());
 
@@ -70,7 +80,38 @@ public class UnorderedParallelEventReceivingStrategy
     private final Map<Handler, Set<MatchAndDispatchTask>> handlerTasks =
             new HashMap<Handler, Set<MatchAndDispatchTask>>();
 
-    private ThreadPoolExecutor executor;
+    private final ParallelReceivingOptions options;
+
+    private ExecutorService executor;
+
+    /**
+     * Creates a new strategy using a single dispatching thread.
+     */
+    public UnorderedParallelEventReceivingStrategy() {
+        this(new ParallelReceivingOptions());
+    }
+
+    /**
+     * Creates a new strategy with the given options.
+     *
+     * @param options
+     *            options describing the executor to use, not
+     *            <code>null</code>
+     */
+    public UnorderedParallelEventReceivingStrategy(
+            final ParallelReceivingOptions options) {
+        assert options != null;
+        this.options = options;
+    }
+
+    /**
+     * Returns the options this strategy was created with.
+     *
+     * @return options instance
+     */
+    public ParallelReceivingOptions getOptions() {
+        return this.options;
+    }
 
     @Override
     public void addFilter(final Filter filter) {
@@ -105,26 +146,31 @@ public class UnorderedParallelEventReceivingStrategy
     @Override
     @SuppressWarnings("PMD.AvoidInstantiatingObjectsInLoops")
     public void handle(final Event event) {
-        int count = 0;
         event.getMetaData().setDeliverTime(0);
+        final List<MatchAndDispatchTask> tasks =
+                new ArrayList<MatchAndDispatchTask>();
         synchronized (this.handlerTasks) {
-            for (final Handler handler : this.handlerTasks.keySet()) {
-                count++;
+            for (final Map.Entry<Handler, Set<MatchAndDispatchTask>> entry
+                    : this.handlerTasks.entrySet()) {
                 final MatchAndDispatchTask task =
-                        new MatchAndDispatchTask(handler, this.filters, event,
-                                this.handlerTasks);
-                try {
-                    this.handlerTasks.get(handler).add(task);
-                    this.executor.submit(task);
-                } catch (final RejectedExecutionException ex) {
-                    this.handlerTasks.get(handler).remove(task);
-                    LOG.log(Level.SEVERE,
-                            "ExecutorService rejected event matching", ex);
-                }
-
+                        new MatchAndDispatchTask(entry.getKey(), this.filters,
+                                event, this.handlerTasks);
+                entry.getValue().add(task);
+                tasks.add(task);
             }
         }
-        LOG.fine("Dispatched event to " + count + " subscriptions");
+        // submit without holding the lock: blocking or caller-runs policies
+        // must not prevent running tasks from deregistering themselves
+        for (final MatchAndDispatchTask task : tasks) {
+            try {
+                this.executor.submit(task);
+            } catch (final RejectedExecutionException ex) {
+                task.discard();
+                LOG.log(Level.SEVERE,
+                        "ExecutorService rejected event matching", ex);
+            }
+        }
+        LOG.fine("Dispatched event to " + tasks.size() + " subscriptions");
     }
 
     /**
@@ -140,6 +186,7 @@ public class UnorderedParallelEventReceivingStrategy
             this.executor.shutdown();
             this.executor.awaitTermination(TERMINATE_TIMEOUT_SECS,
                     TimeUnit.SECONDS);
+            this.executor = null;
         }
     }
 
@@ -161,12 +208,43 @@ public class UnorderedParallelEventReceivingStrategy
             if (isActive()) {
                 throw new IllegalStateException("Already active");
             }
-            this.executor =
-                    new ThreadPoolExecutor(1, 1, KEEP_ALIVE_SECS,
-                            TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(
-                                    QUEUE_SIZE));
-            LOG.fine("Creating ThreadPool with size: 1 (1)");
-            this.executor.prestartAllCoreThreads();
+            if (this.options.isWorkStealing()) {
+                LOG.fine("Creating ForkJoinPool with parallelism: "
+                        + this.options.getThreads());
+                this.executor =
+                        new ForkJoinPool(this.options.getThreads(),
+                                ForkJoinPool.defaultForkJoinWorkerThreadFactory,
+                                null, true);
+            } else {
+                LOG.fine("Creating ThreadPool with size: "
+                        + this.options.getThreads() + " ("
+                        + this.options.getMaxThreads() + ")");
+                final ThreadPoolExecutor pool =
+                        new ThreadPoolExecutor(this.options.getThreads(),
+                                this.options.getMaxThreads(), KEEP_ALIVE_SECS,
+                                TimeUnit.SECONDS,
+                                new ArrayBlockingQueue<Runnable>(
+                                        this.options.getQueueSize()),
+                                createRejectionHandler(this.options
+                                        .getRejectionPolicy()));
+                pool.prestartAllCoreThreads();
+                this.executor = pool;
+            }
+        }
+    }
+
+    private static RejectedExecutionHandler createRejectionHandler(
+            final RejectionPolicy policy) {
+        switch (policy) {
+        case BLOCK:
+            return new BlockingPolicy();
+        case CALLER_RUNS:
+            return new ThreadPoolExecutor.CallerRunsPolicy();
+        case DISCARD:
+            return new ThreadPoolExecutor.AbortPolicy();
+        default:
+            throw new IllegalArgumentException("Unknown rejection policy "
+                    + policy);
         }
     }
 
@@ -175,4 +253,39 @@ public class UnorderedParallelEventReceivingStrategy
         return this.executor != null;
     }
 
+    /**
+     * Blocks the submitting thread until the queue of the executor has space.
+     *
+     * @author jwienke
+     */
+    private static class BlockingPolicy implements RejectedExecutionHandler {
+
+        @Override
+        public void rejectedExecution(final Runnable task,
+                final ThreadPoolExecutor executor) {
+            // re-check the shutdown state regularly so that neither a
+            // shutdown while waiting for space leaves the sender blocked
+            // forever nor tasks end up in a queue which is not drained
+            // anymore
+            try {
+                while (!executor.isShutdown()) {
+                    if (executor.getQueue().offer(task, OFFER_TIMEOUT_MS,
+                            TimeUnit.MILLISECONDS)) {
+                        if (executor.isShutdown()
+                                && executor.getQueue().remove(task)) {
+                            break;
+                        }
+                        return;
+                    }
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException(
+                        "Interrupted while waiting for queue space", e);
+            }
+            throw new RejectedExecutionException("Executor is shut down");
+        }
+
+    }
+
 }
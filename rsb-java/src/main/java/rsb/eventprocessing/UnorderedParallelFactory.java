@@ -37,9 +37,52 @@ import rsb.InitializeException;
  */
 public class UnorderedParallelFactory implements EventReceivingStrategyFactory {
 
+    private final ParallelReceivingOptions options;
+
+    /**
+     * Creates a factory for strategies with default options.
+     */
+    public UnorderedParallelFactory() {
+        this(new ParallelReceivingOptions());
+    }
+
+    /**
+     * Creates a factory for strategies with the given options.
+     *
+     * @param options
+     *            options passed to all created strategies, not
+     *            <code>null</code>
+     */
+    public UnorderedParallelFactory(final ParallelReceivingOptions options) {
+        assert options != null;
+        this.options = options;
+    }
+
+    /**
+     * Returns the options passed to created strategies.
+     *
+     * @return options instance
+     */
+    public ParallelReceivingOptions getOptions() {
+        return this.options;
+    }
+
     @Override
     public EventReceivingStrategy create() throws InitializeException {
-        return new UnorderedParallelEventReceivingStrategy();
+        return new UnorderedParallelEventReceivingStrategy(this.options);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (!(obj instanceof UnorderedParallelFactory)) {
+            return false;
+        }
+        return this.options.equals(((UnorderedParallelFactory) obj).options);
+    }
+
+    @Override
+    public int hashCode() {
+        return this.options.hashCode();
     }
 
 }
@@ -45,6 +45,7 @@ import rsb.protocol.EventMetaDataType.UserInfo;
 import rsb.protocol.EventMetaDataType.UserTime;
 import rsb.protocol.NotificationType.Notification;
 import rsb.protocol.NotificationType.Notification.Builder;
+import rsb.util.ByteHelpers;
 
 import com.google.protobuf.ByteString;
 
@@ -157,6 +158,34 @@ public final class ProtocolConversion {
         }
     }
 
+    /**
+     * Creates a complete {@link Notification} for an {@link Event} including
+     * the payload serialized with the given converters.
+     *
+     * @param event
+     *            the event to convert
+     * @param converters
+     *            the converters to use for serializing the payload
+     * @return the notification
+     * @throws ConversionException
+     *             error converting, e.g. no converter available or wrong class
+     */
+    public static Notification toNotification(final Event event,
+            final ConverterSelectionStrategy<ByteBuffer> converters)
+            throws ConversionException {
+
+        final WireContents<ByteBuffer> data =
+                serializeEventData(event, converters);
+
+        final Builder builder = Notification.newBuilder();
+        builder.setEventId(createEventIdBuilder(event.getId()));
+        builder.setData(ByteHelpers.buteBufferToByteString(data
+                .getSerialization()));
+        fillNotificationHeader(builder, event, data.getWireSchema());
+        return builder.build();
+
+    }
+
     /**
      * Build event from RSB Notification. Excludes user data de-serialization as
      * it is bound to the converter configuration.
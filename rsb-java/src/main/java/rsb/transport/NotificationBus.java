@@ -0,0 +1,123 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport;
+
+import java.net.URI;
+
+import rsb.RSBException;
+import rsb.protocol.NotificationType.Notification;
+
+/**
+ * A bus which distributes {@link Notification}s to all participants using
+ * it, for instance through shared memory or datagrams. One instance is
+ * usually shared by all connectors of a process with the same configuration.
+ * Therefore, activations are counted and the underlying resources are only
+ * released with the last deactivation.
+ *
+ * @author jwienke
+ */
+public interface NotificationBus {
+
+    /**
+     * Interface for observers of {@link NotificationBus} instances that want
+     * to asynchronously receive incoming notifications.
+     *
+     * @author jwienke
+     */
+    interface NotificationReceiver {
+
+        /**
+         * Callback method with a received notification. Called from the
+         * receiving thread of the bus.
+         *
+         * @param notification
+         *            the new notification
+         */
+        void handle(Notification notification);
+
+    }
+
+    /**
+     * Acquires the underlying resources if this is the first activation.
+     *
+     * @throws RSBException
+     *             unable to acquire the resources
+     */
+    void activate() throws RSBException;
+
+    /**
+     * Undoes an activation and releases the underlying resources with the
+     * last one.
+     *
+     * @throws RSBException
+     *             error releasing the resources
+     * @throws InterruptedException
+     *             interrupted while waiting for the receiving thread
+     */
+    void deactivate() throws RSBException, InterruptedException;
+
+    /**
+     * Publishes a notification to all participants on the bus.
+     *
+     * @param notification
+     *            the notification to publish
+     * @throws RSBException
+     *             error publishing the notification
+     */
+    void publish(Notification notification) throws RSBException;
+
+    /**
+     * Registers a receiver for all notifications on the bus. Only valid while
+     * active.
+     *
+     * @param receiver
+     *            the receiver to add
+     * @throws RSBException
+     *             unable to start receiving
+     */
+    void addReceiver(NotificationReceiver receiver) throws RSBException;
+
+    /**
+     * Removes a registered receiver. Receiving stops once no receiver is left.
+     *
+     * @param receiver
+     *            the receiver to remove
+     * @throws InterruptedException
+     *             interrupted while waiting for the receiving thread
+     */
+    void removeReceiver(NotificationReceiver receiver)
+            throws InterruptedException;
+
+    /**
+     * Return the URI describing the transport manifested by this bus.
+     *
+     * @return URI, not <code>null</code>
+     */
+    URI getTransportUri();
+
+}
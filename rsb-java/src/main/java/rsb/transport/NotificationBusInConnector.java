@@ -0,0 +1,224 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import rsb.Event;
+import rsb.QualityOfServiceSpec;
+import rsb.QualityOfServiceSpec.Ordering;
+import rsb.RSBException;
+import rsb.Scope;
+import rsb.converter.ConversionException;
+import rsb.converter.ConverterSelectionStrategy;
+import rsb.filter.Filter;
+import rsb.filter.FilterAction;
+import rsb.protocol.EventIdType.EventId;
+import rsb.protocol.NotificationType.Notification;
+import rsb.protocol.ProtocolConversion;
+import rsb.transport.NotificationBus.NotificationReceiver;
+
+import com.google.protobuf.ByteString;
+
+/**
+ * An {@link InConnector} receiving events from a {@link NotificationBus}. All
+ * notifications of the bus are received and those outside of the scope of
+ * the connector are discarded. With {@link Ordering#ORDERED}, events which
+ * arrive after a newer event of the same sender are dropped instead of being
+ * delivered late. This keeps the newest sample of buses which may reorder
+ * notifications without any head-of-line blocking.
+ *
+ * @author jwienke
+ */
+public class NotificationBusInConnector extends AbstractConnector
+                                        implements InConnector,
+                                                   NotificationReceiver {
+
+    private static final Logger LOG = Logger
+            .getLogger(NotificationBusInConnector.class.getName());
+
+    private static final long UINT32_MASK = 0xFFFFFFFFL;
+
+    private final NotificationBus bus;
+    private final ConverterSelectionStrategy<ByteBuffer> converters;
+    private final Set<EventHandler> handlers =
+            new CopyOnWriteArraySet<EventHandler>();
+    private final Map<ByteString, Long> lastSequenceNumbers =
+            new HashMap<ByteString, Long>();
+    private volatile boolean ordered;
+    private String scope;
+    private boolean active;
+
+    /**
+     * Constructor.
+     *
+     * @param bus
+     *            the bus to receive from
+     * @param converters
+     *            converters to use for deserialization
+     */
+    public NotificationBusInConnector(final NotificationBus bus,
+            final ConverterSelectionStrategy<ByteBuffer> converters) {
+        this.bus = bus;
+        this.converters = converters;
+    }
+
+    @Override
+    public void setQualityOfServiceSpec(final QualityOfServiceSpec spec) {
+        this.ordered = spec.getOrdering() == Ordering.ORDERED;
+    }
+
+    @Override
+    public void setScope(final Scope scope) {
+        synchronized (this) {
+            if (this.active) {
+                throw new IllegalStateException(
+                        "Scope can only be set when not active.");
+            }
+            this.scope = scope.toString();
+        }
+    }
+
+    @Override
+    public void activate() throws RSBException {
+        synchronized (this) {
+            if (this.active) {
+                throw new IllegalStateException("Already active");
+            }
+            if (this.scope == null) {
+                throw new IllegalStateException(
+                        "Scope needs to be set before activating a connector.");
+            }
+            this.bus.activate();
+            try {
+                this.bus.addReceiver(this);
+            } catch (final RSBException e) {
+                deactivateBus();
+                throw e;
+            }
+            this.active = true;
+        }
+    }
+
+    private void deactivateBus() throws RSBException {
+        try {
+            this.bus.deactivate();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RSBException(e);
+        }
+    }
+
+    @Override
+    public void deactivate() throws RSBException, InterruptedException {
+        synchronized (this) {
+            if (!this.active) {
+                throw new IllegalStateException("Not active");
+            }
+            this.active = false;
+            this.bus.removeReceiver(this);
+            this.bus.deactivate();
+        }
+    }
+
+    @Override
+    public boolean isActive() {
+        synchronized (this) {
+            return this.active;
+        }
+    }
+
+    @Override
+    public void addHandler(final EventHandler handler) {
+        this.handlers.add(handler);
+    }
+
+    @Override
+    public boolean removeHandler(final EventHandler handler) {
+        return this.handlers.remove(handler);
+    }
+
+    @Override
+    public void handle(final Notification notification) {
+
+        // scope strings end with a slash. Hence, a prefix is the same scope
+        // or a super scope
+        if (!notification.getScope().toStringUtf8().startsWith(this.scope)
+                || this.ordered && isOutdated(notification.getEventId())) {
+            return;
+        }
+
+        try {
+            final Event event =
+                    ProtocolConversion.fromNotification(notification,
+                            ByteBuffer.wrap(notification.getData()
+                                    .toByteArray()), this.converters);
+            for (final EventHandler handler : this.handlers) {
+                handler.handle(event);
+            }
+        } catch (final ConversionException e) {
+            LOG.log(Level.WARNING,
+                    "Error decoding the received message. Ignoring this.", e);
+        }
+
+    }
+
+    /**
+     * Checks whether a newer event of the same sender has already been
+     * delivered and remembers the sequence number otherwise. Only called
+     * from the receiving thread of the bus.
+     */
+    private boolean isOutdated(final EventId eventId) {
+        final long sequenceNumber = eventId.getSequenceNumber() & UINT32_MASK;
+        final Long last = this.lastSequenceNumbers.get(eventId.getSenderId());
+        if (last != null && sequenceNumber <= last) {
+            LOG.log(Level.FINE, "Dropping outdated event {0}", sequenceNumber);
+            return true;
+        }
+        this.lastSequenceNumbers.put(eventId.getSenderId(), sequenceNumber);
+        return false;
+    }
+
+    @Override
+    public void notify(final Filter filter, final FilterAction action) {
+        // transport level filtering is currently not supported
+    }
+
+    @Override
+    public URI getTransportUri() {
+        return this.bus.getTransportUri();
+    }
+
+}
@@ -0,0 +1,116 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+
+import rsb.Event;
+import rsb.QualityOfServiceSpec;
+import rsb.RSBException;
+import rsb.Scope;
+import rsb.converter.ConverterSelectionStrategy;
+import rsb.protocol.ProtocolConversion;
+
+/**
+ * An {@link OutConnector} publishing events on a {@link NotificationBus}.
+ *
+ * @author jwienke
+ */
+public class NotificationBusOutConnector extends AbstractConnector
+                                         implements OutConnector {
+
+    private final NotificationBus bus;
+    private final ConverterSelectionStrategy<ByteBuffer> converters;
+    private volatile boolean active;
+
+    /**
+     * Constructor.
+     *
+     * @param bus
+     *            the bus to publish on
+     * @param converters
+     *            converters to use for serialization
+     */
+    public NotificationBusOutConnector(final NotificationBus bus,
+            final ConverterSelectionStrategy<ByteBuffer> converters) {
+        this.bus = bus;
+        this.converters = converters;
+    }
+
+    @Override
+    public void setQualityOfServiceSpec(final QualityOfServiceSpec spec) {
+        // events are published in order. Whether they arrive depends on the
+        // bus
+    }
+
+    @Override
+    public void setScope(final Scope scope) {
+        // nothing to do here. We don't need a scope
+    }
+
+    @Override
+    public void activate() throws RSBException {
+        synchronized (this) {
+            if (this.active) {
+                throw new IllegalStateException("Already active");
+            }
+            this.bus.activate();
+            this.active = true;
+        }
+    }
+
+    @Override
+    public void deactivate() throws RSBException, InterruptedException {
+        synchronized (this) {
+            if (!this.active) {
+                throw new IllegalStateException("Not active");
+            }
+            this.active = false;
+            this.bus.deactivate();
+        }
+    }
+
+    @Override
+    public boolean isActive() {
+        return this.active;
+    }
+
+    @Override
+    public void push(final Event event) throws RSBException {
+        event.getMetaData().setSendTime(0);
+        this.bus.publish(ProtocolConversion.toNotification(event,
+                this.converters));
+    }
+
+    @Override
+    public URI getTransportUri() {
+        return this.bus.getTransportUri();
+    }
+
+}
@@ -0,0 +1,207 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+
+package rsb.transport;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import rsb.Scope;
+
+/**
+ * A concurrent index of values registered for {@link Scope}s, organized as a
+ * trie of scope components. Looking up the values for a scope returns all
+ * values registered on the scope itself or on one of its super-scopes.
+ *
+ * Lookups do not acquire any locks and can run concurrently with
+ * modifications. Modifications are serialized among each other. A lookup
+ * running concurrently with a modification either sees the state before or
+ * after the modification for each individual node.
+ *
+ * @author jwienke
+ * @param <ValueType>
+ *            type of the registered values
+ */
+public class ScopeTrie<ValueType> {
+
+    private final TrieNode<ValueType> root = new TrieNode<ValueType>();
+    private volatile int size = 0;
+
+    /**
+     * A single node of the trie representing one scope.
+     *
+     * @param <ValueType>
+     *            type of the registered values
+     */
+    private static class TrieNode<ValueType> {
+
+        private final ConcurrentMap<String, TrieNode<ValueType>> children =
+                new ConcurrentHashMap<String, TrieNode<ValueType>>();
+        private final Set<ValueType> values =
+                new CopyOnWriteArraySet<ValueType>();
+
+        public boolean isUnused() {
+            return this.values.isEmpty() && this.children.isEmpty();
+        }
+
+    }
+
+    /**
+     * Registers a value for a scope.
+     *
+     * @param scope
+     *            the scope to register the value on
+     * @param value
+     *            the value to register
+     * @return <code>true</code> if the value was not registered on this scope
+     *         before
+     */
+    public boolean add(final Scope scope, final ValueType value) {
+        synchronized (this.root) {
+            TrieNode<ValueType> node = this.root;
+            for (final String component : scope.getComponents()) {
+                TrieNode<ValueType> child = node.children.get(component);
+                if (child == null) {
+                    child = new TrieNode<ValueType>();
+                    node.children.put(component, child);
+                }
+                node = child;
+            }
+            final boolean added = node.values.add(value);
+            if (added) {
+                this.size++;
+            }
+            return added;
+        }
+    }
+
+    /**
+     * Removes a value from a scope.
+     *
+     * @param scope
+     *            the scope the value was registered on
+     * @param value
+     *            the value to remove
+     * @return <code>true</code> if the value was registered on this scope
+     */
+    public boolean remove(final Scope scope, final ValueType value) {
+        synchronized (this.root) {
+            final boolean removed =
+                    remove(this.root, scope.getComponents().iterator(), value);
+            if (removed) {
+                this.size--;
+            }
+            return removed;
+        }
+    }
+
+    private boolean remove(final TrieNode<ValueType> node,
+            final Iterator<String> components, final ValueType value) {
+        if (!components.hasNext()) {
+            return node.values.remove(value);
+        }
+        final String component = components.next();
+        final TrieNode<ValueType> child = node.children.get(component);
+        if (child == null) {
+            return false;
+        }
+        final boolean removed = remove(child, components, value);
+        // prune branches without values
+        if (child.isUnused()) {
+            node.children.remove(component);
+        }
+        return removed;
+    }
+
+    /**
+     * Collects all values registered on a scope or one of its super-scopes.
+     *
+     * @param scope
+     *            the scope to look up
+     * @param result
+     *            collection to add the values to, starting with the values of
+     *            the root scope
+     */
+    public void collect(final Scope scope,
+            final Collection<? super ValueType> result) {
+        TrieNode<ValueType> node = this.root;
+        result.addAll(node.values);
+        for (final String component : scope.getComponents()) {
+            node = node.children.get(component);
+            if (node == null) {
+                return;
+            }
+            result.addAll(node.values);
+        }
+    }
+
+    /**
+     * Collects all values registered on a scope or one of its super-scopes.
+     * In contrast to {@link #collect(Scope, Collection)}, the scope is not
+     * validated and no {@link Scope} instance needs to be created. This is
+     * intended for scopes received from remote peers.
+     *
+     * @param scope
+     *            string representation of the scope to look up as returned by
+     *            {@link Scope#toString()}
+     * @param result
+     *            collection to add the values to, starting with the values of
+     *            the root scope
+     */
+    public void collect(final String scope,
+            final Collection<? super ValueType> result) {
+        TrieNode<ValueType> node = this.root;
+        result.addAll(node.values);
+        final char separator = Scope.COMPONENT_SEPARATOR.charAt(0);
+        int start = 1;
+        int end = scope.indexOf(separator, start);
+        while (end > start) {
+            node = node.children.get(scope.substring(start, end));
+            if (node == null) {
+                return;
+            }
+            result.addAll(node.values);
+            start = end + 1;
+            end = scope.indexOf(separator, start);
+        }
+    }
+
+    /**
+     * Indicates whether any values are registered.
+     *
+     * @return <code>true</code> if no values are registered
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+}
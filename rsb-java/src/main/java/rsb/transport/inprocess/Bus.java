@@ -29,11 +29,15 @@ package rsb.transport.inprocess;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
 
 import rsb.Event;
+import rsb.Scope;
 import rsb.transport.EventHandler;
 import rsb.util.os.HostInfo;
 import rsb.util.os.HostInfoSelector;
@@ -46,41 +50,154 @@ import rsb.util.os.ProcessInfoSelector;
  * synchronously dispatched to all registered {@link EventHandler}s, which
  * usually should be {@link InConnector} instances.
  *
+ * Handlers are indexed by the scope they are registered for. An event is only
+ * dispatched to the handlers of its scope and of all super-scopes. The index
+ * is an immutable snapshot which is replaced on every registration change.
+ * Hence, dispatching does not acquire any lock and concurrent pushes do not
+ * contend with each other.
+ *
+ * For asynchronous dispatching, the bus owns a single {@link RingDispatcher}
+ * which is shared by all connectors sending asynchronously. It is started
+ * with the first of these connectors and stopped with the last one.
+ *
  * @author jwienke
  */
-@SuppressWarnings("PMD.ShortClassName")
+// registration and both dispatching modes share the handler index
+@SuppressWarnings({ "PMD.ShortClassName", "PMD.TooManyMethods" })
 public class Bus {
 
-    private final Set<EventHandler> handlers = Collections
-            .synchronizedSet(new HashSet<EventHandler>());
+    private static final Logger LOG = Logger.getLogger(Bus.class.getName());
+
+    private static final String ROOT_SCOPE = Scope.COMPONENT_SEPARATOR;
+
+    /**
+     * Maps the string representation of scopes to the handlers registered on
+     * them. Neither the map nor the contained lists are modified after
+     * publication.
+     */
+    private volatile Map<String, List<EventHandler>> index = Collections
+            .emptyMap();
+
+    /**
+     * Guards {@link #dispatcher} and {@link #dispatcherUsers}. Separate from
+     * the monitor of this instance so that handlers may change registrations
+     * while the dispatcher is stopped.
+     */
+    private final Object dispatcherLock = new Object();
+    private volatile RingDispatcher dispatcher;
+    private int dispatcherUsers;
 
     private final HostInfo hostInfo = HostInfoSelector.getHostInfo();
     private final ProcessInfo processInfo =
             ProcessInfoSelector.getProcessInfo();
 
     /**
-     * Dispatch an event to all registered handlers.
+     * Dispatch an event to all handlers registered on the scope of the event
+     * or one of its super-scopes. All handlers receive the same frozen
+     * instance (see {@link #share(Event)}).
      *
      * @param event
      *            the event to dispatch
      */
     public void push(final Event event) {
-        event.getMetaData().setReceiveTime(0);
-        synchronized (this.handlers) {
-            for (final EventHandler handler : this.handlers) {
-                handler.handle(event);
+        dispatch(share(event), 0, 1);
+    }
+
+    /**
+     * Prepares an event for being shared by all receivers. Unless the event
+     * is already frozen, a frozen copy with the receive time set is created
+     * so that the sender may continue to modify its instance. The payload is
+     * not copied.
+     *
+     * @param event
+     *            the event to share
+     * @return frozen event
+     */
+    static Event share(final Event event) {
+        if (event.isFrozen()) {
+            return event;
+        }
+        final Event shared = new Event(event);
+        shared.getMetaData().setReceiveTime(0);
+        return shared.freeze();
+    }
+
+    /**
+     * Dispatches an event to one partition of the handlers registered on the
+     * scope of the event or one of its super-scopes. Handlers are assigned to
+     * partitions based on their identity.
+     *
+     * @param event
+     *            the event to dispatch
+     * @param partition
+     *            the partition to dispatch to
+     * @param partitions
+     *            total number of partitions
+     */
+    void dispatch(final Event event, final int partition,
+            final int partitions) {
+        final Map<String, List<EventHandler>> snapshot = this.index;
+        if (snapshot.isEmpty()) {
+            return;
+        }
+        // test the scope and all its super-scopes
+        final String scope = event.getScope().toString();
+        int end = scope.indexOf(Scope.COMPONENT_SEPARATOR);
+        while (end >= 0) {
+            final List<EventHandler> handlers =
+                    snapshot.get(scope.substring(0, end + 1));
+            if (handlers != null) {
+                for (final EventHandler handler : handlers) {
+                    if (partitions == 1
+                            || getPartition(handler, partitions) == partition) {
+                        handler.handle(event);
+                    }
+                }
             }
+            end = scope.indexOf(Scope.COMPONENT_SEPARATOR, end + 1);
         }
     }
 
+    private static int getPartition(final EventHandler handler,
+            final int partitions) {
+        return (System.identityHashCode(handler) & Integer.MAX_VALUE)
+                % partitions;
+    }
+
     /**
-     * Add a handler to receive new events.
+     * Add a handler to receive all new events.
      *
      * @param handler
      *            the handler
      */
     public void addHandler(final EventHandler handler) {
-        this.handlers.add(handler);
+        addHandler(new Scope(ROOT_SCOPE), handler);
+    }
+
+    /**
+     * Add a handler to receive new events on the given scope and its
+     * sub-scopes.
+     *
+     * @param scope
+     *            the scope to receive events for
+     * @param handler
+     *            the handler
+     */
+    public void addHandler(final Scope scope, final EventHandler handler) {
+        final String key = scope.toString();
+        synchronized (this) {
+            final List<EventHandler> existing = this.index.get(key);
+            final List<EventHandler> handlers;
+            if (existing == null) {
+                handlers = new ArrayList<EventHandler>();
+            } else if (existing.contains(handler)) {
+                return;
+            } else {
+                handlers = new ArrayList<EventHandler>(existing);
+            }
+            handlers.add(handler);
+            publish(key, handlers);
+        }
     }
 
     /**
@@ -91,7 +208,110 @@ public class Bus {
      *            the handler
      */
     public void removeHandler(final EventHandler handler) {
-        this.handlers.remove(handler);
+        removeHandler(new Scope(ROOT_SCOPE), handler);
+    }
+
+    /**
+     * Removes a handler registered for the given scope. Once removed, no new
+     * events will be received.
+     *
+     * @param scope
+     *            the scope the handler was registered for
+     * @param handler
+     *            the handler
+     */
+    public void removeHandler(final Scope scope, final EventHandler handler) {
+        final String key = scope.toString();
+        synchronized (this) {
+            final List<EventHandler> existing = this.index.get(key);
+            if (existing == null || !existing.contains(handler)) {
+                return;
+            }
+            final List<EventHandler> handlers =
+                    new ArrayList<EventHandler>(existing);
+            handlers.remove(handler);
+            publish(key, handlers);
+        }
+    }
+
+    /**
+     * Replaces the index snapshot with one containing the given handlers for a
+     * scope. Must be called while holding the monitor of this instance.
+     */
+    private void publish(final String key, final List<EventHandler> handlers) {
+        final Map<String, List<EventHandler>> updated =
+                new HashMap<String, List<EventHandler>>(this.index);
+        if (handlers.isEmpty()) {
+            updated.remove(key);
+        } else {
+            updated.put(key, Collections.unmodifiableList(handlers));
+        }
+        this.index = updated;
+    }
+
+    /**
+     * Registers the caller as one of the users of the asynchronous dispatcher
+     * of this bus. The dispatcher is created and started with the given
+     * options by the first user. Later users share it regardless of their
+     * options.
+     *
+     * @param options
+     *            options for creating the dispatcher
+     */
+    void acquireDispatcher(final InProcessOptions options) {
+        synchronized (this.dispatcherLock) {
+            if (this.dispatcher == null) {
+                this.dispatcher = new RingDispatcher(this, options);
+                this.dispatcher.start();
+            } else if (!this.dispatcher.getOptions().equals(options)) {
+                LOG.warning("Asynchronous dispatching of this bus is already "
+                        + "configured with " + this.dispatcher.getOptions()
+                        + ". Ignoring " + options + ".");
+            }
+            ++this.dispatcherUsers;
+        }
+    }
+
+    /**
+     * Publishes an event for asynchronous dispatching. Requires a prior call
+     * to {@link #acquireDispatcher(InProcessOptions)}.
+     *
+     * @param event
+     *            the event to dispatch
+     * @throws InterruptedException
+     *             interrupted while waiting for a free slot
+     * @throws IllegalStateException
+     *             the dispatcher is not running
+     */
+    void publish(final Event event) throws InterruptedException {
+        final RingDispatcher running = this.dispatcher;
+        if (running == null) {
+            throw new IllegalStateException("Dispatcher is stopped");
+        }
+        running.publish(event);
+    }
+
+    /**
+     * Unregisters a user of the asynchronous dispatcher acquired with
+     * {@link #acquireDispatcher(InProcessOptions)}. The last user stops the
+     * dispatcher, which waits until all events accepted by it have been
+     * dispatched.
+     *
+     * @throws InterruptedException
+     *             interrupted while waiting for the dispatcher to stop
+     */
+    void releaseDispatcher() throws InterruptedException {
+        final RingDispatcher stopped;
+        synchronized (this.dispatcherLock) {
+            assert this.dispatcherUsers > 0;
+            --this.dispatcherUsers;
+            if (this.dispatcherUsers > 0) {
+                return;
+            }
+            stopped = this.dispatcher;
+            this.dispatcher = null;
+        }
+        stopped.stop();
     }
 
     /**
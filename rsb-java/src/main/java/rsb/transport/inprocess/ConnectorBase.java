@@ -40,7 +40,7 @@ import rsb.transport.AbstractConnector;
 abstract class ConnectorBase extends AbstractConnector  {
 
     private final Bus bus;
-    private boolean active = false;
+    private volatile boolean active = false;
     private Scope scope = null;
 
     protected ConnectorBase(final Bus bus) {
@@ -104,9 +104,8 @@ abstract class ConnectorBase extends AbstractConnector  {
 
     @Override
     public boolean isActive() {
-        synchronized (this) {
-            return this.active;
-        }
+        // volatile read so that dispatching does not need to lock
+        return this.active;
     }
 
 }
@@ -28,9 +28,8 @@
 package rsb.transport.inprocess;
 
 import java.net.URI;
-import java.util.Collections;
-import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
 
 import rsb.Event;
 import rsb.RSBException;
@@ -47,8 +46,8 @@ import rsb.transport.EventHandler;
 public class InConnector extends ConnectorBase implements
         rsb.transport.InConnector, EventHandler {
 
-    private final Set<EventHandler> handlers = Collections
-            .synchronizedSet(new HashSet<EventHandler>());
+    private final Set<EventHandler> handlers =
+            new CopyOnWriteArraySet<EventHandler>();
 
     /**
      * Creates a new push based connector for receiving events from a given
@@ -63,8 +62,18 @@ public class InConnector extends ConnectorBase implements
 
     @Override
     public void activate() throws RSBException {
-        super.activate();
-        getBus().addHandler(this);
+        synchronized (this) {
+            super.activate();
+            getBus().addHandler(getScope(), this);
+        }
+    }
+
+    @Override
+    public void deactivate() throws RSBException, InterruptedException {
+        synchronized (this) {
+            super.deactivate();
+            getBus().removeHandler(getScope(), this);
+        }
     }
 
     @Override
@@ -80,23 +89,17 @@ public class InConnector extends ConnectorBase implements
     @Override
     public void handle(final Event event) {
 
-        synchronized (this) {
-
-            if (!isActive()) {
-                return;
-            }
-
-            if (!event.getScope().equals(getScope())
-                    && !event.getScope().isSubScopeOf(getScope())) {
-                return;
-            }
-
-            synchronized (this.handlers) {
-                for (final EventHandler handler : this.handlers) {
-                    handler.handle(event);
-                }
-            }
+        // the bus only dispatches events on the scope of this connector or its
+        // sub-scopes. No lock is taken so that concurrent senders do not
+        // contend on this connector.
+        if (!isActive()) {
+            return;
+        }
 
+        // each handler receives its own copy for per-delivery meta data. For
+        // frozen events, the copy shares all other contents.
+        for (final EventHandler handler : this.handlers) {
+            handler.handle(new Event(event));
         }
 
     }
@@ -29,6 +29,7 @@ package rsb.transport.inprocess;
 
 import java.util.HashSet;
 import java.util.Set;
+import java.util.logging.Logger;
 
 import rsb.InitializeException;
 import rsb.converter.ConverterSelectionStrategy;
@@ -40,34 +41,187 @@ import rsb.util.Properties;
 /**
  * A {@link TransportFactory} for the inprocess transport.
  *
+ * All connectors of a process share a single {@link Bus}. Its sharding is
+ * configured by the first connector. Later connectors with a different
+ * sharding configuration use the existing bus nevertheless, so that they
+ * still communicate with each other.
+ *
  * @author jwienke
  */
 public class InProcessFactory implements TransportFactory {
 
+    private static final Logger LOG = Logger.getLogger(InProcessFactory.class
+            .getName());
+
     private static final String SCHEMA = "inprocess";
 
-    private static Bus defaultBus = new Bus();
+    private static final String DISPATCH_KEY = "transport.inprocess.dispatch";
+    private static final String DISPATCH_SYNC = "sync";
+    private static final String DISPATCH_ASYNC = "async";
+    private static final String RING_SIZE_KEY = "transport.inprocess.ringsize";
+    private static final String CONSUMERS_KEY =
+            "transport.inprocess.consumers";
+    private static final String WAIT_STRATEGY_KEY =
+            "transport.inprocess.waitstrategy";
+    private static final String WAIT_BLOCKING = "blocking";
+    private static final String WAIT_SLEEPING = "sleeping";
+    private static final String WAIT_YIELDING = "yielding";
+    private static final String WAIT_BUSY_SPIN = "busy-spin";
+    private static final String SHARDS_KEY = "transport.inprocess.shards";
+    private static final String SHARD_DEPTH_KEY =
+            "transport.inprocess.sharddepth";
+
+    /**
+     * Guards {@link #bus} and {@link #busOptions}.
+     */
+    private static final Object BUS_LOCK = new Object();
+
+    private static Bus bus;
+
+    /**
+     * Options of the connector which created {@link #bus}.
+     */
+    private static InProcessOptions busOptions;
 
     @Override
     public ConnectorInfo getInfo() {
         final Set<String> schemas = new HashSet<String>();
         schemas.add(SCHEMA);
         final Set<String> options = new HashSet<String>();
+        options.add("dispatch");
+        options.add("ringsize");
+        options.add("consumers");
+        options.add("waitstrategy");
+        options.add("shards");
+        options.add("sharddepth");
         return new ConnectorInfo(SCHEMA, schemas, options, false);
     }
 
+    private InProcessOptions parseOptions(final Properties properties)
+            throws InitializeException {
+
+        final String dispatch =
+                properties.getProperty(DISPATCH_KEY, DISPATCH_SYNC).asString();
+        final boolean async;
+        if (DISPATCH_SYNC.equals(dispatch)) {
+            async = false;
+        } else if (DISPATCH_ASYNC.equals(dispatch)) {
+            async = true;
+        } else {
+            throw new InitializeException("Unsupported dispatch mode: "
+                    + dispatch);
+        }
+
+        final int ringSize =
+                properties.getProperty(RING_SIZE_KEY,
+                        InProcessOptions.DEFAULT_RING_SIZE).asInteger();
+        if (ringSize <= 0 || Integer.bitCount(ringSize) != 1) {
+            throw new InitializeException(
+                    "Ring size must be a power of two > 0");
+        }
+
+        final int consumers =
+                properties.getProperty(CONSUMERS_KEY, 1).asInteger();
+        if (consumers <= 0) {
+            throw new InitializeException(
+                    "Number of consumers must be a number > 0");
+        }
+
+        return parseSharding(new InProcessOptions().withAsyncDispatch(async)
+                .withRingSize(ringSize).withConsumers(consumers)
+                .withWaitStrategy(parseWaitStrategy(properties)), properties);
+
+    }
+
+    private InProcessOptions parseSharding(final InProcessOptions options,
+            final Properties properties) throws InitializeException {
+        final int shards = properties.getProperty(SHARDS_KEY, 1).asInteger();
+        if (shards <= 0) {
+            throw new InitializeException(
+                    "Number of shards must be a number > 0");
+        }
+        final int depth =
+                properties.getProperty(SHARD_DEPTH_KEY, 1).asInteger();
+        if (depth <= 0) {
+            throw new InitializeException(
+                    "Shard depth must be a number > 0");
+        }
+        return options.withShards(shards).withShardDepth(depth);
+    }
+
+    /**
+     * Returns the bus shared by all connectors of this process. The bus is
+     * created with the sharding options of the first caller.
+     */
+    private static Bus getBus(final InProcessOptions options) {
+        synchronized (BUS_LOCK) {
+            if (bus == null) {
+                if (options.getShards() == 1) {
+                    bus = new Bus();
+                } else {
+                    bus =
+                            new ShardedBus(options.getShards(),
+                                    options.getShardDepth());
+                }
+                busOptions = options;
+            } else if (!isSameSharding(busOptions, options)) {
+                LOG.warning("The inprocess bus is already configured with "
+                        + describeSharding(busOptions) + ". Ignoring "
+                        + describeSharding(options) + ".");
+            }
+            return bus;
+        }
+    }
+
+    private static String describeSharding(final InProcessOptions options) {
+        return options.getShards() + " shards of depth "
+                + options.getShardDepth();
+    }
+
+    private static boolean isSameSharding(final InProcessOptions first,
+            final InProcessOptions second) {
+        if (first.getShards() != second.getShards()) {
+            return false;
+        }
+        // the depth is irrelevant without sharding
+        return first.getShards() == 1
+                || first.getShardDepth() == second.getShardDepth();
+    }
+
+    private WaitStrategy parseWaitStrategy(final Properties properties)
+            throws InitializeException {
+        final String strategy =
+                properties.getProperty(WAIT_STRATEGY_KEY, WAIT_BLOCKING)
+                        .asString();
+        if (WAIT_BLOCKING.equals(strategy)) {
+            return WaitStrategy.BLOCKING;
+        } else if (WAIT_SLEEPING.equals(strategy)) {
+            return WaitStrategy.SLEEPING;
+        } else if (WAIT_YIELDING.equals(strategy)) {
+            return WaitStrategy.YIELDING;
+        } else if (WAIT_BUSY_SPIN.equals(strategy)) {
+            return WaitStrategy.BUSY_SPIN;
+        } else {
+            throw new InitializeException("Unsupported wait strategy: "
+                    + strategy);
+        }
+    }
+
     @Override
     public OutConnector createOutConnector(final Properties properties,
             final ConverterSelectionStrategy<?> converters)
             throws InitializeException {
-        return new rsb.transport.inprocess.OutConnector(defaultBus);
+        final InProcessOptions options = parseOptions(properties);
+        return new rsb.transport.inprocess.OutConnector(getBus(options),
+                options);
     }
 
     @Override
     public InConnector createInConnector(final Properties properties,
             final ConverterSelectionStrategy<?> converters)
             throws InitializeException {
-        return new rsb.transport.inprocess.InConnector(defaultBus);
+        return new rsb.transport.inprocess.InConnector(
+                getBus(parseOptions(properties)));
     }
 
 }
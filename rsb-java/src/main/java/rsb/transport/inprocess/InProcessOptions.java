@@ -0,0 +1,275 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.inprocess;
+
+/**
+ * A class representing the different options of the inprocess transport.
+ *
+ * @author jwienke
+ */
+public final class InProcessOptions {
+
+    /**
+     * Default number of slots of the ring buffer used for asynchronous
+     * dispatching.
+     */
+    public static final int DEFAULT_RING_SIZE = 1024;
+
+    private boolean asyncDispatch = false;
+    private int ringSize = DEFAULT_RING_SIZE;
+    private int consumers = 1;
+    private WaitStrategy waitStrategy = WaitStrategy.BLOCKING;
+    private int shards = 1;
+    private int shardDepth = 1;
+
+    /**
+     * Creates options for synchronous dispatching.
+     */
+    public InProcessOptions() {
+        // defaults are set in the declarations
+    }
+
+    /**
+     * Copy constructor used to derive modified instances.
+     *
+     * @param other
+     *            the instance to copy
+     */
+    private InProcessOptions(final InProcessOptions other) {
+        this.asyncDispatch = other.asyncDispatch;
+        this.ringSize = other.ringSize;
+        this.consumers = other.consumers;
+        this.waitStrategy = other.waitStrategy;
+        this.shards = other.shards;
+        this.shardDepth = other.shardDepth;
+    }
+
+    /**
+     * Indicates whether out connectors dispatch events asynchronously through
+     * a ring buffer instead of calling all receiving connectors in the thread
+     * of the sender.
+     *
+     * @return <code>true</code> for asynchronous dispatching
+     */
+    public boolean isAsyncDispatch() {
+        return this.asyncDispatch;
+    }
+
+    /**
+     * Returns a copy of these options with a different dispatching mode.
+     *
+     * @param asyncDispatch
+     *            <code>true</code> for asynchronous dispatching
+     * @return new options instance
+     */
+    public InProcessOptions withAsyncDispatch(final boolean asyncDispatch) {
+        final InProcessOptions copy = new InProcessOptions(this);
+        copy.asyncDispatch = asyncDispatch;
+        return copy;
+    }
+
+    /**
+     * Returns the number of preallocated slots of the ring buffer used for
+     * asynchronous dispatching. Senders are blocked once this many events
+     * are pending.
+     *
+     * @return number of slots, a power of two
+     */
+    public int getRingSize() {
+        return this.ringSize;
+    }
+
+    /**
+     * Returns a copy of these options with a different ring buffer size.
+     *
+     * @param ringSize
+     *            number of slots, must be a power of two
+     * @return new options instance
+     */
+    public InProcessOptions withRingSize(final int ringSize) {
+        assert ringSize > 0 && Integer.bitCount(ringSize) == 1;
+        final InProcessOptions copy = new InProcessOptions(this);
+        copy.ringSize = ringSize;
+        return copy;
+    }
+
+    /**
+     * Returns the number of threads consuming the ring buffer in asynchronous
+     * dispatching. The receiving connectors are partitioned among these
+     * threads so that each connector receives the events of a sender in
+     * order.
+     *
+     * @return number of consumer threads, at least one
+     */
+    public int getConsumers() {
+        return this.consumers;
+    }
+
+    /**
+     * Returns a copy of these options with a different number of consumer
+     * threads.
+     *
+     * @param consumers
+     *            number of consumer threads, at least one
+     * @return new options instance
+     */
+    public InProcessOptions withConsumers(final int consumers) {
+        assert consumers > 0;
+        final InProcessOptions copy = new InProcessOptions(this);
+        copy.consumers = consumers;
+        return copy;
+    }
+
+    /**
+     * Returns the strategy applied by consumers waiting for events and by
+     * senders waiting for free slots in asynchronous dispatching.
+     *
+     * @return the wait strategy
+     */
+    public WaitStrategy getWaitStrategy() {
+        return this.waitStrategy;
+    }
+
+    /**
+     * Returns a copy of these options with a different wait strategy.
+     *
+     * @param waitStrategy
+     *            the new strategy, not <code>null</code>
+     * @return new options instance
+     */
+    public InProcessOptions withWaitStrategy(final WaitStrategy waitStrategy) {
+        assert waitStrategy != null;
+        final InProcessOptions copy = new InProcessOptions(this);
+        copy.waitStrategy = waitStrategy;
+        return copy;
+    }
+
+    /**
+     * Returns the number of independent bus shards scopes are distributed
+     * onto. All participants communicating with each other need to use the
+     * same sharding options.
+     *
+     * @return number of shards, 1 for a single shared bus
+     * @see ShardedBus
+     */
+    public int getShards() {
+        return this.shards;
+    }
+
+    /**
+     * Returns a copy of these options with a different number of shards.
+     *
+     * @param shards
+     *            number of shards, at least one
+     * @return new options instance
+     */
+    public InProcessOptions withShards(final int shards) {
+        assert shards > 0;
+        final InProcessOptions copy = new InProcessOptions(this);
+        copy.shards = shards;
+        return copy;
+    }
+
+    /**
+     * Returns the number of leading scope components used for assigning
+     * scopes to shards.
+     *
+     * @return number of components, at least one
+     */
+    public int getShardDepth() {
+        return this.shardDepth;
+    }
+
+    /**
+     * Returns a copy of these options with a different number of scope
+     * components used for sharding.
+     *
+     * @param shardDepth
+     *            number of components, at least one
+     * @return new options instance
+     */
+    public InProcessOptions withShardDepth(final int shardDepth) {
+        assert shardDepth > 0;
+        final InProcessOptions copy = new InProcessOptions(this);
+        copy.shardDepth = shardDepth;
+        return copy;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+
+        if (!(obj instanceof InProcessOptions)) {
+            return false;
+        }
+
+        final InProcessOptions other = (InProcessOptions) obj;
+
+        return this.asyncDispatch == other.asyncDispatch
+                && this.ringSize == other.ringSize
+                && this.consumers == other.consumers
+                && this.waitStrategy == other.waitStrategy
+                && this.shards == other.shards
+                && this.shardDepth == other.shardDepth;
+
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 17;
+        int result = 1;
+        result =
+                prime * result + Boolean.valueOf(this.asyncDispatch).hashCode();
+        result = prime * result + this.ringSize;
+        result = prime * result + this.consumers;
+        result = prime * result + this.waitStrategy.hashCode();
+        result = prime * result + this.shards;
+        result = prime * result + this.shardDepth;
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder(100);
+        builder.append(getClass().getName());
+        builder.append("[asyncDispatch=");
+        builder.append(this.asyncDispatch);
+        builder.append(", ringSize=");
+        builder.append(this.ringSize);
+        builder.append(", consumers=");
+        builder.append(this.consumers);
+        builder.append(", waitStrategy=");
+        builder.append(this.waitStrategy);
+        builder.append(", shards=");
+        builder.append(this.shards);
+        builder.append(", shardDepth=");
+        builder.append(this.shardDepth);
+        builder.append(']');
+        return builder.toString();
+    }
+
+}
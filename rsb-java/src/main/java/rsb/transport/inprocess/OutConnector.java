@@ -36,11 +36,19 @@ import rsb.RSBException;
  * {@link rsb.transport.OutConnector} implementation for the inprocess
  * transport.
  *
+ * By default, events are dispatched to the receiving connectors in the
+ * thread of the sender. With {@link InProcessOptions#isAsyncDispatch()},
+ * events are handed over to the {@link RingDispatcher} of the bus instead.
+ * Sending then does not depend on the number of receivers.
+ *
  * @author jwienke
  */
 public class OutConnector extends ConnectorBase implements
         rsb.transport.OutConnector {
 
+    private final InProcessOptions options;
+    private volatile boolean dispatching = false;
+
     /**
      * Creates a new out connector operating on a given bus instance.
      *
@@ -48,18 +56,63 @@ public class OutConnector extends ConnectorBase implements
      *            the bus to use for sending events.
      */
     public OutConnector(final Bus bus) {
+        this(bus, new InProcessOptions());
+    }
+
+    /**
+     * Creates a new out connector operating on a given bus instance with the
+     * given options.
+     *
+     * @param bus
+     *            the bus to use for sending events.
+     * @param options
+     *            options for dispatching events
+     */
+    public OutConnector(final Bus bus, final InProcessOptions options) {
         super(bus);
+        this.options = options;
     }
 
     @Override
-    public void push(final Event event) throws RSBException {
+    public void activate() throws RSBException {
         synchronized (this) {
-            if (!isActive()) {
-                throw new IllegalStateException(
-                        "Connector needs to be active for sending events");
+            super.activate();
+            if (this.options.isAsyncDispatch()) {
+                getBus().acquireDispatcher(this.options);
+                this.dispatching = true;
             }
-            event.getMetaData().setSendTime(0);
+        }
+    }
+
+    @Override
+    public void deactivate() throws RSBException, InterruptedException {
+        synchronized (this) {
+            super.deactivate();
+            if (this.dispatching) {
+                this.dispatching = false;
+                getBus().releaseDispatcher();
+            }
+        }
+    }
+
+    @Override
+    public void push(final Event event) throws RSBException {
+        if (!isActive()) {
+            throw new IllegalStateException(
+                    "Connector needs to be active for sending events");
+        }
+        event.getMetaData().setSendTime(0);
+        if (!this.dispatching) {
             getBus().push(event);
+            return;
+        }
+        try {
+            getBus().publish(event);
+        } catch (final InterruptedException e) {
+            // restore interrupted state for outer thread
+            Thread.currentThread().interrupt();
+            throw new RSBException("Interrupted while waiting for a free slot "
+                    + "in the dispatching ring.", e);
         }
     }
 
@@ -0,0 +1,345 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.inprocess;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import rsb.Event;
+
+/**
+ * Dispatches events to a {@link Bus} asynchronously through a preallocated
+ * ring buffer. Senders claim a sequence number, store the event in the slot
+ * of this sequence and mark the slot as published. One or more consumer
+ * threads follow the published sequences and dispatch the events. Receiving
+ * handlers are partitioned among the consumers, so that each handler
+ * receives the events in the order of publication.
+ *
+ * Senders only wait in case the ring is full, i.e. the slowest consumer
+ * lags behind by the size of the ring. Waiting is performed according to
+ * the configured {@link WaitStrategy}. Sequences are only claimed once a slot
+ * is free, so that senders interrupted while waiting leave no gaps behind.
+ * Handlers publishing into a full ring from a consumer thread would wait for
+ * themselves. Their events are dispatched to all handlers on the calling
+ * thread instead. Such events may overtake events in the ring.
+ *
+ * Once stopping has begun, new publications are rejected. Publications which
+ * have already passed this check are still dispatched before the consumers
+ * terminate.
+ *
+ * @author jwienke
+ */
+class RingDispatcher {
+
+    private static final Logger LOG = Logger.getLogger(RingDispatcher.class
+            .getName());
+
+    private final Bus bus;
+    private final InProcessOptions options;
+    private final WaitStrategy waitStrategy;
+    private final Event[] slots;
+    private final int mask;
+
+    /**
+     * Highest sequence claimed by a sender.
+     */
+    private final AtomicLong claimed = new AtomicLong(-1);
+
+    /**
+     * The sequence which was last published in each slot.
+     */
+    private final AtomicLongArray published;
+
+    private final Consumer[] consumers;
+
+    /**
+     * Monitor used by waiting threads in case of
+     * {@link WaitStrategy#BLOCKING}.
+     */
+    private final Object lock = new Object();
+
+    /**
+     * Number of {@link #publish(Event)} calls which have passed the check for
+     * {@link #stopping}.
+     */
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private volatile boolean stopping = false;
+
+    /**
+     * Constructor.
+     *
+     * @param bus
+     *            the bus to dispatch to
+     * @param options
+     *            options defining the ring size, number of consumers and wait
+     *            strategy
+     */
+    RingDispatcher(final Bus bus, final InProcessOptions options) {
+        this.bus = bus;
+        this.options = options;
+        this.waitStrategy = options.getWaitStrategy();
+        this.slots = new Event[options.getRingSize()];
+        this.mask = options.getRingSize() - 1;
+        this.published = new AtomicLongArray(options.getRingSize());
+        for (int i = 0; i < this.slots.length; ++i) {
+            this.published.set(i, -1);
+        }
+        this.consumers = new Consumer[options.getConsumers()];
+        for (int i = 0; i < this.consumers.length; ++i) {
+            this.consumers[i] = new Consumer(i);
+        }
+    }
+
+    /**
+     * Returns the options this dispatcher was created with.
+     *
+     * @return options instance
+     */
+    public InProcessOptions getOptions() {
+        return this.options;
+    }
+
+    /**
+     * Starts the consumer threads.
+     */
+    public void start() {
+        for (final Consumer consumer : this.consumers) {
+            consumer.start();
+        }
+    }
+
+    /**
+     * Rejects further publications and waits until all accepted events have
+     * been dispatched and the consumer threads have terminated. In case this
+     * method is called by a handler on one of the consumer threads, it
+     * returns without waiting and the consumers terminate on their own once
+     * everything is dispatched.
+     *
+     * @throws InterruptedException
+     *             interrupted while waiting
+     */
+    public void stop() throws InterruptedException {
+        this.stopping = true;
+        this.waitStrategy.signal(this.lock);
+        if (isConsumerThread()) {
+            return;
+        }
+        for (final Consumer consumer : this.consumers) {
+            consumer.join();
+        }
+    }
+
+    /**
+     * Publishes an event for asynchronous dispatching. Blocks while the ring
+     * is full unless called on a consumer thread, in which case the event is
+     * dispatched synchronously. The sender may continue to modify the event
+     * afterwards (see {@link Bus#share(Event)}).
+     *
+     * @param event
+     *            the event to dispatch
+     * @throws InterruptedException
+     *             interrupted while waiting for a free slot
+     * @throws IllegalStateException
+     *             the dispatcher is stopping or stopped
+     */
+    public void publish(final Event event) throws InterruptedException {
+        final Event shared = Bus.share(event);
+        this.inFlight.incrementAndGet();
+        try {
+            if (this.stopping) {
+                throw new IllegalStateException("Dispatcher is stopped");
+            }
+            final long sequence = claim();
+            if (sequence < 0) {
+                this.bus.dispatch(shared, 0, 1);
+                return;
+            }
+            final int index = (int) sequence & this.mask;
+            this.slots[index] = shared;
+            this.published.set(index, sequence);
+        } finally {
+            this.inFlight.decrementAndGet();
+            this.waitStrategy.signal(this.lock);
+        }
+    }
+
+    /**
+     * Claims the next sequence as soon as its slot is free.
+     *
+     * @return the claimed sequence or -1 in case the ring is full and the
+     *         caller is a consumer thread
+     */
+    private long claim() throws InterruptedException {
+        final boolean consumerThread = isConsumerThread();
+        while (true) {
+            final long current = this.claimed.get();
+            // the slot is free once all consumers are past its previous use
+            final long previousUse = current + 1 - this.slots.length;
+            if (getMinimumConsumed() < previousUse) {
+                if (consumerThread) {
+                    return -1;
+                }
+                awaitConsumed(previousUse);
+            }
+            if (this.claimed.compareAndSet(current, current + 1)) {
+                return current + 1;
+            }
+        }
+    }
+
+    private boolean isConsumerThread() {
+        for (final Consumer consumer : this.consumers) {
+            if (consumer == Thread.currentThread()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tells whether consumers may terminate once they have dispatched all
+     * published events. Publications in flight have claimed sequences which
+     * are not yet published.
+     */
+    private boolean isDrained() {
+        return this.stopping && this.inFlight.get() == 0;
+    }
+
+    private boolean isPublished(final long sequence) {
+        return this.published.get((int) sequence & this.mask) == sequence;
+    }
+
+    private long getMinimumConsumed() {
+        long minimum = Long.MAX_VALUE;
+        for (final Consumer consumer : this.consumers) {
+            minimum = Math.min(minimum, consumer.consumed.get());
+        }
+        return minimum;
+    }
+
+    private void awaitConsumed(final long sequence)
+            throws InterruptedException {
+        if (getMinimumConsumed() >= sequence) {
+            return;
+        }
+        final WaitStrategy.Condition condition = new WaitStrategy.Condition() {
+
+            @Override
+            public boolean isSatisfied() {
+                return getMinimumConsumed() >= sequence;
+            }
+
+        };
+        int attempt = 0;
+        while (!condition.isSatisfied()) {
+            this.waitStrategy.await(this.lock, condition, attempt++);
+        }
+    }
+
+    /**
+     * Thread following the published sequences and dispatching the events to
+     * one partition of the handlers of the bus.
+     */
+    private class Consumer extends Thread implements WaitStrategy.Condition {
+
+        private final int partition;
+
+        /**
+         * Highest sequence dispatched by this consumer.
+         */
+        private final AtomicLong consumed = new AtomicLong(-1);
+
+        Consumer(final int partition) {
+            super("RSB inprocess dispatcher " + partition);
+            this.partition = partition;
+            setDaemon(true);
+        }
+
+        @Override
+        public boolean isSatisfied() {
+            return isPublished(this.consumed.get() + 1) || isDrained();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    int attempt = 0;
+                    while (!isSatisfied()) {
+                        RingDispatcher.this.waitStrategy.await(
+                                RingDispatcher.this.lock, this, attempt++);
+                    }
+                    // check for termination before inspecting the slot so
+                    // that no publication is missed
+                    final boolean drained = isDrained();
+                    final long next = this.consumed.get() + 1;
+                    if (!isPublished(next)) {
+                        if (drained) {
+                            // stopped and everything dispatched
+                            return;
+                        }
+                        // woken up by a rejected publication
+                        continue;
+                    }
+                    long available = next;
+                    while (isPublished(available + 1)) {
+                        ++available;
+                    }
+                    for (long sequence = next; sequence <= available;
+                            ++sequence) {
+                        dispatch(RingDispatcher.this.slots[(int) sequence
+                                & RingDispatcher.this.mask]);
+                    }
+                    this.consumed.set(available);
+                    RingDispatcher.this.waitStrategy
+                            .signal(RingDispatcher.this.lock);
+                }
+            } catch (final InterruptedException e) {
+                LOG.log(Level.FINE, "Dispatcher interrupted. Terminating.", e);
+            }
+        }
+
+        // we need to shield against user code terminating the consumer thread
+        @SuppressWarnings("PMD.AvoidCatchingGenericException")
+        private void dispatch(final Event event) {
+            try {
+                RingDispatcher.this.bus.dispatch(event, this.partition,
+                        RingDispatcher.this.consumers.length);
+            } catch (final RuntimeException e) {
+                LOG.log(Level.WARNING, "Error while dispatching event "
+                        + event + ". Ignoring this.", e);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,163 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.inprocess;
+
+import rsb.Event;
+import rsb.Scope;
+import rsb.transport.EventHandler;
+
+/**
+ * A {@link Bus} which distributes scopes onto several independent shards.
+ * Each shard is a {@link Bus} on its own so that unrelated scopes do not
+ * share any dispatching structures.
+ *
+ * Scopes are assigned to shards by hashing their first components. Handlers
+ * registered on scopes with at least this number of components only receive
+ * events from a single shard and are registered there. Handlers registered
+ * on shorter scopes, e.g. the root scope, may receive events from all shards
+ * and are hence registered on every shard. Events are only dispatched by the
+ * shard of their scope. Therefore, delivery is the same as with a single
+ * bus.
+ *
+ * For asynchronous dispatching, each shard owns its own {@link RingDispatcher}
+ * so that unrelated scopes are dispatched by different consumer threads.
+ * Handlers registered on every shard may hence receive events of different
+ * shards concurrently and in a different order than they were sent.
+ *
+ * @author jwienke
+ */
+public class ShardedBus extends Bus {
+
+    private final Bus[] shards;
+    private final int depth;
+
+    /**
+     * Constructor.
+     *
+     * @param shards
+     *            number of shards, at least one
+     * @param depth
+     *            number of leading scope components used for assigning scopes
+     *            to shards, at least one
+     */
+    public ShardedBus(final int shards, final int depth) {
+        super();
+        assert shards > 0;
+        assert depth > 0;
+        this.shards = new Bus[shards];
+        for (int i = 0; i < shards; ++i) {
+            this.shards[i] = new Bus();
+        }
+        this.depth = depth;
+    }
+
+    /**
+     * Returns the number of shards.
+     *
+     * @return number of shards
+     */
+    public int getShardCount() {
+        return this.shards.length;
+    }
+
+    /**
+     * Returns the index of the shard dispatching events of the given scope.
+     *
+     * @param scope
+     *            the scope
+     * @return index of the shard
+     */
+    public int getShardIndex(final Scope scope) {
+        final String string = scope.toString();
+        // find the end of the last component used for sharding
+        int end = 0;
+        for (int i = 0; i < this.depth && end >= 0; ++i) {
+            end = string.indexOf(Scope.COMPONENT_SEPARATOR, end + 1);
+        }
+        final String key;
+        if (end < 0) {
+            key = string;
+        } else {
+            key = string.substring(0, end + 1);
+        }
+        return (key.hashCode() & Integer.MAX_VALUE) % this.shards.length;
+    }
+
+    private boolean isSharded(final Scope scope) {
+        return scope.getComponents().size() >= this.depth;
+    }
+
+    @Override
+    void dispatch(final Event event, final int partition,
+            final int partitions) {
+        this.shards[getShardIndex(event.getScope())].dispatch(event,
+                partition, partitions);
+    }
+
+    @Override
+    void acquireDispatcher(final InProcessOptions options) {
+        for (final Bus shard : this.shards) {
+            shard.acquireDispatcher(options);
+        }
+    }
+
+    @Override
+    void releaseDispatcher() throws InterruptedException {
+        for (final Bus shard : this.shards) {
+            shard.releaseDispatcher();
+        }
+    }
+
+    @Override
+    void publish(final Event event) throws InterruptedException {
+        this.shards[getShardIndex(event.getScope())].publish(event);
+    }
+
+    @Override
+    public void addHandler(final Scope scope, final EventHandler handler) {
+        if (isSharded(scope)) {
+            this.shards[getShardIndex(scope)].addHandler(scope, handler);
+        } else {
+            for (final Bus shard : this.shards) {
+                shard.addHandler(scope, handler);
+            }
+        }
+    }
+
+    @Override
+    public void removeHandler(final Scope scope, final EventHandler handler) {
+        if (isSharded(scope)) {
+            this.shards[getShardIndex(scope)].removeHandler(scope, handler);
+        } else {
+            for (final Bus shard : this.shards) {
+                shard.removeHandler(scope, handler);
+            }
+        }
+    }
+
+}
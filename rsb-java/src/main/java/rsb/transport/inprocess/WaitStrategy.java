@@ -0,0 +1,163 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.inprocess;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Strategies applied by the threads of an asynchronous inprocess dispatcher
+ * while they wait for progress, i.e. consumers waiting for new events and
+ * publishers waiting for free slots in the ring buffer. The strategies trade
+ * CPU usage against latency.
+ *
+ * @author jwienke
+ */
+public enum WaitStrategy {
+
+    /**
+     * Waiting threads are suspended on a monitor and woken up on progress.
+     * Lowest CPU usage but highest latency. Every publication signals the
+     * monitor.
+     */
+    BLOCKING {
+
+        @Override
+        void await(final Object lock, final Condition condition,
+                final int attempt) throws InterruptedException {
+            synchronized (lock) {
+                if (!condition.isSatisfied()) {
+                    lock.wait();
+                }
+            }
+        }
+
+        @Override
+        void signal(final Object lock) {
+            synchronized (lock) {
+                lock.notifyAll();
+            }
+        }
+
+    },
+
+    /**
+     * Waiting threads first spin, then yield and finally sleep for short
+     * periods. A compromise between latency and CPU usage without signaling
+     * costs for publishers.
+     */
+    SLEEPING {
+
+        @Override
+        void await(final Object lock, final Condition condition,
+                final int attempt) {
+            if (attempt > YIELD_ATTEMPTS) {
+                LockSupport.parkNanos(SLEEP_NANOS);
+            } else if (attempt > SPIN_ATTEMPTS) {
+                Thread.yield();
+            }
+        }
+
+    },
+
+    /**
+     * Waiting threads spin shortly and then yield the processor. Low latency
+     * while occupying a core per waiting thread as long as no other threads
+     * need it.
+     */
+    YIELDING {
+
+        @Override
+        void await(final Object lock, final Condition condition,
+                final int attempt) {
+            if (attempt > SPIN_ATTEMPTS) {
+                Thread.yield();
+            }
+        }
+
+    },
+
+    /**
+     * Waiting threads spin continuously. Lowest latency, but each waiting
+     * thread permanently occupies a core.
+     */
+    BUSY_SPIN {
+
+        @Override
+        void await(final Object lock, final Condition condition,
+                final int attempt) {
+            // spin
+        }
+
+    };
+
+    private static final int SPIN_ATTEMPTS = 100;
+    private static final int YIELD_ATTEMPTS = 200;
+    private static final long SLEEP_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    /**
+     * Condition a thread waits for.
+     */
+    interface Condition {
+
+        /**
+         * Tells whether the waiting thread can continue.
+         *
+         * @return <code>true</code> if waiting is not necessary anymore
+         */
+        boolean isSatisfied();
+
+    }
+
+    /**
+     * Waits once for the condition to become satisfied. Callers need to
+     * check the condition again after this method returned.
+     *
+     * @param lock
+     *            monitor used for signaling progress
+     * @param condition
+     *            the condition waited for
+     * @param attempt
+     *            number of previous unsuccessful attempts
+     * @throws InterruptedException
+     *             interrupted while waiting
+     */
+    abstract void await(Object lock, Condition condition, int attempt)
+            throws InterruptedException;
+
+    /**
+     * Signals progress to waiting threads.
+     *
+     * @param lock
+     *            monitor used for signaling progress
+     */
+    void signal(final Object lock) {
+        // only required for strategies which suspend threads
+    }
+
+}
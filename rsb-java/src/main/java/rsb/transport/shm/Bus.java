@@ -0,0 +1,203 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.shm;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import rsb.RSBException;
+import rsb.protocol.NotificationType.Notification;
+import rsb.transport.NotificationBus;
+import rsb.util.os.HostInfo;
+import rsb.util.os.HostInfoSelector;
+
+
+/**
+ * A bus backed by a {@link RingBuffer} in a shared memory file. All
+ * participants on the same host using the same file communicate with each
+ * other. Each process
+ * needs only a single instance per file, which is shared by all connectors.
+ *
+ * Activations are counted and the ring is only unmapped when the last
+ * activation is undone. A reader thread polls the ring as long as
+ * {@link NotificationReceiver}s are registered. Notifications published by
+ * this process are received through the ring like all other notifications.
+ *
+ * @author jwienke
+ */
+@SuppressWarnings("PMD.ShortClassName")
+public class Bus implements NotificationBus {
+
+    private static final Logger LOG = Logger.getLogger(Bus.class.getName());
+
+    private static final String NOT_ACTIVE = "Bus is not active";
+
+    private final File path;
+    private final int capacity;
+    private final HostInfo hostInfo = HostInfoSelector.getHostInfo();
+    private final Set<NotificationReceiver> receivers =
+            new CopyOnWriteArraySet<NotificationReceiver>();
+
+    private volatile RingBuffer ring;
+    private int activations;
+    private RingReader reader;
+
+    /**
+     * Creates a new bus using the given file.
+     *
+     * @param path
+     *            the file containing the ring
+     * @param capacity
+     *            capacity of the ring in case the file does not contain one so
+     *            far
+     */
+    public Bus(final File path, final int capacity) {
+        this.path = path;
+        this.capacity = capacity;
+    }
+
+    @Override
+    public void activate() throws RSBException {
+        synchronized (this) {
+            if (this.activations == 0) {
+                try {
+                    this.ring = RingBuffer.open(this.path, this.capacity);
+                } catch (final IOException e) {
+                    throw new RSBException("Unable to map shared memory ring "
+                            + this.path, e);
+                }
+                LOG.log(Level.FINE, "Mapped ring {0} with capacity {1}",
+                        new Object[] { this.path, this.ring.getCapacity() });
+            }
+            ++this.activations;
+        }
+    }
+
+    @Override
+    public void deactivate() throws RSBException, InterruptedException {
+        synchronized (this) {
+            if (this.activations == 0) {
+                throw new IllegalStateException(NOT_ACTIVE);
+            }
+            --this.activations;
+            if (this.activations > 0) {
+                return;
+            }
+            stopReader();
+            try {
+                this.ring.close();
+            } catch (final IOException e) {
+                throw new RSBException("Unable to close shared memory ring "
+                        + this.path, e);
+            } finally {
+                this.ring = null;
+            }
+        }
+    }
+
+    @Override
+    public void publish(final Notification notification) throws RSBException {
+        final RingBuffer currentRing = this.ring;
+        if (currentRing == null) {
+            throw new IllegalStateException(NOT_ACTIVE);
+        }
+        final int size = notification.getSerializedSize();
+        if (size > currentRing.getMaxLength()) {
+            throw new RSBException("Notification of " + size
+                    + " bytes exceeds the maximum of "
+                    + currentRing.getMaxLength()
+                    + " bytes supported by the shared memory ring "
+                    + this.path);
+        }
+        try {
+            currentRing.publish(notification.toByteArray());
+        } catch (final IOException e) {
+            throw new RSBException("Unable to publish to shared memory ring "
+                    + this.path, e);
+        }
+    }
+
+    @Override
+    public void addReceiver(final NotificationReceiver receiver) {
+        synchronized (this) {
+            if (this.activations == 0) {
+                throw new IllegalStateException(NOT_ACTIVE);
+            }
+            this.receivers.add(receiver);
+            if (this.reader == null) {
+                this.reader =
+                        new RingReader(this.ring.newCursor(), this.path,
+                                this.receivers);
+                this.reader.start();
+            }
+        }
+    }
+
+    @Override
+    public void removeReceiver(final NotificationReceiver receiver)
+            throws InterruptedException {
+        synchronized (this) {
+            this.receivers.remove(receiver);
+            if (this.receivers.isEmpty()) {
+                stopReader();
+            }
+        }
+    }
+
+    private void stopReader() throws InterruptedException {
+        if (this.reader != null) {
+            this.reader.shutdown();
+            // receivers may remove themselves from within the reader thread
+            if (!this.reader.equals(Thread.currentThread())) {
+                this.reader.join();
+            }
+            this.reader = null;
+        }
+    }
+
+    @Override
+    public URI getTransportUri() {
+        try {
+            // conflicting RFCs for URIs and valid host names
+            final String hostname =
+                    this.hostInfo.getHostName().replace("_", "");
+            return new URI("shm", null, hostname, -1,
+                    this.path.getAbsolutePath(), null, null);
+        } catch (final URISyntaxException e) {
+            throw new IllegalStateException(
+                    "Unable to create a URI for ring " + this.path, e);
+        }
+    }
+
+}
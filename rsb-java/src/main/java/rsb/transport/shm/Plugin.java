@@ -0,0 +1,51 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+
+package rsb.transport.shm;
+
+import rsb.plugin.LoadingException;
+import rsb.transport.TransportRegistry;
+
+/**
+ * Plugin implementation for the shared memory transport.
+ *
+ * @author jwienke
+ */
+public class Plugin implements rsb.plugin.Plugin {
+
+    @Override
+    public void initialize() throws LoadingException {
+        try {
+            TransportRegistry.getDefaultInstance().registerTransport("shm",
+                    new ShmFactory());
+        } catch (final IllegalArgumentException e) {
+            throw new LoadingException(e);
+        }
+    }
+
+}
@@ -0,0 +1,430 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.shm;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.FileLock;
+
+/**
+ * A multi-producer, multi-consumer broadcast ring buffer in a memory-mapped
+ * file. Every consumer sees every record published after it started reading.
+ * Producers of different processes are serialized with a lock on the file
+ * header. Consumers do not take any lock and never slow down producers.
+ * Instead, a consumer which falls behind by more than the capacity of the ring
+ * detects that records were overwritten and skips them.
+ *
+ * Layout of the file: a header of {@link #HEADER_SIZE} bytes followed by the
+ * data region of {@link #getCapacity()} bytes. The header contains a magic
+ * number, the version and capacity of the ring and two positions. The tail is
+ * the position after the last completely written record. The intent is the
+ * position a producer is currently writing up to. Positions grow
+ * monotonically and are mapped into the data region modulo the capacity.
+ *
+ * Each record consists of a {@link #RECORD_HEADER_SIZE} bytes header with the
+ * position of the record, the length and the type of the record followed by
+ * the data. Records are aligned to {@link #ALIGNMENT} bytes and never wrap
+ * around the end of the data region. Instead, the remaining bytes are skipped
+ * and marked with a padding record if they can hold a record header.
+ *
+ * @author jwienke
+ */
+// layout constants and accessors of the mapped file belong together
+@SuppressWarnings("PMD.TooManyMethods")
+final class RingBuffer implements Closeable {
+
+    /**
+     * Size of the file header in bytes.
+     */
+    public static final int HEADER_SIZE = 64;
+
+    /**
+     * Size of the header of each record.
+     */
+    public static final int RECORD_HEADER_SIZE = 16;
+
+    /**
+     * Alignment of records in the data region.
+     */
+    public static final int ALIGNMENT = 8;
+
+    /**
+     * Smallest supported capacity.
+     */
+    public static final int MIN_CAPACITY = 4096;
+
+    /**
+     * Largest supported capacity. The whole file is mapped at once.
+     */
+    public static final int MAX_CAPACITY = 1024 * 1024 * 1024;
+
+    private static final int MAGIC = 0x52534252;
+    private static final int VERSION = 1;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int TAIL_OFFSET = 16;
+    private static final int INTENT_OFFSET = 24;
+
+    private static final int STAMP_OFFSET = 0;
+    private static final int LENGTH_OFFSET = 8;
+    private static final int TYPE_OFFSET = 12;
+
+    private static final int TYPE_DATA = 1;
+    private static final int TYPE_PADDING = 2;
+
+    /**
+     * Written by {@link #fullFence()}. The value is irrelevant.
+     */
+    // only written to obtain the memory barrier of volatile writes
+    @SuppressWarnings("PMD.UnusedPrivateField")
+    private static volatile int fence;
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    private final ByteBuffer writeView;
+    private final int capacity;
+    private final int mask;
+
+    private RingBuffer(final RandomAccessFile file, final MappedByteBuffer buffer,
+            final int capacity) {
+        this.file = file;
+        this.buffer = buffer;
+        this.writeView = buffer.duplicate();
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Maps the ring in the given file. If the file does not exist or is empty,
+     * a new ring with the requested capacity is created. Otherwise, the
+     * existing ring is used with its capacity.
+     *
+     * @param path
+     *            the file containing the ring
+     * @param capacity
+     *            capacity of the data region for new rings. Must be a power of
+     *            two between {@link #MIN_CAPACITY} and {@link #MAX_CAPACITY}.
+     * @return the mapped ring
+     * @throws IOException
+     *             unable to map the file or the file does not contain a
+     *             compatible ring
+     */
+    public static RingBuffer open(final File path, final int capacity)
+            throws IOException {
+        if (!isValidCapacity(capacity)) {
+            throw new IllegalArgumentException("Invalid ring capacity "
+                    + capacity);
+        }
+        final RandomAccessFile file = new RandomAccessFile(path, "rw");
+        boolean mapped = false;
+        try {
+            final FileChannel channel = file.getChannel();
+            final FileLock lock = channel.lock(0, HEADER_SIZE, false);
+            try {
+                final int actualCapacity;
+                if (channel.size() == 0) {
+                    actualCapacity = capacity;
+                    file.setLength(HEADER_SIZE + (long) actualCapacity);
+                } else {
+                    actualCapacity = readCapacity(channel, path);
+                }
+                final MappedByteBuffer buffer =
+                        channel.map(MapMode.READ_WRITE, 0, HEADER_SIZE
+                                + actualCapacity);
+                buffer.order(ByteOrder.nativeOrder());
+                if (buffer.getInt(MAGIC_OFFSET) != MAGIC) {
+                    buffer.putInt(VERSION_OFFSET, VERSION);
+                    buffer.putLong(CAPACITY_OFFSET, actualCapacity);
+                    buffer.putLong(TAIL_OFFSET, 0);
+                    buffer.putLong(INTENT_OFFSET, 0);
+                    buffer.putInt(MAGIC_OFFSET, MAGIC);
+                }
+                mapped = true;
+                return new RingBuffer(file, buffer, actualCapacity);
+            } finally {
+                lock.release();
+            }
+        } finally {
+            if (!mapped) {
+                file.close();
+            }
+        }
+    }
+
+    /**
+     * Checks whether a capacity can be used for a ring.
+     *
+     * @param capacity
+     *            the capacity to check
+     * @return <code>true</code> if a ring with this capacity can be created
+     */
+    public static boolean isValidCapacity(final long capacity) {
+        return capacity >= MIN_CAPACITY && capacity <= MAX_CAPACITY
+                && (capacity & (capacity - 1)) == 0;
+    }
+
+    private static int readCapacity(final FileChannel channel,
+            final File path) throws IOException {
+        final MappedByteBuffer header =
+                channel.map(MapMode.READ_ONLY, 0, HEADER_SIZE);
+        header.order(ByteOrder.nativeOrder());
+        if (header.getInt(MAGIC_OFFSET) != MAGIC
+                || header.getInt(VERSION_OFFSET) != VERSION) {
+            throw new IOException("File " + path
+                    + " does not contain a compatible ring buffer");
+        }
+        final long capacity = header.getLong(CAPACITY_OFFSET);
+        if (!isValidCapacity(capacity)
+                || channel.size() < HEADER_SIZE + capacity) {
+            throw new IOException("RingBuffer buffer in " + path
+                    + " has an invalid capacity of " + capacity);
+        }
+        return (int) capacity;
+    }
+
+    /**
+     * Returns the capacity of the data region in bytes.
+     *
+     * @return capacity
+     */
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Returns the largest record which can be published.
+     *
+     * @return maximum length of data in bytes
+     */
+    public int getMaxLength() {
+        return this.capacity / 2 - RECORD_HEADER_SIZE;
+    }
+
+    /**
+     * Appends a record to the ring. Callers in the same process must not call
+     * this method concurrently on different instances mapping the same file.
+     *
+     * @param data
+     *            the data of the record. At most {@link #getMaxLength()} bytes.
+     * @throws IOException
+     *             error locking the ring against other processes
+     */
+    public void publish(final byte[] data) throws IOException {
+        if (data.length > getMaxLength()) {
+            throw new IllegalArgumentException("Record of " + data.length
+                    + " bytes exceeds the maximum of " + getMaxLength());
+        }
+        synchronized (this) {
+            final FileLock lock =
+                    this.file.getChannel().lock(0, HEADER_SIZE, false);
+            try {
+                append(data);
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    private void append(final byte[] data) {
+        final long tail = this.buffer.getLong(TAIL_OFFSET);
+        final int size = align(RECORD_HEADER_SIZE + data.length);
+        final int remaining = this.capacity - index(tail);
+        long position = tail;
+        if (size > remaining) {
+            position += remaining;
+        }
+        final long newTail = position + size;
+
+        this.buffer.putLong(INTENT_OFFSET, newTail);
+        fullFence();
+
+        if (position != tail && remaining >= RECORD_HEADER_SIZE) {
+            putRecordHeader(tail, remaining - RECORD_HEADER_SIZE,
+                    TYPE_PADDING);
+        }
+        putRecordHeader(position, data.length, TYPE_DATA);
+        final int dataIndex = HEADER_SIZE + index(position)
+                + RECORD_HEADER_SIZE;
+        this.writeView.position(dataIndex);
+        this.writeView.put(data);
+
+        fullFence();
+        this.buffer.putLong(TAIL_OFFSET, newTail);
+    }
+
+    private void putRecordHeader(final long position, final int length,
+            final int type) {
+        final int record = HEADER_SIZE + index(position);
+        this.buffer.putLong(record + STAMP_OFFSET, position);
+        this.buffer.putInt(record + LENGTH_OFFSET, length);
+        this.buffer.putInt(record + TYPE_OFFSET, type);
+    }
+
+    /**
+     * Creates a new cursor which reads all records published from now on.
+     *
+     * @return new cursor
+     */
+    public Cursor newCursor() {
+        return new Cursor(readTail());
+    }
+
+    private long readTail() {
+        final long tail = this.buffer.getLong(TAIL_OFFSET);
+        fullFence();
+        return tail;
+    }
+
+    private long readIntent() {
+        fullFence();
+        return this.buffer.getLong(INTENT_OFFSET);
+    }
+
+    /**
+     * Prevents the reordering of accesses to the mapped memory across this
+     * call. Without internal APIs, writing a volatile field is the only way to
+     * get a full fence, which the JVM emits for such writes.
+     */
+    private static void fullFence() {
+        fence = 0;
+    }
+
+    private int index(final long position) {
+        return (int) (position & this.mask);
+    }
+
+    private static int align(final int size) {
+        return (size + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.file.close();
+    }
+
+    /**
+     * Reads records from a {@link RingBuffer}. Each instance must only be used by a
+     * single thread.
+     *
+     * @author jwienke
+     */
+    public class Cursor {
+
+        private final ByteBuffer readView = RingBuffer.this.buffer.duplicate();
+        private long position;
+        private long overruns;
+
+        Cursor(final long position) {
+            this.position = position;
+        }
+
+        /**
+         * Returns the number of times records were overwritten before this
+         * cursor could read them.
+         *
+         * @return number of overruns
+         */
+        public long getOverruns() {
+            return this.overruns;
+        }
+
+        /**
+         * Returns the next record if one is available.
+         *
+         * @return buffer wrapping a copy of the record data or
+         *         <code>null</code> if no new record is available
+         */
+        public ByteBuffer poll() {
+            long tail = readTail();
+            while (this.position != tail) {
+                final ByteBuffer data = readRecord(tail);
+                if (data != null) {
+                    return data;
+                }
+                tail = readTail();
+            }
+            return null;
+        }
+
+        /**
+         * Reads the record at the current position and advances the position.
+         *
+         * @return the data or <code>null</code> if no data record was found
+         */
+        private ByteBuffer readRecord(final long tail) {
+            if (tail - this.position > RingBuffer.this.capacity) {
+                skipTo(tail);
+                return null;
+            }
+            final int remaining = RingBuffer.this.capacity - index(this.position);
+            if (remaining < RECORD_HEADER_SIZE) {
+                this.position += remaining;
+                return null;
+            }
+            final int record = HEADER_SIZE + index(this.position);
+            final long stamp = RingBuffer.this.buffer.getLong(record + STAMP_OFFSET);
+            final int length = RingBuffer.this.buffer.getInt(record + LENGTH_OFFSET);
+            if (stamp != this.position || length < 0
+                    || length > remaining - RECORD_HEADER_SIZE) {
+                skipTo(tail);
+                return null;
+            }
+            if (RingBuffer.this.buffer.getInt(record + TYPE_OFFSET) != TYPE_DATA) {
+                this.position += remaining;
+                return null;
+            }
+            final byte[] data = new byte[length];
+            this.readView.position(record + RECORD_HEADER_SIZE);
+            this.readView.get(data);
+            // a producer might have started to overwrite the record while it
+            // was copied
+            if (readIntent() - RingBuffer.this.capacity > this.position) {
+                skipTo(readTail());
+                return null;
+            }
+            this.position += align(RECORD_HEADER_SIZE + length);
+            return ByteBuffer.wrap(data);
+        }
+
+        private void skipTo(final long tail) {
+            ++this.overruns;
+            this.position = tail;
+        }
+
+    }
+
+}
@@ -0,0 +1,174 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.shm;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import rsb.protocol.NotificationType.Notification;
+import rsb.transport.NotificationBus.NotificationReceiver;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+/**
+ * Thread polling a {@link RingBuffer.Cursor} and dispatching the contained
+ * notifications. While idle, the thread first yields for a few polls to
+ * catch bursts with low latency and then parks between polls. The park time
+ * doubles with every empty poll up to {@link #MAX_IDLE_PARK_NANOS} so that an
+ * idle ring costs a few hundred wakeups per second instead of tens of
+ * thousands.
+ *
+ * @author jwienke
+ */
+class RingReader extends Thread {
+
+    /**
+     * Longest time an idle reader parks between two polls and hence the upper
+     * bound for the latency added to the first notification after a quiet
+     * period.
+     */
+    static final long MAX_IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+    private static final Logger LOG = Logger.getLogger(RingReader.class
+            .getName());
+
+    private static final int SPIN_POLLS = 100;
+    private static final long MIN_IDLE_PARK_NANOS = TimeUnit.MICROSECONDS
+            .toNanos(50);
+    // 50us doubled six times exceeds MAX_IDLE_PARK_NANOS
+    private static final int MAX_DOUBLINGS = 6;
+
+    private final RingBuffer.Cursor cursor;
+    private final File path;
+    private final Iterable<NotificationReceiver> receivers;
+    private volatile boolean running = true;
+
+    /**
+     * Constructor.
+     *
+     * @param cursor
+     *            the cursor to poll
+     * @param path
+     *            file of the ring, used for naming and logging
+     * @param receivers
+     *            the receivers to dispatch to. Must be safe for iteration
+     *            while being modified.
+     */
+    RingReader(final RingBuffer.Cursor cursor, final File path,
+            final Iterable<NotificationReceiver> receivers) {
+        super("RSB shm reader " + path);
+        this.cursor = cursor;
+        this.path = path;
+        this.receivers = receivers;
+        setDaemon(true);
+    }
+
+    /**
+     * Requests the thread to terminate.
+     */
+    public void shutdown() {
+        this.running = false;
+        interrupt();
+    }
+
+    @Override
+    public void run() {
+        int idlePolls = 0;
+        long overruns = 0;
+        while (this.running) {
+            final ByteBuffer data = this.cursor.poll();
+            if (data == null) {
+                // bounded to prevent an overflow on long-idle rings
+                idlePolls = Math.min(idlePolls + 1, SPIN_POLLS + MAX_DOUBLINGS);
+                idle(idlePolls);
+                continue;
+            }
+            idlePolls = 0;
+            if (this.cursor.getOverruns() != overruns) {
+                overruns = this.cursor.getOverruns();
+                LOG.log(Level.WARNING,
+                        "Reader of ring {0} was overrun, notifications "
+                                + "were lost ({1} overruns so far)",
+                        new Object[] { this.path, overruns });
+            }
+            dispatch(data);
+        }
+    }
+
+    private void idle(final int idlePolls) {
+        final long parkNanos = idleParkNanos(idlePolls);
+        if (parkNanos == 0) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(parkNanos);
+        }
+    }
+
+    /**
+     * Computes how long to park after the given number of consecutive empty
+     * polls.
+     *
+     * @param idlePolls
+     *            number of consecutive empty polls, at least 1
+     * @return park time in nanoseconds, 0 to yield instead of parking
+     */
+    static long idleParkNanos(final int idlePolls) {
+        if (idlePolls < SPIN_POLLS) {
+            return 0;
+        }
+        final int doublings = Math.min(idlePolls - SPIN_POLLS, MAX_DOUBLINGS);
+        return Math.min(MIN_IDLE_PARK_NANOS << doublings, MAX_IDLE_PARK_NANOS);
+    }
+
+    // we need to shield against user code terminating the reader thread
+    @SuppressWarnings("PMD.AvoidCatchingGenericException")
+    private void dispatch(final ByteBuffer data) {
+        try {
+            final CodedInputStream input = CodedInputStream.newInstance(data);
+            // the record is not reused, let the payload refer to it
+            input.enableAliasing(true);
+            final Notification notification = Notification.parseFrom(input);
+            for (final NotificationReceiver receiver : this.receivers) {
+                receiver.handle(notification);
+            }
+        } catch (final InvalidProtocolBufferException e) {
+            LOG.log(Level.WARNING, "Ignoring undecodable record in ring "
+                    + this.path, e);
+        } catch (final IOException | RuntimeException e) {
+            LOG.log(Level.WARNING, "Error while dispatching notification "
+                    + "from ring " + this.path + ". Ignoring this.", e);
+        }
+    }
+
+}
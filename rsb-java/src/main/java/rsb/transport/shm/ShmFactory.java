@@ -0,0 +1,129 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.shm;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import rsb.InitializeException;
+import rsb.converter.ConverterSelectionStrategy;
+import rsb.transport.InConnector;
+import rsb.transport.NotificationBusInConnector;
+import rsb.transport.NotificationBusOutConnector;
+import rsb.transport.OutConnector;
+import rsb.transport.TransportFactory;
+import rsb.util.Properties;
+
+/**
+ * A {@link TransportFactory} for the shared memory transport. All connectors
+ * of a process using the same ring file share one {@link Bus} instance.
+ *
+ * @author jwienke
+ */
+public class ShmFactory implements TransportFactory {
+
+    private static final String SCHEMA = "shm";
+
+    private static final String PATH_KEY = "transport.shm.path";
+    private static final String CAPACITY_KEY = "transport.shm.capacity";
+    private static final int DEFAULT_CAPACITY = 16 * 1024 * 1024;
+    private static final String RING_NAME = "rsb-default";
+    private static final File SHM_DIRECTORY = new File("/dev/shm");
+
+    private static final Map<File, Bus> BUSES = new HashMap<File, Bus>();
+
+    @Override
+    public ConnectorInfo getInfo() {
+        final Set<String> schemas = new HashSet<String>();
+        schemas.add(SCHEMA);
+        final Set<String> options = new HashSet<String>();
+        options.add("path");
+        options.add("capacity");
+        return new ConnectorInfo(SCHEMA, schemas, options, false);
+    }
+
+    private static File defaultPath() {
+        if (SHM_DIRECTORY.isDirectory()) {
+            return new File(SHM_DIRECTORY, RING_NAME);
+        }
+        return new File(System.getProperty("java.io.tmpdir"), RING_NAME);
+    }
+
+    private static Bus getBus(final Properties properties)
+            throws InitializeException {
+
+        final File path;
+        if (properties.hasProperty(PATH_KEY)) {
+            path = new File(properties.getProperty(PATH_KEY).asString())
+                    .getAbsoluteFile();
+        } else {
+            path = defaultPath();
+        }
+        final int capacity =
+                properties.getProperty(CAPACITY_KEY, DEFAULT_CAPACITY)
+                        .asInteger();
+        if (!RingBuffer.isValidCapacity(capacity)) {
+            throw new InitializeException("Ring capacity must be a power of "
+                    + "two between " + RingBuffer.MIN_CAPACITY + " and "
+                    + RingBuffer.MAX_CAPACITY);
+        }
+
+        synchronized (BUSES) {
+            Bus bus = BUSES.get(path);
+            if (bus == null) {
+                bus = new Bus(path, capacity);
+                BUSES.put(path, bus);
+            }
+            return bus;
+        }
+
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public OutConnector createOutConnector(final Properties properties,
+            final ConverterSelectionStrategy<?> converters)
+            throws InitializeException {
+        return new NotificationBusOutConnector(getBus(properties),
+                (ConverterSelectionStrategy<ByteBuffer>) converters);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public InConnector createInConnector(final Properties properties,
+            final ConverterSelectionStrategy<?> converters)
+            throws InitializeException {
+        return new NotificationBusInConnector(getBus(properties),
+                (ConverterSelectionStrategy<ByteBuffer>) converters);
+    }
+
+}
@@ -0,0 +1,63 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.socket;
+
+import java.io.IOException;
+
+import rsb.protocol.NotificationType.Notification;
+
+/**
+ * A {@link BusConnection} which is read from by a dedicated thread that
+ * blocks until data is available. Connections which are read from
+ * asynchronously, e.g. through a selector, only implement
+ * {@link BusConnection}.
+ *
+ * @author jwienke
+ */
+public interface BlockingBusConnection extends BusConnection {
+
+    /**
+     * Reads a frame from the connection. Blocks if necessary. The contained
+     * notification is not decoded by this method.
+     *
+     * @return the read frame
+     * @throws IOException
+     *             communication error
+     */
+    Frame readFrame() throws IOException;
+
+    /**
+     * Reads a notification from the connection. Blocks if necessary.
+     *
+     * @return the read notification
+     * @throws IOException
+     *             communication error
+     */
+    Notification readNotification() throws IOException;
+
+}
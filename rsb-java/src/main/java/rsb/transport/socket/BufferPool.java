@@ -0,0 +1,200 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.socket;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A thread-safe pool of {@link ByteBuffer}s which are reused for encoding and
+ * receiving frames in order to reduce allocations and garbage collection.
+ *
+ * Buffers are organized in size classes of powers of two between a minimum
+ * and a maximum size. Requests are served with a buffer of the smallest
+ * sufficient class. For each class, the pool retains at most as many idle
+ * buffers as fit into a configurable number of bytes, but at least one.
+ * Requests for buffers larger than the maximum size are served with new
+ * buffers which are not retained on release.
+ *
+ * @author jwienke
+ */
+public class BufferPool {
+
+    private final boolean direct;
+    private final int minShift;
+    private final int maxSize;
+    private final SizeClass[] classes;
+
+    /**
+     * Idle buffers of a single size.
+     *
+     * @author jwienke
+     */
+    private static class SizeClass {
+
+        private final int bufferSize;
+        private final int capacity;
+        private final Queue<ByteBuffer> buffers =
+                new ConcurrentLinkedQueue<ByteBuffer>();
+        private final AtomicInteger available = new AtomicInteger();
+
+        SizeClass(final int bufferSize, final int capacity) {
+            this.bufferSize = bufferSize;
+            this.capacity = capacity;
+        }
+
+    }
+
+    /**
+     * Creates a new pool.
+     *
+     * @param direct
+     *            if <code>true</code>, direct buffers are pooled, else heap
+     *            buffers
+     * @param minSize
+     *            size of the smallest class in bytes. Rounded up to a power of
+     *            two.
+     * @param maxSize
+     *            size of the largest class in bytes. Rounded up to a power of
+     *            two.
+     * @param classBytes
+     *            number of bytes retained at most per size class
+     */
+    public BufferPool(final boolean direct, final int minSize,
+            final int maxSize, final long classBytes) {
+        assert minSize > 0;
+        assert minSize <= maxSize;
+        this.direct = direct;
+        this.minShift = shift(minSize);
+        final int maxShift = shift(maxSize);
+        this.maxSize = 1 << maxShift;
+        this.classes = new SizeClass[maxShift - this.minShift + 1];
+        for (int i = 0; i < this.classes.length; ++i) {
+            final int bufferSize = 1 << (this.minShift + i);
+            this.classes[i] =
+                    new SizeClass(bufferSize, (int) Math.max(1, classBytes
+                            / bufferSize));
+        }
+    }
+
+    /**
+     * Returns the exponent of the smallest power of two which is at least the
+     * given size.
+     */
+    private static int shift(final int size) {
+        return Integer.SIZE - Integer.numberOfLeadingZeros(size - 1);
+    }
+
+    private ByteBuffer allocate(final int size) {
+        if (this.direct) {
+            return ByteBuffer.allocateDirect(size);
+        }
+        return ByteBuffer.allocate(size);
+    }
+
+    private SizeClass sizeClassOf(final int size) {
+        final int index = shift(Math.max(1, size)) - this.minShift;
+        return this.classes[Math.max(0, index)];
+    }
+
+    /**
+     * Returns a cleared buffer with its limit set to the requested size. The
+     * buffer is taken from the pool if possible.
+     *
+     * @param size
+     *            required number of bytes
+     * @return buffer positioned at 0 with at least the requested capacity
+     */
+    public ByteBuffer acquire(final int size) {
+        if (size > this.maxSize) {
+            return allocate(size);
+        }
+        final SizeClass sizeClass = sizeClassOf(size);
+        ByteBuffer buffer = sizeClass.buffers.poll();
+        if (buffer == null) {
+            buffer = allocate(sizeClass.bufferSize);
+        } else {
+            sizeClass.available.decrementAndGet();
+            buffer.clear();
+            buffer.order(ByteOrder.BIG_ENDIAN);
+        }
+        buffer.limit(size);
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer to the pool. The buffer must not be used by the caller
+     * afterwards. Buffers not acquired from this pool and buffers exceeding
+     * the capacity of their class are left to the garbage collector.
+     *
+     * @param buffer
+     *            the buffer to return
+     */
+    public void release(final ByteBuffer buffer) {
+        final int capacity = buffer.capacity();
+        if (buffer.isDirect() != this.direct || capacity > this.maxSize
+                || capacity == 0) {
+            return;
+        }
+        final SizeClass sizeClass = sizeClassOf(capacity);
+        if (sizeClass.bufferSize != capacity) {
+            return;
+        }
+        if (sizeClass.available.incrementAndGet() > sizeClass.capacity) {
+            sizeClass.available.decrementAndGet();
+            return;
+        }
+        sizeClass.buffers.offer(buffer);
+    }
+
+    /**
+     * Returns the size of the largest pooled buffers.
+     *
+     * @return size in bytes
+     */
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * Returns the number of idle buffers currently retained by the pool.
+     *
+     * @return number of buffers
+     */
+    public int getAvailable() {
+        int available = 0;
+        for (final SizeClass sizeClass : this.classes) {
+            available += sizeClass.available.get();
+        }
+        return available;
+    }
+
+}
@@ -28,9 +28,13 @@
 package rsb.transport.socket;
 
 import java.net.URI;
+import java.nio.ByteBuffer;
 
 import rsb.Activatable;
+import rsb.Event;
 import rsb.RSBException;
+import rsb.Scope;
+import rsb.converter.ConverterSelectionStrategy;
 import rsb.protocol.NotificationType.Notification;
 
 /**
@@ -61,6 +65,37 @@ public interface Bus extends Activatable {
 
     }
 
+    /**
+     * A {@link NotificationReceiver} which is interested in the decoded
+     * events instead of the raw notifications. A bus decodes each
+     * notification only once for all receivers with equal converter
+     * configurations. Each receiver gets its own {@link Event} instance.
+     * However, the data object of these events is shared and must not be
+     * modified.
+     *
+     * @author jwienke
+     */
+    interface EventReceiver extends NotificationReceiver {
+
+        /**
+         * Returns the converters to decode notifications for this receiver.
+         * The returned instance must not change while the receiver is
+         * registered.
+         *
+         * @return converter configuration
+         */
+        ConverterSelectionStrategy<ByteBuffer> getConverters();
+
+        /**
+         * Callback method with the decoded event.
+         *
+         * @param event
+         *            the new event
+         */
+        void handle(Event event);
+
+    }
+
     /**
      * Returns the current socket configuration of the bus.
      *
@@ -68,6 +103,15 @@ public interface Bus extends Activatable {
      */
     SocketOptions getSocketOptions();
 
+    /**
+     * Returns the counters for the actions taken by the
+     * {@link SlowConsumerPolicy} of all connections of this bus, including
+     * connections which have already been closed.
+     *
+     * @return new instance with a snapshot of the counters
+     */
+    SlowConsumerStatistics getSlowConsumerStatistics();
+
     /**
      * Handles a notification to be sent over the bus.
      *
@@ -83,13 +127,53 @@ public interface Bus extends Activatable {
     void handleOutgoing(Notification notification) throws RSBException;
 
     /**
-     * Registers a local observer for notifications.
+     * Handles an event to be sent over the bus.
+     *
+     * Local {@link EventReceiver}s get copies of the event without
+     * serializing the payload. The notification for remote participants and
+     * plain {@link NotificationReceiver}s is only created if such recipients
+     * exist. Hence, the data object of the event is shared with local
+     * receivers and must not be modified after sending.
+     *
+     * @param event
+     *            the event to distribute
+     * @param converters
+     *            converters to use for serializing the payload if required
+     * @param unreliable
+     *            <code>true</code> if the event was sent by an informer with
+     *            unreliable delivery. Such notifications are marked so that
+     *            connections to slow remote peers may drop them (see
+     *            {@link SlowConsumerPolicy#DROP_UNRELIABLE}).
+     * @throws RSBException
+     *             error during dispatching, e.g. no converter available for
+     *             the payload
+     */
+    void handleOutgoing(Event event,
+            ConverterSelectionStrategy<ByteBuffer> converters,
+            boolean unreliable) throws RSBException;
+
+    /**
+     * Registers a local observer for notifications. The receiver is
+     * interested in all notifications on the bus.
      *
      * @param receiver
      *            the receiver to register
      */
     void addNotificationReceiver(NotificationReceiver receiver);
 
+    /**
+     * Registers a local observer which is only interested in notifications on
+     * the given scope and its sub-scopes. The receiver is only called for
+     * notifications on these scopes. Implementations may use this information
+     * to avoid receiving other notifications from remote peers.
+     *
+     * @param receiver
+     *            the receiver to register
+     * @param scope
+     *            the scope the receiver is interested in
+     */
+    void addNotificationReceiver(NotificationReceiver receiver, Scope scope);
+
     /**
      * Removes a local observer for notifications if registered before.
      *
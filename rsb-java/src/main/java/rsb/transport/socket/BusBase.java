@@ -32,17 +32,30 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import rsb.Event;
 import rsb.RSBException;
 import rsb.AbstractActivatable;
+import rsb.Scope;
+import rsb.converter.ConversionException;
+import rsb.converter.Converter;
+import rsb.converter.ConverterSelectionStrategy;
+import rsb.converter.NoSuchConverterException;
 import rsb.protocol.NotificationType.Notification;
+import rsb.protocol.ProtocolConversion;
+import rsb.transport.ScopeTrie;
+
+import com.google.protobuf.InvalidProtocolBufferException;
 
 /**
  * A utility base class for the implementation of the {@link Bus} interface.
@@ -60,7 +73,7 @@ import rsb.protocol.NotificationType.Notification;
  * @author jwienke
  */
 // false positive: methods of ReceiveThread are counted as well
-@SuppressWarnings("PMD.TooManyMethods")
+@SuppressWarnings({ "PMD.TooManyMethods", "PMD.GodClass" })
 public abstract class BusBase extends AbstractActivatable
                               implements Bus {
 
@@ -70,25 +83,49 @@ public abstract class BusBase extends AbstractActivatable
     private final SocketOptions options;
     private final Map<BusConnection, ReceiveThread> connections = Collections
             .synchronizedMap(new HashMap<BusConnection, ReceiveThread>());
-    private final Set<NotificationReceiver> receivers = Collections
-            .synchronizedSet(new HashSet<NotificationReceiver>());
+    /**
+     * Index of the registered receivers used for dispatching. Lookups do not
+     * block registration and removal of receivers.
+     */
+    private final ScopeTrie<NotificationReceiver> receiverIndex =
+            new ScopeTrie<NotificationReceiver>();
+    private final Map<NotificationReceiver, Scope> receivers =
+            new HashMap<NotificationReceiver, Scope>();
+    private final SharedEventDecoder decoder = new SharedEventDecoder();
 
     /**
-     * A thread that continuously reads from a {@link BusConnection} and passes
-     * the received {@link Notification}s to
-     * {@link BusBase#handleIncoming(rsb.protocol.NotificationType.Notification)}
-     * .
+     * Counters of connections which have been removed, guarded by
+     * {@link #connections}.
+     */
+    private final SlowConsumerStatistics removedStatistics =
+            new SlowConsumerStatistics();
+
+    /**
+     * Guards changes to {@link #receivers}, {@link #receiverIndex}, and
+     * {@link #subscriptions} as well as the calls to the subscription hooks.
+     */
+    private final Object subscriptionSynchronizer = new Object();
+    private final Map<Scope, Integer> subscriptions =
+            new HashMap<Scope, Integer>();
+
+    /**
+     * A thread that continuously reads from a {@link BlockingBusConnection}
+     * and passes the received {@link Frame}s to
+     * {@link BusBase#handleIncoming(Frame, BusConnection)}. Depending on
+     * {@link SocketOptions#getThreadMode()}, the loop runs on a platform or on
+     * a virtual thread.
      *
      * @author jwienke
      */
-    protected class ReceiveThread extends Thread {
+    protected class ReceiveThread implements Runnable {
 
         // no chance to make this logger final in a not final member class
         @SuppressWarnings("PMD.LoggerIsNotStaticFinal")
         private final Logger logger = Logger.getLogger(ReceiveThread.class
                 .getName());
 
-        private final BusConnection connection;
+        private final BlockingBusConnection connection;
+        private final Thread thread;
 
         /**
          * Constructs a new instance operating on the specified connection
@@ -97,8 +134,53 @@ public abstract class BusBase extends AbstractActivatable
          * @param connection
          *            the connection to read from
          */
-        public ReceiveThread(final BusConnection connection) {
+        public ReceiveThread(final BlockingBusConnection connection) {
             this.connection = connection;
+            this.thread = SocketThreads.newThread(getSocketOptions(), this);
+        }
+
+        /**
+         * Starts reading from the connection.
+         */
+        public void start() {
+            this.thread.start();
+        }
+
+        /**
+         * Interrupts the underlying thread.
+         */
+        public void interrupt() {
+            this.thread.interrupt();
+        }
+
+        /**
+         * Waits for the underlying thread to terminate.
+         *
+         * @param millis
+         *            maximum time to wait in milliseconds, 0 to wait forever
+         * @throws InterruptedException
+         *             interrupted while waiting
+         */
+        public void join(final long millis) throws InterruptedException {
+            this.thread.join(millis);
+        }
+
+        /**
+         * Indicates whether the underlying thread is still running.
+         *
+         * @return <code>true</code> if alive
+         */
+        public boolean isAlive() {
+            return this.thread.isAlive();
+        }
+
+        /**
+         * Indicates whether the calling thread is the underlying thread.
+         *
+         * @return <code>true</code> if called from the receiving loop
+         */
+        public boolean isCurrentThread() {
+            return Thread.currentThread().equals(this.thread);
         }
 
         /**
@@ -112,9 +194,12 @@ public abstract class BusBase extends AbstractActivatable
             try {
 
                 this.logger.finer("Waiting for a new notification.");
-                final Notification notification =
-                        this.connection.readNotification();
-                handleIncoming(notification, this.connection);
+                final Frame frame = this.connection.readFrame();
+                try {
+                    handleIncoming(frame, this.connection);
+                } finally {
+                    frame.release();
+                }
                 return true;
 
             } catch (final EOFException e) {
@@ -227,6 +312,18 @@ public abstract class BusBase extends AbstractActivatable
         return this.options;
     }
 
+    @Override
+    public SlowConsumerStatistics getSlowConsumerStatistics() {
+        final SlowConsumerStatistics statistics = new SlowConsumerStatistics();
+        synchronized (this.connections) {
+            statistics.add(this.removedStatistics);
+            for (final BusConnection con : this.connections.keySet()) {
+                statistics.add(con.getSlowConsumerStatistics());
+            }
+        }
+        return statistics;
+    }
+
     @Override
     @SuppressWarnings("PMD.AvoidInstantiatingObjectsInLoops")
     public void deactivate() throws RSBException, InterruptedException {
@@ -335,9 +432,95 @@ public abstract class BusBase extends AbstractActivatable
         handleIncoming(notification, null);
     }
 
+    /**
+     * Handles a frame received from a connection. The default implementation
+     * decodes the contained notification and passes it to
+     * {@link #handleIncoming(rsb.protocol.NotificationType.Notification, BusConnection)}
+     * . Implementations can override this method to avoid decoding frames,
+     * e.g. by using {@link #handleLocally(Frame)} and
+     * {@link #handleGlobally(Frame, BusConnection)}.
+     *
+     * @param frame
+     *            the received frame
+     * @param sourceConnection
+     *            the source {@link BusConnection} providing this frame
+     * @throws RSBException
+     *             processing error
+     */
+    public void handleIncoming(final Frame frame,
+            final BusConnection sourceConnection) throws RSBException {
+        handleIncoming(decode(frame), sourceConnection);
+    }
+
+    /**
+     * Decodes the notification contained in a frame.
+     *
+     * @param frame
+     *            the frame to decode
+     * @return the contained notification
+     * @throws RSBException
+     *             the frame does not contain a valid notification
+     */
+    protected static Notification decode(final Frame frame)
+            throws RSBException {
+        try {
+            return frame.getNotification();
+        } catch (final InvalidProtocolBufferException e) {
+            throw invalidFrame(e);
+        }
+    }
+
+    private static RSBException invalidFrame(
+            final InvalidProtocolBufferException cause) {
+        return new RSBException("Received frame does not contain a valid "
+                + "notification.", cause);
+    }
+
+    /**
+     * Dispatches the notification contained in a frame to all registered
+     * {@link rsb.transport.socket.Bus.NotificationReceiver}s interested in its
+     * scope. The notification is only decoded if there are such receivers.
+     *
+     * @param frame
+     *            the frame to dispatch
+     * @throws RSBException
+     *             exception during dispatching
+     */
+    protected void handleLocally(final Frame frame) throws RSBException {
+        if (this.receiverIndex.isEmpty()) {
+            LOG.finer("No local NotificationReceivers. Not decoding frame.");
+            return;
+        }
+        final List<NotificationReceiver> matching =
+                new ArrayList<NotificationReceiver>();
+        try {
+            this.receiverIndex.collect(frame.getScope(), matching);
+        } catch (final InvalidProtocolBufferException e) {
+            throw invalidFrame(e);
+        }
+        if (matching.isEmpty()) {
+            LOG.finer("No interested NotificationReceivers. "
+                    + "Not decoding frame.");
+            return;
+        }
+        if (this.decoder.decodesAll(matching)) {
+            // receivers only keep decoded events. Hence, the notification may
+            // reference the memory of the frame.
+            try {
+                dispatch(frame.getTransientNotification(), matching);
+            } catch (final InvalidProtocolBufferException e) {
+                throw invalidFrame(e);
+            }
+        } else {
+            dispatch(decode(frame), matching);
+        }
+    }
+
     /**
      * Dispatches the specified notifications to all registered
-     * {@link rsb.transport.socket.Bus.NotificationReceiver}s.
+     * {@link rsb.transport.socket.Bus.NotificationReceiver}s interested in its
+     * scope. The notification is decoded only once for all
+     * {@link rsb.transport.socket.Bus.EventReceiver}s with equal converters.
      *
      * @param notification
      *            the notification to dispatch
@@ -346,15 +529,18 @@ public abstract class BusBase extends AbstractActivatable
      */
     protected void handleLocally(final Notification notification)
             throws RSBException {
-        LOG.fine("Dispatching notification to local NotificationReceivers.");
-
-        // TODO terrible synchronization. Blocks too long
-        synchronized (this.receivers) {
-            for (final NotificationReceiver receiver : this.receivers) {
-                receiver.handle(notification);
-            }
-        }
+        final List<NotificationReceiver> matching =
+                new ArrayList<NotificationReceiver>();
+        this.receiverIndex.collect(notification.getScope().toStringUtf8(),
+                matching);
+        dispatch(notification, matching);
+    }
 
+    private void dispatch(final Notification notification,
+            final List<NotificationReceiver> matching) {
+        LOG.log(Level.FINE, "Dispatching notification to {0} local "
+                + "NotificationReceivers.", matching.size());
+        this.decoder.dispatch(notification, matching);
     }
 
     /**
@@ -369,10 +555,33 @@ public abstract class BusBase extends AbstractActivatable
      * @throws RSBException
      *             error during dispatching
      */
-    @SuppressWarnings("PMD.AvoidInstantiatingObjectsInLoops")
     protected void handleGlobally(final Notification notification,
             final BusConnection ignoreConnection) throws RSBException {
-        LOG.fine("Dispatching notification to bus connections");
+        // encode only once for all connections
+        final Frame frame = Frame.encode(notification);
+        try {
+            handleGlobally(frame, ignoreConnection);
+        } finally {
+            frame.release();
+        }
+    }
+
+    /**
+     * Sends an encoded frame to registered connections.
+     *
+     * @param frame
+     *            frame to dispatch
+     * @param ignoreConnection
+     *            for dispatching, ignore this connection and do not pass the
+     *            frame to this instance. Might be <code>null</code> if this
+     *            filtering is not required.
+     * @throws RSBException
+     *             error during dispatching
+     */
+    @SuppressWarnings("PMD.AvoidInstantiatingObjectsInLoops")
+    protected void handleGlobally(final Frame frame,
+            final BusConnection ignoreConnection) throws RSBException {
+        LOG.fine("Dispatching frame to bus connections");
 
         // makes an atomic copy of the available connections to prevent blocking
         HashSet<BusConnection> connectionCopy;
@@ -381,11 +590,11 @@ public abstract class BusBase extends AbstractActivatable
                     new HashSet<BusConnection>(this.connections.keySet());
         }
         for (final BusConnection con : connectionCopy) {
-            if (con.equals(ignoreConnection)) {
+            if (con.equals(ignoreConnection) || !isForwardedTo(con, frame)) {
                 continue;
             }
             try {
-                con.sendNotification(notification);
+                con.sendFrame(frame);
             } catch (final IOException e) {
                 LOG.log(Level.WARNING,
                         "Unable to send notification on connection " + con
@@ -398,6 +607,43 @@ public abstract class BusBase extends AbstractActivatable
 
     }
 
+    /**
+     * Sends a control notification to a single connection. Errors are only
+     * logged as the receiving logic of the connection will notice and handle
+     * broken connections.
+     *
+     * @param connection
+     *            the connection to send on
+     * @param frame
+     *            the control notification, e.g. created with
+     *            {@link ControlMessages}
+     */
+    protected void sendControl(final BusConnection connection,
+            final Frame frame) {
+        try {
+            connection.sendFrame(frame);
+        } catch (final IOException e) {
+            LOG.log(Level.WARNING, "Unable to send control notification on "
+                    + "connection " + connection, e);
+        }
+    }
+
+    /**
+     * Decides whether a frame dispatched by
+     * {@link #handleGlobally(Frame, BusConnection)} is sent to a connection.
+     * The default implementation sends all frames to all connections.
+     *
+     * @param connection
+     *            the candidate connection
+     * @param frame
+     *            the frame to dispatch
+     * @return <code>true</code> if the frame shall be sent on the connection
+     */
+    protected boolean isForwardedTo(final BusConnection connection,
+            final Frame frame) {
+        return true;
+    }
+
     /**
      * Dispatches the notification to registered connections.
      *
@@ -418,6 +664,62 @@ public abstract class BusBase extends AbstractActivatable
         handleGlobally(notification);
     }
 
+    @Override
+    public void handleOutgoing(final Event event,
+            final ConverterSelectionStrategy<ByteBuffer> converters,
+            final boolean unreliable) throws RSBException {
+        final List<NotificationReceiver> matching =
+                new ArrayList<NotificationReceiver>();
+        this.receiverIndex.collect(event.getScope().toString(), matching);
+        final String wireSchema =
+                getConverter(event, converters).getSignature().getSchema();
+        // receivers must get the same data they would get by decoding a
+        // notification and must not be able to modify it for each other
+        if (!SharedEventDecoder.isShareable(event.getData())
+                || !this.decoder.decodesAllAs(matching, wireSchema,
+                        event.getType())) {
+            final Notification notification =
+                    toNotification(event, converters, unreliable);
+            dispatch(notification, matching);
+            handleGlobally(notification);
+            return;
+        }
+
+        // serialize for remote participants before the local delivery so
+        // that conversion errors prevent any delivery
+        Notification notification = null;
+        if (!this.connections.isEmpty()) {
+            notification = toNotification(event, converters, unreliable);
+        }
+        LOG.log(Level.FINE, "Dispatching event to {0} local EventReceivers "
+                + "without serialization.", matching.size());
+        this.decoder.dispatch(event, matching);
+        if (notification != null) {
+            handleGlobally(notification);
+        }
+    }
+
+    private static Notification toNotification(final Event event,
+            final ConverterSelectionStrategy<ByteBuffer> converters,
+            final boolean unreliable) throws ConversionException {
+        final Notification notification =
+                ProtocolConversion.toNotification(event, converters);
+        if (unreliable) {
+            return Frame.markUnreliable(notification);
+        }
+        return notification;
+    }
+
+    private static Converter<ByteBuffer> getConverter(final Event event,
+            final ConverterSelectionStrategy<ByteBuffer> converters)
+            throws ConversionException {
+        try {
+            return converters.getConverter(event.getType().getName());
+        } catch (final NoSuchConverterException e) {
+            throw new ConversionException(e);
+        }
+    }
+
     /**
      * Registers a connection for the dispatching logic in
      * {@link #handleGlobally(rsb.protocol.NotificationType.Notification)} and
@@ -430,16 +732,13 @@ public abstract class BusBase extends AbstractActivatable
      * @param con
      *            the connection to register
      * @return receiver thread for the added connection. Should be started using
-     *         {@link Thread#start()} at an appropriate time.
+     *         {@link ReceiveThread#start()} at an appropriate time.
      */
-    protected ReceiveThread addConnection(final BusConnection con) {
+    protected ReceiveThread addConnection(final BlockingBusConnection con) {
         LOG.log(Level.FINE, "Adding a new BusConnection: {0}", con);
         synchronized (this) {
             synchronized (this.connections) {
-                if (this.connections.containsKey(con)) {
-                    throw new IllegalArgumentException("Connection " + con
-                            + " is already registered.");
-                }
+                checkNotRegistered(con);
                 final ReceiveThread receiveThread = new ReceiveThread(con);
                 LOG.log(Level.FINER,
                         "Created receiver thread {0} for this connection {1}.",
@@ -450,6 +749,36 @@ public abstract class BusBase extends AbstractActivatable
         }
     }
 
+    /**
+     * Registers a connection for the dispatching logic in
+     * {@link #handleGlobally(rsb.protocol.NotificationType.Notification)}
+     * without creating a thread receiving notifications from it. This is
+     * intended for implementations which read from their connections on their
+     * own, e.g. using a selector. Such implementations are responsible for
+     * passing received notifications to
+     * {@link #handleIncoming(rsb.protocol.NotificationType.Notification, BusConnection)}
+     * and for cleaning up the connection once the remote peer disconnects.
+     *
+     * @param con
+     *            the connection to register
+     */
+    protected void registerConnection(final BusConnection con) {
+        LOG.log(Level.FINE, "Registering a new passive BusConnection: {0}", con);
+        synchronized (this) {
+            synchronized (this.connections) {
+                checkNotRegistered(con);
+                this.connections.put(con, null);
+            }
+        }
+    }
+
+    private void checkNotRegistered(final BusConnection con) {
+        if (this.connections.containsKey(con)) {
+            throw new IllegalArgumentException("Connection " + con
+                    + " is already registered.");
+        }
+    }
+
     /**
      * Removes a connection from the dispatching logic. The connection is
      * neither closed automatically nor is the receiving thread terminated.
@@ -474,6 +803,7 @@ public abstract class BusBase extends AbstractActivatable
                 LOG.warning("Couldn't remove BusConnection " + con
                         + " from connection list.");
             }
+            this.removedStatistics.add(con.getSlowConsumerStatistics());
 
             return receiver;
 
@@ -494,12 +824,104 @@ public abstract class BusBase extends AbstractActivatable
 
     @Override
     public void addNotificationReceiver(final NotificationReceiver receiver) {
-        this.receivers.add(receiver);
+        addNotificationReceiver(receiver, new Scope(Scope.COMPONENT_SEPARATOR));
+    }
+
+    @Override
+    public void addNotificationReceiver(final NotificationReceiver receiver,
+            final Scope scope) {
+        synchronized (this.subscriptionSynchronizer) {
+            final Scope previous = this.receivers.put(receiver, scope);
+            if (previous != null) {
+                this.receiverIndex.remove(previous, receiver);
+                releaseSubscription(previous);
+            }
+            if (receiver instanceof EventReceiver) {
+                this.decoder.register((EventReceiver) receiver);
+            }
+            this.receiverIndex.add(scope, receiver);
+            final Integer count = this.subscriptions.get(scope);
+            if (count == null) {
+                this.subscriptions.put(scope, 1);
+                handleSubscriptionAdded(scope);
+            } else {
+                this.subscriptions.put(scope, count + 1);
+            }
+        }
     }
 
     @Override
     public void removeNotificationReceiver(final NotificationReceiver receiver) {
-        this.receivers.remove(receiver);
+        synchronized (this.subscriptionSynchronizer) {
+            final Scope previous = this.receivers.remove(receiver);
+            if (previous != null) {
+                this.receiverIndex.remove(previous, receiver);
+                releaseSubscription(previous);
+            }
+            if (receiver instanceof EventReceiver) {
+                this.decoder.unregister((EventReceiver) receiver);
+            }
+        }
+    }
+
+    private void releaseSubscription(final Scope scope) {
+        final int count = this.subscriptions.get(scope);
+        if (count == 1) {
+            this.subscriptions.remove(scope);
+            handleSubscriptionRemoved(scope);
+        } else {
+            this.subscriptions.put(scope, count - 1);
+        }
+    }
+
+    /**
+     * Returns the scopes local receivers are currently interested in.
+     *
+     * @return new set of scopes
+     */
+    protected Set<Scope> getSubscriptions() {
+        synchronized (this.subscriptionSynchronizer) {
+            return new HashSet<Scope>(this.subscriptions.keySet());
+        }
+    }
+
+    /**
+     * Returns the object to synchronize on for consistently combining
+     * {@link #getSubscriptions()} with the notifications via
+     * {@link #handleSubscriptionAdded(Scope)} and
+     * {@link #handleSubscriptionRemoved(Scope)}. The hooks are always called
+     * while holding this lock.
+     *
+     * @return object to synchronize on
+     */
+    protected Object getSubscriptionSynchronizer() {
+        return this.subscriptionSynchronizer;
+    }
+
+    /**
+     * Called when the first local receiver for a scope is registered. The
+     * default implementation does nothing.
+     *
+     * @param scope
+     *            the new scope of interest
+     */
+    // prevent repetition of default behavior
+    @SuppressWarnings("PMD.EmptyMethodInAbstractClassShouldBeAbstract")
+    protected void handleSubscriptionAdded(final Scope scope) {
+        // nothing to do here
+    }
+
+    /**
+     * Called when the last local receiver for a scope is removed. The default
+     * implementation does nothing.
+     *
+     * @param scope
+     *            the scope which is not of interest anymore
+     */
+    // prevent repetition of default behavior
+    @SuppressWarnings("PMD.EmptyMethodInAbstractClassShouldBeAbstract")
+    protected void handleSubscriptionRemoved(final Scope scope) {
+        // nothing to do here
     }
 
     @Override
@@ -511,6 +933,10 @@ public abstract class BusBase extends AbstractActivatable
         } else {
             queryBuilder.append('0');
         }
+        if (this.options.isUnixDomain()) {
+            queryBuilder.append("&path=");
+            queryBuilder.append(this.options.getSocketPath());
+        }
         try {
             return new URI("socket", null, this.options.getAddress().getHostAddress(),
                     this.options.getPort(), null, queryBuilder.toString(),
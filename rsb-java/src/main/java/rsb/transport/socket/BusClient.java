@@ -28,27 +28,93 @@
 
 package rsb.transport.socket;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import rsb.RSBException;
+import rsb.Scope;
 import rsb.protocol.NotificationType.Notification;
 
+import com.google.protobuf.InvalidProtocolBufferException;
+
 /**
  * A {@link Bus} implementation which acts as a client to an existing server
  * implementation. This means that new notifications are only sent to local
  * receivers as well as to a single {@link BusConnection} connecting with the
  * server.
  *
+ * After connecting, the client announces its optional protocol features with
+ * {@link Protocol#CONTROL_HELLO}. Servers unaware of this verb never reply, in
+ * which case no optional feature is used.
+ *
+ * In case the server announces support for routing based on subscriptions,
+ * the scopes of all local receivers are announced to the server so that it
+ * only forwards notifications these receivers are interested in. Registering a
+ * receiver for a new scope waits until the server has acknowledged the
+ * subscription.
+ *
+ * If more than one connection is requested by the {@link SocketOptions} and
+ * the server supports it, additional send-only connections are opened to
+ * increase the throughput. Outgoing notifications are distributed across all
+ * connections based on their scope, which preserves the order of
+ * notifications per scope. Notifications from the server are only received
+ * on the first connection.
+ *
  * @author swrede
  * @author jwienke
  */
+// the client side of the protocol consists of many small steps
+@SuppressWarnings({ "PMD.TooManyMethods", "PMD.GodClass" })
 public class BusClient extends BusBase {
 
     private static final Logger LOG = Logger.getLogger(BusClient.class
             .getName());
+    private static final long ACKNOWLEDGE_TIMEOUT = 10000;
 
     private BusClientConnection connection;
+    private volatile ReceiveThread receiveThread;
+    /**
+     * The connection to announce changes of the local subscriptions on or
+     * <code>null</code> if the server does not support subscriptions. Guarded
+     * by {@link #getSubscriptionSynchronizer()}.
+     */
+    private BusConnection announcementTarget;
+    /**
+     * Number of subscription changes sent to the server. Guarded by
+     * {@link #getSubscriptionSynchronizer()}.
+     */
+    private long announced;
+    /**
+     * Number of subscription changes acknowledged by the server.
+     */
+    private long acknowledged;
+    private final Object acknowledgements = new Object();
+    /**
+     * Indicates whether the server announced its capabilities. Guarded by
+     * {@link #acknowledgements}.
+     */
+    private boolean capabilitiesReceived;
+    /**
+     * Indicates whether the server supports clients with multiple
+     * connections. Guarded by {@link #acknowledgements}.
+     */
+    private boolean grouping;
+    /**
+     * Additional connections which the server has registered as belonging to
+     * this client. Guarded by {@link #acknowledgements}.
+     */
+    private final List<BusConnection> readyStripes =
+            new ArrayList<BusConnection>();
+    /**
+     * Connections outgoing notifications are distributed across. Replaced as
+     * a whole on changes.
+     */
+    private volatile BusConnection[] stripes = new BusConnection[0];
+    private final String token = UUID.randomUUID().toString();
 
     /**
      * Constructs a bus that is client of an active server.
@@ -71,13 +137,89 @@ public class BusClient extends BusBase {
                 throw new IllegalStateException("BusClient is already active.");
             }
 
+            synchronized (getSubscriptionSynchronizer()) {
+                this.announced = 0;
+            }
+            synchronized (this.acknowledgements) {
+                this.acknowledged = 0;
+                this.capabilitiesReceived = false;
+                this.grouping = false;
+                this.readyStripes.clear();
+            }
+
             this.connection = new BusClientConnection(this.getSocketOptions());
             this.connection.activate();
 
-            addConnection(this.connection).start();
+            final ReceiveThread thread = addConnection(this.connection);
+            this.receiveThread = thread;
+            this.stripes = new BusConnection[] { this.connection };
+            thread.start();
+            sendHello(this.connection);
+
+            if (getSocketOptions().getConnections() > 1) {
+                openStripes();
+            }
+
+        }
+
+    }
+
+    private void openStripes() {
 
+        final long deadline = System.currentTimeMillis() + ACKNOWLEDGE_TIMEOUT;
+        synchronized (this.acknowledgements) {
+            while (!this.capabilitiesReceived) {
+                if (!waitForAcknowledgements(deadline)) {
+                    break;
+                }
+            }
+            if (!this.grouping) {
+                LOG.warning("Server does not support multiple connections "
+                        + "per client. Using a single connection.");
+                return;
+            }
+        }
+
+        // the server must know the token before additional connections
+        // reference it
+        final long required;
+        synchronized (getSubscriptionSynchronizer()) {
+            required = this.announced;
+        }
+        awaitAcknowledgement(required);
+
+        final int count = getSocketOptions().getConnections() - 1;
+        for (int i = 0; i < count; ++i) {
+            final BusClientConnection stripe =
+                    new BusClientConnection(getSocketOptions());
+            try {
+                stripe.activate();
+            } catch (final RSBException e) {
+                LOG.log(Level.WARNING, "Unable to open additional connection. "
+                        + "Continuing with fewer connections.", e);
+                break;
+            }
+            addConnection(stripe).start();
+            sendHello(stripe);
         }
 
+        // wait for all connections so that the assignment of scopes to
+        // connections does not change afterwards
+        final List<BusConnection> targets = new ArrayList<BusConnection>();
+        targets.add(this.connection);
+        synchronized (this.acknowledgements) {
+            while (this.readyStripes.size() < count) {
+                if (!waitForAcknowledgements(deadline)) {
+                    LOG.warning("Server did not register all additional "
+                            + "connections in time.");
+                    break;
+                }
+            }
+            targets.addAll(this.readyStripes);
+            this.stripes = targets.toArray(new BusConnection[targets.size()]);
+        }
+        LOG.log(Level.FINE, "Sending on {0} connections", targets.size());
+
     }
 
     @Override
@@ -88,6 +230,16 @@ public class BusClient extends BusBase {
             super.deactivate();
 
             this.connection = null;
+            this.receiveThread = null;
+            this.stripes = new BusConnection[0];
+            synchronized (getSubscriptionSynchronizer()) {
+                this.announcementTarget = null;
+            }
+            // release threads waiting for acknowledgements
+            synchronized (this.acknowledgements) {
+                this.acknowledged = Long.MAX_VALUE;
+                this.acknowledgements.notifyAll();
+            }
 
         }
 
@@ -98,10 +250,240 @@ public class BusClient extends BusBase {
         return this.connection != null;
     }
 
+    /**
+     * Returns the number of connections outgoing notifications are currently
+     * distributed across.
+     *
+     * @return number of connections, 0 if not active
+     */
+    int getSendingConnections() {
+        return this.stripes.length;
+    }
+
     @Override
     public void handleIncoming(final Notification notification,
             final BusConnection source) throws RSBException {
         handleLocally(notification);
     }
 
+    @Override
+    public void handleIncoming(final Frame frame, final BusConnection source)
+            throws RSBException {
+        if (ControlMessages.isControl(frame)) {
+            handleControl(decode(frame), source);
+            return;
+        }
+        handleLocally(frame);
+    }
+
+    private void handleControl(final Notification notification,
+            final BusConnection source) {
+        final String verb = ControlMessages.getVerb(notification);
+        if (Protocol.CONTROL_ACKNOWLEDGE.equals(verb)) {
+            synchronized (this.acknowledgements) {
+                if (source.equals(this.connection)) {
+                    this.acknowledged++;
+                } else {
+                    // additional connections only announce the token
+                    this.readyStripes.add(source);
+                }
+                this.acknowledgements.notifyAll();
+            }
+            return;
+        }
+        if (Protocol.CONTROL_CAPABILITIES.equals(verb)) {
+            handleCapabilities(ControlMessages.getArguments(notification),
+                    source);
+        }
+    }
+
+    private void sendHello(final BusConnection target) {
+        // the server may compress as soon as it has processed the
+        // announcement. Hence, decompression needs to be enabled before.
+        target.enableDecompression();
+        sendControl(target, ControlMessages.create(Protocol.CONTROL_HELLO,
+                Protocol.CONTROL_COMPRESSION, Protocol.CONTROL_FRAGMENTATION,
+                Protocol.CONTROL_UNRELIABLE));
+    }
+
+    private void handleCapabilities(final List<String> capabilities,
+            final BusConnection source) {
+        if (capabilities.contains(Protocol.CONTROL_COMPRESSION)) {
+            LOG.fine("Server supports compression.");
+            source.enableCompression();
+        }
+        if (capabilities.contains(Protocol.CONTROL_FRAGMENTATION)) {
+            source.enableFragmentation();
+        }
+        if (capabilities.contains(Protocol.CONTROL_UNRELIABLE)) {
+            source.enableUnreliableMarking();
+        }
+        if (!source.equals(this.connection)) {
+            // additional connections never receive notifications
+            sendControl(source,
+                    ControlMessages.create(Protocol.CONTROL_STRIPE, this.token));
+            return;
+        }
+        final boolean supportsGroups =
+                capabilities.contains(Protocol.CONTROL_GROUP);
+        if (supportsGroups && getSocketOptions().getConnections() > 1) {
+            synchronized (getSubscriptionSynchronizer()) {
+                sendControl(source, ControlMessages.create(
+                        Protocol.CONTROL_GROUP, this.token));
+                this.announced++;
+            }
+        }
+        if (capabilities.contains(Protocol.CONTROL_SUBSCRIPTIONS)) {
+            announceSubscriptions(source);
+        }
+        synchronized (this.acknowledgements) {
+            this.capabilitiesReceived = true;
+            this.grouping = supportsGroups;
+            this.acknowledgements.notifyAll();
+        }
+    }
+
+    private void announceSubscriptions(final BusConnection source) {
+        LOG.fine("Server supports subscriptions. Announcing local scopes.");
+        synchronized (getSubscriptionSynchronizer()) {
+            final List<String> scopes = new ArrayList<String>();
+            for (final Scope scope : getSubscriptions()) {
+                scopes.add(scope.toString());
+            }
+            sendControl(source, ControlMessages.create(
+                    Protocol.CONTROL_SUBSCRIPTIONS, scopes));
+            this.announced++;
+            this.announcementTarget = source;
+        }
+    }
+
+    private void announce(final String verb, final Scope scope) {
+        // only called with the subscription lock held
+        if (this.announcementTarget != null) {
+            sendControl(this.announcementTarget,
+                    ControlMessages.create(verb, scope.toString()));
+            this.announced++;
+        }
+    }
+
+    /**
+     * Registers the receiver and, in case the server routes notifications
+     * based on subscriptions, waits until the server has processed the
+     * resulting subscription change. Hence, notifications sent by other
+     * participants after this method returns are received.
+     *
+     * @param receiver
+     *            the receiver to register
+     * @param scope
+     *            the scope the receiver is interested in
+     */
+    @Override
+    public void addNotificationReceiver(final NotificationReceiver receiver,
+            final Scope scope) {
+        final long required;
+        synchronized (getSubscriptionSynchronizer()) {
+            super.addNotificationReceiver(receiver, scope);
+            required = this.announced;
+        }
+        awaitAcknowledgement(required);
+    }
+
+    private void awaitAcknowledgement(final long required) {
+        final ReceiveThread receiver = this.receiveThread;
+        if (receiver != null && receiver.isCurrentThread()) {
+            // acknowledgements are received by this thread. Waiting would
+            // only block until the timeout.
+            return;
+        }
+        final long deadline = System.currentTimeMillis() + ACKNOWLEDGE_TIMEOUT;
+        synchronized (this.acknowledgements) {
+            while (this.acknowledged < required) {
+                if (!waitForAcknowledgements(deadline)) {
+                    LOG.warning("Server did not acknowledge subscription "
+                            + "change in time. Notifications might be missed.");
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits for a change of the acknowledgement state. Must be called with
+     * the lock of {@link #acknowledgements} held.
+     *
+     * @param deadline
+     *            time in milliseconds after which to stop waiting
+     * @return <code>false</code> if the deadline has passed or the thread has
+     *         been interrupted
+     */
+    private boolean waitForAcknowledgements(final long deadline) {
+        final long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0) {
+            return false;
+        }
+        try {
+            this.acknowledgements.wait(remaining);
+        } catch (final InterruptedException e) {
+            // restore interruption state
+            // cf. http://www.ibm.com/developerworks/library/j-jtp05236/
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Selects the connection for outgoing notifications based on their scope
+     * so that notifications on one scope are never reordered.
+     *
+     * @param connection
+     *            the candidate connection
+     * @param frame
+     *            the frame to dispatch
+     * @return <code>true</code> if the frame shall be sent on the connection
+     */
+    @Override
+    protected boolean isForwardedTo(final BusConnection connection,
+            final Frame frame) {
+        final BusConnection[] targets = this.stripes;
+        if (targets.length == 0) {
+            return true;
+        }
+        int index = 0;
+        if (targets.length > 1) {
+            try {
+                index = (frame.getScope().hashCode() & Integer.MAX_VALUE)
+                        % targets.length;
+            } catch (final InvalidProtocolBufferException e) {
+                LOG.log(Level.FINE, "Unable to extract scope from frame. "
+                        + "Using the primary connection.", e);
+            }
+        }
+        return connection.equals(targets[index]);
+    }
+
+    @Override
+    protected ReceiveThread removeConnection(final BusConnection con) {
+        final ReceiveThread thread = super.removeConnection(con);
+        synchronized (this.acknowledgements) {
+            final List<BusConnection> remaining =
+                    new ArrayList<BusConnection>(Arrays.asList(this.stripes));
+            if (remaining.remove(con)) {
+                this.stripes =
+                        remaining.toArray(new BusConnection[remaining.size()]);
+            }
+        }
+        return thread;
+    }
+
+    @Override
+    protected void handleSubscriptionAdded(final Scope scope) {
+        announce(Protocol.CONTROL_SUBSCRIBE, scope);
+    }
+
+    @Override
+    protected void handleSubscriptionRemoved(final Scope scope) {
+        announce(Protocol.CONTROL_UNSUBSCRIBE, scope);
+    }
+
 }
@@ -28,9 +28,11 @@
 package rsb.transport.socket;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.SocketChannel;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -71,8 +73,13 @@ public class BusClientConnection extends BusConnectionBase {
     @Override
     public void activate() throws RSBException {
         try {
-            this.setSocket(new Socket(getOptions().getAddress(), getOptions()
-                    .getPort()));
+            if (getOptions().isUnixDomain()) {
+                this.setChannel(UnixDomainSockets.connect(getOptions()
+                        .getSocketPath()));
+            } else {
+                // a channel socket allows gathering writes
+                this.setSocket(connect());
+            }
             super.activate();
         } catch (final IOException e) {
             throw new RSBException("Unable to create client socket for "
@@ -80,6 +87,21 @@ public class BusClientConnection extends BusConnectionBase {
         }
     }
 
+    private Socket connect() throws IOException {
+        final SocketChannel channel = SocketChannel.open();
+        try {
+            final Socket socket = channel.socket();
+            SocketTuning.configure(socket, getOptions());
+            SocketTuning.bindClient(socket, getOptions());
+            channel.connect(new InetSocketAddress(getOptions().getAddress(),
+                    getOptions().getPort()));
+            return socket;
+        } catch (final IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
     /**
      * Perform simple handshake as specified in RSB socket protocol.
      *
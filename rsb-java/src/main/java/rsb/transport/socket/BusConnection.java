@@ -51,13 +51,46 @@ public interface BusConnection extends Activatable {
     void sendNotification(Notification notification) throws IOException;
 
     /**
-     * Reads a notification from the connection. Blocks if necessary.
+     * Sends an already encoded frame over the connection. This allows to send
+     * the same encoding to several connections or to relay received frames
+     * without re-serializing them. Implementations which use the frame after
+     * returning need to {@link Frame#retain()} it.
      *
-     * @return the read notification
+     * @param frame
+     *            the frame to send
      * @throws IOException
-     *             communication error
+     *             error sending the frame
      */
-    Notification readNotification() throws IOException;
+    void sendFrame(Frame frame) throws IOException;
+
+    /**
+     * Indicates that the remote peer is able to decode compressed payloads.
+     * Depending on the options of this connection, outgoing payloads are
+     * compressed afterwards.
+     */
+    void enableCompression();
+
+    /**
+     * Indicates that the remote peer may send compressed payloads from now
+     * on, which are transparently decompressed by this connection.
+     */
+    void enableDecompression();
+
+    /**
+     * Indicates that the remote peer reassembles fragmented notifications.
+     * Depending on the options of this connection, large notifications are
+     * sent in fragments afterwards. Received fragments are always
+     * reassembled.
+     */
+    void enableFragmentation();
+
+    /**
+     * Indicates that the remote peer accepts notifications marked with
+     * {@link Protocol#UNRELIABLE_FIELD}. Before, the marker is removed from
+     * outgoing notifications. They are still treated as unreliable by the
+     * {@link SlowConsumerPolicy} of this connection.
+     */
+    void enableUnreliableMarking();
 
     /**
      * Returns the current configuration of the connection.
@@ -66,6 +99,14 @@ public interface BusConnection extends Activatable {
      */
     SocketOptions getOptions();
 
+    /**
+     * Returns the counters for the actions taken by the
+     * {@link SlowConsumerPolicy} of this connection.
+     *
+     * @return counters of this connection
+     */
+    SlowConsumerStatistics getSlowConsumerStatistics();
+
     /**
      * This method starts and orderly shutdown of the connection. It needs to be
      * called before {@link #deactivate()} for this procedure to succeed. Should
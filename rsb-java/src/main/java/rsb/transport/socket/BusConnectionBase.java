@@ -29,17 +29,21 @@ package rsb.transport.socket;
 
 import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.Socket;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.Channels;
+import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SocketChannel;
 import java.nio.channels.WritableByteChannel;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -53,14 +57,28 @@ import rsb.protocol.NotificationType.Notification;
  *
  * Subclasses need to use this object for synchronization.
  *
- * Subclasses need to call {@link #setSocket(Socket)} with a valid socket before
- * {@link #activate()} will be called. {@link #activate()} will automatically
- * call {@link #handshake()}.
+ * Subclasses need to call {@link #setSocket(Socket)} with a valid socket or
+ * {@link #setChannel(SocketChannel)} with a channel without socket, e.g. a Unix
+ * domain socket channel, before {@link #activate()} will be called.
+ * {@link #activate()} will automatically call {@link #handshake()}.
+ *
+ * Depending on {@link SocketOptions#isQueued()}, notifications are either
+ * written synchronously while the sender waits or they are placed in a bounded
+ * {@link OutboundQueue} which is drained by a dedicated writer. With
+ * {@link SocketOptions#isBatching()}, the writer packs frames which are queued
+ * at the same time into a single buffer to reduce the number of writes and
+ * TCP segments.
+ *
+ * In case the socket has an associated channel, frames are written with
+ * gathering writes on that channel. This allows to send frames with referenced
+ * payloads (see {@link Frame#toBuffers()}) without copying them.
  *
  * @author jwienke
  */
+// synchronous and asynchronous sending share the connection state
+@SuppressWarnings({ "PMD.TooManyMethods", "PMD.GodClass", "PMD.TooManyFields" })
 public abstract class BusConnectionBase extends AbstractActivatable
-                                        implements BusConnection {
+                                        implements BlockingBusConnection {
 
     private static final Logger LOG =
             Logger.getLogger(BusConnectionBase.class.getName());
@@ -72,9 +90,30 @@ public abstract class BusConnectionBase extends AbstractActivatable
     private static final int POOL_SHUTDOWN_TIMEOUT_SEC = 10;
 
     private Socket socket;
+    private SocketChannel channel;
     private ReadableByteChannel reader;
+
+    /**
+     * Reusable buffer for the length prefix of received frames. Only used by
+     * the reading thread.
+     */
+    private final ByteBuffer lengthBuffer = ByteBuffer.allocate(
+            Protocol.DATA_SIZE_BYTES).order(ByteOrder.LITTLE_ENDIAN);
     private WritableByteChannel writer;
     private SocketOptions options;
+    private volatile PayloadCompression compression;
+    private volatile Fragmentation fragmentation;
+    private volatile boolean markingUnreliable = false;
+    private final Fragmentation.WireSender wireSender =
+            new Fragmentation.WireSender() {
+
+                @Override
+                public void sendWireFrame(final Frame frame)
+                        throws IOException {
+                    BusConnectionBase.this.sendWireFrame(frame);
+                }
+
+            };
     private boolean activeShutdown = false;
 
     /**
@@ -85,6 +124,127 @@ public abstract class BusConnectionBase extends AbstractActivatable
      */
     private ExecutorService submissionPool;
 
+    /**
+     * Queue of encoded frames in asynchronous send mode, else
+     * <code>null</code>.
+     */
+    private OutboundQueue outboundQueue;
+
+    /**
+     * Result of the writer draining {@link #outboundQueue}.
+     */
+    private MonitorFuture<Void> queueWriter;
+
+    /**
+     * The error which terminated the writer in asynchronous send mode.
+     */
+    private volatile IOException writeError;
+
+    private final SlowConsumerStatistics slowConsumerStatistics =
+            new SlowConsumerStatistics();
+
+    /**
+     * Writes frames from the outbound queue to the socket until the queue is
+     * closed and drained.
+     *
+     * @author jwienke
+     */
+    private class QueueWriter implements Callable<Void> {
+
+        private final OutboundQueue queue;
+        private final WritableByteChannel channel;
+
+        /**
+         * Buffer to pack frames into or <code>null</code> if batching is
+         * disabled.
+         */
+        private final ByteBuffer batch;
+        private final long maxDelayNs;
+
+        QueueWriter(final OutboundQueue queue,
+                final WritableByteChannel channel, final SocketOptions options) {
+            this.queue = queue;
+            this.channel = channel;
+            if (options.isBatching()) {
+                this.batch = ByteBuffer.allocateDirect(options.getBatchMaxBytes());
+            } else {
+                this.batch = null;
+            }
+            this.maxDelayNs =
+                    TimeUnit.MICROSECONDS.toNanos(options.getBatchMaxDelayUs());
+        }
+
+        @Override
+        public Void call() throws IOException, InterruptedException {
+            try {
+                Frame frame = this.queue.take();
+                while (frame != null) {
+                    if (this.batch == null) {
+                        write(frame);
+                    } else {
+                        writeBatch(frame);
+                    }
+                    frame = this.queue.take();
+                }
+            } catch (final IOException e) {
+                BusConnectionBase.this.writeError = e;
+                this.queue.clear();
+                throw e;
+            }
+            return null;
+        }
+
+        private void write(final Frame frame) throws IOException {
+            try {
+                writeCompletely(this.channel, frame.toBuffers());
+            } finally {
+                frame.release();
+            }
+        }
+
+        /**
+         * Packs the given frame and all further frames which are available
+         * without waiting into the batch buffer. The buffer is written once it
+         * is full, the queue is empty or the maximum delay has expired.
+         */
+        private void writeBatch(final Frame first) throws IOException {
+            final long start = System.nanoTime();
+            Frame frame = first;
+            while (frame != null) {
+                if (frame.getSize() > this.batch.remaining()) {
+                    flushBatch();
+                }
+                if (frame.getSize() > this.batch.remaining()) {
+                    // too large for packing
+                    write(frame);
+                } else {
+                    try {
+                        for (final ByteBuffer buffer : frame.toBuffers()) {
+                            this.batch.put(buffer);
+                        }
+                    } finally {
+                        frame.release();
+                    }
+                }
+                frame = null;
+                if (System.nanoTime() - start < this.maxDelayNs) {
+                    frame = this.queue.poll();
+                }
+            }
+            flushBatch();
+        }
+
+        private void flushBatch() throws IOException {
+            if (this.batch.position() == 0) {
+                return;
+            }
+            this.batch.flip();
+            writeCompletely(this.channel, this.batch);
+            this.batch.clear();
+        }
+
+    }
+
     /**
      * Performs the handshake step of the protocol.
      *
@@ -114,6 +274,19 @@ public abstract class BusConnectionBase extends AbstractActivatable
         }
     }
 
+    /**
+     * Sets a connected channel which does not provide a {@link Socket}, e.g.
+     * a Unix domain socket channel, instead of a socket.
+     *
+     * @param channel
+     *            new channel in blocking mode
+     */
+    protected void setChannel(final SocketChannel channel) {
+        synchronized (this) {
+            this.channel = channel;
+        }
+    }
+
     /**
      * Sets the options for the socket to hold in this instance.
      *
@@ -124,14 +297,41 @@ public abstract class BusConnectionBase extends AbstractActivatable
         assert options != null;
         synchronized (this) {
             this.options = options;
+            this.compression = new PayloadCompression(options);
+            this.fragmentation = new Fragmentation(options);
         }
     }
 
+    @Override
+    public void enableCompression() {
+        this.compression.enableCompression();
+    }
+
+    @Override
+    public void enableDecompression() {
+        this.compression.enableDecompression();
+    }
+
+    @Override
+    public void enableFragmentation() {
+        this.fragmentation.enableFragmentation();
+    }
+
+    @Override
+    public void enableUnreliableMarking() {
+        this.markingUnreliable = true;
+    }
+
     @Override
     public SocketOptions getOptions() {
         return this.options;
     }
 
+    @Override
+    public SlowConsumerStatistics getSlowConsumerStatistics() {
+        return this.slowConsumerStatistics;
+    }
+
     /**
      * Returns the reader for the internal socket.
      *
@@ -157,34 +357,132 @@ public abstract class BusConnectionBase extends AbstractActivatable
         LOG.finer("Activating connection");
 
         synchronized (this) {
-            assert this.socket != null;
+            assert this.socket != null || this.channel != null;
             try {
-                this.socket.setTcpNoDelay(this.options.isTcpNoDelay());
-                this.reader = Channels.newChannel(getSocket().getInputStream());
-                this.writer =
-                        Channels.newChannel(getSocket().getOutputStream());
+                openChannels();
             } catch (final IOException e) {
                 this.reader = null;
                 this.writer = null;
                 throw new RSBException(e);
             }
             this.handshake();
-            this.submissionPool = Executors.newSingleThreadExecutor();
+            this.submissionPool =
+                    SocketThreads.newSingleThreadExecutor(this.options);
+            if (this.options.isQueued()) {
+                this.outboundQueue =
+                        new OutboundQueue(this.options,
+                                this.slowConsumerStatistics);
+                this.queueWriter =
+                        new MonitorFuture<Void>(new QueueWriter(
+                                this.outboundQueue, this.writer, this.options));
+                this.submissionPool.execute(this.queueWriter);
+            }
         }
 
     }
 
+    private void openChannels() throws IOException {
+        if (this.socket == null) {
+            // plain channels use independent locks for reading and writing
+            this.reader = this.channel;
+            this.writer = this.channel;
+            return;
+        }
+        SocketTuning.configure(this.socket, this.options);
+        this.reader = newReader(this.socket.getInputStream());
+        if (this.socket.getChannel() == null) {
+            this.writer = newWriter(this.socket.getOutputStream());
+        } else {
+            // streams of channel sockets synchronize reading and
+            // writing. Hence, the channel is used for writing.
+            this.writer = this.socket.getChannel();
+        }
+    }
+
+    private ReadableByteChannel newReader(final InputStream stream) {
+        if (this.options.getThreadMode() == ThreadMode.VIRTUAL) {
+            return StreamChannels.newReader(stream);
+        }
+        return Channels.newChannel(stream);
+    }
+
+    private WritableByteChannel newWriter(final OutputStream stream) {
+        if (this.options.getThreadMode() == ThreadMode.VIRTUAL) {
+            return StreamChannels.newWriter(stream);
+        }
+        return Channels.newChannel(stream);
+    }
+
     @Override
     public void shutdown() throws IOException {
         LOG.finest("Shutdown called");
         synchronized (this) {
             if (!this.activeShutdown) {
-                this.socket.shutdownOutput();
                 this.activeShutdown = true;
+                if (this.outboundQueue != null) {
+                    flushOutboundQueue();
+                }
+                if (this.socket == null) {
+                    this.channel.shutdownOutput();
+                } else {
+                    this.socket.shutdownOutput();
+                }
             }
         }
     }
 
+    /**
+     * Closes the outbound queue and waits for the writer to send the remaining
+     * frames.
+     */
+    private void flushOutboundQueue() {
+        this.outboundQueue.close();
+        try {
+            this.queueWriter.await(POOL_SHUTDOWN_TIMEOUT_SEC,
+                    TimeUnit.SECONDS);
+        } catch (final ExecutionException e) {
+            LOG.log(Level.WARNING, "Writing queued notifications failed.", e);
+        } catch (final TimeoutException e) {
+            LOG.log(Level.WARNING, "Timeout while writing queued notifications.",
+                    e);
+        } catch (final InterruptedException e) {
+            // restore interrupted state for outer thread
+            // cf. http://www.ibm.com/developerworks/library/j-jtp05236/
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Shuts down the submission pool and waits for the pending writes. Instead
+     * of {@link ExecutorService#awaitTermination(long, TimeUnit)} a final task
+     * is awaited so that the caller does not park while holding the monitor
+     * of this connection, cf. {@link MonitorFuture}.
+     *
+     * @throws InterruptedException
+     *             interrupted while waiting
+     */
+    private void stopSubmissionPool() throws InterruptedException {
+        final MonitorFuture<Void> drained =
+                new MonitorFuture<Void>(new Callable<Void>() {
+
+                    @Override
+                    public Void call() {
+                        return null;
+                    }
+
+                });
+        this.submissionPool.execute(drained);
+        this.submissionPool.shutdown();
+        try {
+            drained.await(POOL_SHUTDOWN_TIMEOUT_SEC, TimeUnit.SECONDS);
+        } catch (final ExecutionException e) {
+            throw new AssertionError(e);
+        } catch (final TimeoutException e) {
+            LOG.log(Level.WARNING, "Timeout while waiting for pending writes.",
+                    e);
+        }
+    }
+
     @Override
     public boolean isActiveShutdown() {
         return this.activeShutdown;
@@ -200,12 +498,17 @@ public abstract class BusConnectionBase extends AbstractActivatable
                 throw new IllegalStateException("Connection is not active.");
             }
 
-            this.submissionPool.shutdown();
-            this.submissionPool.awaitTermination(POOL_SHUTDOWN_TIMEOUT_SEC,
-                    TimeUnit.SECONDS);
+            if (this.outboundQueue != null) {
+                this.outboundQueue.clear();
+            }
+            stopSubmissionPool();
 
             try {
-                getSocket().close();
+                if (this.socket == null) {
+                    this.channel.close();
+                } else {
+                    this.socket.close();
+                }
             } catch (final IOException e) {
                 LOG.log(Level.WARNING,
                         "Exception during deactivation. "
@@ -216,6 +519,8 @@ public abstract class BusConnectionBase extends AbstractActivatable
 
             this.reader = null;
             this.writer = null;
+            this.outboundQueue = null;
+            this.queueWriter = null;
 
         }
 
@@ -252,6 +557,33 @@ public abstract class BusConnectionBase extends AbstractActivatable
         } while (buffer.position() < buffer.limit());
     }
 
+    /**
+     * Writes all given buffers to a {@link WritableByteChannel}. A single
+     * gathering write is used if supported by the channel.
+     *
+     * @param writer
+     *            the channel to write to
+     * @param buffers
+     *            buffers to write in order
+     * @throws IOException
+     *             writing error
+     */
+    private static void writeCompletely(final WritableByteChannel writer,
+            final ByteBuffer... buffers) throws IOException {
+        if (writer instanceof GatheringByteChannel) {
+            final ByteBuffer last = buffers[buffers.length - 1];
+            while (last.hasRemaining()) {
+                ((GatheringByteChannel) writer).write(buffers);
+            }
+        } else {
+            for (final ByteBuffer buffer : buffers) {
+                while (buffer.hasRemaining()) {
+                    writer.write(buffer);
+                }
+            }
+        }
+    }
+
     /**
      * Extract length of next notification blob.
      *
@@ -261,97 +593,212 @@ public abstract class BusConnectionBase extends AbstractActivatable
      */
     protected int readLength() throws IOException {
         assert isActive();
-        final ByteBuffer lengthBytes =
-                ByteBuffer.allocateDirect(Protocol.DATA_SIZE_BYTES);
-        lengthBytes.order(ByteOrder.LITTLE_ENDIAN);
-        readCompleteBuffer(this.reader, lengthBytes);
-        lengthBytes.rewind();
-        return lengthBytes.getInt();
+        this.lengthBuffer.clear();
+        readCompleteBuffer(this.reader, this.lengthBuffer);
+        return this.lengthBuffer.getInt(0);
     }
 
     @Override
-    public Notification readNotification() throws IOException {
+    public Frame readFrame() throws IOException {
+        Frame frame = this.fragmentation.reassemble(readWireFrame());
+        while (frame == null) {
+            frame = this.fragmentation.reassemble(readWireFrame());
+        }
+        return this.compression.decompress(frame);
+    }
+
+    /**
+     * Reads a single frame as sent by the remote peer, which might be a
+     * fragment.
+     */
+    private Frame readWireFrame() throws IOException {
 
         if (!isActive()) {
             throw new IllegalStateException(
                     "Cannot read. Connection is not active.");
         }
 
-        LOG.fine("Starting to read a notification from the wire.");
+        LOG.fine("Starting to read a frame from the wire.");
 
         // read expected size
         final int length = this.readLength();
         LOG.log(Level.FINER,
                 "Got length specification for following data: {0} bytes.",
                 new Object[] { length });
+        if (length < 0) {
+            throw new IOException("Received invalid frame length " + length);
+        }
 
-        // read notification data
-        final byte[] notificationData = new byte[length];
-        final ByteBuffer notifDataBuffer = ByteBuffer.wrap(notificationData);
-        notifDataBuffer.order(ByteOrder.LITTLE_ENDIAN);
-        readCompleteBuffer(this.reader, notifDataBuffer);
-        notifDataBuffer.rewind();
+        // read notification data behind the length prefix into pooled
+        // memory
+        final ByteBuffer frameBuffer = Frame.acquireBuffer(length);
+        readCompleteBuffer(this.reader, frameBuffer);
 
-        LOG.fine("Received notification data. Decoding and returning.");
+        LOG.fine("Received frame data.");
 
-        // parse and return notification
-        return Notification.parseFrom(notificationData);
+        return Frame.wrap(frameBuffer);
+
+    }
+
+    @Override
+    public Notification readNotification() throws IOException {
+        final Frame frame = readFrame();
+        try {
+            return frame.getNotification();
+        } finally {
+            frame.release();
+        }
+    }
+
+    /**
+     * Checks whether sending on this connection is still allowed. Must be
+     * called with the lock held.
+     *
+     * @param frame
+     *            the frame to send, only used for logging
+     * @return <code>true</code> if the frame can be sent
+     */
+    private boolean isSendable(final Frame frame) {
+
+        if (isActiveShutdown()) {
+            LOG.log(Level.FINE, "Not sending frame {0} "
+                    + "since we are already in shutdown.", frame);
+            return false;
+        }
+
+        if (!isActive()) {
+            LOG.log(Level.FINE, "Not sending frame {0} on "
+                    + "this connection because it is not active.", frame);
+            return false;
+        }
+
+        return true;
 
     }
 
     @Override
     public void sendNotification(final Notification notification)
             throws IOException {
+        final Frame frame = Frame.encode(notification);
+        try {
+            sendFrame(frame);
+        } finally {
+            frame.release();
+        }
+    }
+
+    @Override
+    public void sendFrame(final Frame frame) throws IOException {
 
-        final byte[] data = notification.toByteArray();
-        LOG.log(Level.FINE, "Sending new notification of size {0}",
-                data.length);
+        LOG.log(Level.FINE, "Sending new frame of size {0}", frame.getSize());
 
-        // send data size
-        final ByteBuffer sizeBuffer =
-                ByteBuffer.allocate(Protocol.DATA_SIZE_BYTES);
-        sizeBuffer.order(ByteOrder.LITTLE_ENDIAN);
-        sizeBuffer.asIntBuffer().put(data.length);
+        final Frame marked;
+        if (this.markingUnreliable) {
+            marked = frame;
+        } else {
+            marked = frame.getUnmarked();
+        }
+        this.fragmentation.send(this.compression.compress(marked),
+                this.wireSender);
 
-        synchronized (this) {
+    }
+
+    private void sendWireFrame(final Frame frame) throws IOException {
+        if (this.options.isQueued()) {
+            enqueueFrame(frame);
+        } else {
+            writeFrame(frame);
+        }
+
+    }
 
-            if (isActiveShutdown()) {
-                LOG.log(Level.FINE,
-                        "Not sending notification {0} "
-                                + "since we are already in shutdown.",
-                        notification);
+    private void enqueueFrame(final Frame frame) throws IOException {
+
+        final OutboundQueue queue;
+        synchronized (this) {
+            if (this.writeError != null) {
+                throw new IOException("Writing to the connection failed.",
+                        this.writeError);
+            }
+            if (!isSendable(frame)) {
                 return;
             }
+            queue = this.outboundQueue;
+        }
 
-            if (!isActive()) {
-                LOG.log(Level.FINE,
-                        "Not sending notification {0} on "
-                                + "this connection because it is not active.",
-                        notification);
+        // do not block other users of this connection while waiting for
+        // space in the queue. The writer releases the queued reference.
+        frame.retain();
+        try {
+            if (!queue.put(frame)) {
+                frame.release();
+                LOG.log(Level.FINE, "Not sending frame {0} since the "
+                        + "outbound queue has been closed or dropped it.",
+                        frame);
+            }
+        } catch (final InterruptedException e) {
+            frame.release();
+            // restore interrupted state for outer thread
+            // cf. http://www.ibm.com/developerworks/library/j-jtp05236/
+            Thread.currentThread().interrupt();
+        }
+
+        if (queue.isOverflowed()) {
+            abort();
+            throw new SlowConsumerException("The remote peer of connection "
+                    + this + " did not consume queued frames in time.");
+        }
+
+    }
+
+    /**
+     * Closes the socket without an orderly shutdown so that the receiving
+     * thread terminates and the connection gets removed.
+     */
+    private void abort() {
+        try {
+            if (this.socket == null) {
+                this.channel.close();
+            } else {
+                this.socket.close();
+            }
+        } catch (final IOException e) {
+            LOG.log(Level.WARNING, "Unable to close connection " + this, e);
+        }
+    }
+
+    private void writeFrame(final Frame frame) throws IOException {
+
+        synchronized (this) {
+
+            if (!isSendable(frame)) {
                 return;
             }
 
             // use the submission pool for write operations to ensure that a
             // potentially existing interrupt state will not close the socket.
+            // The write might outlive this call in case of an interrupt.
+            frame.retain();
             try {
-                this.submissionPool.submit(new Callable<Void>() {
+                final MonitorFuture<Void> write =
+                        new MonitorFuture<Void>(new Callable<Void>() {
 
                     @Override
                     // Interface requirement
                     @SuppressWarnings("PMD.SignatureDeclareThrowsException")
                     public Void call() throws Exception {
-                        BusConnectionBase.this.writer.write(sizeBuffer);
-                        LOG.log(Level.FINER,
-                                "Sent out size specification for {0} bytes",
-                                data.length);
-
-                        // send real data
-                        BusConnectionBase.this.writer
-                                .write(ByteBuffer.wrap(data));
+                        try {
+                            writeCompletely(BusConnectionBase.this.writer,
+                                    frame.toBuffers());
+                        } finally {
+                            frame.release();
+                        }
                         return null;
                     }
 
-                }).get();
+                });
+                this.submissionPool.execute(write);
+                write.await();
             } catch (final ExecutionException e) {
                 throw new IOException(e);
             } catch (final InterruptedException e) {
@@ -362,7 +809,7 @@ public abstract class BusConnectionBase extends AbstractActivatable
 
         }
 
-        LOG.fine("Sending of notification succeeded");
+        LOG.fine("Sending of frame succeeded");
 
     }
 
@@ -31,11 +31,12 @@ package rsb.transport.socket;
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import rsb.RSBException;
-import rsb.protocol.NotificationType.Notification;
 
 /**
  * Instances of this class provide access to a socket-based bus for remote bus
@@ -51,23 +52,50 @@ import rsb.protocol.NotificationType.Notification;
  * @author swrede
  * @author jwienke
  */
-public class BusServer extends BusBase {
+public class BusServer extends BusServerBase {
 
     private static final Logger LOG = Logger.getLogger(BusServer.class
             .getName());
     private ServerSocket serverSocket;
+
+    /**
+     * Used instead of {@link #serverSocket} for Unix domain sockets.
+     */
+    private ServerSocketChannel serverChannel;
     private AcceptorThread acceptor;
 
     /**
      * A thread that listens on a {@link ServerSocket} and accepts connection
      * requests by instantiating new {@link BusServerConnection} handling each
-     * new connection request.
+     * new connection request. Depending on
+     * {@link SocketOptions#getThreadMode()}, the loop runs on a platform or on
+     * a virtual thread.
      *
      * @author jwienke
      */
-    private class AcceptorThread extends Thread {
+    private class AcceptorThread implements Runnable {
 
         private volatile boolean shutdown = false;
+        private final Thread thread = SocketThreads.newThread(
+                getSocketOptions(), this);
+
+        /**
+         * Starts accepting connections.
+         */
+        public void start() {
+            this.thread.start();
+        }
+
+        /**
+         * Waits for the thread to terminate after
+         * {@link #startShutdown()}.
+         *
+         * @throws InterruptedException
+         *             interrupted while waiting
+         */
+        public void join() throws InterruptedException {
+            this.thread.join();
+        }
 
         /**
          * Indicates that a termination should be performed. There is no
@@ -87,13 +115,7 @@ public class BusServer extends BusBase {
                 try {
                     // accept socket
                     LOG.info("Waiting for new client connection");
-                    final Socket socket = BusServer.this.serverSocket.accept();
-                    LOG.log(Level.FINE, "Accepted a new client socket: {0}",
-                            socket);
-
-                    final BusServerConnection connection =
-                            new BusServerConnection(socket, getSocketOptions()
-                                    .isTcpNoDelay());
+                    final BusServerConnection connection = accept();
                     // we need to lock this whole procedure to ensure that no
                     // new messages are sent to unfinished new connection or
                     // missed in the dispatching logic for clients of the server
@@ -116,9 +138,8 @@ public class BusServer extends BusBase {
                         thread.start();
                     }
                     LOG.log(Level.FINER,
-                            "Activated a new client connection {0} "
-                                    + "for socket {1}", new Object[] {
-                                    connection, socket });
+                            "Activated a new client connection {0}",
+                            connection);
 
                 } catch (final IOException e) {
                     if (this.shutdown) {
@@ -153,6 +174,17 @@ public class BusServer extends BusBase {
         super(options);
     }
 
+    private BusServerConnection accept() throws IOException {
+        if (this.serverChannel != null) {
+            final SocketChannel channel = this.serverChannel.accept();
+            LOG.log(Level.FINE, "Accepted a new client channel: {0}", channel);
+            return new BusServerConnection(channel, getSocketOptions());
+        }
+        final Socket socket = this.serverSocket.accept();
+        LOG.log(Level.FINE, "Accepted a new client socket: {0}", socket);
+        return new BusServerConnection(socket, getSocketOptions());
+    }
+
     @Override
     public void activate() throws RSBException {
 
@@ -160,13 +192,25 @@ public class BusServer extends BusBase {
 
         synchronized (this) {
 
-            if (this.serverSocket != null) {
+            if (isActive()) {
                 throw new IllegalStateException("BusServer is already active.");
             }
 
             try {
-                this.serverSocket =
-                        new ServerSocket(this.getSocketOptions().getPort());
+                if (getSocketOptions().isUnixDomain()) {
+                    this.serverChannel =
+                            UnixDomainSockets.bind(getSocketOptions()
+                                    .getSocketPath());
+                } else {
+                    final ServerSocket socket = new ServerSocket();
+                    try {
+                        SocketTuning.bindServer(socket, getSocketOptions());
+                    } catch (final IOException e) {
+                        socket.close();
+                        throw e;
+                    }
+                    this.serverSocket = socket;
+                }
                 this.acceptor = new AcceptorThread();
                 this.acceptor.start();
             } catch (final IOException e) {
@@ -183,14 +227,20 @@ public class BusServer extends BusBase {
 
         synchronized (this) {
 
-            if (this.serverSocket == null) {
+            if (!isActive()) {
                 throw new IllegalStateException("BusServer is not active.");
             }
 
             try {
 
                 this.acceptor.startShutdown();
-                this.serverSocket.close();
+                if (this.serverChannel == null) {
+                    this.serverSocket.close();
+                } else {
+                    this.serverChannel.close();
+                    UnixDomainSockets.unlink(getSocketOptions()
+                            .getSocketPath());
+                }
                 this.acceptor.join();
 
             } catch (final IOException e) {
@@ -200,6 +250,7 @@ public class BusServer extends BusBase {
             super.deactivate();
 
             this.serverSocket = null;
+            this.serverChannel = null;
             this.acceptor = null;
 
         }
@@ -208,14 +259,7 @@ public class BusServer extends BusBase {
 
     @Override
     public boolean isActive() {
-        return this.serverSocket != null;
-    }
-
-    @Override
-    public void handleIncoming(final Notification notification,
-            final BusConnection sourceConnection) throws RSBException {
-        handleLocally(notification);
-        handleGlobally(notification, sourceConnection);
+        return this.serverSocket != null || this.serverChannel != null;
     }
 
 }
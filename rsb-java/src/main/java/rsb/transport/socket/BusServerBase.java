@@ -0,0 +1,159 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+
+package rsb.transport.socket;
+
+import java.util.List;
+
+import rsb.RSBException;
+import rsb.protocol.NotificationType.Notification;
+
+/**
+ * Common logic of bus server implementations independent of the way client
+ * connections are accepted and read from.
+ *
+ * Received notifications are delivered to local receivers and relayed to all
+ * other clients. Clients may announce the scopes they are interested in. In
+ * this case, only notifications on these scopes and their sub-scopes are
+ * relayed to them. Clients sending on multiple connections are handled as a
+ * single client using {@link ConnectionGroups}.
+ *
+ * Optional protocol features are negotiated on request of the clients. Clients
+ * which never send {@link Protocol#CONTROL_HELLO} are treated as legacy peers
+ * and never receive control notifications.
+ *
+ * @author jwienke
+ */
+public abstract class BusServerBase extends BusBase {
+
+    private final SubscriptionIndex subscriptionIndex =
+            new SubscriptionIndex();
+    private final ConnectionGroups groups = new ConnectionGroups();
+
+    /**
+     * Constructor.
+     *
+     * @param options
+     *            socket options to use for the communication
+     */
+    protected BusServerBase(final SocketOptions options) {
+        super(options);
+    }
+
+    /**
+     * Enables the features announced by a client in its
+     * {@link Protocol#CONTROL_HELLO} and replies with the capabilities of this
+     * server.
+     *
+     * @param capabilities
+     *            features supported by the client
+     * @param connection
+     *            the connection of the client
+     */
+    private void handleHello(final List<String> capabilities,
+            final BusConnection connection) {
+        // the client already decodes what it announced and only sends
+        // compressed payloads and fragments after receiving the reply
+        if (capabilities.contains(Protocol.CONTROL_COMPRESSION)) {
+            connection.enableDecompression();
+            connection.enableCompression();
+        }
+        if (capabilities.contains(Protocol.CONTROL_FRAGMENTATION)) {
+            connection.enableFragmentation();
+        }
+        if (capabilities.contains(Protocol.CONTROL_UNRELIABLE)) {
+            connection.enableUnreliableMarking();
+        }
+        // clients will answer with their subscriptions and group tokens
+        sendControl(connection, ControlMessages.create(
+                Protocol.CONTROL_CAPABILITIES, Protocol.CONTROL_SUBSCRIPTIONS,
+                Protocol.CONTROL_COMPRESSION, Protocol.CONTROL_FRAGMENTATION,
+                Protocol.CONTROL_UNRELIABLE, Protocol.CONTROL_GROUP));
+    }
+
+    @Override
+    public void handleIncoming(final Notification notification,
+            final BusConnection sourceConnection) throws RSBException {
+        handleLocally(notification);
+        handleGlobally(notification,
+                this.groups.getPrimary(sourceConnection));
+    }
+
+    /**
+     * Relays the received frame to all other connections without decoding it.
+     * The contained notification is only decoded for local receivers. Control
+     * notifications of clients are handled internally and neither relayed nor
+     * delivered.
+     *
+     * @param frame
+     *            the received frame
+     * @param sourceConnection
+     *            the connection the frame was received on
+     * @throws RSBException
+     *             processing error
+     */
+    @Override
+    public void handleIncoming(final Frame frame,
+            final BusConnection sourceConnection) throws RSBException {
+        if (ControlMessages.isControl(frame)) {
+            final Notification control = decode(frame);
+            final String verb = ControlMessages.getVerb(control);
+            if (Protocol.CONTROL_HELLO.equals(verb)) {
+                handleHello(ControlMessages.getArguments(control),
+                        sourceConnection);
+                return;
+            }
+            if (this.groups.handleControl(control, sourceConnection)
+                    || this.subscriptionIndex.handleControl(control,
+                            sourceConnection)) {
+                sendControl(sourceConnection,
+                        ControlMessages.create(Protocol.CONTROL_ACKNOWLEDGE));
+            }
+            return;
+        }
+        handleLocally(frame);
+        // the client already delivered the notification locally
+        handleGlobally(frame, this.groups.getPrimary(sourceConnection));
+    }
+
+    @Override
+    protected boolean isForwardedTo(final BusConnection connection,
+            final Frame frame) {
+        return !this.groups.isStripe(connection)
+                && this.subscriptionIndex.isForwarded(connection, frame);
+    }
+
+    @Override
+    protected ReceiveThread removeConnection(final BusConnection con) {
+        final ReceiveThread thread = super.removeConnection(con);
+        this.subscriptionIndex.remove(con);
+        this.groups.remove(con);
+        return thread;
+    }
+
+}
@@ -30,6 +30,7 @@ package rsb.transport.socket;
 import java.io.IOException;
 import java.net.Socket;
 import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
 import java.util.logging.Logger;
 
 import rsb.RSBException;
@@ -65,9 +66,41 @@ public class BusServerConnection extends BusConnectionBase {
      *            if <code>true</code>, configure the socket to use tcp no delay
      */
     public BusServerConnection(final Socket socket, final boolean tcpNoDelay) {
+        this(socket, new SocketOptions(socket.getLocalAddress(), socket
+                .getPort(), tcpNoDelay));
+    }
+
+    /**
+     * Constructs a new server connection using the settings of the accepting
+     * server.
+     *
+     * @param socket
+     *            socket to use for the server side. This is usually the result
+     *            of calling {@link java.net.ServerSocket#accept()}.
+     * @param serverOptions
+     *            options of the accepting server. Settings apart from the end
+     *            point are applied to this connection.
+     */
+    public BusServerConnection(final Socket socket,
+            final SocketOptions serverOptions) {
         setSocket(socket);
-        setOptions(new SocketOptions(socket.getLocalAddress(),
-                socket.getPort(), tcpNoDelay));
+        setOptions(serverOptions.withAddress(socket.getLocalAddress(),
+                socket.getPort()));
+    }
+
+    /**
+     * Constructs a new server connection for an accepted channel without
+     * socket, e.g. a Unix domain socket channel.
+     *
+     * @param channel
+     *            the accepted channel in blocking mode
+     * @param serverOptions
+     *            options of the accepting server
+     */
+    public BusServerConnection(final SocketChannel channel,
+            final SocketOptions serverOptions) {
+        setChannel(channel);
+        setOptions(serverOptions);
     }
 
     @Override
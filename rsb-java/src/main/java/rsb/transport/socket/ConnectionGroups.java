@@ -0,0 +1,145 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.socket;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import rsb.protocol.NotificationType.Notification;
+
+/**
+ * Server-side index of clients which send on multiple connections. Each such
+ * client announces a token on its primary connection with
+ * {@link Protocol#CONTROL_GROUP} and references this token on its additional
+ * connections with {@link Protocol#CONTROL_STRIPE}. Notifications are only
+ * forwarded to primary connections and notifications received on additional
+ * connections are handled as if received on the primary one.
+ *
+ * Instances are thread-safe.
+ *
+ * @author jwienke
+ */
+public class ConnectionGroups {
+
+    private static final Logger LOG = Logger.getLogger(ConnectionGroups.class
+            .getName());
+
+    private final ConcurrentMap<String, BusConnection> primaries =
+            new ConcurrentHashMap<String, BusConnection>();
+    private final ConcurrentMap<BusConnection, BusConnection> stripes =
+            new ConcurrentHashMap<BusConnection, BusConnection>();
+
+    /**
+     * Updates the index based on a control notification received from a
+     * client. Other control notifications are ignored.
+     *
+     * @param notification
+     *            the control notification
+     * @param source
+     *            the client connection the notification was received on
+     * @return <code>true</code> if the notification was a group control
+     *         notification
+     */
+    public boolean handleControl(final Notification notification,
+            final BusConnection source) {
+        final String verb = ControlMessages.getVerb(notification);
+        if (!Protocol.CONTROL_GROUP.equals(verb)
+                && !Protocol.CONTROL_STRIPE.equals(verb)) {
+            return false;
+        }
+        final List<String> arguments =
+                ControlMessages.getArguments(notification);
+        if (arguments.size() != 1) {
+            LOG.log(Level.WARNING, "Ignoring malformed {0} control "
+                    + "notification from {1}", new Object[] { verb, source });
+            return true;
+        }
+        final String token = arguments.get(0);
+        if (Protocol.CONTROL_GROUP.equals(verb)) {
+            this.primaries.put(token, source);
+            return true;
+        }
+        final BusConnection primary = this.primaries.get(token);
+        if (primary == null) {
+            LOG.log(Level.WARNING, "Connection {0} references unknown client "
+                    + "token {1}", new Object[] { source, token });
+        } else {
+            this.stripes.put(source, primary);
+        }
+        return true;
+    }
+
+    /**
+     * Indicates whether a connection is an additional, send-only connection
+     * of a client.
+     *
+     * @param connection
+     *            the connection to test
+     * @return <code>true</code> if notifications must not be forwarded to the
+     *         connection
+     */
+    public boolean isStripe(final BusConnection connection) {
+        return this.stripes.containsKey(connection);
+    }
+
+    /**
+     * Returns the connection notifications received on the given connection
+     * are attributed to.
+     *
+     * @param connection
+     *            the connection a notification was received on
+     * @return the primary connection of the client or the connection itself
+     *         if it is not an additional connection
+     */
+    public BusConnection getPrimary(final BusConnection connection) {
+        final BusConnection primary = this.stripes.get(connection);
+        if (primary == null) {
+            return connection;
+        }
+        return primary;
+    }
+
+    /**
+     * Forgets a connection and all additional connections referencing it.
+     *
+     * @param connection
+     *            the client connection
+     */
+    public void remove(final BusConnection connection) {
+        this.stripes.remove(connection);
+        final Set<BusConnection> removed = Collections.singleton(connection);
+        this.primaries.values().removeAll(removed);
+        this.stripes.values().removeAll(removed);
+    }
+
+}
@@ -0,0 +1,149 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+
+package rsb.transport.socket;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import rsb.RSBException;
+import rsb.protocol.EventIdType.EventId;
+import rsb.protocol.NotificationType.Notification;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+/**
+ * Utility methods for creating and interpreting control notifications on
+ * {@link Protocol#CONTROL_SCOPE}.
+ *
+ * @author jwienke
+ */
+public final class ControlMessages {
+
+    private static final String SEPARATOR = "\n";
+    private static final int SENDER_ID_BYTES = 16;
+
+    private static final ByteString SCOPE = ByteString
+            .copyFromUtf8(Protocol.CONTROL_SCOPE);
+    private static final EventId EVENT_ID = EventId.newBuilder()
+            .setSenderId(ByteString.copyFrom(new byte[SENDER_ID_BYTES]))
+            .setSequenceNumber(0).build();
+
+    private ControlMessages() {
+        super();
+        // prevent instantiation of utility class
+    }
+
+    /**
+     * Creates an encoded control notification.
+     *
+     * @param verb
+     *            the control verb, e.g. {@link Protocol#CONTROL_SUBSCRIBE}
+     * @param arguments
+     *            arguments of the verb. Must not contain the newline
+     *            character.
+     * @return new frame containing the control notification
+     */
+    public static Frame create(final String verb,
+            final Collection<String> arguments) {
+        final StringBuilder data = new StringBuilder();
+        for (final String argument : arguments) {
+            if (data.length() > 0) {
+                data.append(SEPARATOR);
+            }
+            data.append(argument);
+        }
+        return Frame.encode(Notification.newBuilder().setEventId(EVENT_ID)
+                .setScope(SCOPE).setMethod(ByteString.copyFromUtf8(verb))
+                .setData(ByteString.copyFromUtf8(data.toString())).build());
+    }
+
+    /**
+     * Creates an encoded control notification.
+     *
+     * @param verb
+     *            the control verb, e.g. {@link Protocol#CONTROL_SUBSCRIBE}
+     * @param arguments
+     *            arguments of the verb. Must not contain the newline
+     *            character.
+     * @return new frame containing the control notification
+     */
+    public static Frame create(final String verb, final String... arguments) {
+        return create(verb, Arrays.asList(arguments));
+    }
+
+    /**
+     * Indicates whether a frame contains a control notification.
+     *
+     * @param frame
+     *            the frame to test
+     * @return <code>true</code> if the frame is addressed to
+     *         {@link Protocol#CONTROL_SCOPE}
+     * @throws RSBException
+     *             the frame does not contain a valid notification
+     */
+    public static boolean isControl(final Frame frame) throws RSBException {
+        try {
+            return Protocol.CONTROL_SCOPE.equals(frame.getScope());
+        } catch (final InvalidProtocolBufferException e) {
+            throw new RSBException("Received frame does not contain a valid "
+                    + "notification.", e);
+        }
+    }
+
+    /**
+     * Returns the verb of a control notification.
+     *
+     * @param notification
+     *            the control notification
+     * @return the verb
+     */
+    public static String getVerb(final Notification notification) {
+        return notification.getMethod().toStringUtf8();
+    }
+
+    /**
+     * Returns the arguments of a control notification.
+     *
+     * @param notification
+     *            the control notification
+     * @return list of arguments, maybe empty
+     */
+    public static List<String> getArguments(final Notification notification) {
+        final String data = notification.getData().toStringUtf8();
+        if (data.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<String>(Arrays.asList(data.split(SEPARATOR)));
+    }
+
+}
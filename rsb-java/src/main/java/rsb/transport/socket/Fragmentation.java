@@ -0,0 +1,385 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.socket;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import rsb.protocol.EventIdType.EventId;
+import rsb.protocol.FragmentedNotificationType.FragmentedNotification;
+import rsb.protocol.NotificationType.Notification;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+
+/**
+ * Fragmentation state of a single {@link BusConnection}. Notifications with
+ * payloads larger than the configured fragment size are split into several
+ * {@link FragmentedNotification} frames once the remote peer has announced
+ * that it reassembles fragments. Each fragment is sent as a separate frame.
+ * Hence, frames of other notifications are able to interleave with the
+ * fragments of a large notification.
+ *
+ * The first fragment contains all fields of the notification with the first
+ * chunk of the payload. All further fragments only contain the event id and
+ * the next chunk of the payload. Fragments of a single notification are sent
+ * in order.
+ *
+ * Received fragments are collected until the notification is complete. The
+ * memory used for incomplete notifications is bounded. In case the bound is
+ * exceeded, the oldest incomplete notifications are dropped. Reassembling is
+ * not thread-safe and must only be performed by the reading thread of the
+ * connection.
+ *
+ * @author jwienke
+ */
+// splitting and reassembling are the two halves of the same protocol
+@SuppressWarnings("PMD.TooManyMethods")
+public class Fragmentation {
+
+    private static final Logger LOG = Logger.getLogger(Fragmentation.class
+            .getName());
+
+    private final int fragmentSize;
+    private final long maxReassemblyBytes;
+    private volatile boolean fragmenting = false;
+
+    /**
+     * Incomplete notifications in the order of their first fragment.
+     */
+    private final Map<EventId, Reassembly> reassemblies =
+            new LinkedHashMap<EventId, Reassembly>();
+    private long reassemblyBytes = 0;
+
+    /**
+     * Callback used by {@link Fragmentation#send(Frame, WireSender)} for
+     * sending single frames as they appear on the wire.
+     *
+     * @author jwienke
+     */
+    public interface WireSender {
+
+        /**
+         * Sends a single frame without further processing.
+         *
+         * @param frame
+         *            the frame to send
+         * @throws IOException
+         *             error sending the frame
+         */
+        void sendWireFrame(Frame frame) throws IOException;
+
+    }
+
+    /**
+     * A notification for which not all fragments have been received yet.
+     *
+     * @author jwienke
+     */
+    private static final class Reassembly {
+
+        private final Notification first;
+        private final int parts;
+        /**
+         * Chunks received so far. Grows with the received fragments instead of
+         * being sized from the untrusted number of parts.
+         */
+        private final List<ByteString> chunks = new ArrayList<ByteString>();
+        private long bytes = 0;
+
+        Reassembly(final Notification first, final int parts) {
+            this.first = first;
+            this.parts = parts;
+        }
+
+        int getReceived() {
+            return this.chunks.size();
+        }
+
+        boolean isComplete() {
+            return this.chunks.size() == this.parts;
+        }
+
+        Notification toNotification() {
+            final byte[] data = new byte[(int) this.bytes];
+            int offset = 0;
+            for (final ByteString chunk : this.chunks) {
+                chunk.copyTo(data, offset);
+                offset += chunk.size();
+            }
+            return this.first.toBuilder()
+                    .setData(UnsafeByteOperations.unsafeWrap(data)).build();
+        }
+
+    }
+
+    /**
+     * Lazily encodes the fragments of a notification so that only a single
+     * fragment needs to be held in memory by the sender.
+     *
+     * @author jwienke
+     */
+    private static final class FragmentIterator implements Iterator<Frame> {
+
+        private final Notification notification;
+        private final int fragmentSize;
+        private final int parts;
+        private int index = 0;
+
+        FragmentIterator(final Notification notification,
+                final int fragmentSize) {
+            this.notification = notification;
+            this.fragmentSize = fragmentSize;
+            // large meta data may require fragmenting small payloads
+            this.parts =
+                    Math.max(1, (notification.getData().size() + fragmentSize
+                            - 1) / fragmentSize);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.index < this.parts;
+        }
+
+        @Override
+        public Frame next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final ByteString data = this.notification.getData();
+            final int start = this.index * this.fragmentSize;
+            final ByteString chunk =
+                    data.substring(start,
+                            Math.min(data.size(), start + this.fragmentSize));
+            final Notification.Builder part;
+            if (this.index == 0) {
+                part = this.notification.toBuilder();
+            } else {
+                part = Notification.newBuilder().setEventId(
+                        this.notification.getEventId());
+            }
+            final Frame frame =
+                    Frame.encodeFragment(FragmentedNotification.newBuilder()
+                            .setNotification(part.setData(chunk))
+                            .setNumDataParts(this.parts)
+                            .setDataPart(this.index).build());
+            this.index++;
+            return frame;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
+    /**
+     * Creates the fragmentation state for a new connection.
+     *
+     * @param options
+     *            options of the connection deciding about the size of sent
+     *            fragments and the memory for reassembling received ones
+     */
+    public Fragmentation(final SocketOptions options) {
+        this.fragmentSize = options.getFragmentSize();
+        this.maxReassemblyBytes = options.getMaxReassemblyBytes();
+    }
+
+    /**
+     * Indicates that the remote peer reassembles fragments. In case
+     * fragmentation is enabled in the options, large notifications are
+     * fragmented from now on.
+     */
+    public void enableFragmentation() {
+        this.fragmenting = this.fragmentSize > 0;
+    }
+
+    /**
+     * Indicates whether a frame needs to be sent in fragments.
+     *
+     * @param frame
+     *            the frame to send
+     * @return <code>true</code> if the frame is split into fragments
+     */
+    public boolean isFragmented(final Frame frame) {
+        return this.fragmenting && frame.getPayloadSize() > this.fragmentSize;
+    }
+
+    /**
+     * Sends a frame either as a whole or in fragments in case
+     * {@link #isFragmented(Frame)} applies. Fragments are encoded one at a
+     * time while sending. Other senders may interleave their frames between
+     * the fragments.
+     *
+     * @param frame
+     *            the frame to send
+     * @param sender
+     *            callback for sending the frame or its fragments
+     * @throws IOException
+     *             error sending the frame
+     */
+    public void send(final Frame frame, final WireSender sender)
+            throws IOException {
+        if (!isFragmented(frame)) {
+            sender.sendWireFrame(frame);
+            return;
+        }
+        final Iterator<Frame> fragments =
+                new FragmentIterator(frame.getTransientNotification(),
+                        this.fragmentSize);
+        while (fragments.hasNext()) {
+            final Frame fragment = fragments.next();
+            try {
+                sender.sendWireFrame(fragment);
+            } finally {
+                fragment.release();
+            }
+        }
+    }
+
+    /**
+     * Returns the frame to process for a received frame.
+     *
+     * @param frame
+     *            the received frame. Released unless it is returned.
+     * @return the received frame if it is not a fragment, a new frame with the
+     *         complete notification in case the last fragment was received,
+     *         or <code>null</code> if fragments of the notification are still
+     *         missing
+     * @throws IOException
+     *             the frame contains an invalid fragment
+     */
+    public Frame reassemble(final Frame frame) throws IOException {
+
+        if (!frame.isFragment()) {
+            return frame;
+        }
+
+        final FragmentedNotification fragment;
+        try {
+            fragment = FragmentedNotification.parseFrom(frame.getPayload());
+        } finally {
+            frame.release();
+        }
+        final int parts = fragment.getNumDataParts();
+        final int index = fragment.getDataPart();
+        if (parts <= 0 || index < 0 || index >= parts) {
+            throw new IOException("Received invalid fragment " + index
+                    + " of " + parts + " parts.");
+        }
+        // all fragments of a split notification carry at least one byte
+        if (parts > this.maxReassemblyBytes) {
+            throw new IOException("Fragment claims " + parts
+                    + " parts, which exceeds the reassembly limit of "
+                    + this.maxReassemblyBytes + " bytes.");
+        }
+
+        final Notification part = fragment.getNotification();
+        final EventId eventId = part.getEventId();
+        final Reassembly reassembly = findReassembly(part, parts, index);
+        if (reassembly == null || !append(eventId, reassembly, part.getData())
+                || !reassembly.isComplete()) {
+            return null;
+        }
+        drop(eventId);
+        return Frame.encode(reassembly.toNotification());
+
+    }
+
+    private Reassembly findReassembly(final Notification part,
+            final int parts, final int index) {
+        final EventId eventId = part.getEventId();
+        if (index == 0) {
+            drop(eventId);
+            final Reassembly reassembly = new Reassembly(part, parts);
+            this.reassemblies.put(eventId, reassembly);
+            return reassembly;
+        }
+        final Reassembly reassembly = this.reassemblies.get(eventId);
+        if (reassembly == null || reassembly.getReceived() != index
+                || reassembly.parts != parts) {
+            LOG.log(Level.FINE, "Ignoring fragment {0} of dropped "
+                    + "notification {1}", new Object[] { index, eventId });
+            return null;
+        }
+        return reassembly;
+    }
+
+    private boolean append(final EventId eventId,
+            final Reassembly reassembly, final ByteString chunk) {
+        if (!reserve(eventId, chunk.size())) {
+            LOG.log(Level.WARNING, "Dropping fragmented notification {0} "
+                    + "since it exceeds the reassembly limit of {1} bytes.",
+                    new Object[] { eventId, this.maxReassemblyBytes });
+            drop(eventId);
+            return false;
+        }
+        reassembly.chunks.add(chunk);
+        reassembly.bytes += chunk.size();
+        this.reassemblyBytes += chunk.size();
+        return true;
+    }
+
+    /**
+     * Makes room for a new chunk by dropping the oldest incomplete
+     * notifications other than the one the chunk belongs to.
+     */
+    private boolean reserve(final EventId eventId, final int bytes) {
+        final Iterator<Map.Entry<EventId, Reassembly>> oldest =
+                this.reassemblies.entrySet().iterator();
+        while (this.reassemblyBytes + bytes > this.maxReassemblyBytes
+                && oldest.hasNext()) {
+            final Map.Entry<EventId, Reassembly> entry = oldest.next();
+            if (!entry.getKey().equals(eventId)) {
+                LOG.log(Level.WARNING, "Dropping incomplete fragmented "
+                        + "notification {0} to stay within the reassembly "
+                        + "limit of {1} bytes.", new Object[] {
+                        entry.getKey(), this.maxReassemblyBytes });
+                this.reassemblyBytes -= entry.getValue().bytes;
+                oldest.remove();
+            }
+        }
+        return this.reassemblyBytes + bytes <= this.maxReassemblyBytes;
+    }
+
+    private void drop(final EventId eventId) {
+        final Reassembly removed = this.reassemblies.remove(eventId);
+        if (removed != null) {
+            this.reassemblyBytes -= removed.bytes;
+        }
+    }
+
+}
@@ -0,0 +1,758 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.socket;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import rsb.protocol.FragmentedNotificationType.FragmentedNotification;
+import rsb.protocol.NotificationType.Notification;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.UnknownFieldSet;
+import com.google.protobuf.UnsafeByteOperations;
+import com.google.protobuf.WireFormat;
+
+/**
+ * An immutable, completely encoded frame of the socket protocol consisting of
+ * the length prefix and the serialized {@link Notification}.
+ *
+ * Frames allow to pass on received data without re-serializing it and to
+ * serialize notifications only once for all connections. The contained
+ * notification is only decoded on demand.
+ *
+ * Notifications with large payloads are not encoded into a single array.
+ * Instead, the length prefix and all notification fields except for the
+ * payload are encoded into a pooled buffer, which is followed by the
+ * unmodified payload on the wire. The payload field is encoded last in this
+ * case, which is valid for protocol buffers. Such frames must be written using
+ * {@link #toBuffers()} to avoid copying the payload.
+ *
+ * Received frames are stored in pooled buffers acquired with
+ * {@link #acquireBuffer(int)}. Pooled buffers are returned once all references
+ * acquired via {@link #retain()} and the initial one have been given back
+ * using {@link #release()}. Releasing frames is optional. Unreleased buffers
+ * are left to the garbage collector.
+ *
+ * @author jwienke
+ */
+// encoding, lazy decoding and buffer life cycle belong together
+@SuppressWarnings({ "PMD.TooManyMethods", "PMD.GodClass" })
+public final class Frame {
+
+    /**
+     * Minimum payload size in bytes for which the payload is not copied while
+     * encoding a notification.
+     */
+    public static final int ZERO_COPY_THRESHOLD = 64 * 1024;
+
+    private static final int HEADER_MIN_SIZE = 256;
+    private static final int HEADER_MAX_SIZE = 4 * 1024;
+    private static final int RECEIVE_MIN_SIZE = 256;
+    private static final int RECEIVE_MAX_SIZE = 8 * 1024 * 1024;
+    private static final long POOL_CLASS_BYTES = 1024 * 1024;
+
+    /**
+     * Headers are always encoded into heap buffers. The direct buffer encoder
+     * of protocol buffers 3.4 depends on accessing the private field
+     * <code>java.nio.Buffer.address</code>. It writes to an invalid address on
+     * JVMs denying this access, which is the default since Java 16.
+     */
+    private static final BufferPool HEADER_POOL = new BufferPool(false,
+            HEADER_MIN_SIZE, HEADER_MAX_SIZE, POOL_CLASS_BYTES);
+    private static final BufferPool RECEIVE_POOL = new BufferPool(false,
+            RECEIVE_MIN_SIZE, RECEIVE_MAX_SIZE, POOL_CLASS_BYTES);
+
+    /**
+     * The encoded frame in the order to write, each positioned at 0.
+     */
+    private final ByteBuffer[] parts;
+
+    /**
+     * The part to return to {@link #pool} once all references have been
+     * released or <code>null</code> if the frame does not use pooled memory.
+     */
+    private final ByteBuffer pooled;
+    private final BufferPool pool;
+    private final int size;
+    private final AtomicInteger references = new AtomicInteger(1);
+    private volatile Notification notification;
+    private volatile String scope;
+    private volatile Boolean unreliable;
+
+    /**
+     * Variant of this frame with compressed payload, this instance if the
+     * payload is not compressible or <code>null</code> if not computed yet.
+     */
+    private Frame compressed;
+
+    /**
+     * Variant of this frame without {@link Protocol#UNRELIABLE_FIELD}, this
+     * instance if the frame does not contain the field or <code>null</code> if
+     * not computed yet.
+     */
+    private Frame unmarked;
+
+    private Frame(final ByteBuffer[] parts, final ByteBuffer pooled,
+            final BufferPool pool, final Notification notification) {
+        this.parts = parts;
+        this.pooled = pooled;
+        this.pool = pool;
+        int bytes = 0;
+        for (final ByteBuffer part : parts) {
+            bytes += part.remaining();
+        }
+        this.size = bytes;
+        this.notification = notification;
+    }
+
+    /**
+     * Encodes a notification into a new frame. Payloads of at least
+     * {@link #ZERO_COPY_THRESHOLD} bytes are referenced instead of being
+     * copied. Hence, they must not be modified as long as the frame is in
+     * use.
+     *
+     * @param notification
+     *            the notification to encode
+     * @return new frame holding one reference
+     */
+    public static Frame encode(final Notification notification) {
+        if (notification.getData().size() >= ZERO_COPY_THRESHOLD) {
+            return encodeSplit(notification);
+        }
+        return new Frame(new ByteBuffer[] { encodeContiguous(notification) },
+                null, null, notification);
+    }
+
+    /**
+     * Encodes a fragment of a notification into a new frame. Such frames
+     * replace the notification frame on connections which negotiated
+     * fragmentation. They are recognized using {@link #isFragment()} and must
+     * not be decoded as notifications.
+     *
+     * @param fragment
+     *            the fragment to encode
+     * @return new frame holding one reference
+     */
+    public static Frame encodeFragment(final FragmentedNotification fragment) {
+        return new Frame(new ByteBuffer[] { encodeContiguous(fragment) },
+                null, null, null);
+    }
+
+    private static ByteBuffer encodeContiguous(final MessageLite message) {
+        final int size = message.getSerializedSize();
+        final byte[] data = new byte[Protocol.DATA_SIZE_BYTES + size];
+        writeLength(data, size);
+        final CodedOutputStream output =
+                CodedOutputStream.newInstance(data, Protocol.DATA_SIZE_BYTES,
+                        size);
+        try {
+            message.writeTo(output);
+        } catch (final IOException e) {
+            throw new IllegalStateException(
+                    "Serializing to a byte array must not fail.", e);
+        }
+        output.checkNoSpaceLeft();
+        return ByteBuffer.wrap(data);
+    }
+
+    private static Frame encodeSplit(final Notification notification) {
+        return encodeSplit(notification, HEADER_POOL);
+    }
+
+    /**
+     * Encodes a notification as a header taken from the given pool followed
+     * by the referenced payload.
+     *
+     * @param notification
+     *            the notification to encode
+     * @param pool
+     *            pool for the header, must provide heap buffers
+     * @return new frame holding one reference
+     */
+    static Frame encodeSplit(final Notification notification,
+            final BufferPool pool) {
+        final ByteString payload = notification.getData();
+        final Notification fields = notification.toBuilder().clearData()
+                .build();
+        final int fieldsSize = fields.getSerializedSize();
+        final int payloadPrefixSize =
+                CodedOutputStream.computeTagSize(Notification.DATA_FIELD_NUMBER)
+                        + CodedOutputStream.computeUInt32SizeNoTag(payload
+                                .size());
+        final int headerSize = fieldsSize + payloadPrefixSize;
+        final ByteBuffer header =
+                pool.acquire(Protocol.DATA_SIZE_BYTES + headerSize);
+        header.order(ByteOrder.LITTLE_ENDIAN).putInt(
+                headerSize + payload.size());
+        final CodedOutputStream output =
+                CodedOutputStream.newInstance(header.array(),
+                        header.arrayOffset() + header.position(), headerSize);
+        try {
+            fields.writeTo(output);
+            output.writeTag(Notification.DATA_FIELD_NUMBER,
+                    WireFormat.WIRETYPE_LENGTH_DELIMITED);
+            output.writeUInt32NoTag(payload.size());
+        } catch (final IOException e) {
+            throw new IllegalStateException(
+                    "Serializing to a sufficiently large buffer must not fail.",
+                    e);
+        }
+        output.checkNoSpaceLeft();
+        // array based encoding does not advance the buffer
+        header.position(header.limit());
+        header.flip();
+        return new Frame(new ByteBuffer[] { header,
+                payload.asReadOnlyByteBuffer() }, header, pool, notification);
+    }
+
+    /**
+     * Creates a frame from received bytes.
+     *
+     * @param data
+     *            the complete frame including the length prefix. Ownership is
+     *            transferred to the new instance. The array must not be
+     *            modified afterwards.
+     * @return new frame
+     * @throws IOException
+     *             the length prefix does not match the data
+     */
+    public static Frame wrap(final byte[] data) throws IOException {
+        return wrap(ByteBuffer.wrap(data), null);
+    }
+
+    /**
+     * Creates a frame from a completely filled buffer which was acquired
+     * using {@link #acquireBuffer(int)}. The buffer is returned to its pool
+     * once the frame has been released.
+     *
+     * @param buffer
+     *            the buffer containing the complete frame up to its limit.
+     *            Ownership is transferred to the new instance.
+     * @return new frame holding one reference
+     * @throws IOException
+     *             the length prefix does not match the data
+     */
+    public static Frame wrap(final ByteBuffer buffer) throws IOException {
+        return wrap(buffer, RECEIVE_POOL);
+    }
+
+    private static Frame wrap(final ByteBuffer buffer, final BufferPool pool)
+            throws IOException {
+        buffer.position(0);
+        if (buffer.limit() < Protocol.DATA_SIZE_BYTES
+                || readLength(buffer) != buffer.limit()
+                        - Protocol.DATA_SIZE_BYTES) {
+            throw new IOException("Length prefix of frame does not match the "
+                    + "received data.");
+        }
+        ByteBuffer pooled = null;
+        if (pool != null) {
+            pooled = buffer;
+        }
+        return new Frame(new ByteBuffer[] { buffer }, pooled, pool, null);
+    }
+
+    /**
+     * Allocates an array for receiving a frame with the given notification
+     * size. The length prefix is already filled in and the notification bytes
+     * need to be placed after {@link Protocol#DATA_SIZE_BYTES}.
+     *
+     * @param size
+     *            size of the serialized notification in bytes
+     * @return new array
+     */
+    public static byte[] allocate(final int size) {
+        final byte[] data = new byte[Protocol.DATA_SIZE_BYTES + size];
+        writeLength(data, size);
+        return data;
+    }
+
+    /**
+     * Acquires a pooled buffer for receiving a frame with the given
+     * notification size. The length prefix is already filled in and the
+     * buffer is positioned behind it with the limit set to the end of the
+     * frame. Once filled, the buffer needs to be passed to
+     * {@link #wrap(ByteBuffer)}.
+     *
+     * @param size
+     *            size of the serialized notification in bytes
+     * @return buffer to fill
+     */
+    public static ByteBuffer acquireBuffer(final int size) {
+        final ByteBuffer buffer =
+                RECEIVE_POOL.acquire(Protocol.DATA_SIZE_BYTES + size);
+        buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN).putInt(size);
+        buffer.position(Protocol.DATA_SIZE_BYTES);
+        return buffer;
+    }
+
+    private static void writeLength(final byte[] data, final int size) {
+        ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN).putInt(size);
+    }
+
+    private static int readLength(final ByteBuffer buffer) {
+        return buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN).getInt(0);
+    }
+
+    /**
+     * Returns the notification contained in this frame. Decodes the
+     * notification on the first call. The returned instance remains valid
+     * after the frame has been released.
+     *
+     * @return the notification
+     * @throws InvalidProtocolBufferException
+     *             the frame does not contain a valid notification
+     */
+    public Notification getNotification()
+            throws InvalidProtocolBufferException {
+        // split frames are only created by encoding and always have the
+        // notification
+        Notification result = this.notification;
+        if (result == null) {
+            if (this.pooled == null) {
+                result = parse();
+            } else {
+                // pooled memory is reused and must not be referenced
+                result = Notification.parser().parseFrom(getContiguousBody());
+            }
+            this.notification = result;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the notification contained in this frame without copying the
+     * payload in case the frame uses pooled memory. The returned instance is
+     * only valid as long as the caller holds a reference to this frame.
+     *
+     * @return the notification
+     * @throws InvalidProtocolBufferException
+     *             the frame does not contain a valid notification
+     */
+    public Notification getTransientNotification()
+            throws InvalidProtocolBufferException {
+        final Notification result = this.notification;
+        if (result != null || this.pooled == null) {
+            return getNotification();
+        }
+        return parse();
+    }
+
+    /**
+     * Decodes the contiguous encoding of the notification. The payload
+     * references the frame memory instead of being copied. All other fields
+     * are decoded from the bytes before and after the payload field.
+     */
+    private Notification parse() throws InvalidProtocolBufferException {
+        final ByteBuffer body = getContiguousBody();
+        final CodedInputStream input = CodedInputStream.newInstance(body);
+        // bounds of the last payload field including its tag and of its value
+        int payloadField = -1;
+        int payloadStart = 0;
+        int payloadEnd = 0;
+        try {
+            int fieldStart = 0;
+            int tag = input.readTag();
+            while (tag != 0) {
+                if (isField(tag, Notification.DATA_FIELD_NUMBER)) {
+                    payloadField = fieldStart;
+                    final int length = input.readRawVarint32();
+                    payloadStart = input.getTotalBytesRead();
+                    input.skipRawBytes(length);
+                    payloadEnd = input.getTotalBytesRead();
+                } else {
+                    input.skipField(tag);
+                }
+                fieldStart = input.getTotalBytesRead();
+                tag = input.readTag();
+            }
+        } catch (final IOException e) {
+            // reading from a buffer only fails for invalid data
+            throw new InvalidProtocolBufferException(e);
+        }
+        if (payloadField < 0) {
+            return Notification.parser().parseFrom(body);
+        }
+        final Notification.Builder builder = Notification.newBuilder();
+        builder.mergeFrom(UnsafeByteOperations.unsafeWrap(range(body, 0,
+                payloadField)));
+        builder.mergeFrom(UnsafeByteOperations.unsafeWrap(range(body,
+                payloadEnd, body.limit())));
+        return builder.setData(
+                UnsafeByteOperations.unsafeWrap(range(body, payloadStart,
+                        payloadEnd))).build();
+    }
+
+    private static boolean isField(final int tag, final int fieldNumber) {
+        return WireFormat.getTagFieldNumber(tag) == fieldNumber
+                && WireFormat.getTagWireType(tag)
+                == WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    }
+
+    private static ByteBuffer range(final ByteBuffer buffer, final int start,
+            final int end) {
+        final ByteBuffer range = buffer.duplicate();
+        range.limit(end);
+        range.position(start);
+        return range.slice();
+    }
+
+    /**
+     * Returns the serialized notification of a contiguous frame.
+     */
+    private ByteBuffer getContiguousBody() {
+        return range(this.parts[0], Protocol.DATA_SIZE_BYTES, this.size);
+    }
+
+    /**
+     * Indicates whether this frame contains a {@link FragmentedNotification}
+     * instead of a {@link Notification}. Fragments start with their
+     * notification field, which has the field number 1. Notifications do not
+     * define this field and their encoding never starts with it.
+     *
+     * @return <code>true</code> if this frame contains a fragment
+     */
+    public boolean isFragment() {
+        if (this.notification != null) {
+            return false;
+        }
+        if (this.size <= Protocol.DATA_SIZE_BYTES) {
+            return false;
+        }
+        final int tag = this.parts[0].get(Protocol.DATA_SIZE_BYTES);
+        // negative values indicate a tag spanning several bytes
+        return tag >= 0
+                && isField(tag,
+                        FragmentedNotification.NOTIFICATION_FIELD_NUMBER);
+    }
+
+    /**
+     * Returns the scope of the contained notification. In case the
+     * notification has not been decoded yet, only the scope field is extracted
+     * from the serialized data.
+     *
+     * @return the scope string as sent by the remote peer, empty string if the
+     *         notification does not contain a scope
+     * @throws InvalidProtocolBufferException
+     *             the frame does not contain a valid notification
+     */
+    public String getScope() throws InvalidProtocolBufferException {
+        String result = this.scope;
+        if (result == null) {
+            final Notification decoded = this.notification;
+            if (decoded == null) {
+                result = peekScope();
+            } else {
+                result = decoded.getScope().toStringUtf8();
+            }
+            this.scope = result;
+        }
+        return result;
+    }
+
+    private String peekScope() throws InvalidProtocolBufferException {
+        final CodedInputStream input =
+                CodedInputStream.newInstance(getContiguousBody());
+        try {
+            int tag = input.readTag();
+            while (tag != 0) {
+                if (isField(tag, Notification.SCOPE_FIELD_NUMBER)) {
+                    return input.readBytes().toStringUtf8();
+                }
+                input.skipField(tag);
+                tag = input.readTag();
+            }
+        } catch (final IOException e) {
+            // reading from a buffer only fails for invalid data
+            throw new InvalidProtocolBufferException(e);
+        }
+        return "";
+    }
+
+    /**
+     * Marks a notification as sent by an unreliable informer using
+     * {@link Protocol#UNRELIABLE_FIELD}.
+     *
+     * @param notification
+     *            the notification to mark
+     * @return new notification with the marker
+     */
+    public static Notification markUnreliable(final Notification notification) {
+        return notification
+                .toBuilder()
+                .setUnknownFields(
+                        UnknownFieldSet
+                                .newBuilder(notification.getUnknownFields())
+                                .addField(
+                                        Protocol.UNRELIABLE_FIELD,
+                                        UnknownFieldSet.Field.newBuilder()
+                                                .addVarint(1).build()).build())
+                .build();
+    }
+
+    /**
+     * Returns a variant of this frame for peers which do not know
+     * {@link Protocol#UNRELIABLE_FIELD}. The variant is cached and released
+     * together with this frame. It is still recognized by
+     * {@link #isUnreliable()}.
+     *
+     * @return frame without the marker of unreliable notifications or this
+     *         instance if the notification is not marked
+     * @throws InvalidProtocolBufferException
+     *             the frame does not contain a valid notification
+     */
+    Frame getUnmarked() throws InvalidProtocolBufferException {
+        if (!isUnreliable()) {
+            return this;
+        }
+        synchronized (this) {
+            if (this.unmarked == null) {
+                // the variant may outlive pooled memory of this frame
+                final Notification notification = getNotification();
+                if (!notification.getUnknownFields().hasField(
+                        Protocol.UNRELIABLE_FIELD)) {
+                    this.unmarked = this;
+                    return this;
+                }
+                final UnknownFieldSet fields =
+                        UnknownFieldSet
+                                .newBuilder(notification.getUnknownFields())
+                                .clearField(Protocol.UNRELIABLE_FIELD).build();
+                final Frame variant =
+                        encode(notification.toBuilder()
+                                .setUnknownFields(fields).build());
+                variant.unreliable = Boolean.TRUE;
+                this.unmarked = variant;
+            }
+            return this.unmarked;
+        }
+    }
+
+    /**
+     * Indicates whether the contained notification has been marked with
+     * {@link #markUnreliable(Notification)}. In case the notification has not
+     * been decoded yet, only the field tags of the serialized data are
+     * scanned. Fragments are never marked.
+     *
+     * @return <code>true</code> if the notification was sent by an unreliable
+     *         informer
+     * @throws InvalidProtocolBufferException
+     *             the frame does not contain a valid notification
+     */
+    public boolean isUnreliable() throws InvalidProtocolBufferException {
+        Boolean result = this.unreliable;
+        if (result == null) {
+            final Notification decoded = this.notification;
+            if (decoded == null) {
+                result = !isFragment() && peekUnreliable();
+            } else {
+                result = decoded.getUnknownFields().hasField(
+                        Protocol.UNRELIABLE_FIELD);
+            }
+            this.unreliable = result;
+        }
+        return result;
+    }
+
+    private boolean peekUnreliable() throws InvalidProtocolBufferException {
+        final CodedInputStream input =
+                CodedInputStream.newInstance(getContiguousBody());
+        try {
+            int tag = input.readTag();
+            while (tag != 0) {
+                if (WireFormat.getTagFieldNumber(tag)
+                        == Protocol.UNRELIABLE_FIELD) {
+                    return true;
+                }
+                input.skipField(tag);
+                tag = input.readTag();
+            }
+        } catch (final IOException e) {
+            // reading from a buffer only fails for invalid data
+            throw new InvalidProtocolBufferException(e);
+        }
+        return false;
+    }
+
+    /**
+     * Returns a read-only view on the serialized notification without the
+     * length prefix. For frames with a referenced payload this requires
+     * copying the frame.
+     *
+     * @return new buffer positioned at the start of the notification
+     */
+    public ByteBuffer getPayload() {
+        return range(toBuffer(), Protocol.DATA_SIZE_BYTES, this.size)
+                .asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns the size of the serialized notification without the length
+     * prefix.
+     *
+     * @return size in bytes
+     */
+    public int getPayloadSize() {
+        return this.size - Protocol.DATA_SIZE_BYTES;
+    }
+
+    /**
+     * Returns a new buffer for writing the complete frame including the
+     * length prefix. Each caller gets its own buffer so that a frame can be
+     * written to several connections concurrently. For frames with a
+     * referenced payload this requires copying the frame. Use
+     * {@link #toBuffers()} for writing frames instead.
+     *
+     * @return new read-only buffer positioned at the start of the frame
+     */
+    public ByteBuffer toBuffer() {
+        if (this.parts.length == 1) {
+            return this.parts[0].asReadOnlyBuffer();
+        }
+        final ByteBuffer copy = ByteBuffer.allocate(this.size);
+        for (final ByteBuffer buffer : toBuffers()) {
+            copy.put(buffer);
+        }
+        copy.flip();
+        return copy.asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns new buffers for writing the complete frame including the length
+     * prefix using a gathering write. Each caller gets its own buffers so that
+     * a frame can be written to several connections concurrently. The
+     * returned buffers are only valid as long as the caller holds a reference
+     * to the frame.
+     *
+     * @return new read-only buffers in the order to write
+     */
+    public ByteBuffer[] toBuffers() {
+        final ByteBuffer[] buffers = new ByteBuffer[this.parts.length];
+        for (int i = 0; i < buffers.length; ++i) {
+            buffers[i] = this.parts[i].asReadOnlyBuffer();
+        }
+        return buffers;
+    }
+
+    /**
+     * Returns the size of the complete frame including the length prefix.
+     *
+     * @return size in bytes
+     */
+    public int getSize() {
+        return this.size;
+    }
+
+    /**
+     * Returns the cached variant of this frame with compressed payload.
+     *
+     * @return frame with compressed payload, this instance if the payload is
+     *         not compressible or <code>null</code> if no variant has been
+     *         cached yet
+     */
+    Frame getCompressed() {
+        synchronized (this) {
+            return this.compressed;
+        }
+    }
+
+    /**
+     * Caches the variant of this frame with compressed payload. The variant
+     * is released together with this frame. If another variant has been
+     * cached concurrently, the given one is released and the existing one is
+     * returned.
+     *
+     * @param variant
+     *            frame with compressed payload or this instance if the
+     *            payload is not compressible
+     * @return the cached variant
+     */
+    Frame setCompressed(final Frame variant) {
+        if (Boolean.TRUE.equals(this.unreliable)) {
+            // keep the marker of unmarked variants
+            variant.unreliable = Boolean.TRUE;
+        }
+        synchronized (this) {
+            if (this.compressed == null) {
+                this.compressed = variant;
+                return variant;
+            }
+        }
+        if (variant != this) {
+            variant.release();
+        }
+        return getCompressed();
+    }
+
+    /**
+     * Acquires an additional reference to this frame. Needs to be called by
+     * everyone who keeps the frame or its buffers after the call in which the
+     * frame was passed.
+     *
+     * @return this instance
+     */
+    public Frame retain() {
+        this.references.incrementAndGet();
+        return this;
+    }
+
+    /**
+     * Gives back a reference to this frame. Once all references have been
+     * given back, pooled memory of the frame is reused and the frame must
+     * not be used anymore.
+     */
+    public void release() {
+        final int remaining = this.references.decrementAndGet();
+        assert remaining >= 0 : "Frame released more often than retained";
+        if (remaining != 0) {
+            return;
+        }
+        if (this.pooled != null) {
+            this.pool.release(this.pooled);
+        }
+        final Frame variant = getCompressed();
+        if (variant != null && variant != this) {
+            variant.release();
+        }
+        final Frame withoutMarker;
+        synchronized (this) {
+            withoutMarker = this.unmarked;
+        }
+        if (withoutMarker != null && withoutMarker != this) {
+            withoutMarker.release();
+        }
+    }
+
+}
@@ -0,0 +1,97 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.socket;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Incrementally decodes length-prefixed frames as specified in {@link Protocol}
+ * from chunks of bytes as they arrive on a non-blocking channel.
+ *
+ * Instances are not thread-safe.
+ *
+ * @author jwienke
+ */
+public class FrameDecoder {
+
+    private final ByteBuffer lengthBuffer = ByteBuffer.allocate(
+            Protocol.DATA_SIZE_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    private ByteBuffer frameBuffer;
+
+    /**
+     * Consumes bytes from the given buffer until a complete frame is available
+     * or the buffer is exhausted.
+     *
+     * @param input
+     *            buffer in read mode providing the received bytes. The position
+     *            is advanced by the number of consumed bytes.
+     * @return the next complete frame or <code>null</code> if more bytes are
+     *         required. The frame uses pooled memory and should be released
+     *         by the caller once handled.
+     * @throws IOException
+     *             received an invalid frame length
+     */
+    public Frame decode(final ByteBuffer input) throws IOException {
+
+        if (this.frameBuffer == null) {
+            transfer(input, this.lengthBuffer);
+            if (this.lengthBuffer.hasRemaining()) {
+                return null;
+            }
+            this.lengthBuffer.flip();
+            final int length = this.lengthBuffer.getInt();
+            this.lengthBuffer.clear();
+            if (length < 0) {
+                throw new IOException("Received invalid frame length "
+                        + length);
+            }
+            this.frameBuffer = Frame.acquireBuffer(length);
+        }
+
+        transfer(input, this.frameBuffer);
+        if (this.frameBuffer.hasRemaining()) {
+            return null;
+        }
+        final ByteBuffer data = this.frameBuffer;
+        this.frameBuffer = null;
+        return Frame.wrap(data);
+
+    }
+
+    private static void transfer(final ByteBuffer source,
+            final ByteBuffer target) {
+        final int count = Math.min(source.remaining(), target.remaining());
+        final ByteBuffer slice = source.duplicate();
+        slice.limit(slice.position() + count);
+        target.put(slice);
+        source.position(source.position() + count);
+    }
+
+}
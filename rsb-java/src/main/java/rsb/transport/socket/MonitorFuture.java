@@ -0,0 +1,115 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.socket;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A {@link FutureTask} whose completion is awaited using {@link Object#wait()}
+ * instead of parking the waiting thread.
+ *
+ * Connections wait for their writer while holding monitors. A virtual thread
+ * which parks inside a monitor blocks its carrier thread. In case all
+ * carriers are blocked this way, the writer itself cannot run anymore. For
+ * virtual threads waiting in {@link Object#wait()}, the scheduler compensates
+ * by adding carrier threads instead.
+ *
+ * @author jwienke
+ * @param <Result>
+ *            result type of the task
+ */
+class MonitorFuture<Result> extends FutureTask<Result> {
+
+    /**
+     * Creates a new task.
+     *
+     * @param callable
+     *            the code to execute
+     */
+    MonitorFuture(final Callable<Result> callable) {
+        super(callable);
+    }
+
+    @Override
+    protected void done() {
+        synchronized (this) {
+            this.notifyAll();
+        }
+    }
+
+    /**
+     * Waits for the task to complete.
+     *
+     * @return the result of the task
+     * @throws InterruptedException
+     *             interrupted while waiting
+     * @throws ExecutionException
+     *             the task failed
+     */
+    public Result await() throws InterruptedException, ExecutionException {
+        synchronized (this) {
+            while (!isDone()) {
+                this.wait();
+            }
+        }
+        return get();
+    }
+
+    /**
+     * Waits for the task to complete for at most the given time.
+     *
+     * @param timeout
+     *            maximum time to wait
+     * @param unit
+     *            unit of the timeout
+     * @return the result of the task
+     * @throws InterruptedException
+     *             interrupted while waiting
+     * @throws ExecutionException
+     *             the task failed
+     * @throws TimeoutException
+     *             the task did not complete in time
+     */
+    public Result await(final long timeout, final TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        final long end = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (this) {
+            long remaining = end - System.nanoTime();
+            while (!isDone() && remaining > 0) {
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                remaining = end - System.nanoTime();
+            }
+        }
+        return get(0, TimeUnit.NANOSECONDS);
+    }
+
+}
@@ -0,0 +1,626 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.socket;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import rsb.AbstractActivatable;
+import rsb.RSBException;
+import rsb.protocol.NotificationType.Notification;
+
+/**
+ * A server-side {@link BusConnection} operating on a non-blocking
+ * {@link SocketChannel} which is multiplexed by a {@link SelectorLoop}.
+ *
+ * Received notifications are not read using {@link #readNotification()}.
+ * Instead, they are decoded inside the loop thread and passed to a
+ * {@link Listener}. Outgoing notifications are written directly if possible.
+ * Otherwise they are queued and written by the loop once the channel becomes
+ * writable again. Hence, sending never blocks on a slow remote peer. Unless a
+ * {@link SlowConsumerPolicy} other than {@link SlowConsumerPolicy#BLOCK} is
+ * configured, the queued bytes are not limited. Otherwise the policy is
+ * applied once the queue depth or the high watermark would be exceeded.
+ * Frames which must not be dropped are queued regardless of the limits.
+ *
+ * The wire protocol is the same as for {@link BusServerConnection}.
+ *
+ * @author jwienke
+ */
+// connection life cycle, reading and writing belong together
+@SuppressWarnings({ "PMD.TooManyMethods", "PMD.GodClass", "PMD.TooManyFields" })
+public class NioBusConnection extends AbstractActivatable implements
+        BusConnection, SelectorLoop.Handler {
+
+    private static final Logger LOG = Logger.getLogger(NioBusConnection.class
+            .getName());
+
+    /**
+     * Size of the buffer used to receive bytes from the channel.
+     */
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Time in milliseconds to wait for pending data to be written when
+     * deactivating.
+     */
+    private static final long FLUSH_TIMEOUT_MS = 10000;
+
+    private final SocketChannel channel;
+    private final SocketOptions options;
+    private final SelectorLoop loop;
+    private final Listener listener;
+    private final PayloadCompression compression;
+    private final Fragmentation fragmentation;
+    private volatile boolean markingUnreliable = false;
+    private final Fragmentation.WireSender wireSender =
+            new Fragmentation.WireSender() {
+
+                @Override
+                public void sendWireFrame(final Frame frame)
+                        throws IOException {
+                    NioBusConnection.this.sendWireFrame(frame);
+                }
+
+            };
+    private final FrameDecoder decoder = new FrameDecoder();
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    private final Deque<ByteBuffer> pendingWrites = new ArrayDeque<ByteBuffer>();
+    /**
+     * Frames with pending writes by the last of their buffers in
+     * {@link #pendingWrites}. A reference is held for each of these frames.
+     */
+    private final Map<ByteBuffer, Frame> pendingFrames =
+            new IdentityHashMap<ByteBuffer, Frame>();
+    private long pendingBytes = 0;
+    private final SlowConsumerStatistics slowConsumerStatistics =
+            new SlowConsumerStatistics();
+    private SelectionKey key;
+    private boolean active = false;
+    private boolean activeShutdown = false;
+    private boolean closed = false;
+
+    /**
+     * Callback interface for events generated by the selector loop for a
+     * connection.
+     *
+     * @author jwienke
+     */
+    public interface Listener {
+
+        /**
+         * Called inside the loop thread for every frame received on the
+         * connection.
+         *
+         * @param connection
+         *            the connection the frame was received on
+         * @param frame
+         *            the received frame
+         */
+        void handleFrame(NioBusConnection connection, Frame frame);
+
+        /**
+         * Called inside the loop thread once the remote peer has closed the
+         * connection or the connection failed. The connection needs to be
+         * deactivated by the listener.
+         *
+         * @param connection
+         *            the closed connection
+         */
+        void handleClosed(NioBusConnection connection);
+
+    }
+
+    /**
+     * Creates a new connection for an accepted channel.
+     *
+     * @param channel
+     *            the accepted channel
+     * @param options
+     *            options of the server which accepted the channel
+     * @param loop
+     *            the loop to use for multiplexing the channel
+     * @param listener
+     *            listener to notify about received notifications and closed
+     *            connections
+     */
+    public NioBusConnection(final SocketChannel channel,
+            final SocketOptions options, final SelectorLoop loop,
+            final Listener listener) {
+        this.channel = channel;
+        this.options = options;
+        this.loop = loop;
+        this.listener = listener;
+        this.compression = new PayloadCompression(options);
+        this.fragmentation = new Fragmentation(options);
+    }
+
+    @Override
+    public SocketOptions getOptions() {
+        return this.options;
+    }
+
+    @Override
+    public SlowConsumerStatistics getSlowConsumerStatistics() {
+        return this.slowConsumerStatistics;
+    }
+
+    @Override
+    public void enableCompression() {
+        this.compression.enableCompression();
+    }
+
+    @Override
+    public void enableDecompression() {
+        this.compression.enableDecompression();
+    }
+
+    @Override
+    public void enableFragmentation() {
+        this.fragmentation.enableFragmentation();
+    }
+
+    @Override
+    public void enableUnreliableMarking() {
+        this.markingUnreliable = true;
+    }
+
+    @Override
+    public void activate() throws RSBException {
+        LOG.finer("Activating connection");
+
+        synchronized (this) {
+
+            if (this.active) {
+                throw new IllegalStateException("Connection is already active.");
+            }
+
+            try {
+                this.channel.configureBlocking(false);
+                if (!this.options.isUnixDomain()) {
+                    SocketTuning.configure(this.channel.socket(),
+                            this.options);
+                }
+                this.active = true;
+                // handshake
+                final ByteBuffer handshakeBytes =
+                        ByteBuffer.allocate(Protocol.HANDSHAKE_BYTES);
+                handshakeBytes.putInt(Protocol.HANDSHAKE_DATA);
+                handshakeBytes.flip();
+                write(handshakeBytes);
+            } catch (final IOException e) {
+                this.active = false;
+                throw new RSBException(
+                        "Unable to send handshake data to new client.", e);
+            }
+
+            this.loop.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    register();
+                }
+
+            });
+
+        }
+
+    }
+
+    private void register() {
+        synchronized (this) {
+            try {
+                int operations = SelectionKey.OP_READ;
+                if (!this.pendingWrites.isEmpty()) {
+                    operations |= SelectionKey.OP_WRITE;
+                }
+                this.key =
+                        this.channel.register(this.loop.getSelector(),
+                                operations, this);
+            } catch (final ClosedChannelException e) {
+                LOG.log(Level.FINE, "Channel closed before registration.", e);
+            }
+        }
+    }
+
+    @Override
+    public void handleReady(final SelectionKey readyKey) {
+        if (readyKey.isReadable()) {
+            read();
+        }
+        if (readyKey.isValid() && readyKey.isWritable()) {
+            flush();
+        }
+    }
+
+    private void read() {
+        try {
+            final int bytesRead = this.channel.read(this.readBuffer);
+            if (bytesRead < 0) {
+                LOG.log(Level.FINE, "End of stream from remote peer on {0}",
+                        this);
+                handleClosed();
+                return;
+            }
+            this.readBuffer.flip();
+            Frame received = this.decoder.decode(this.readBuffer);
+            while (received != null) {
+                final Frame frame = this.fragmentation.reassemble(received);
+                if (frame != null) {
+                    handleFrame(this.compression.decompress(frame));
+                }
+                received = this.decoder.decode(this.readBuffer);
+            }
+            this.readBuffer.compact();
+        } catch (final IOException e) {
+            LOG.log(Level.WARNING, "Error while reading from connection "
+                    + this + ". Closing it. "
+                    + "Probably the other end point crashed.", e);
+            handleClosed();
+        }
+    }
+
+    private void handleFrame(final Frame frame) {
+        try {
+            this.listener.handleFrame(this, frame);
+        } finally {
+            frame.release();
+        }
+    }
+
+    private void handleClosed() {
+        synchronized (this) {
+            if (this.key != null) {
+                this.key.cancel();
+            }
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+        }
+        this.listener.handleClosed(this);
+    }
+
+    private void flush() {
+        synchronized (this) {
+            try {
+                if (!this.pendingWrites.isEmpty()) {
+                    this.pendingBytes -=
+                            this.channel.write(this.pendingWrites
+                                    .toArray(new ByteBuffer[this.pendingWrites
+                                            .size()]));
+                    while (!this.pendingWrites.isEmpty()
+                            && !this.pendingWrites.peekFirst().hasRemaining()) {
+                        final Frame written =
+                                this.pendingFrames.remove(this.pendingWrites
+                                        .removeFirst());
+                        if (written != null) {
+                            written.release();
+                        }
+                    }
+                }
+                if (this.pendingWrites.isEmpty()) {
+                    if (this.key != null && this.key.isValid()) {
+                        this.key.interestOps(SelectionKey.OP_READ);
+                    }
+                    if (this.activeShutdown) {
+                        this.channel.shutdownOutput();
+                    }
+                    this.notifyAll();
+                }
+            } catch (final IOException e) {
+                LOG.log(Level.WARNING, "Error while writing to connection "
+                        + this + ". Closing it.", e);
+                discardPending();
+                this.loop.execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        handleClosed();
+                    }
+
+                });
+            }
+        }
+    }
+
+    /**
+     * Discards all queued bytes and wakes up threads waiting for them to be
+     * written. Must be called with the lock held.
+     */
+    private void discardPending() {
+        for (final Frame frame : this.pendingFrames.values()) {
+            frame.release();
+        }
+        this.pendingWrites.clear();
+        this.pendingFrames.clear();
+        this.pendingBytes = 0;
+        this.notifyAll();
+    }
+
+    /**
+     * Writes as much of the given buffers as possible with a gathering write
+     * without blocking and queues the remaining bytes. Must be called with the
+     * lock held.
+     *
+     * @param buffers
+     *            the buffers to write in order
+     * @throws IOException
+     *             error writing to the channel
+     */
+    private void write(final ByteBuffer... buffers) throws IOException {
+        final boolean idle = this.pendingWrites.isEmpty();
+        if (idle) {
+            this.channel.write(buffers);
+        }
+        for (final ByteBuffer buffer : buffers) {
+            if (buffer.hasRemaining()) {
+                this.pendingWrites.addLast(buffer);
+                this.pendingBytes += buffer.remaining();
+            }
+        }
+        if (idle && !this.pendingWrites.isEmpty()) {
+            this.loop.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    requestWritable();
+                }
+
+            });
+        }
+    }
+
+    private void requestWritable() {
+        synchronized (this) {
+            if (this.key != null && this.key.isValid()
+                    && !this.pendingWrites.isEmpty()) {
+                this.key.interestOps(SelectionKey.OP_READ
+                        | SelectionKey.OP_WRITE);
+            }
+        }
+    }
+
+    @Override
+    public void sendNotification(final Notification notification)
+            throws IOException {
+        final Frame frame = Frame.encode(notification);
+        try {
+            sendFrame(frame);
+        } finally {
+            frame.release();
+        }
+    }
+
+    @Override
+    public void sendFrame(final Frame frame) throws IOException {
+        final Frame marked;
+        if (this.markingUnreliable) {
+            marked = frame;
+        } else {
+            marked = frame.getUnmarked();
+        }
+        this.fragmentation.send(this.compression.compress(marked),
+                this.wireSender);
+    }
+
+    private void sendWireFrame(final Frame frame) throws IOException {
+
+        LOG.log(Level.FINE, "Sending new frame of size {0}", frame.getSize());
+
+        synchronized (this) {
+
+            if (this.activeShutdown || !this.active) {
+                LOG.log(Level.FINE, "Not sending frame {0} on "
+                        + "this connection because it is shut down "
+                        + "or not active.", frame);
+                return;
+            }
+
+            if (!admit(frame)) {
+                LOG.log(Level.FINE, "Dropped frame {0} for slow remote peer.",
+                        frame);
+                return;
+            }
+
+            final ByteBuffer[] buffers = frame.toBuffers();
+            write(buffers);
+            final ByteBuffer last = buffers[buffers.length - 1];
+            if (last.hasRemaining()) {
+                this.pendingFrames.put(last, frame.retain());
+            }
+
+        }
+
+    }
+
+    /**
+     * Applies the slow consumer policy before queuing a frame. Must be called
+     * with the lock held.
+     *
+     * @return <code>false</code> if the frame must not be sent
+     * @throws IOException
+     *             the connection was closed because of the policy
+     */
+    private boolean admit(final Frame frame) throws IOException {
+        final SlowConsumerPolicy policy = this.options.getSlowConsumerPolicy();
+        if (policy == SlowConsumerPolicy.BLOCK || !exceeds(frame)) {
+            return true;
+        }
+        if (policy == SlowConsumerPolicy.DISCONNECT) {
+            this.slowConsumerStatistics.record(policy);
+            discardPending();
+            this.channel.close();
+            this.loop.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    handleClosed();
+                }
+
+            });
+            throw new SlowConsumerException("The remote peer of connection "
+                    + this + " did not consume queued frames in time.");
+        }
+        if (policy != SlowConsumerPolicy.DROP_NEWEST) {
+            dropOldest(frame, policy);
+        }
+        if (exceeds(frame) && policy.drops(frame)) {
+            this.slowConsumerStatistics.record(policy);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Indicates whether queuing the given frame exceeds the limits. Must be
+     * called with the lock held.
+     */
+    private boolean exceeds(final Frame frame) {
+        return !this.pendingWrites.isEmpty()
+                && (this.pendingFrames.size() >= this.options.getQueueDepth()
+                    || this.pendingBytes + frame.getSize() > this.options
+                        .getHighWatermark());
+    }
+
+    /**
+     * Drops the oldest queued frames allowed by the policy until the given
+     * frame fits. The first queued frame might already be partially written
+     * and is never dropped. Must be called with the lock held.
+     */
+    private void dropOldest(final Frame frame, final SlowConsumerPolicy policy) {
+        final Deque<ByteBuffer> kept =
+                new ArrayDeque<ByteBuffer>(this.pendingWrites.size());
+        // buffers of the frame ending with the next buffer in pendingFrames
+        final List<ByteBuffer> current = new ArrayList<ByteBuffer>();
+        boolean first = true;
+        for (final ByteBuffer buffer : this.pendingWrites) {
+            current.add(buffer);
+            final Frame pending = this.pendingFrames.get(buffer);
+            if (pending == null) {
+                continue;
+            }
+            if (!first && exceeds(frame) && policy.drops(pending)) {
+                for (final ByteBuffer dropped : current) {
+                    this.pendingBytes -= dropped.remaining();
+                }
+                this.pendingFrames.remove(buffer);
+                pending.release();
+                this.slowConsumerStatistics.record(policy);
+            } else {
+                kept.addAll(current);
+            }
+            current.clear();
+            first = false;
+        }
+        kept.addAll(current);
+        this.pendingWrites.clear();
+        this.pendingWrites.addAll(kept);
+    }
+
+    @Override
+    public void shutdown() throws IOException {
+        LOG.finest("Shutdown called");
+        synchronized (this) {
+            if (!this.activeShutdown) {
+                this.activeShutdown = true;
+                if (this.pendingWrites.isEmpty()) {
+                    this.channel.shutdownOutput();
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean isActiveShutdown() {
+        synchronized (this) {
+            return this.activeShutdown;
+        }
+    }
+
+    @Override
+    public void deactivate() throws RSBException, InterruptedException {
+        LOG.finer("Deactivating connection");
+
+        synchronized (this) {
+
+            if (!this.active) {
+                throw new IllegalStateException("Connection is not active.");
+            }
+
+            // give the loop a chance to write out pending data. Waiting inside
+            // the loop would block the loop itself.
+            if (!this.loop.inLoop()) {
+                final long end = System.currentTimeMillis() + FLUSH_TIMEOUT_MS;
+                long remaining = FLUSH_TIMEOUT_MS;
+                while (!this.pendingWrites.isEmpty() && remaining > 0) {
+                    this.wait(remaining);
+                    remaining = end - System.currentTimeMillis();
+                }
+            }
+
+            this.active = false;
+            this.closed = true;
+            discardPending();
+            try {
+                this.channel.close();
+            } catch (final IOException e) {
+                LOG.log(Level.WARNING,
+                        "Exception during deactivation. "
+                                + "Ignoring this exception and doing so "
+                                + "as if nothing happened.", e);
+            }
+
+        }
+
+    }
+
+    @Override
+    public boolean isActive() {
+        synchronized (this) {
+            return this.active;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[channel=" + this.channel + "]";
+    }
+
+}
@@ -0,0 +1,310 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.socket;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import rsb.RSBException;
+
+/**
+ * A {@link BusServer} variant based on non-blocking I/O. Instead of using one
+ * receiving thread per client connection, all connections are multiplexed on a
+ * small, fixed set of {@link SelectorLoop}s as configured by
+ * {@link SocketOptions#getSelectorThreads()}. The first loop additionally
+ * accepts new clients.
+ *
+ * Incoming notifications are dispatched inside the loop threads. Therefore,
+ * local {@link rsb.transport.socket.Bus.NotificationReceiver}s block all
+ * connections of the same loop while handling a notification.
+ *
+ * The wire protocol is the same as for {@link BusServer}.
+ *
+ * @author jwienke
+ */
+// false positive: methods of anonymous handlers are counted as well
+@SuppressWarnings("PMD.TooManyMethods")
+public class NioBusServer extends BusServerBase {
+
+    private static final Logger LOG = Logger.getLogger(NioBusServer.class
+            .getName());
+
+    private ServerSocketChannel serverChannel;
+    private SelectorLoop[] loops;
+    private int nextLoop = 0;
+
+    /**
+     * Bridges events of the connections to this bus.
+     */
+    private final NioBusConnection.Listener connectionListener =
+            new NioBusConnection.Listener() {
+
+                @Override
+                public void handleFrame(final NioBusConnection connection,
+                        final Frame frame) {
+                    try {
+                        handleIncoming(frame, connection);
+                    } catch (final RSBException e) {
+                        LOG.log(Level.WARNING,
+                                "Unable to correctly handle a notification. "
+                                        + "Continuing with the next one "
+                                        + "and ignoring this error.", e);
+                    }
+                }
+
+                @Override
+                public void handleClosed(final NioBusConnection connection) {
+                    cleanUpConnection(connection);
+                }
+
+            };
+
+    /**
+     * Accepts new client connections inside the first selector loop.
+     */
+    private final SelectorLoop.Handler acceptor = new SelectorLoop.Handler() {
+
+        @Override
+        public void handleReady(final SelectionKey key) {
+            try {
+                SocketChannel channel = NioBusServer.this.serverChannel.accept();
+                while (channel != null) {
+                    LOG.log(Level.FINE, "Accepted a new client channel: {0}",
+                            channel);
+                    addClient(channel);
+                    channel = NioBusServer.this.serverChannel.accept();
+                }
+            } catch (final IOException e) {
+                LOG.log(Level.WARNING,
+                        "Unexpected exception while accepting new client.", e);
+            }
+        }
+
+    };
+
+    /**
+     * Constructor.
+     *
+     * @param options
+     *            socket options to use for the communication
+     */
+    public NioBusServer(final SocketOptions options) {
+        super(options);
+    }
+
+    private void addClient(final SocketChannel channel) {
+
+        final NioBusConnection connection;
+        // see BusServer for the reasons of locking the whole procedure
+        synchronized (this) {
+
+            if (!isActive()) {
+                closeQuietly(channel);
+                return;
+            }
+
+            connection =
+                    new NioBusConnection(channel, getSocketOptions(),
+                            this.loops[this.nextLoop], this.connectionListener);
+            this.nextLoop = (this.nextLoop + 1) % this.loops.length;
+            registerConnection(connection);
+            try {
+                connection.activate();
+            } catch (final RSBException e) {
+                LOG.log(Level.WARNING,
+                        "Unexpected exception while activating new client.", e);
+                removeConnection(connection);
+                closeQuietly(channel);
+                return;
+            }
+        }
+        LOG.log(Level.FINER, "Activated a new client connection {0}",
+                connection);
+
+    }
+
+    private static void closeQuietly(final SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (final IOException e) {
+            LOG.log(Level.FINE, "Error closing rejected channel.", e);
+        }
+    }
+
+    private void cleanUpConnection(final NioBusConnection connection) {
+        removeConnection(connection);
+        synchronized (connection) {
+            try {
+                connection.shutdown();
+            } catch (final IOException e) {
+                LOG.log(Level.FINE, "Error while initiating active shutdown on "
+                        + "closed connection " + connection, e);
+            }
+            if (connection.isActive()) {
+                try {
+                    connection.deactivate();
+                } catch (final RSBException e) {
+                    LOG.log(Level.WARNING, "Error while deactivating "
+                            + "connection " + connection, e);
+                } catch (final InterruptedException e) {
+                    // restore interruption state
+                    // cf. http://www.ibm.com/developerworks/library/j-jtp05236/
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void activate() throws RSBException {
+
+        LOG.fine("Trying to activate NioBusServer.");
+
+        synchronized (this) {
+
+            if (this.serverChannel != null) {
+                throw new IllegalStateException(
+                        "NioBusServer is already active.");
+            }
+
+            final SelectorLoop[] newLoops =
+                    new SelectorLoop[getSocketOptions().getSelectorThreads()];
+            try {
+                for (int i = 0; i < newLoops.length; ++i) {
+                    newLoops[i] =
+                            new SelectorLoop("NioBusServer-"
+                                    + getSocketOptions().getPort() + "-" + i);
+                    newLoops[i].start();
+                }
+                this.serverChannel = openServerChannel();
+                this.loops = newLoops;
+            } catch (final IOException e) {
+                stopLoops(newLoops);
+                throw new RSBException(e);
+            }
+
+            this.loops[0].execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        NioBusServer.this.serverChannel.register(
+                                NioBusServer.this.loops[0].getSelector(),
+                                SelectionKey.OP_ACCEPT,
+                                NioBusServer.this.acceptor);
+                    } catch (final IOException e) {
+                        LOG.log(Level.SEVERE,
+                                "Unable to accept clients on server channel.",
+                                e);
+                    }
+                }
+
+            });
+
+        }
+
+    }
+
+    private ServerSocketChannel openServerChannel() throws IOException {
+        final ServerSocketChannel channel;
+        if (getSocketOptions().isUnixDomain()) {
+            channel = UnixDomainSockets.bind(getSocketOptions().getSocketPath());
+        } else {
+            channel = ServerSocketChannel.open();
+        }
+        try {
+            channel.configureBlocking(false);
+            if (!getSocketOptions().isUnixDomain()) {
+                SocketTuning.bindServer(channel.socket(), getSocketOptions());
+            }
+        } catch (final IOException e) {
+            channel.close();
+            throw e;
+        }
+        return channel;
+    }
+
+    @SuppressWarnings("PMD.UseVarargs")
+    private static void stopLoops(final SelectorLoop[] loopsToStop) {
+        for (final SelectorLoop loop : loopsToStop) {
+            if (loop != null) {
+                loop.startShutdown();
+            }
+        }
+    }
+
+    @Override
+    public void deactivate() throws RSBException, InterruptedException {
+        LOG.info("Trying to deactivate NioBusServer.");
+
+        final SelectorLoop[] oldLoops;
+        synchronized (this) {
+
+            if (this.serverChannel == null) {
+                throw new IllegalStateException("NioBusServer is not active.");
+            }
+
+            try {
+                this.serverChannel.close();
+            } catch (final IOException e) {
+                LOG.log(Level.WARNING, "Exception closing server channel.", e);
+            }
+            if (getSocketOptions().isUnixDomain()) {
+                UnixDomainSockets.unlink(getSocketOptions().getSocketPath());
+            }
+
+            super.deactivate();
+
+            oldLoops = this.loops;
+            stopLoops(oldLoops);
+            this.serverChannel = null;
+            this.loops = null;
+
+        }
+
+        // joining outside of the lock as loops might be waiting for it
+        for (final SelectorLoop loop : oldLoops) {
+            if (!loop.inLoop()) {
+                loop.join();
+            }
+        }
+
+    }
+
+    @Override
+    public boolean isActive() {
+        synchronized (this) {
+            return this.serverChannel != null;
+        }
+    }
+
+}
@@ -0,0 +1,382 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.socket;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A bounded queue of encoded frames waiting to be written to a connection.
+ *
+ * The queue is bounded by a maximum number of frames and additionally by
+ * high and low watermarks on the number of queued bytes. Once the queued bytes
+ * exceed the high watermark, the queue becomes unwritable and producers are
+ * blocked until a consumer has drained the queue down to the low watermark.
+ *
+ * Instead of blocking producers, a {@link SlowConsumerPolicy} may drop
+ * frames or close the queue once a new frame would exceed the limits.
+ * Frames which must not be dropped are still subject to blocking in this
+ * case.
+ *
+ * @author jwienke
+ */
+public class OutboundQueue {
+
+    private static final Logger LOG = Logger.getLogger(OutboundQueue.class
+            .getName());
+
+    private final int depth;
+    private final long highWatermark;
+    private final long lowWatermark;
+    private final Deque<Frame> frames = new ArrayDeque<Frame>();
+    private long bytes = 0;
+    private boolean writable = true;
+    private boolean closed = false;
+    private final SlowConsumerPolicy policy;
+    private final SlowConsumerStatistics statistics;
+    private boolean overflowed = false;
+
+    /**
+     * Creates a new queue which blocks producers once it is full.
+     *
+     * @param depth
+     *            maximum number of queued frames, must be &gt; 0
+     * @param highWatermark
+     *            number of queued bytes above which the queue becomes
+     *            unwritable
+     * @param lowWatermark
+     *            number of queued bytes at which an unwritable queue becomes
+     *            writable again
+     */
+    public OutboundQueue(final int depth, final long highWatermark,
+            final long lowWatermark) {
+        this(depth, highWatermark, lowWatermark, SlowConsumerPolicy.BLOCK,
+                new SlowConsumerStatistics());
+    }
+
+    /**
+     * Creates a new queue.
+     *
+     * @param depth
+     *            maximum number of queued frames, must be &gt; 0
+     * @param highWatermark
+     *            number of queued bytes above which the queue becomes
+     *            unwritable
+     * @param lowWatermark
+     *            number of queued bytes at which an unwritable queue becomes
+     *            writable again
+     * @param policy
+     *            policy to apply once a new frame exceeds the limits
+     * @param statistics
+     *            counters for the actions taken by the policy
+     */
+    public OutboundQueue(final int depth, final long highWatermark,
+            final long lowWatermark, final SlowConsumerPolicy policy,
+            final SlowConsumerStatistics statistics) {
+        assert depth > 0;
+        assert lowWatermark <= highWatermark;
+        this.depth = depth;
+        this.highWatermark = highWatermark;
+        this.lowWatermark = lowWatermark;
+        this.policy = policy;
+        this.statistics = statistics;
+    }
+
+    /**
+     * Creates a new queue with the limits configured in the given options.
+     *
+     * @param options
+     *            options to take the limits from
+     */
+    public OutboundQueue(final SocketOptions options) {
+        this(options, new SlowConsumerStatistics());
+    }
+
+    /**
+     * Creates a new queue with the limits and the slow consumer policy
+     * configured in the given options.
+     *
+     * @param options
+     *            options to take the limits from
+     * @param statistics
+     *            counters for the actions taken by the policy
+     */
+    public OutboundQueue(final SocketOptions options,
+            final SlowConsumerStatistics statistics) {
+        this(options.getQueueDepth(), options.getHighWatermark(), options
+                .getLowWatermark(), options.getSlowConsumerPolicy(),
+                statistics);
+    }
+
+    /**
+     * Appends a frame to the queue. Blocks while the queue is full or
+     * unwritable unless the slow consumer policy of the queue drops frames or
+     * closes the queue instead.
+     *
+     * @param frame
+     *            the frame to append. A reference held by the caller is
+     *            passed on to the consumer taking the frame in case the frame
+     *            was queued.
+     * @return <code>true</code> if the frame was queued, <code>false</code> if
+     *         the queue has been closed or the frame has been dropped
+     * @throws InterruptedException
+     *             interrupted while waiting for space in the queue
+     */
+    public boolean put(final Frame frame) throws InterruptedException {
+        synchronized (this) {
+            if (!this.closed && !admit(frame)) {
+                return false;
+            }
+            if (!this.closed && isFull(frame)) {
+                this.statistics.record(SlowConsumerPolicy.BLOCK);
+                do {
+                    this.wait();
+                } while (!this.closed && isFull(frame));
+            }
+            if (this.closed) {
+                return false;
+            }
+            this.frames.addLast(frame);
+            this.bytes += frame.getSize();
+            if (this.writable && this.bytes > this.highWatermark) {
+                LOG.log(Level.FINE, "Queue exceeded high watermark with {0} "
+                        + "bytes. Blocking producers.", this.bytes);
+                this.writable = false;
+            }
+            this.notifyAll();
+            return true;
+        }
+    }
+
+    /**
+     * Indicates whether the given frame needs to wait before being queued.
+     * Must be called with the lock held.
+     */
+    private boolean isFull(final Frame frame) {
+        if (this.policy == SlowConsumerPolicy.BLOCK) {
+            return !this.writable || this.frames.size() >= this.depth;
+        }
+        return exceeds(frame);
+    }
+
+    /**
+     * Indicates whether queuing the given frame exceeds the limits of the
+     * queue. A single frame is always accepted by an empty queue. Must be
+     * called with the lock held.
+     */
+    private boolean exceeds(final Frame frame) {
+        return !this.frames.isEmpty()
+                && (this.frames.size() >= this.depth || this.bytes
+                        + frame.getSize() > this.highWatermark);
+    }
+
+    /**
+     * Applies the slow consumer policy before queuing a frame. Must be called
+     * with the lock held.
+     *
+     * @return <code>false</code> if the frame must not be queued
+     */
+    private boolean admit(final Frame frame) {
+        if (this.policy == SlowConsumerPolicy.BLOCK || !exceeds(frame)) {
+            return true;
+        }
+        switch (this.policy) {
+        case DISCONNECT:
+            LOG.log(Level.FINE, "Queue exceeded its limits with {0} bytes. "
+                    + "Closing it.", this.bytes);
+            this.statistics.record(this.policy);
+            this.overflowed = true;
+            close();
+            return false;
+        case DROP_OLDEST:
+        case DROP_UNRELIABLE:
+            dropOldest(frame);
+            break;
+        default:
+            break;
+        }
+        if (exceeds(frame) && this.policy.drops(frame)) {
+            this.statistics.record(this.policy);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Drops the oldest frames allowed by the policy until the given frame
+     * fits into the queue. Must be called with the lock held.
+     */
+    private void dropOldest(final Frame frame) {
+        final Iterator<Frame> iterator = this.frames.iterator();
+        while (exceeds(frame) && iterator.hasNext()) {
+            final Frame queued = iterator.next();
+            if (this.policy.drops(queued)) {
+                iterator.remove();
+                this.bytes -= queued.getSize();
+                queued.release();
+                this.statistics.record(this.policy);
+            }
+        }
+        if (!this.writable && this.bytes <= this.lowWatermark) {
+            this.writable = true;
+        }
+        this.notifyAll();
+    }
+
+    /**
+     * Removes the next frame from the queue. Blocks until a frame is available
+     * or the queue has been closed.
+     *
+     * @return the next frame or <code>null</code> if the queue has been closed
+     *         and all frames have been taken
+     * @throws InterruptedException
+     *             interrupted while waiting for a frame
+     */
+    public Frame take() throws InterruptedException {
+        synchronized (this) {
+            while (!this.closed && this.frames.isEmpty()) {
+                this.wait();
+            }
+            return poll();
+        }
+    }
+
+    /**
+     * Removes the next frame from the queue without waiting.
+     *
+     * @return the next frame or <code>null</code> if the queue is empty
+     */
+    public Frame poll() {
+        synchronized (this) {
+            if (this.frames.isEmpty()) {
+                return null;
+            }
+            final Frame frame = this.frames.removeFirst();
+            this.bytes -= frame.getSize();
+            if (!this.writable && this.bytes <= this.lowWatermark) {
+                LOG.log(Level.FINE, "Queue drained to {0} bytes. "
+                        + "Unblocking producers.", this.bytes);
+                this.writable = true;
+            }
+            this.notifyAll();
+            return frame;
+        }
+    }
+
+    /**
+     * Closes the queue. Further frames are rejected and blocked producers
+     * return. Frames which are already queued can still be taken.
+     */
+    public void close() {
+        synchronized (this) {
+            this.closed = true;
+            this.notifyAll();
+        }
+    }
+
+    /**
+     * Closes the queue and discards all queued frames. The references held by
+     * the queue on the discarded frames are released.
+     */
+    public void clear() {
+        synchronized (this) {
+            this.closed = true;
+            Frame frame = this.frames.pollFirst();
+            while (frame != null) {
+                frame.release();
+                frame = this.frames.pollFirst();
+            }
+            this.bytes = 0;
+            this.writable = true;
+            this.notifyAll();
+        }
+    }
+
+    /**
+     * Indicates whether the queue has been closed.
+     *
+     * @return <code>true</code> if closed
+     */
+    public boolean isClosed() {
+        synchronized (this) {
+            return this.closed;
+        }
+    }
+
+    /**
+     * Indicates whether the queue has been closed by
+     * {@link SlowConsumerPolicy#DISCONNECT}.
+     *
+     * @return <code>true</code> if the queue was closed because a frame
+     *         exceeded its limits
+     */
+    public boolean isOverflowed() {
+        synchronized (this) {
+            return this.overflowed;
+        }
+    }
+
+    /**
+     * Indicates whether producers can currently append frames without being
+     * blocked by the watermarks.
+     *
+     * @return <code>false</code> if the high watermark was exceeded and the
+     *         queue has not been drained to the low watermark yet
+     */
+    public boolean isWritable() {
+        synchronized (this) {
+            return this.writable;
+        }
+    }
+
+    /**
+     * Returns the number of queued frames.
+     *
+     * @return number of frames
+     */
+    public int size() {
+        synchronized (this) {
+            return this.frames.size();
+        }
+    }
+
+    /**
+     * Returns the number of queued bytes.
+     *
+     * @return number of bytes
+     */
+    public long getBytes() {
+        synchronized (this) {
+            return this.bytes;
+        }
+    }
+
+}
@@ -0,0 +1,282 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.socket;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import rsb.protocol.NotificationType.Notification;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.UnknownFieldSet;
+import com.google.protobuf.UnsafeByteOperations;
+
+/**
+ * Compression state of a single {@link BusConnection}. Payloads of
+ * notifications are compressed using {@link Deflater} once the remote peer
+ * has announced that it understands compressed payloads and compressed
+ * payloads are decompressed once the peer may send them. All other fields of
+ * notifications are left untouched.
+ *
+ * A compressed payload is marked by the field
+ * {@link Protocol#COMPRESSED_SIZE_FIELD} containing the size of the
+ * uncompressed payload. Peers which do not know about compression never
+ * receive such notifications. Received payloads announcing an uncompressed
+ * size above {@link SocketOptions#getMaxReassemblyBytes()} are rejected.
+ *
+ * @author jwienke
+ */
+public class PayloadCompression {
+
+    private final boolean enabled;
+    private final int threshold;
+    private final long maxSize;
+    private volatile boolean compressing = false;
+    private volatile boolean decompressing = false;
+
+    /**
+     * Creates the compression state for a new connection.
+     *
+     * @param options
+     *            options of the connection deciding whether and which
+     *            outgoing payloads are compressed
+     */
+    public PayloadCompression(final SocketOptions options) {
+        this.enabled = options.isCompression();
+        this.threshold = options.getCompressionThreshold();
+        this.maxSize = options.getMaxReassemblyBytes();
+    }
+
+    /**
+     * Indicates that the remote peer understands compressed payloads. In case
+     * compression is enabled in the options, outgoing payloads are compressed
+     * from now on.
+     */
+    public void enableCompression() {
+        this.compressing = this.enabled;
+    }
+
+    /**
+     * Indicates that the remote peer may send compressed payloads from now on.
+     */
+    public void enableDecompression() {
+        this.decompressing = true;
+    }
+
+    /**
+     * Returns the frame to send instead of the given one.
+     *
+     * @param frame
+     *            the frame to send
+     * @return a frame with compressed payload or the original frame in case
+     *         compression is not active, the payload is smaller than the
+     *         threshold or not compressible. The returned frame is valid as
+     *         long as the original one is referenced.
+     * @throws InvalidProtocolBufferException
+     *             the frame does not contain a valid notification
+     */
+    public Frame compress(final Frame frame)
+            throws InvalidProtocolBufferException {
+        if (!this.compressing || frame.getPayloadSize() < this.threshold) {
+            return frame;
+        }
+        Frame compressed = frame.getCompressed();
+        if (compressed == null) {
+            final Notification notification = frame.getTransientNotification();
+            final Notification result = compress(notification, this.threshold);
+            if (isCompressed(result)) {
+                compressed = frame.setCompressed(Frame.encode(result));
+            } else {
+                compressed = frame.setCompressed(frame);
+            }
+        }
+        return compressed;
+    }
+
+    /**
+     * Returns the frame to process instead of a received one.
+     *
+     * @param frame
+     *            the received frame. Released unless it is returned.
+     * @return a new frame with decompressed payload or the received frame if
+     *         its payload is not compressed
+     * @throws IOException
+     *             the frame does not contain a valid notification or payload
+     */
+    public Frame decompress(final Frame frame) throws IOException {
+        if (!this.decompressing) {
+            return frame;
+        }
+        final Notification notification = frame.getTransientNotification();
+        if (!isCompressed(notification)) {
+            return frame;
+        }
+        try {
+            return Frame.encode(decompress(notification, this.maxSize));
+        } finally {
+            frame.release();
+        }
+    }
+
+    /**
+     * Compresses the payload of a notification.
+     *
+     * @param notification
+     *            the notification to compress
+     * @param threshold
+     *            minimum payload size in bytes to compress
+     * @return notification with compressed payload or the original one in case
+     *         the payload is too small or not compressible
+     */
+    public static Notification compress(final Notification notification,
+            final int threshold) {
+        final ByteString data = notification.getData();
+        if (data.size() < threshold || isCompressed(notification)) {
+            return notification;
+        }
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data.toByteArray());
+            deflater.finish();
+            // no gain if the output is not smaller than the input
+            final byte[] output = new byte[data.size()];
+            int size = 0;
+            while (!deflater.finished() && size < output.length) {
+                size += deflater.deflate(output, size, output.length - size);
+            }
+            if (!deflater.finished()) {
+                return notification;
+            }
+            return notification
+                    .toBuilder()
+                    .setData(UnsafeByteOperations.unsafeWrap(output, 0, size))
+                    .setUnknownFields(
+                            UnknownFieldSet
+                                    .newBuilder(notification.getUnknownFields())
+                                    .addField(
+                                            Protocol.COMPRESSED_SIZE_FIELD,
+                                            UnknownFieldSet.Field.newBuilder()
+                                                    .addVarint(data.size())
+                                                    .build()).build())
+                    .build();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Indicates whether the payload of a notification is compressed.
+     *
+     * @param notification
+     *            the notification to test
+     * @return <code>true</code> if compressed
+     */
+    public static boolean isCompressed(final Notification notification) {
+        return notification.getUnknownFields().hasField(
+                Protocol.COMPRESSED_SIZE_FIELD);
+    }
+
+    /**
+     * Decompresses the payload of a notification.
+     *
+     * @param notification
+     *            notification with compressed payload
+     * @param maxSize
+     *            maximum accepted size of the uncompressed payload in bytes
+     * @return notification with the original payload
+     * @throws IOException
+     *             invalid compressed payload or announced size exceeding the
+     *             limit
+     */
+    public static Notification decompress(final Notification notification,
+            final long maxSize) throws IOException {
+        final UnknownFieldSet fields = notification.getUnknownFields();
+        final long size =
+                fields.getField(Protocol.COMPRESSED_SIZE_FIELD)
+                        .getVarintList().get(0);
+        if (size < 0 || size > Math.min(maxSize, Integer.MAX_VALUE)) {
+            throw new IOException("Invalid uncompressed payload size " + size
+                    + ", the limit is " + maxSize + " bytes.");
+        }
+        final byte[] output = new byte[(int) size];
+        final Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(notification.getData().toByteArray());
+            inflate(inflater, output);
+        } catch (final DataFormatException e) {
+            throw new IOException("Invalid compressed payload", e);
+        } finally {
+            inflater.end();
+        }
+        return notification
+                .toBuilder()
+                .setData(UnsafeByteOperations.unsafeWrap(output))
+                .setUnknownFields(
+                        UnknownFieldSet.newBuilder(fields)
+                                .clearField(
+                                        Protocol.COMPRESSED_SIZE_FIELD)
+                                .build()).build();
+    }
+
+    /**
+     * Inflates the complete input of the inflater into the given array, which
+     * must be filled exactly.
+     */
+    private static void inflate(final Inflater inflater, final byte[] output)
+            throws DataFormatException, IOException {
+        int read = 0;
+        while (!inflater.finished()) {
+            if (read == output.length) {
+                // only the end of the stream may be left
+                if (inflater.inflate(new byte[1]) != 0
+                        || !inflater.finished()) {
+                    throw new IOException("Compressed payload exceeds the "
+                            + "announced size " + output.length);
+                }
+                break;
+            }
+            final int inflated =
+                    inflater.inflate(output, read, output.length - read);
+            if (inflated == 0 && !inflater.finished()) {
+                // all input is available, hence no progress means the stream
+                // is truncated or requires a preset dictionary
+                throw new IOException("Compressed payload is truncated or "
+                        + "requires a dictionary");
+            }
+            read += inflated;
+        }
+        if (read != output.length) {
+            throw new IOException("Compressed payload ends before "
+                    + output.length + " bytes were inflated");
+        }
+    }
+
+}
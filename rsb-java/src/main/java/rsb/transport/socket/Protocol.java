@@ -49,6 +49,108 @@ public final class Protocol {
      */
     public static final int DATA_SIZE_BYTES = 4;
 
+    /**
+     * Scope of control notifications exchanged between bus clients and
+     * servers. Notifications on this scope are interpreted by the bus
+     * implementations and never delivered to connectors. The verb of a control
+     * notification is transported in the method field and its arguments in
+     * the data field as newline-separated UTF-8 strings.
+     */
+    public static final String CONTROL_SCOPE = "/__rsb/transport/socket/";
+
+    /**
+     * Control verb starting the negotiation of optional protocol features.
+     * Sent once by clients on each new connection with the features they
+     * support as arguments. Servers never send control notifications to
+     * clients which did not send this verb so that peers unaware of control
+     * notifications never receive them.
+     */
+    public static final String CONTROL_HELLO = "hello";
+
+    /**
+     * Control verb announcing the optional protocol features supported by the
+     * sender. Sent by servers in reply to {@link #CONTROL_HELLO}.
+     */
+    public static final String CONTROL_CAPABILITIES = "capabilities";
+
+    /**
+     * Control verb replacing the complete set of scopes a client is interested
+     * in. Also the name of the capability indicating that a server routes
+     * notifications based on these announcements.
+     */
+    public static final String CONTROL_SUBSCRIPTIONS = "subscriptions";
+
+    /**
+     * Control verb adding a single scope to the announced subscriptions.
+     */
+    public static final String CONTROL_SUBSCRIBE = "subscribe";
+
+    /**
+     * Control verb removing a single scope from the announced subscriptions.
+     */
+    public static final String CONTROL_UNSUBSCRIBE = "unsubscribe";
+
+    /**
+     * Control verb sent by servers for each processed subscription change.
+     * Clients use it to wait until new subscriptions are effective.
+     */
+    public static final String CONTROL_ACKNOWLEDGE = "acknowledge";
+
+    /**
+     * Name of the capability indicating that the sender decodes compressed
+     * payloads. Peers only send compressed payloads after both sides have
+     * announced it.
+     */
+    public static final String CONTROL_COMPRESSION = "compression";
+
+    /**
+     * Name of the capability indicating that the sender reassembles
+     * fragmented notifications. Peers only send fragments after both sides
+     * have announced it.
+     */
+    public static final String CONTROL_FRAGMENTATION = "fragmentation";
+
+    /**
+     * Name of the capability indicating that the sender accepts notifications
+     * marked with {@link #UNRELIABLE_FIELD}. Peers remove the marker from
+     * notifications sent to peers which have not announced it.
+     */
+    public static final String CONTROL_UNRELIABLE = "unreliable";
+
+    /**
+     * Control verb announcing the token identifying a client which sends on
+     * multiple connections. Sent by clients on their primary connection,
+     * which is the only one notifications are forwarded to. Also the name of
+     * the capability indicating that a server supports such clients.
+     */
+    public static final String CONTROL_GROUP = "group";
+
+    /**
+     * Control verb marking a connection as an additional, send-only
+     * connection of the client which announced the token given as argument
+     * with {@link #CONTROL_GROUP}. Notifications received on it are handled
+     * as if received on the primary connection of that client.
+     */
+    public static final String CONTROL_STRIPE = "stripe";
+
+    /**
+     * Number of the field, which is unknown to the notification definition,
+     * marking a notification with compressed payload. It contains the size of
+     * the uncompressed payload as a varint. Only sent to peers that announced
+     * {@link #CONTROL_COMPRESSION}.
+     */
+    public static final int COMPRESSED_SIZE_FIELD = 1000;
+
+    /**
+     * Number of the field, which is unknown to the notification definition,
+     * marking a notification sent by an informer with
+     * {@link rsb.QualityOfServiceSpec.Reliability#UNRELIABLE} delivery. It
+     * contains the varint 1 and is only sent to peers which announced
+     * {@link #CONTROL_UNRELIABLE}. Connections may drop such notifications for
+     * slow remote peers (see {@link SlowConsumerPolicy#DROP_UNRELIABLE}).
+     */
+    public static final int UNRELIABLE_FIELD = 1001;
+
     private Protocol() {
         super();
         // prevent instantiation of utility class
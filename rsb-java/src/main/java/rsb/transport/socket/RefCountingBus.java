@@ -28,9 +28,19 @@
 package rsb.transport.socket;
 
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import rsb.AbstractActivatable;
+import rsb.Event;
 import rsb.RSBException;
+import rsb.Scope;
+import rsb.converter.ConverterSelectionStrategy;
 import rsb.protocol.NotificationType.Notification;
 
 /**
@@ -39,15 +49,50 @@ import rsb.protocol.NotificationType.Notification;
  * deactivated only when as many {@link #deactivate()} calls are received as
  * have been activate calls received.
  *
+ * If the options of the wrapped bus specify a linger time, the wrapped
+ * instance stays active for this time after the last deactivation call and is
+ * reused by subsequent activation calls within this time.
+ *
  * @author jwienke
  */
+// delegates the complete Bus interface
+@SuppressWarnings("PMD.TooManyMethods")
 public class RefCountingBus extends AbstractActivatable
                             implements Bus {
 
+    private static final Logger LOG = Logger.getLogger(RefCountingBus.class
+            .getName());
+
+    private static final long THREAD_KEEP_ALIVE_SEC = 10;
+
+    /**
+     * Shared by all instances for deactivating lingering buses. The thread
+     * terminates if no bus is lingering.
+     */
+    private static final ScheduledThreadPoolExecutor LINGER_EXECUTOR =
+            createLingerExecutor();
+
     private final Bus bus;
+    private final Object synchronizer;
     private int count = 0;
+    private Expiry expiry = null;
     private final DeactivationHandler deactivationHandler;
 
+    /**
+     * Deactivates the wrapped bus once the linger time has passed without
+     * reactivation.
+     */
+    private class Expiry implements Runnable {
+
+        private ScheduledFuture<?> future;
+
+        @Override
+        public void run() {
+            expire(this);
+        }
+
+    }
+
     /**
      * A handler that will be called once the underlying bus will really be
      * deactivated.
@@ -75,17 +120,65 @@ public class RefCountingBus extends AbstractActivatable
      *            handler to be called on deactivation of the bus
      */
     public RefCountingBus(final Bus bus, final DeactivationHandler handler) {
+        this(bus, handler, bus);
+    }
+
+    /**
+     * Constructor with an additional lock which is acquired before the lock
+     * of the wrapped bus whenever its reference count changes. This allows
+     * the handler to synchronize with clients acquiring buses, e.g. on a
+     * {@link BusCache}, without risking lock-order inversions.
+     *
+     * @param bus
+     *            bus to manage
+     * @param handler
+     *            handler to be called on deactivation of the bus
+     * @param synchronizer
+     *            lock to acquire before changing the reference count
+     */
+    public RefCountingBus(final Bus bus, final DeactivationHandler handler,
+            final Object synchronizer) {
         this.bus = bus;
         this.deactivationHandler = handler;
+        this.synchronizer = synchronizer;
+    }
+
+    private static ScheduledThreadPoolExecutor createLingerExecutor() {
+        final ScheduledThreadPoolExecutor executor =
+                new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+
+                    @Override
+                    public Thread newThread(final Runnable runnable) {
+                        final Thread thread =
+                                new Thread(runnable, "RefCountingBus linger");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+
+                });
+        executor.setKeepAliveTime(THREAD_KEEP_ALIVE_SEC,
+                TimeUnit.SECONDS);
+        executor.allowCoreThreadTimeOut(true);
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
     }
 
     @Override
     public void activate() throws RSBException {
-        synchronized (this.bus) {
-            if (this.count == 0) {
-                this.bus.activate();
+        synchronized (this.synchronizer) {
+            synchronized (this.bus) {
+                if (this.count == 0) {
+                    if (this.expiry == null) {
+                        this.bus.activate();
+                    } else {
+                        LOG.log(Level.FINE, "Reusing lingering bus {0}",
+                                this.bus);
+                        this.expiry.future.cancel(false);
+                        this.expiry = null;
+                    }
+                }
+                ++this.count;
             }
-            ++this.count;
         }
     }
 
@@ -96,15 +189,54 @@ public class RefCountingBus extends AbstractActivatable
 
     @Override
     public void deactivate() throws RSBException, InterruptedException {
-        synchronized (this.bus) {
-            if (this.count == 0) {
-                throw new IllegalStateException(
-                        "Received more deactivation calls than activation calls.");
+        synchronized (this.synchronizer) {
+            synchronized (this.bus) {
+                if (this.count == 0) {
+                    throw new IllegalStateException("Received more "
+                            + "deactivation calls than activation calls.");
+                }
+                --this.count;
+                if (this.count > 0) {
+                    return;
+                }
+                final long linger = this.bus.getSocketOptions().getLingerTime();
+                if (linger > 0) {
+                    LOG.log(Level.FINE, "Keeping unused bus {0} for {1} ms",
+                            new Object[] { this.bus, linger });
+                    this.expiry = new Expiry();
+                    this.expiry.future =
+                            LINGER_EXECUTOR.schedule(this.expiry, linger,
+                                    TimeUnit.MILLISECONDS);
+                } else {
+                    release();
+                }
             }
-            --this.count;
-            if (this.count == 0) {
-                this.bus.deactivate();
-                this.deactivationHandler.deactivated(this);
+        }
+    }
+
+    private void release() throws RSBException, InterruptedException {
+        this.bus.deactivate();
+        this.deactivationHandler.deactivated(this);
+    }
+
+    private void expire(final Expiry candidate) {
+        synchronized (this.synchronizer) {
+            synchronized (this.bus) {
+                // reactivated or rescheduled in the meantime
+                if (!candidate.equals(this.expiry)) {
+                    return;
+                }
+                this.expiry = null;
+                LOG.log(Level.FINE, "Linger time of bus {0} expired",
+                        this.bus);
+                try {
+                    release();
+                } catch (final RSBException e) {
+                    LOG.log(Level.WARNING, "Unable to deactivate lingering "
+                            + "bus " + this.bus, e);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
             }
         }
     }
@@ -114,17 +246,35 @@ public class RefCountingBus extends AbstractActivatable
         return this.bus.getSocketOptions();
     }
 
+    @Override
+    public SlowConsumerStatistics getSlowConsumerStatistics() {
+        return this.bus.getSlowConsumerStatistics();
+    }
+
     @Override
     public void handleOutgoing(final Notification notification)
             throws RSBException {
         this.bus.handleOutgoing(notification);
     }
 
+    @Override
+    public void handleOutgoing(final Event event,
+            final ConverterSelectionStrategy<ByteBuffer> converters,
+            final boolean unreliable) throws RSBException {
+        this.bus.handleOutgoing(event, converters, unreliable);
+    }
+
     @Override
     public void addNotificationReceiver(final NotificationReceiver receiver) {
         this.bus.addNotificationReceiver(receiver);
     }
 
+    @Override
+    public void addNotificationReceiver(final NotificationReceiver receiver,
+            final Scope scope) {
+        this.bus.addNotificationReceiver(receiver, scope);
+    }
+
     @Override
     public void removeNotificationReceiver(final NotificationReceiver receiver) {
         this.bus.removeNotificationReceiver(receiver);
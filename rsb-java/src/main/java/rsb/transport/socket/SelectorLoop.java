@@ -0,0 +1,184 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.socket;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A thread multiplexing a set of non-blocking channels using a single
+ * {@link Selector}. Channels are registered with a {@link Handler} as
+ * attachment, which is notified whenever the channel is ready for one of its
+ * registered operations.
+ *
+ * All operations on the {@link Selector} and its keys need to be performed
+ * from inside the thread. Other threads can schedule such operations using
+ * {@link #execute(Runnable)}.
+ *
+ * @author jwienke
+ */
+public class SelectorLoop extends Thread {
+
+    private static final Logger LOG = Logger.getLogger(SelectorLoop.class
+            .getName());
+
+    private final Selector selector;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+    private volatile boolean shutdown = false;
+
+    /**
+     * Interface for objects attached to {@link SelectionKey}s managed by a
+     * {@link SelectorLoop}.
+     *
+     * @author jwienke
+     */
+    public interface Handler {
+
+        /**
+         * Called from inside the loop thread in case the channel of the key is
+         * ready for at least one of its registered operations.
+         *
+         * Implementations must not block.
+         *
+         * @param key
+         *            the selected key
+         */
+        void handleReady(SelectionKey key);
+
+    }
+
+    /**
+     * Creates a new loop. The thread needs to be started afterwards.
+     *
+     * @param name
+     *            name of the thread
+     * @throws IOException
+     *             unable to open a selector
+     */
+    public SelectorLoop(final String name) throws IOException {
+        super(name);
+        setDaemon(true);
+        this.selector = Selector.open();
+    }
+
+    /**
+     * Returns the selector managed by this loop. Must only be used from inside
+     * the loop thread.
+     *
+     * @return selector instance
+     */
+    public Selector getSelector() {
+        return this.selector;
+    }
+
+    /**
+     * Indicates whether the calling thread is this loop.
+     *
+     * @return <code>true</code> if called from inside the loop
+     */
+    public boolean inLoop() {
+        return Thread.currentThread() == this;
+    }
+
+    /**
+     * Schedules a task for execution inside the loop thread.
+     *
+     * @param task
+     *            the task to execute
+     */
+    public void execute(final Runnable task) {
+        this.tasks.add(task);
+        this.selector.wakeup();
+    }
+
+    /**
+     * Indicates that a termination should be performed. Use {@link #join()} to
+     * wait for the termination.
+     */
+    public void startShutdown() {
+        this.shutdown = true;
+        this.selector.wakeup();
+    }
+
+    private void runTasks() {
+        Runnable task = this.tasks.poll();
+        while (task != null) {
+            task.run();
+            task = this.tasks.poll();
+        }
+    }
+
+    private void dispatchSelectedKeys() {
+        final Iterator<SelectionKey> keys =
+                this.selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+            final SelectionKey key = keys.next();
+            keys.remove();
+            if (key.isValid()) {
+                ((Handler) key.attachment()).handleReady(key);
+            }
+        }
+    }
+
+    @Override
+    // a loop must never terminate due to errors caused by a single channel
+    @SuppressWarnings("PMD.AvoidCatchingGenericException")
+    public void run() {
+
+        while (!this.shutdown) {
+            try {
+                runTasks();
+                this.selector.select();
+                dispatchSelectedKeys();
+            } catch (final IOException e) {
+                LOG.log(Level.WARNING, "Error while selecting in " + getName()
+                        + ". Continuing.", e);
+            } catch (final RuntimeException e) {
+                LOG.log(Level.SEVERE, "Unexpected error in " + getName()
+                        + ". Continuing with the next selection.", e);
+            }
+        }
+
+        // execute pending tasks, e.g. to close channels
+        runTasks();
+        try {
+            this.selector.close();
+        } catch (final IOException e) {
+            LOG.log(Level.WARNING, "Unable to close selector of " + getName(),
+                    e);
+        }
+
+    }
+
+}
@@ -0,0 +1,334 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+
+package rsb.transport.socket;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import rsb.Event;
+import rsb.EventId;
+import rsb.ParticipantId;
+import rsb.Scope;
+import rsb.converter.ConversionException;
+import rsb.converter.ConverterSelectionStrategy;
+import rsb.converter.NoSuchConverterException;
+import rsb.protocol.NotificationType.Notification;
+import rsb.protocol.ProtocolConversion;
+import rsb.transport.socket.Bus.EventReceiver;
+import rsb.transport.socket.Bus.NotificationReceiver;
+
+import com.google.protobuf.MessageLite;
+
+/**
+ * Dispatches notifications to the {@link EventReceiver}s of a bus and decodes
+ * each notification only once per distinct converter configuration.
+ * Configurations are compared using {@link Object#equals(Object)} when
+ * receivers are registered so that dispatching only needs to compare
+ * references.
+ *
+ * Receivers sharing a configuration get shallow copies of the decoded event,
+ * which share the data object, in case the data cannot be modified (see
+ * {@link #isShareable(Object)}). Otherwise, the notification is decoded for
+ * each of these receivers so that no receiver observes modifications made by
+ * another one.
+ *
+ * @author jwienke
+ */
+public class SharedEventDecoder {
+
+    private static final Logger LOG = Logger
+            .getLogger(SharedEventDecoder.class.getName());
+
+    /**
+     * Types of data objects which cannot be modified. Compared exactly so that
+     * mutable subclasses are excluded.
+     */
+    private static final Set<Class<?>> IMMUTABLE_TYPES = new HashSet<Class<?>>(
+            Arrays.<Class<?>>asList(Boolean.class, Byte.class,
+                    Character.class, Short.class, Integer.class, Long.class,
+                    Float.class, Double.class, String.class, Scope.class,
+                    EventId.class, ParticipantId.class));
+
+    /**
+     * Canonical instances of all converter configurations in use together
+     * with the number of receivers using them. Guarded by this instance.
+     */
+    private final Map<ConverterSelectionStrategy<ByteBuffer>, Usage> usages =
+            new HashMap<ConverterSelectionStrategy<ByteBuffer>, Usage>();
+
+    /**
+     * Canonical configuration for each registered receiver. Read without
+     * locking while dispatching.
+     */
+    private final ConcurrentMap<EventReceiver,
+            ConverterSelectionStrategy<ByteBuffer>> configurations =
+            new ConcurrentHashMap<EventReceiver,
+                    ConverterSelectionStrategy<ByteBuffer>>();
+
+    /**
+     * Usage count of a canonical converter configuration.
+     */
+    private static class Usage {
+
+        private final ConverterSelectionStrategy<ByteBuffer> converters;
+        private int count = 0;
+
+        Usage(final ConverterSelectionStrategy<ByteBuffer> converters) {
+            this.converters = converters;
+        }
+
+    }
+
+    /**
+     * Registers a receiver for shared decoding. Registering a receiver again
+     * updates its converter configuration.
+     *
+     * @param receiver
+     *            the receiver to register
+     */
+    public void register(final EventReceiver receiver) {
+        synchronized (this) {
+            unregister(receiver);
+            final ConverterSelectionStrategy<ByteBuffer> converters =
+                    receiver.getConverters();
+            Usage usage = this.usages.get(converters);
+            if (usage == null) {
+                usage = new Usage(converters);
+                this.usages.put(converters, usage);
+            }
+            usage.count++;
+            this.configurations.put(receiver, usage.converters);
+        }
+    }
+
+    /**
+     * Removes a receiver if it was registered before.
+     *
+     * @param receiver
+     *            the receiver to remove
+     */
+    public void unregister(final EventReceiver receiver) {
+        synchronized (this) {
+            final ConverterSelectionStrategy<ByteBuffer> converters =
+                    this.configurations.remove(receiver);
+            if (converters == null) {
+                return;
+            }
+            final Usage usage = this.usages.get(converters);
+            usage.count--;
+            if (usage.count == 0) {
+                this.usages.remove(converters);
+            }
+        }
+    }
+
+    /**
+     * Indicates whether all given receivers are registered and hence only get
+     * decoded events.
+     *
+     * @param receivers
+     *            the receivers to check
+     * @return <code>true</code> if no receiver gets the notification itself
+     */
+    public boolean decodesAll(final List<NotificationReceiver> receivers) {
+        for (final NotificationReceiver receiver : receivers) {
+            if (!this.configurations.containsKey(receiver)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Indicates whether all given receivers are registered and decode
+     * notifications with the given wire schema into the given data type. Only
+     * in this case, an event of this type can be handed to the receivers
+     * without serializing it.
+     *
+     * @param receivers
+     *            the receivers to check
+     * @param wireSchema
+     *            wire schema the event would be serialized with
+     * @param type
+     *            type of the data of the event
+     * @return <code>true</code> if each receiver would get the same data type
+     *         by decoding a notification of the event
+     */
+    public boolean decodesAllAs(final List<NotificationReceiver> receivers,
+            final String wireSchema, final Class<?> type) {
+        for (final NotificationReceiver receiver : receivers) {
+            final ConverterSelectionStrategy<ByteBuffer> converters =
+                    this.configurations.get(receiver);
+            if (converters == null
+                    || !decodesAs(converters, wireSchema, type)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean decodesAs(
+            final ConverterSelectionStrategy<ByteBuffer> converters,
+            final String wireSchema, final Class<?> type) {
+        try {
+            return type.equals(converters.getConverter(wireSchema)
+                    .getSignature().getDataType());
+        } catch (final NoSuchConverterException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Dispatches a notification to receivers. Registered
+     * {@link EventReceiver}s get decoded events, all other receivers the
+     * notification. Decoded events never reference the payload of the
+     * notification.
+     *
+     * @param notification
+     *            the notification to dispatch
+     * @param receivers
+     *            the receivers interested in the notification
+     */
+    public void dispatch(final Notification notification,
+            final List<NotificationReceiver> receivers) {
+        // identity is sufficient as configurations are canonical
+        final Map<ConverterSelectionStrategy<ByteBuffer>,
+                List<EventReceiver>> groups =
+                new IdentityHashMap<ConverterSelectionStrategy<ByteBuffer>,
+                        List<EventReceiver>>();
+        for (final NotificationReceiver receiver : receivers) {
+            final ConverterSelectionStrategy<ByteBuffer> converters =
+                    this.configurations.get(receiver);
+            if (converters == null) {
+                receiver.handle(notification);
+                continue;
+            }
+            List<EventReceiver> group = groups.get(converters);
+            if (group == null) {
+                group = new ArrayList<EventReceiver>();
+                groups.put(converters, group);
+            }
+            group.add((EventReceiver) receiver);
+        }
+        for (final ConverterSelectionStrategy<ByteBuffer> converters : groups
+                .keySet()) {
+            dispatch(notification, converters, groups.get(converters));
+        }
+    }
+
+    /**
+     * Dispatches an event which has not been serialized at all to receivers,
+     * all of which must be registered. Each receiver gets a shallow copy of
+     * the event with the receive time set. The data object is shared with
+     * the original event. Hence, callers need to ensure that the data is
+     * {@link #isShareable(Object) shareable} and that all receivers would
+     * decode it into the same type (see
+     * {@link #decodesAllAs(List, String, Class)}).
+     *
+     * @param event
+     *            the event to dispatch
+     * @param receivers
+     *            the receivers interested in the event
+     */
+    public void dispatch(final Event event,
+            final List<NotificationReceiver> receivers) {
+        for (final NotificationReceiver receiver : receivers) {
+            final Event copy = new Event(event);
+            copy.getMetaData().setReceiveTime(0);
+            ((EventReceiver) receiver).handle(copy);
+        }
+    }
+
+    /**
+     * Indicates whether a data object can be handed to several receivers
+     * without copying it. This is the case for <code>null</code>, instances
+     * of immutable JDK and RSB types and protocol buffer messages.
+     *
+     * @param data
+     *            the data object of an event
+     * @return <code>true</code> if no receiver can modify the object
+     */
+    static boolean isShareable(final Object data) {
+        return data == null || IMMUTABLE_TYPES.contains(data.getClass())
+                || data instanceof MessageLite;
+    }
+
+    private static Event decode(final Notification notification,
+            final ConverterSelectionStrategy<ByteBuffer> converters) {
+        try {
+            return ProtocolConversion.fromNotification(notification,
+                    ByteBuffer.wrap(notification.getData().toByteArray()),
+                    converters);
+        } catch (final ConversionException e) {
+            LOG.log(Level.WARNING,
+                    "Error decoding the received message. Ignoring this.", e);
+            return null;
+        }
+    }
+
+    private static void dispatch(final Notification notification,
+            final ConverterSelectionStrategy<ByteBuffer> converters,
+            final List<EventReceiver> group) {
+        final Event event = decode(notification, converters);
+        if (event == null) {
+            return;
+        }
+        final boolean shared = isShareable(event.getData());
+        LOG.log(Level.FINEST, "Decoded notification for {0} receivers, "
+                + "sharing the data: {1}", new Object[] { group.size(),
+                shared });
+        // copies need to be created before handing out the decoded instance
+        final int last = group.size() - 1;
+        for (int i = 0; i < last; ++i) {
+            final Event copy;
+            if (shared) {
+                copy = new Event(event);
+            } else {
+                copy = decode(notification, converters);
+                if (copy == null) {
+                    return;
+                }
+            }
+            group.get(i).handle(copy);
+        }
+        group.get(last).handle(event);
+    }
+
+}
@@ -0,0 +1,105 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.socket;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+
+/**
+ * Policies applied by a connection once a remote peer does not consume
+ * frames fast enough and the frames buffered for it exceed the configured
+ * limits (see {@link SocketOptions#getQueueDepth()} and
+ * {@link SocketOptions#getHighWatermark()}).
+ *
+ * Control notifications and fragments of notifications are never dropped.
+ * In case such a frame exceeds the limits, the connection behaves as with
+ * {@link #BLOCK}. The actions taken by each policy are counted in
+ * {@link SlowConsumerStatistics}.
+ *
+ * @author jwienke
+ */
+public enum SlowConsumerPolicy {
+
+    /**
+     * Senders are blocked until the buffered frames have been written.
+     * Connections using {@link IoMode#NIO} never block and buffer without
+     * limits instead.
+     */
+    BLOCK,
+
+    /**
+     * The oldest buffered frames are dropped to make room for new ones.
+     */
+    DROP_OLDEST,
+
+    /**
+     * New frames are dropped as long as the limits are exceeded.
+     */
+    DROP_NEWEST,
+
+    /**
+     * Only frames sent by unreliable informers are dropped, oldest first.
+     * Frames of reliable informers block as with {@link #BLOCK}.
+     *
+     * @see Frame#isUnreliable()
+     */
+    DROP_UNRELIABLE,
+
+    /**
+     * The connection to the remote peer is closed.
+     */
+    DISCONNECT;
+
+    private static final Logger LOG = Logger
+            .getLogger(SlowConsumerPolicy.class.getName());
+
+    /**
+     * Indicates whether this policy allows to drop the given frame.
+     *
+     * @param frame
+     *            the frame to test
+     * @return <code>true</code> if the frame may be dropped
+     */
+    boolean drops(final Frame frame) {
+        if (this == BLOCK || this == DISCONNECT || frame.isFragment()) {
+            return false;
+        }
+        try {
+            if (frame.getScope().startsWith(Protocol.CONTROL_SCOPE)) {
+                return false;
+            }
+            return this != DROP_UNRELIABLE || frame.isUnreliable();
+        } catch (final InvalidProtocolBufferException e) {
+            LOG.log(Level.FINE, "Not dropping invalid frame " + frame, e);
+            return false;
+        }
+    }
+
+}
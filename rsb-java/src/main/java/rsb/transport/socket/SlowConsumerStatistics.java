@@ -0,0 +1,103 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.socket;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe counters for the actions taken because of slow remote peers.
+ * There is one counter per {@link SlowConsumerPolicy}:
+ *
+ * <ul>
+ * <li>{@link SlowConsumerPolicy#BLOCK}: frames for which the sender had to
+ * wait</li>
+ * <li>{@link SlowConsumerPolicy#DROP_OLDEST},
+ * {@link SlowConsumerPolicy#DROP_NEWEST} and
+ * {@link SlowConsumerPolicy#DROP_UNRELIABLE}: frames dropped by the
+ * respective policy</li>
+ * <li>{@link SlowConsumerPolicy#DISCONNECT}: closed connections</li>
+ * </ul>
+ *
+ * @author jwienke
+ */
+public class SlowConsumerStatistics {
+
+    private final AtomicLongArray counts = new AtomicLongArray(
+            SlowConsumerPolicy.values().length);
+
+    /**
+     * Counts an action taken by the given policy.
+     *
+     * @param policy
+     *            the policy which took the action
+     */
+    public void record(final SlowConsumerPolicy policy) {
+        this.counts.incrementAndGet(policy.ordinal());
+    }
+
+    /**
+     * Returns the number of actions taken by the given policy.
+     *
+     * @param policy
+     *            the policy to return the counter for
+     * @return number of actions
+     */
+    public long getCount(final SlowConsumerPolicy policy) {
+        return this.counts.get(policy.ordinal());
+    }
+
+    /**
+     * Adds the counters of another instance to the counters of this instance.
+     *
+     * @param other
+     *            the instance to add
+     */
+    public void add(final SlowConsumerStatistics other) {
+        for (final SlowConsumerPolicy policy : SlowConsumerPolicy.values()) {
+            this.counts.addAndGet(policy.ordinal(), other.getCount(policy));
+        }
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder(100);
+        builder.append(getClass().getSimpleName());
+        builder.append('[');
+        for (final SlowConsumerPolicy policy : SlowConsumerPolicy.values()) {
+            if (policy.ordinal() > 0) {
+                builder.append(", ");
+            }
+            builder.append(policy);
+            builder.append('=');
+            builder.append(getCount(policy));
+        }
+        builder.append(']');
+        return builder.toString();
+    }
+
+}
@@ -144,7 +144,7 @@ public class SocketConnectorUtility {
                                     }
                                 }
 
-                            });
+                            }, cache.getSynchronizer());
             bus.activate();
             cache.register(bus);
             return bus;
@@ -161,6 +161,9 @@ public class SocketConnectorUtility {
 
             @Override
             public Bus create(final SocketOptions options) {
+                if (options.getIoMode() == IoMode.NIO) {
+                    return new NioBusServer(options);
+                }
                 return new BusServer(options);
             }
 
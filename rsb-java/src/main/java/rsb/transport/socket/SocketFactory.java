@@ -31,6 +31,7 @@ import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
 import java.util.HashSet;
+import java.util.Locale;
 import java.util.Set;
 
 import rsb.InitializeException;
@@ -45,6 +46,8 @@ import rsb.util.Properties;
  *
  * @author jwienke
  */
+// one parsing method per group of related options
+@SuppressWarnings({ "PMD.TooManyMethods", "PMD.GodClass" })
 public class SocketFactory implements TransportFactory {
 
     private static final String SCHEMA = "socket";
@@ -61,6 +64,48 @@ public class SocketFactory implements TransportFactory {
     private static final boolean DEFAULT_NODELAY = true;
     private static final String SERVER_MODE_KEY = "transport.socket.server";
     private static final String DEFAULT_SERVER_MODE = SERVER_MODE_AUTO;
+    private static final String IO_MODE_KEY = "transport.socket.io";
+    private static final String IO_MODE_BLOCKING = "blocking";
+    private static final String IO_MODE_NIO = "nio";
+    private static final String SELECTORS_KEY = "transport.socket.selectors";
+    private static final String THREADS_KEY = "transport.socket.threads";
+    private static final String THREADS_PLATFORM = "platform";
+    private static final String THREADS_VIRTUAL = "virtual";
+    private static final String ASYNC_KEY = "transport.socket.async";
+    private static final String QUEUE_DEPTH_KEY =
+            "transport.socket.queue.depth";
+    private static final String HIGH_WATERMARK_KEY =
+            "transport.socket.queue.highwatermark";
+    private static final String LOW_WATERMARK_KEY =
+            "transport.socket.queue.lowwatermark";
+    private static final String SLOW_CONSUMER_KEY =
+            "transport.socket.slowconsumer";
+    private static final String BATCH_MAX_BYTES_KEY =
+            "transport.socket.batch.maxbytes";
+    private static final String BATCH_MAX_DELAY_KEY =
+            "transport.socket.batch.maxdelayus";
+    private static final String COMPRESSION_KEY =
+            "transport.socket.compression";
+    private static final String COMPRESSION_THRESHOLD_KEY =
+            "transport.socket.compression.threshold";
+    private static final String FRAGMENT_SIZE_KEY =
+            "transport.socket.fragment.size";
+    private static final String REASSEMBLY_KEY =
+            "transport.socket.fragment.reassemblybytes";
+    private static final String PATH_KEY = "transport.socket.path";
+    private static final String LINGER_KEY = "transport.socket.lingerms";
+    private static final String CONNECTIONS_KEY =
+            "transport.socket.connections";
+    private static final String SEND_BUFFER_KEY =
+            "transport.socket.sendbuffer";
+    private static final String RECEIVE_BUFFER_KEY =
+            "transport.socket.receivebuffer";
+    private static final String KEEPALIVE_KEY = "transport.socket.keepalive";
+    private static final String TRAFFIC_CLASS_KEY =
+            "transport.socket.trafficclass";
+    private static final String BIND_ADDRESS_KEY =
+            "transport.socket.bindaddress";
+    private static final String BACKLOG_KEY = "transport.socket.backlog";
 
     private SocketOptions parseSocketOptions(final Properties properties)
             throws InitializeException {
@@ -79,7 +124,21 @@ public class SocketFactory implements TransportFactory {
                     properties.getProperty(NODELAY_KEY, DEFAULT_NODELAY)
                             .asBoolean();
 
-            return new SocketOptions(address, port, tcpNoDelay);
+            SocketOptions options =
+                    new SocketOptions(address, port, tcpNoDelay).withIoMode(
+                            parseIoMode(properties),
+                            parseSelectorThreads(properties))
+                            .withThreadMode(parseThreadMode(properties));
+            options = parseSendQueue(options, properties);
+            options = parseSlowConsumerPolicy(options, properties);
+            options = parseBatching(options, properties);
+            options = parseCompression(options, properties);
+            options = parseFragmentation(options, properties);
+            options = parseLingerTime(options, properties);
+            options = parseConnections(options, properties);
+            options = parseTuning(options, properties);
+            options = parseBinding(options, properties);
+            return parseSocketPath(options, properties);
 
         } catch (final UnknownHostException e) {
             throw new InitializeException("Unable to resolve hostname", e);
@@ -87,6 +146,244 @@ public class SocketFactory implements TransportFactory {
 
     }
 
+    private IoMode parseIoMode(final Properties properties)
+            throws InitializeException {
+
+        final String ioModeString =
+                properties.getProperty(IO_MODE_KEY, IO_MODE_BLOCKING)
+                        .asString();
+        if (IO_MODE_BLOCKING.equals(ioModeString)) {
+            return IoMode.BLOCKING;
+        } else if (IO_MODE_NIO.equals(ioModeString)) {
+            return IoMode.NIO;
+        } else {
+            throw new InitializeException("Unsupported io mode '"
+                    + ioModeString + "'");
+        }
+
+    }
+
+    private ThreadMode parseThreadMode(final Properties properties)
+            throws InitializeException {
+
+        final String threadModeString =
+                properties.getProperty(THREADS_KEY, THREADS_PLATFORM)
+                        .asString();
+        if (THREADS_PLATFORM.equals(threadModeString)) {
+            return ThreadMode.PLATFORM;
+        } else if (THREADS_VIRTUAL.equals(threadModeString)) {
+            return ThreadMode.VIRTUAL;
+        } else {
+            throw new InitializeException("Unsupported thread mode: "
+                    + threadModeString);
+        }
+
+    }
+
+    private int parseSelectorThreads(final Properties properties)
+            throws InitializeException {
+        final int selectorThreads =
+                properties.getProperty(SELECTORS_KEY,
+                        SocketOptions.DEFAULT_SELECTOR_THREADS).asInteger();
+        if (selectorThreads <= 0) {
+            throw new InitializeException(
+                    "Number of selector threads must be a number > 0");
+        }
+        return selectorThreads;
+    }
+
+    private SocketOptions parseSendQueue(final SocketOptions options,
+            final Properties properties) throws InitializeException {
+
+        final int depth =
+                properties.getProperty(QUEUE_DEPTH_KEY,
+                        SocketOptions.DEFAULT_QUEUE_DEPTH).asInteger();
+        if (depth <= 0) {
+            throw new InitializeException("Queue depth must be a number > 0");
+        }
+
+        final long high =
+                properties.getProperty(HIGH_WATERMARK_KEY,
+                        SocketOptions.DEFAULT_HIGH_WATERMARK).asLong();
+        final long low =
+                properties.getProperty(LOW_WATERMARK_KEY,
+                        SocketOptions.DEFAULT_LOW_WATERMARK).asLong();
+        if (low < 0 || low > high) {
+            throw new InitializeException("Queue watermarks must satisfy "
+                    + "0 <= lowwatermark <= highwatermark");
+        }
+
+        final boolean async =
+                properties.getProperty(ASYNC_KEY, false).asBoolean();
+        return options.withSendQueue(async, depth, high, low);
+
+    }
+
+    private SocketOptions parseSlowConsumerPolicy(
+            final SocketOptions options, final Properties properties)
+            throws InitializeException {
+
+        final String policyString =
+                properties.getProperty(SLOW_CONSUMER_KEY, "block").asString();
+        // policies are configured in lower case with dashes, e.g. drop-oldest
+        for (final SlowConsumerPolicy policy : SlowConsumerPolicy.values()) {
+            if (policy.name().toLowerCase(Locale.US).replace('_', '-')
+                    .equals(policyString)) {
+                return options.withSlowConsumerPolicy(policy);
+            }
+        }
+        throw new InitializeException("Unsupported slow consumer policy: "
+                + policyString);
+
+    }
+
+    private SocketOptions parseBatching(final SocketOptions options,
+            final Properties properties) throws InitializeException {
+
+        final int maxBytes =
+                properties.getProperty(BATCH_MAX_BYTES_KEY, 0).asInteger();
+        if (maxBytes < 0) {
+            throw new InitializeException(
+                    "Batch size must be a number >= 0");
+        }
+        final long maxDelay =
+                properties.getProperty(BATCH_MAX_DELAY_KEY,
+                        SocketOptions.DEFAULT_BATCH_DELAY_US).asLong();
+        if (maxDelay < 0) {
+            throw new InitializeException(
+                    "Batch delay must be a number >= 0");
+        }
+        return options.withBatching(maxBytes, maxDelay);
+
+    }
+
+    private SocketOptions parseCompression(final SocketOptions options,
+            final Properties properties) throws InitializeException {
+
+        final int threshold =
+                properties.getProperty(COMPRESSION_THRESHOLD_KEY,
+                        SocketOptions.DEFAULT_COMPRESSION_MIN)
+                        .asInteger();
+        if (threshold < 0) {
+            throw new InitializeException(
+                    "Compression threshold must be a number >= 0");
+        }
+        final boolean enabled =
+                properties.getProperty(COMPRESSION_KEY, false).asBoolean();
+        return options.withCompression(enabled, threshold);
+
+    }
+
+    private SocketOptions parseFragmentation(final SocketOptions options,
+            final Properties properties) throws InitializeException {
+
+        final int size =
+                properties.getProperty(FRAGMENT_SIZE_KEY, 0).asInteger();
+        if (size < 0) {
+            throw new InitializeException(
+                    "Fragment size must be a number >= 0");
+        }
+        final long reassembly =
+                properties.getProperty(REASSEMBLY_KEY,
+                        SocketOptions.DEFAULT_REASSEMBLY_BYTES).asLong();
+        if (reassembly <= 0) {
+            throw new InitializeException(
+                    "Reassembly limit must be a number > 0");
+        }
+        return options.withFragmentation(size, reassembly);
+
+    }
+
+    private SocketOptions parseLingerTime(final SocketOptions options,
+            final Properties properties) throws InitializeException {
+
+        final long linger = properties.getProperty(LINGER_KEY, 0).asLong();
+        if (linger < 0) {
+            throw new InitializeException(
+                    "Linger time must be a number >= 0");
+        }
+        return options.withLingerTime(linger);
+
+    }
+
+    private SocketOptions parseConnections(final SocketOptions options,
+            final Properties properties) throws InitializeException {
+
+        final int connections =
+                properties.getProperty(CONNECTIONS_KEY, 1).asInteger();
+        if (connections <= 0) {
+            throw new InitializeException(
+                    "Number of connections must be a number > 0");
+        }
+        return options.withConnections(connections);
+
+    }
+
+    private SocketOptions parseTuning(final SocketOptions options,
+            final Properties properties) throws InitializeException {
+
+        final int sendBuffer =
+                properties.getProperty(SEND_BUFFER_KEY, 0).asInteger();
+        final int receiveBuffer =
+                properties.getProperty(RECEIVE_BUFFER_KEY, 0).asInteger();
+        if (sendBuffer < 0 || receiveBuffer < 0) {
+            throw new InitializeException(
+                    "Socket buffer sizes must be numbers >= 0");
+        }
+        final int trafficClass =
+                properties.getProperty(TRAFFIC_CLASS_KEY,
+                        SocketOptions.DEFAULT_TRAFFIC_CLASS).asInteger();
+        if (trafficClass < SocketOptions.DEFAULT_TRAFFIC_CLASS
+                || trafficClass > SocketOptions.MAX_TRAFFIC_CLASS) {
+            throw new InitializeException("Traffic class must be a number "
+                    + "between 0 and " + SocketOptions.MAX_TRAFFIC_CLASS);
+        }
+        final boolean keepAlive =
+                properties.getProperty(KEEPALIVE_KEY, false).asBoolean();
+        return options.withBuffers(sendBuffer, receiveBuffer)
+                .withKeepAlive(keepAlive).withTrafficClass(trafficClass);
+
+    }
+
+    private SocketOptions parseBinding(final SocketOptions options,
+            final Properties properties) throws InitializeException,
+            UnknownHostException {
+
+        final int backlog = properties.getProperty(BACKLOG_KEY, 0).asInteger();
+        if (backlog < 0) {
+            throw new InitializeException("Backlog must be a number >= 0");
+        }
+        InetAddress bindAddress = null;
+        if (properties.hasProperty(BIND_ADDRESS_KEY)) {
+            final String host =
+                    properties.getProperty(BIND_ADDRESS_KEY).asString();
+            if (!host.isEmpty()) {
+                bindAddress = InetAddress.getByName(host);
+            }
+        }
+        return options.withBinding(bindAddress, backlog);
+
+    }
+
+    private SocketOptions parseSocketPath(final SocketOptions options,
+            final Properties properties) throws InitializeException {
+
+        if (!properties.hasProperty(PATH_KEY)) {
+            return options;
+        }
+        final String path = properties.getProperty(PATH_KEY).asString();
+        if (path.isEmpty()) {
+            return options;
+        }
+        if (!UnixDomainSockets.isSupported()) {
+            throw new InitializeException("Socket path '" + path
+                    + "' requested but Unix domain sockets require "
+                    + "Java 16 or newer");
+        }
+        return options.withSocketPath(path);
+
+    }
+
     private ServerMode parseServerMode(final Properties properties)
             throws InitializeException {
 
@@ -118,6 +415,29 @@ public class SocketFactory implements TransportFactory {
         options.add("port");
         options.add("server");
         options.add("tcpnodelay");
+        options.add("io");
+        options.add("selectors");
+        options.add("threads");
+        options.add("async");
+        options.add("queue.depth");
+        options.add("queue.highwatermark");
+        options.add("queue.lowwatermark");
+        options.add("slowconsumer");
+        options.add("batch.maxbytes");
+        options.add("batch.maxdelayus");
+        options.add("compression");
+        options.add("compression.threshold");
+        options.add("fragment.size");
+        options.add("fragment.reassemblybytes");
+        options.add("path");
+        options.add("lingerms");
+        options.add("connections");
+        options.add("sendbuffer");
+        options.add("receivebuffer");
+        options.add("keepalive");
+        options.add("trafficclass");
+        options.add("bindaddress");
+        options.add("backlog");
         return new ConnectorInfo(SCHEMA, schemas, options, true);
     }
 
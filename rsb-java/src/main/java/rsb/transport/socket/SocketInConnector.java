@@ -48,7 +48,7 @@ import rsb.protocol.ProtocolConversion;
 import rsb.transport.AbstractConnector;
 import rsb.transport.EventHandler;
 import rsb.transport.InConnector;
-import rsb.transport.socket.Bus.NotificationReceiver;
+import rsb.transport.socket.Bus.EventReceiver;
 
 /**
  * An {@link InConnector} for the socket-based transport.
@@ -57,7 +57,7 @@ import rsb.transport.socket.Bus.NotificationReceiver;
  */
 public class SocketInConnector extends AbstractConnector
                                    implements InConnector,
-                                              NotificationReceiver {
+                                              EventReceiver {
 
     private static final Logger LOG = Logger
             .getLogger(SocketInConnector.class.getName());
@@ -100,7 +100,7 @@ public class SocketInConnector extends AbstractConnector
     public void activate() throws RSBException {
         synchronized (this.utility) {
             this.utility.activate();
-            this.utility.getBus().addNotificationReceiver(this);
+            this.utility.getBus().addNotificationReceiver(this, this.scope);
         }
     }
 
@@ -127,44 +127,46 @@ public class SocketInConnector extends AbstractConnector
         return this.handlers.remove(handler);
     }
 
-    // we need to shield against user code terminating the framework code
     @Override
-    @SuppressWarnings("PMD.AvoidCatchingGenericException")
+    public ConverterSelectionStrategy<ByteBuffer> getConverters() {
+        return this.utility.getConverters();
+    }
+
+    @Override
     public void handle(final Notification notification) {
 
         LOG.log(Level.FINEST, "Received a notification with scope {0}",
                 notification.getScope().toStringUtf8());
-        final Scope notificationScope =
-                new Scope(notification.getScope().toStringUtf8());
-        if (!this.scope.equals(notificationScope)
-                && !notificationScope.isSubScopeOf(this.scope)) {
-            LOG.log(Level.FINER, "Ignoring notification on scope {0} "
-                    + "because it is not a (sub)scope of {1}", new Object[] {
-                    notificationScope, this.scope });
-            return;
-        }
 
         try {
+            handle(ProtocolConversion.fromNotification(notification,
+                    ByteBuffer.wrap(notification.getData().toByteArray()),
+                    this.utility.getConverters()));
+        } catch (final ConversionException e) {
+            LOG.log(Level.WARNING,
+                    "Error decoding the received message. Ignroing this.", e);
+        }
 
-            final Event resultEvent =
-                    ProtocolConversion.fromNotification(notification,
-                            ByteBuffer.wrap(notification.getData()
-                                    .toByteArray()), this.utility
-                                    .getConverters());
+    }
+
+    // we need to shield against user code terminating the framework code
+    @Override
+    @SuppressWarnings("PMD.AvoidCatchingGenericException")
+    public void handle(final Event event) {
+
+        // the bus only passes events on our scope or its sub-scopes
+        try {
 
             // make a copy to avoid lengthy locking
             final Set<EventHandler> handlers =
                     new HashSet<EventHandler>(this.handlers);
             for (final EventHandler handler : handlers) {
-                handler.handle(resultEvent);
+                handler.handle(event);
             }
 
         } catch (final RuntimeException e) {
             LOG.log(Level.WARNING, "Error while dispatching notification to "
                     + "registered handlers. Ignoring this.", e);
-        } catch (final ConversionException e) {
-            LOG.log(Level.WARNING,
-                    "Error decoding the received message. Ignroing this.", e);
         }
 
     }
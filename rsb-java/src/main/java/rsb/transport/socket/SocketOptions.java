@@ -28,17 +28,95 @@
 package rsb.transport.socket;
 
 import java.net.InetAddress;
+import java.util.Objects;
 
 /**
  * A class representing the different options of socket-based communications.
  *
  * @author jwienke
  */
+// each field represents one configuration option of the transport
+@SuppressWarnings({ "PMD.TooManyFields", "PMD.TooManyMethods",
+        "PMD.GodClass", "PMD.ExcessivePublicCount" })
 public final class SocketOptions {
 
+    /**
+     * Default number of selector threads used in {@link IoMode#NIO}.
+     */
+    public static final int DEFAULT_SELECTOR_THREADS = 2;
+
+    /**
+     * Default maximum number of notifications in the outbound queue of a
+     * connection in asynchronous send mode.
+     */
+    public static final int DEFAULT_QUEUE_DEPTH = 1000;
+
+    /**
+     * Default number of queued bytes above which senders are blocked in
+     * asynchronous send mode.
+     */
+    public static final long DEFAULT_HIGH_WATERMARK = 8 * 1024 * 1024;
+
+    /**
+     * Default number of queued bytes below which blocked senders may continue
+     * in asynchronous send mode.
+     */
+    public static final long DEFAULT_LOW_WATERMARK = 2 * 1024 * 1024;
+
+    /**
+     * Default maximum time in microseconds for collecting frames into a single
+     * batch in case batching is enabled.
+     */
+    public static final long DEFAULT_BATCH_DELAY_US = 500;
+
+    /**
+     * Default minimum payload size in bytes for compressing payloads in case
+     * compression is enabled.
+     */
+    public static final int DEFAULT_COMPRESSION_MIN = 1024;
+
+    /**
+     * Default maximum number of bytes per connection held for reassembling
+     * fragmented notifications.
+     */
+    public static final long DEFAULT_REASSEMBLY_BYTES = 128 * 1024 * 1024;
+
+    /**
+     * Traffic class value leaving the traffic class of sockets unchanged.
+     */
+    public static final int DEFAULT_TRAFFIC_CLASS = -1;
+
+    /**
+     * Largest valid traffic class value.
+     */
+    public static final int MAX_TRAFFIC_CLASS = 255;
+
     private final InetAddress address;
     private final int port;
     private final boolean tcpNoDelay;
+    private IoMode ioMode = IoMode.BLOCKING;
+    private int selectorThreads = DEFAULT_SELECTOR_THREADS;
+    private ThreadMode threadMode = ThreadMode.PLATFORM;
+    private boolean asyncSend = false;
+    private int queueDepth = DEFAULT_QUEUE_DEPTH;
+    private long highWatermark = DEFAULT_HIGH_WATERMARK;
+    private long lowWatermark = DEFAULT_LOW_WATERMARK;
+    private SlowConsumerPolicy slowConsumerPolicy = SlowConsumerPolicy.BLOCK;
+    private int batchMaxBytes = 0;
+    private long batchMaxDelayUs = DEFAULT_BATCH_DELAY_US;
+    private boolean compression = false;
+    private int compressionThreshold = DEFAULT_COMPRESSION_MIN;
+    private int fragmentSize = 0;
+    private long maxReassemblyBytes = DEFAULT_REASSEMBLY_BYTES;
+    private String socketPath = null;
+    private long lingerTime = 0;
+    private int connections = 1;
+    private int sendBufferSize = 0;
+    private int receiveBufferSize = 0;
+    private boolean keepAlive = false;
+    private int trafficClass = DEFAULT_TRAFFIC_CLASS;
+    private InetAddress bindAddress = null;
+    private int backlog = 0;
 
     /**
      * Constructor.
@@ -60,6 +138,55 @@ public final class SocketOptions {
         this.tcpNoDelay = tcpNoDelay;
     }
 
+    /**
+     * Creates a new instance for a different end point using the remaining
+     * settings of an existing instance.
+     *
+     * @param address
+     *            host address
+     * @param port
+     *            socket port
+     * @param settings
+     *            instance to copy all other settings from
+     */
+    private SocketOptions(final InetAddress address, final int port,
+            final SocketOptions settings) {
+        this(address, port, settings.tcpNoDelay);
+        this.ioMode = settings.ioMode;
+        this.selectorThreads = settings.selectorThreads;
+        this.threadMode = settings.threadMode;
+        this.asyncSend = settings.asyncSend;
+        this.queueDepth = settings.queueDepth;
+        this.highWatermark = settings.highWatermark;
+        this.lowWatermark = settings.lowWatermark;
+        this.slowConsumerPolicy = settings.slowConsumerPolicy;
+        this.batchMaxBytes = settings.batchMaxBytes;
+        this.batchMaxDelayUs = settings.batchMaxDelayUs;
+        this.compression = settings.compression;
+        this.compressionThreshold = settings.compressionThreshold;
+        this.fragmentSize = settings.fragmentSize;
+        this.maxReassemblyBytes = settings.maxReassemblyBytes;
+        this.socketPath = settings.socketPath;
+        this.lingerTime = settings.lingerTime;
+        this.connections = settings.connections;
+        this.sendBufferSize = settings.sendBufferSize;
+        this.receiveBufferSize = settings.receiveBufferSize;
+        this.keepAlive = settings.keepAlive;
+        this.trafficClass = settings.trafficClass;
+        this.bindAddress = settings.bindAddress;
+        this.backlog = settings.backlog;
+    }
+
+    /**
+     * Copy constructor used to derive modified instances.
+     *
+     * @param other
+     *            the instance to copy
+     */
+    private SocketOptions(final SocketOptions other) {
+        this(other.address, other.port, other);
+    }
+
     /**
      * Returns the host.
      *
@@ -87,6 +214,556 @@ public final class SocketOptions {
         return this.tcpNoDelay;
     }
 
+    /**
+     * Returns the I/O model to use for bus servers.
+     *
+     * @return I/O mode, not <code>null</code>
+     */
+    public IoMode getIoMode() {
+        return this.ioMode;
+    }
+
+    /**
+     * Returns the number of selector threads to use in {@link IoMode#NIO}.
+     *
+     * @return number of threads &gt; 0
+     */
+    public int getSelectorThreads() {
+        return this.selectorThreads;
+    }
+
+    /**
+     * Returns a copy of this instance using a different I/O model for bus
+     * servers.
+     *
+     * @param ioMode
+     *            the I/O model to use
+     * @param selectorThreads
+     *            number of selector threads to use in case of
+     *            {@link IoMode#NIO}, must be &gt; 0
+     * @return new instance with the requested I/O model
+     */
+    public SocketOptions withIoMode(final IoMode ioMode,
+            final int selectorThreads) {
+        assert ioMode != null;
+        assert selectorThreads > 0;
+        final SocketOptions copy = new SocketOptions(this);
+        copy.ioMode = ioMode;
+        copy.selectorThreads = selectorThreads;
+        return copy;
+    }
+
+    /**
+     * Returns the kind of threads running the blocking loops of servers and
+     * connections. Selector threads in {@link IoMode#NIO} are always
+     * platform threads.
+     *
+     * @return thread mode, not <code>null</code>
+     */
+    public ThreadMode getThreadMode() {
+        return this.threadMode;
+    }
+
+    /**
+     * Returns a copy of this instance using a different kind of threads.
+     *
+     * @param threadMode
+     *            the kind of threads to use
+     * @return new instance with the requested thread mode
+     */
+    public SocketOptions withThreadMode(final ThreadMode threadMode) {
+        assert threadMode != null;
+        final SocketOptions copy = new SocketOptions(this);
+        copy.threadMode = threadMode;
+        return copy;
+    }
+
+    /**
+     * Indicates whether notifications are sent asynchronously through a
+     * bounded outbound queue per connection instead of blocking the sender
+     * until the notification has been written.
+     *
+     * @return <code>true</code> for asynchronous sending
+     */
+    public boolean isAsyncSend() {
+        return this.asyncSend;
+    }
+
+    /**
+     * Returns the maximum number of notifications in the outbound queue of a
+     * connection in asynchronous send mode.
+     *
+     * @return queue depth &gt; 0
+     */
+    public int getQueueDepth() {
+        return this.queueDepth;
+    }
+
+    /**
+     * Returns the number of queued bytes of a connection above which senders
+     * are blocked in asynchronous send mode until the queue has been drained
+     * to the low watermark.
+     *
+     * @return high watermark in bytes
+     */
+    public long getHighWatermark() {
+        return this.highWatermark;
+    }
+
+    /**
+     * Returns the number of queued bytes of a connection at which senders
+     * blocked by the high watermark may continue.
+     *
+     * @return low watermark in bytes
+     */
+    public long getLowWatermark() {
+        return this.lowWatermark;
+    }
+
+    /**
+     * Returns the policy applied by connections once the frames buffered for
+     * a slow remote peer exceed the queue depth or the high watermark.
+     *
+     * @return the policy, {@link SlowConsumerPolicy#BLOCK} by default
+     */
+    public SlowConsumerPolicy getSlowConsumerPolicy() {
+        return this.slowConsumerPolicy;
+    }
+
+    /**
+     * Indicates whether frames are sent through an outbound queue, either
+     * because of {@link #isAsyncSend()}, because of {@link #isBatching()} or
+     * because a {@link SlowConsumerPolicy} other than
+     * {@link SlowConsumerPolicy#BLOCK} requires buffering frames.
+     *
+     * @return <code>true</code> if senders only enqueue frames
+     */
+    public boolean isQueued() {
+        return this.asyncSend || isBatching()
+                || this.slowConsumerPolicy != SlowConsumerPolicy.BLOCK;
+    }
+
+    /**
+     * Indicates whether blocking connections pack several frames into a
+     * single write. Batching requires an outbound queue and hence implies
+     * asynchronous sending. NIO connections always coalesce pending frames
+     * into a single gathering write independent of this setting.
+     *
+     * @return <code>true</code> if batching is enabled
+     */
+    public boolean isBatching() {
+        return this.batchMaxBytes > 0;
+    }
+
+    /**
+     * Returns the size of the buffer frames are packed into in case batching
+     * is enabled. Larger frames are written without packing.
+     *
+     * @return size in bytes, 0 if batching is disabled
+     */
+    public int getBatchMaxBytes() {
+        return this.batchMaxBytes;
+    }
+
+    /**
+     * Returns the maximum time to keep collecting frames into a batch while
+     * further frames are queued. A batch is always written as soon as no
+     * further frames are queued. Hence, single frames are not delayed.
+     *
+     * @return time in microseconds
+     */
+    public long getBatchMaxDelayUs() {
+        return this.batchMaxDelayUs;
+    }
+
+    /**
+     * Returns a copy of this instance with different batching settings.
+     *
+     * @param maxBytes
+     *            size of the buffer to pack frames into, 0 to disable batching
+     * @param maxDelayUs
+     *            maximum time in microseconds to collect frames into a single
+     *            batch, must be &gt;= 0
+     * @return new instance with the requested batching settings
+     */
+    public SocketOptions withBatching(final int maxBytes,
+            final long maxDelayUs) {
+        assert maxBytes >= 0;
+        assert maxDelayUs >= 0;
+        final SocketOptions copy = new SocketOptions(this);
+        copy.batchMaxBytes = maxBytes;
+        copy.batchMaxDelayUs = maxDelayUs;
+        return copy;
+    }
+
+    /**
+     * Indicates whether payloads of outgoing notifications are compressed on
+     * connections to peers supporting compression. Incoming compressed
+     * payloads are always accepted.
+     *
+     * @return <code>true</code> if outgoing payloads are compressed
+     */
+    public boolean isCompression() {
+        return this.compression;
+    }
+
+    /**
+     * Returns the minimum size of payloads to compress in case compression is
+     * enabled.
+     *
+     * @return size in bytes
+     */
+    public int getCompressionThreshold() {
+        return this.compressionThreshold;
+    }
+
+    /**
+     * Returns a copy of this instance with different compression settings.
+     *
+     * @param enabled
+     *            if <code>true</code>, compress outgoing payloads on
+     *            connections to peers supporting compression
+     * @param threshold
+     *            minimum payload size in bytes to compress, must be &gt;= 0
+     * @return new instance with the requested compression settings
+     */
+    public SocketOptions withCompression(final boolean enabled,
+            final int threshold) {
+        assert threshold >= 0;
+        final SocketOptions copy = new SocketOptions(this);
+        copy.compression = enabled;
+        copy.compressionThreshold = threshold;
+        return copy;
+    }
+
+    /**
+     * Indicates whether large notifications are split into fragments on
+     * connections to peers supporting fragmentation. Fragments of different
+     * notifications may interleave so that small notifications are not
+     * delayed by large ones. Incoming fragments are always accepted.
+     *
+     * @return <code>true</code> if large notifications are fragmented
+     */
+    public boolean isFragmentation() {
+        return this.fragmentSize > 0;
+    }
+
+    /**
+     * Returns the maximum number of payload bytes per fragment.
+     *
+     * @return size in bytes, 0 if fragmentation is disabled
+     */
+    public int getFragmentSize() {
+        return this.fragmentSize;
+    }
+
+    /**
+     * Returns the maximum number of bytes held per connection for
+     * reassembling received fragments. Incomplete notifications are dropped
+     * in case this limit is exceeded.
+     *
+     * @return size in bytes
+     */
+    public long getMaxReassemblyBytes() {
+        return this.maxReassemblyBytes;
+    }
+
+    /**
+     * Returns a copy of this instance with different fragmentation settings.
+     *
+     * @param size
+     *            maximum number of payload bytes per fragment, 0 to disable
+     *            fragmenting outgoing notifications
+     * @param maxReassembly
+     *            maximum number of bytes held for reassembling incoming
+     *            fragments, must be &gt; 0
+     * @return new instance with the requested fragmentation settings
+     */
+    public SocketOptions withFragmentation(final int size,
+            final long maxReassembly) {
+        assert size >= 0;
+        assert maxReassembly > 0;
+        final SocketOptions copy = new SocketOptions(this);
+        copy.fragmentSize = size;
+        copy.maxReassemblyBytes = maxReassembly;
+        return copy;
+    }
+
+    /**
+     * Indicates whether server and clients communicate through a Unix domain
+     * socket at {@link #getSocketPath()} instead of TCP. Requires Java 16 or
+     * newer. Address and port are only used for identifying the bus in this
+     * case.
+     *
+     * @return <code>true</code> if a Unix domain socket is used
+     */
+    public boolean isUnixDomain() {
+        return this.socketPath != null;
+    }
+
+    /**
+     * Returns the path of the Unix domain socket to use.
+     *
+     * @return path or <code>null</code> if TCP is used
+     */
+    public String getSocketPath() {
+        return this.socketPath;
+    }
+
+    /**
+     * Returns a copy of this instance using a Unix domain socket.
+     *
+     * @param path
+     *            path of the Unix domain socket or <code>null</code> to use
+     *            TCP
+     * @return new instance with the requested socket path
+     */
+    public SocketOptions withSocketPath(final String path) {
+        final SocketOptions copy = new SocketOptions(this);
+        copy.socketPath = path;
+        return copy;
+    }
+
+    /**
+     * Returns the size of the socket send buffer to request.
+     *
+     * @return size in bytes, 0 to use the system default
+     */
+    public int getSendBufferSize() {
+        return this.sendBufferSize;
+    }
+
+    /**
+     * Returns the size of the socket receive buffer to request.
+     *
+     * @return size in bytes, 0 to use the system default
+     */
+    public int getReceiveBufferSize() {
+        return this.receiveBufferSize;
+    }
+
+    /**
+     * Returns a copy of this instance with different socket buffer sizes.
+     *
+     * @param send
+     *            send buffer size in bytes, 0 to use the system default
+     * @param receive
+     *            receive buffer size in bytes, 0 to use the system default
+     * @return new instance with the requested buffer sizes
+     */
+    public SocketOptions withBuffers(final int send, final int receive) {
+        assert send >= 0;
+        assert receive >= 0;
+        final SocketOptions copy = new SocketOptions(this);
+        copy.sendBufferSize = send;
+        copy.receiveBufferSize = receive;
+        return copy;
+    }
+
+    /**
+     * Indicates whether TCP keep-alive probes are enabled on connections.
+     *
+     * @return <code>true</code> if keep-alive is enabled
+     */
+    public boolean isKeepAlive() {
+        return this.keepAlive;
+    }
+
+    /**
+     * Returns a copy of this instance with different keep-alive settings.
+     *
+     * @param enabled
+     *            if <code>true</code>, enable TCP keep-alive probes
+     * @return new instance with the requested keep-alive setting
+     */
+    public SocketOptions withKeepAlive(final boolean enabled) {
+        final SocketOptions copy = new SocketOptions(this);
+        copy.keepAlive = enabled;
+        return copy;
+    }
+
+    /**
+     * Returns the traffic class, i.e. the type-of-service octet, to set for
+     * packets sent on connections.
+     *
+     * @return traffic class or {@link #DEFAULT_TRAFFIC_CLASS} to leave it
+     *         unchanged
+     */
+    public int getTrafficClass() {
+        return this.trafficClass;
+    }
+
+    /**
+     * Returns a copy of this instance with a different traffic class.
+     *
+     * @param value
+     *            traffic class between 0 and {@link #MAX_TRAFFIC_CLASS} or
+     *            {@link #DEFAULT_TRAFFIC_CLASS} to leave it unchanged
+     * @return new instance with the requested traffic class
+     */
+    public SocketOptions withTrafficClass(final int value) {
+        assert value >= DEFAULT_TRAFFIC_CLASS && value <= MAX_TRAFFIC_CLASS;
+        final SocketOptions copy = new SocketOptions(this);
+        copy.trafficClass = value;
+        return copy;
+    }
+
+    /**
+     * Returns the local address servers listen on and clients connect from.
+     *
+     * @return local address or <code>null</code> for any address
+     */
+    public InetAddress getBindAddress() {
+        return this.bindAddress;
+    }
+
+    /**
+     * Returns the maximum number of pending connection requests of a server.
+     *
+     * @return backlog, 0 to use the default
+     */
+    public int getBacklog() {
+        return this.backlog;
+    }
+
+    /**
+     * Returns a copy of this instance with different settings for binding
+     * sockets.
+     *
+     * @param address
+     *            local address to bind to or <code>null</code> for any address
+     * @param pending
+     *            maximum number of pending connection requests of a server, 0
+     *            to use the default
+     * @return new instance with the requested binding
+     */
+    public SocketOptions withBinding(final InetAddress address,
+            final int pending) {
+        assert pending >= 0;
+        final SocketOptions copy = new SocketOptions(this);
+        copy.bindAddress = address;
+        copy.backlog = pending;
+        return copy;
+    }
+
+    /**
+     * Returns the number of connections a bus client opens to the server.
+     * Outgoing notifications are distributed across these connections based
+     * on their scope.
+     *
+     * @return number of connections, &gt; 0
+     */
+    public int getConnections() {
+        return this.connections;
+    }
+
+    /**
+     * Returns a copy of this instance with a different number of connections
+     * per bus client.
+     *
+     * @param count
+     *            number of connections, must be &gt; 0
+     * @return new instance with the requested number of connections
+     */
+    public SocketOptions withConnections(final int count) {
+        assert count > 0;
+        final SocketOptions copy = new SocketOptions(this);
+        copy.connections = count;
+        return copy;
+    }
+
+    /**
+     * Returns the time in milliseconds a cached bus stays connected after the
+     * last participant using it has been deactivated. Participants requesting
+     * equal options within this time reuse the bus instead of connecting
+     * again.
+     *
+     * @return linger time in milliseconds, 0 to disconnect immediately
+     */
+    public long getLingerTime() {
+        return this.lingerTime;
+    }
+
+    /**
+     * Returns a copy of this instance with a different linger time for cached
+     * buses.
+     *
+     * @param time
+     *            linger time in milliseconds, must be &gt;= 0
+     * @return new instance with the requested linger time
+     */
+    public SocketOptions withLingerTime(final long time) {
+        assert time >= 0;
+        final SocketOptions copy = new SocketOptions(this);
+        copy.lingerTime = time;
+        return copy;
+    }
+
+    /**
+     * Returns a copy of this instance with a different end point.
+     *
+     * @param newAddress
+     *            host address
+     * @param newPort
+     *            socket port
+     * @return new instance with all other settings copied from this instance
+     */
+    public SocketOptions withAddress(final InetAddress newAddress,
+            final int newPort) {
+        return new SocketOptions(newAddress, newPort, this);
+    }
+
+    /**
+     * Returns a copy of this instance with different settings for sending
+     * notifications.
+     *
+     * @param async
+     *            if <code>true</code>, use a bounded outbound queue per
+     *            connection instead of blocking senders until notifications
+     *            have been written
+     * @param depth
+     *            maximum number of queued notifications per connection, must
+     *            be &gt; 0
+     * @param high
+     *            number of queued bytes above which senders are blocked
+     * @param low
+     *            number of queued bytes at which blocked senders may continue,
+     *            must not be greater than <code>high</code>
+     * @return new instance with the requested send settings
+     */
+    public SocketOptions withSendQueue(final boolean async, final int depth,
+            final long high, final long low) {
+        assert depth > 0;
+        assert low >= 0 && low <= high;
+        final SocketOptions copy = new SocketOptions(this);
+        copy.asyncSend = async;
+        copy.queueDepth = depth;
+        copy.highWatermark = high;
+        copy.lowWatermark = low;
+        return copy;
+    }
+
+    /**
+     * Returns a copy of this instance with a different policy for slow
+     * remote peers. Policies other than {@link SlowConsumerPolicy#BLOCK}
+     * imply an outbound queue for blocking connections.
+     *
+     * @param policy
+     *            the policy to apply once the frames buffered for a
+     *            connection exceed the queue depth or the high watermark
+     * @return new instance with the requested policy
+     */
+    public SocketOptions withSlowConsumerPolicy(
+            final SlowConsumerPolicy policy) {
+        assert policy != null;
+        final SocketOptions copy = new SocketOptions(this);
+        copy.slowConsumerPolicy = policy;
+        return copy;
+    }
+
+    // the linger time is deliberately not compared. It only controls how
+    // long a cached bus survives and must not prevent participants from
+    // sharing a bus.
     @Override
     public boolean equals(final Object obj) {
 
@@ -97,7 +774,29 @@ public final class SocketOptions {
         final SocketOptions other = (SocketOptions) obj;
 
         return this.address.equals(other.address) && this.port == other.port
-                && this.tcpNoDelay == other.tcpNoDelay;
+                && this.tcpNoDelay == other.tcpNoDelay
+                && this.ioMode == other.ioMode
+                && this.selectorThreads == other.selectorThreads
+                && this.threadMode == other.threadMode
+                && this.asyncSend == other.asyncSend
+                && this.queueDepth == other.queueDepth
+                && this.highWatermark == other.highWatermark
+                && this.lowWatermark == other.lowWatermark
+                && this.slowConsumerPolicy == other.slowConsumerPolicy
+                && this.batchMaxBytes == other.batchMaxBytes
+                && this.batchMaxDelayUs == other.batchMaxDelayUs
+                && this.compression == other.compression
+                && this.compressionThreshold == other.compressionThreshold
+                && this.fragmentSize == other.fragmentSize
+                && this.maxReassemblyBytes == other.maxReassemblyBytes
+                && Objects.equals(this.socketPath, other.socketPath)
+                && this.connections == other.connections
+                && this.sendBufferSize == other.sendBufferSize
+                && this.receiveBufferSize == other.receiveBufferSize
+                && this.keepAlive == other.keepAlive
+                && this.trafficClass == other.trafficClass
+                && Objects.equals(this.bindAddress, other.bindAddress)
+                && this.backlog == other.backlog;
 
     }
 
@@ -108,12 +807,37 @@ public final class SocketOptions {
         result = prime * result + this.address.hashCode();
         result = prime * result + this.port;
         result = prime * result + Boolean.valueOf(this.tcpNoDelay).hashCode();
+        result = prime * result + this.ioMode.hashCode();
+        result = prime * result + this.threadMode.hashCode();
+        result = prime * result + this.selectorThreads;
+        result = prime * result + Boolean.valueOf(this.asyncSend).hashCode();
+        result = prime * result + this.queueDepth;
+        result = prime * result + Long.valueOf(this.highWatermark).hashCode();
+        result = prime * result + Long.valueOf(this.lowWatermark).hashCode();
+        result = prime * result + this.slowConsumerPolicy.hashCode();
+        result = prime * result + this.batchMaxBytes;
+        result =
+                prime * result + Long.valueOf(this.batchMaxDelayUs).hashCode();
+        result = prime * result + Boolean.valueOf(this.compression).hashCode();
+        result = prime * result + this.compressionThreshold;
+        result = prime * result + this.fragmentSize;
+        result =
+                prime * result
+                        + Long.valueOf(this.maxReassemblyBytes).hashCode();
+        result = prime * result + Objects.hashCode(this.socketPath);
+        result = prime * result + this.connections;
+        result = prime * result + this.sendBufferSize;
+        result = prime * result + this.receiveBufferSize;
+        result = prime * result + Boolean.valueOf(this.keepAlive).hashCode();
+        result = prime * result + this.trafficClass;
+        result = prime * result + Objects.hashCode(this.bindAddress);
+        result = prime * result + this.backlog;
         return result;
     }
 
     @Override
     public String toString() {
-        final StringBuilder builder = new StringBuilder(40);
+        final StringBuilder builder = new StringBuilder(500);
         builder.append(getClass().getName());
         builder.append("[address=");
         builder.append(this.address);
@@ -121,6 +845,52 @@ public final class SocketOptions {
         builder.append(this.port);
         builder.append(", tcpNoDelay=");
         builder.append(this.tcpNoDelay);
+        builder.append(", ioMode=");
+        builder.append(this.ioMode);
+        builder.append(", threadMode=");
+        builder.append(this.threadMode);
+        builder.append(", selectorThreads=");
+        builder.append(this.selectorThreads);
+        builder.append(", asyncSend=");
+        builder.append(this.asyncSend);
+        builder.append(", queueDepth=");
+        builder.append(this.queueDepth);
+        builder.append(", highWatermark=");
+        builder.append(this.highWatermark);
+        builder.append(", lowWatermark=");
+        builder.append(this.lowWatermark);
+        builder.append(", slowConsumerPolicy=");
+        builder.append(this.slowConsumerPolicy);
+        builder.append(", batchMaxBytes=");
+        builder.append(this.batchMaxBytes);
+        builder.append(", batchMaxDelayUs=");
+        builder.append(this.batchMaxDelayUs);
+        builder.append(", compression=");
+        builder.append(this.compression);
+        builder.append(", compressionThreshold=");
+        builder.append(this.compressionThreshold);
+        builder.append(", fragmentSize=");
+        builder.append(this.fragmentSize);
+        builder.append(", maxReassemblyBytes=");
+        builder.append(this.maxReassemblyBytes);
+        builder.append(", socketPath=");
+        builder.append(this.socketPath);
+        builder.append(", connections=");
+        builder.append(this.connections);
+        builder.append(", sendBufferSize=");
+        builder.append(this.sendBufferSize);
+        builder.append(", receiveBufferSize=");
+        builder.append(this.receiveBufferSize);
+        builder.append(", keepAlive=");
+        builder.append(this.keepAlive);
+        builder.append(", trafficClass=");
+        builder.append(this.trafficClass);
+        builder.append(", bindAddress=");
+        builder.append(this.bindAddress);
+        builder.append(", backlog=");
+        builder.append(this.backlog);
+        builder.append(", lingerTime=");
+        builder.append(this.lingerTime);
         builder.append(']');
         return builder.toString();
     }
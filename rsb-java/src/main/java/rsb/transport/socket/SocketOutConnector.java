@@ -35,13 +35,8 @@ import rsb.QualityOfServiceSpec;
 import rsb.RSBException;
 import rsb.Scope;
 import rsb.converter.ConverterSelectionStrategy;
-import rsb.converter.WireContents;
-import rsb.protocol.NotificationType.Notification;
-import rsb.protocol.NotificationType.Notification.Builder;
-import rsb.protocol.ProtocolConversion;
 import rsb.transport.AbstractConnector;
 import rsb.transport.OutConnector;
-import rsb.util.ByteHelpers;
 
 /**
  * An {@link OutConnector} instance for the socket transport.
@@ -52,6 +47,7 @@ public class SocketOutConnector extends AbstractConnector
                                 implements OutConnector {
 
     private final SocketConnectorUtility utility;
+    private volatile boolean unreliable = false;
 
     /**
      * Constructor.
@@ -73,8 +69,12 @@ public class SocketOutConnector extends AbstractConnector
 
     @Override
     public void setQualityOfServiceSpec(final QualityOfServiceSpec spec) {
-        // we always have reliable and ordered communication. No need to do
-        // anything
+        // we always have reliable and ordered communication. Notifications of
+        // unreliable informers are only marked so that connections to slow
+        // peers may drop them.
+        this.unreliable =
+                spec.getReliability()
+                == QualityOfServiceSpec.Reliability.UNRELIABLE;
     }
 
     @Override
@@ -101,22 +101,10 @@ public class SocketOutConnector extends AbstractConnector
     public void push(final Event event) throws RSBException {
 
         event.getMetaData().setSendTime(0);
-        final WireContents<ByteBuffer> data =
-                ProtocolConversion.serializeEventData(event,
-                        this.utility.getConverters());
-
-        final Builder builder = Notification.newBuilder();
-        builder.setEventId(ProtocolConversion.createEventIdBuilder(event
-                .getId()));
-
-        builder.setData(ByteHelpers.buteBufferToByteString(data
-                .getSerialization()));
-
-        ProtocolConversion.fillNotificationHeader(builder, event,
-                data.getWireSchema());
-
-        final Notification notification = builder.build();
-        this.utility.getBus().handleOutgoing(notification);
+        // local receivers get the event itself, serialization is only
+        // performed for remote participants
+        this.utility.getBus().handleOutgoing(event,
+                this.utility.getConverters(), this.unreliable);
 
     }
 
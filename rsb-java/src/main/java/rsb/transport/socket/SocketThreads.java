@@ -0,0 +1,145 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.socket;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Creates the threads running the blocking loops of the socket transport
+ * according to {@link SocketOptions#getThreadMode()}.
+ *
+ * Virtual threads are detected at runtime using reflection so that the
+ * transport still runs on older Java versions. In case virtual threads are
+ * requested but not available, platform threads are used instead.
+ *
+ * @author jwienke
+ */
+public final class SocketThreads {
+
+    private static final Logger LOG = Logger.getLogger(SocketThreads.class
+            .getName());
+
+    /**
+     * Factory for virtual threads or <code>null</code> if the runtime does not
+     * support them.
+     */
+    private static final ThreadFactory VIRTUAL_FACTORY = createVirtualFactory();
+
+    private static final AtomicBoolean FALLBACK_REPORTED = new AtomicBoolean(
+            false);
+
+    private SocketThreads() {
+        super();
+        // prevent instantiation of utility class
+    }
+
+    // reflection fails with many different exceptions on older runtimes, all
+    // meaning that virtual threads are not available
+    @SuppressWarnings("PMD.AvoidCatchingGenericException")
+    private static ThreadFactory createVirtualFactory() {
+        try {
+            final Object builder =
+                    Thread.class.getMethod("ofVirtual").invoke(null);
+            final Method factory =
+                    Class.forName("java.lang.Thread$Builder").getMethod(
+                            "factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (final Exception e) {
+            LOG.log(Level.FINE, "Virtual threads are not available.", e);
+            return null;
+        }
+    }
+
+    /**
+     * Indicates whether the Java runtime supports virtual threads.
+     *
+     * @return <code>true</code> if {@link ThreadMode#VIRTUAL} is effective
+     */
+    public static boolean isVirtualAvailable() {
+        return VIRTUAL_FACTORY != null;
+    }
+
+    /**
+     * Returns the factory for virtual threads in case they are requested by
+     * the given options and available.
+     *
+     * @return factory or <code>null</code> to use platform threads
+     */
+    private static ThreadFactory getVirtualFactory(final SocketOptions options) {
+        if (options.getThreadMode() != ThreadMode.VIRTUAL) {
+            return null;
+        }
+        if (VIRTUAL_FACTORY == null
+                && FALLBACK_REPORTED.compareAndSet(false, true)) {
+            LOG.warning("Virtual threads are not supported by this Java "
+                    + "runtime. Using platform threads instead.");
+        }
+        return VIRTUAL_FACTORY;
+    }
+
+    /**
+     * Creates a new, unstarted thread.
+     *
+     * @param options
+     *            options selecting the kind of thread
+     * @param runnable
+     *            the code to run in the thread
+     * @return new thread
+     */
+    public static Thread newThread(final SocketOptions options,
+            final Runnable runnable) {
+        final ThreadFactory factory = getVirtualFactory(options);
+        if (factory == null) {
+            return new Thread(runnable);
+        }
+        return factory.newThread(runnable);
+    }
+
+    /**
+     * Creates an executor with a single thread.
+     *
+     * @param options
+     *            options selecting the kind of thread
+     * @return new executor
+     */
+    public static ExecutorService newSingleThreadExecutor(
+            final SocketOptions options) {
+        final ThreadFactory factory = getVirtualFactory(options);
+        if (factory == null) {
+            return Executors.newSingleThreadExecutor();
+        }
+        return Executors.newSingleThreadExecutor(factory);
+    }
+
+}
@@ -0,0 +1,117 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.socket;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * Applies the tuning parameters of {@link SocketOptions} to TCP sockets.
+ * Settings left at their defaults do not change the socket.
+ *
+ * @author jwienke
+ */
+public final class SocketTuning {
+
+    private SocketTuning() {
+        super();
+        // prevent instantiation of utility class
+    }
+
+    /**
+     * Configures a client or accepted socket. Buffer sizes influence the
+     * window scaling negotiated while connecting. Hence, for client sockets
+     * this method should be called before connecting.
+     *
+     * @param socket
+     *            the socket to configure
+     * @param options
+     *            the options to apply
+     * @throws IOException
+     *             error setting a socket option
+     */
+    public static void configure(final Socket socket,
+            final SocketOptions options) throws IOException {
+        socket.setTcpNoDelay(options.isTcpNoDelay());
+        if (options.getSendBufferSize() > 0) {
+            socket.setSendBufferSize(options.getSendBufferSize());
+        }
+        if (options.getReceiveBufferSize() > 0) {
+            socket.setReceiveBufferSize(options.getReceiveBufferSize());
+        }
+        if (options.isKeepAlive()) {
+            socket.setKeepAlive(true);
+        }
+        if (options.getTrafficClass() != SocketOptions.DEFAULT_TRAFFIC_CLASS) {
+            socket.setTrafficClass(options.getTrafficClass());
+        }
+    }
+
+    /**
+     * Binds an unbound client socket to the configured local address, if
+     * any.
+     *
+     * @param socket
+     *            the unbound socket
+     * @param options
+     *            the options to apply
+     * @throws IOException
+     *             error binding the socket
+     */
+    public static void bindClient(final Socket socket,
+            final SocketOptions options) throws IOException {
+        if (options.getBindAddress() != null) {
+            socket.bind(new InetSocketAddress(options.getBindAddress(), 0));
+        }
+    }
+
+    /**
+     * Binds an unbound server socket to the configured local address and
+     * port. The receive buffer size is set beforehand so that accepted
+     * sockets inherit it.
+     *
+     * @param socket
+     *            the unbound server socket
+     * @param options
+     *            the options to apply
+     * @throws IOException
+     *             error binding the socket
+     */
+    public static void bindServer(final ServerSocket socket,
+            final SocketOptions options) throws IOException {
+        if (options.getReceiveBufferSize() > 0) {
+            socket.setReceiveBufferSize(options.getReceiveBufferSize());
+        }
+        socket.bind(
+                new InetSocketAddress(options.getBindAddress(),
+                        options.getPort()), options.getBacklog());
+    }
+
+}
@@ -0,0 +1,193 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.socket;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Adapts socket streams to channels without the internal monitors of
+ * {@link java.nio.channels.Channels}. A virtual thread blocking in I/O while
+ * holding a monitor cannot release its carrier thread. Each adapter is only
+ * used by a single thread at a time, so no further synchronization is
+ * required.
+ *
+ * @author jwienke
+ */
+final class StreamChannels {
+
+    private static final int TRANSFER_SIZE = 8192;
+
+    private StreamChannels() {
+        super();
+        // prevent instantiation of utility class
+    }
+
+    /**
+     * Creates a channel reading from the given stream.
+     *
+     * @param stream
+     *            stream to read from
+     * @return new channel
+     */
+    static ReadableByteChannel newReader(final InputStream stream) {
+        return new StreamReader(stream);
+    }
+
+    /**
+     * Creates a channel writing to the given stream.
+     *
+     * @param stream
+     *            stream to write to
+     * @return new channel
+     */
+    static WritableByteChannel newWriter(final OutputStream stream) {
+        return new StreamWriter(stream);
+    }
+
+    /**
+     * Base class tracking the open state.
+     */
+    private static class StreamChannel implements Channel {
+
+        private final Closeable stream;
+        private volatile boolean open = true;
+
+        StreamChannel(final Closeable stream) {
+            this.stream = stream;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return this.open;
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.open = false;
+            this.stream.close();
+        }
+
+        protected void ensureOpen() throws ClosedChannelException {
+            if (!this.open) {
+                throw new ClosedChannelException();
+            }
+        }
+
+    }
+
+    /**
+     * Reads from an {@link InputStream}.
+     */
+    private static class StreamReader extends StreamChannel implements
+            ReadableByteChannel {
+
+        private final InputStream stream;
+        private byte[] transfer = new byte[0];
+
+        StreamReader(final InputStream stream) {
+            super(stream);
+            this.stream = stream;
+        }
+
+        @Override
+        public int read(final ByteBuffer dst) throws IOException {
+            ensureOpen();
+            if (!dst.hasRemaining()) {
+                return 0;
+            }
+            if (dst.hasArray()) {
+                final int read =
+                        this.stream.read(dst.array(),
+                                dst.arrayOffset() + dst.position(),
+                                dst.remaining());
+                if (read > 0) {
+                    dst.position(dst.position() + read);
+                }
+                return read;
+            }
+            final int length = Math.min(dst.remaining(), TRANSFER_SIZE);
+            if (this.transfer.length < length) {
+                this.transfer = new byte[length];
+            }
+            final int read = this.stream.read(this.transfer, 0, length);
+            if (read > 0) {
+                dst.put(this.transfer, 0, read);
+            }
+            return read;
+        }
+
+    }
+
+    /**
+     * Writes to an {@link OutputStream}.
+     */
+    private static class StreamWriter extends StreamChannel implements
+            WritableByteChannel {
+
+        private final OutputStream stream;
+        private byte[] transfer = new byte[0];
+
+        StreamWriter(final OutputStream stream) {
+            super(stream);
+            this.stream = stream;
+        }
+
+        @Override
+        public int write(final ByteBuffer src) throws IOException {
+            ensureOpen();
+            final int length = src.remaining();
+            if (src.hasArray()) {
+                this.stream.write(src.array(),
+                        src.arrayOffset() + src.position(), length);
+                src.position(src.limit());
+                return length;
+            }
+            int remaining = length;
+            while (remaining > 0) {
+                final int chunk = Math.min(remaining, TRANSFER_SIZE);
+                if (this.transfer.length < chunk) {
+                    this.transfer = new byte[chunk];
+                }
+                src.get(this.transfer, 0, chunk);
+                this.stream.write(this.transfer, 0, chunk);
+                remaining -= chunk;
+            }
+            return length;
+        }
+
+    }
+
+}
@@ -0,0 +1,178 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+
+package rsb.transport.socket;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import rsb.Scope;
+import rsb.protocol.NotificationType.Notification;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+
+/**
+ * Server-side index of the scopes bus clients have announced interest in.
+ * Clients which never announced their subscriptions receive all
+ * notifications. For all other clients, only notifications on one of the
+ * subscribed scopes or their sub-scopes are forwarded.
+ *
+ * Instances are thread-safe.
+ *
+ * @author jwienke
+ */
+public class SubscriptionIndex {
+
+    private static final Logger LOG = Logger.getLogger(SubscriptionIndex.class
+            .getName());
+
+    private final ConcurrentMap<BusConnection, Set<String>> subscriptions =
+            new ConcurrentHashMap<BusConnection, Set<String>>();
+
+    /**
+     * Updates the index based on a subscription control notification received
+     * from a client. Other control notifications are ignored.
+     *
+     * @param notification
+     *            the control notification
+     * @param source
+     *            the client connection the notification was received on
+     * @return <code>true</code> if the notification changed the subscriptions
+     *         of the client
+     */
+    public boolean handleControl(final Notification notification,
+            final BusConnection source) {
+        final String verb = ControlMessages.getVerb(notification);
+        final Collection<String> scopes =
+                ControlMessages.getArguments(notification);
+        LOG.log(Level.FINER, "Received control notification {0} {1} from {2}",
+                new Object[] { verb, scopes, source });
+        if (Protocol.CONTROL_SUBSCRIPTIONS.equals(verb)) {
+            final Set<String> newScopes = createSet();
+            addAll(newScopes, scopes);
+            this.subscriptions.put(source, newScopes);
+        } else if (Protocol.CONTROL_SUBSCRIBE.equals(verb)) {
+            addAll(getOrCreate(source), scopes);
+        } else if (Protocol.CONTROL_UNSUBSCRIBE.equals(verb)) {
+            final Set<String> existing = getOrCreate(source);
+            for (final String scope : scopes) {
+                existing.remove(normalize(scope));
+            }
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private static Set<String> createSet() {
+        return Collections
+                .newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    }
+
+    private Set<String> getOrCreate(final BusConnection source) {
+        final Set<String> created = createSet();
+        final Set<String> existing =
+                this.subscriptions.putIfAbsent(source, created);
+        if (existing == null) {
+            return created;
+        }
+        return existing;
+    }
+
+    private static void addAll(final Set<String> target,
+            final Collection<String> scopes) {
+        for (final String scope : scopes) {
+            final String normalized = normalize(scope);
+            if (normalized != null) {
+                target.add(normalized);
+            }
+        }
+    }
+
+    private static String normalize(final String scope) {
+        try {
+            return new Scope(scope).toString();
+        } catch (final IllegalArgumentException e) {
+            LOG.log(Level.WARNING, "Ignoring invalid subscription scope "
+                    + scope, e);
+            return null;
+        }
+    }
+
+    /**
+     * Forgets the subscriptions of a client.
+     *
+     * @param connection
+     *            the client connection
+     */
+    public void remove(final BusConnection connection) {
+        this.subscriptions.remove(connection);
+    }
+
+    /**
+     * Decides whether a frame needs to be sent to a client.
+     *
+     * @param connection
+     *            the client connection
+     * @param frame
+     *            the frame to send
+     * @return <code>true</code> if the client did not announce subscriptions
+     *         or if the scope of the frame is one of the subscribed scopes or
+     *         a sub-scope of one of them
+     */
+    public boolean isForwarded(final BusConnection connection,
+            final Frame frame) {
+        final Set<String> scopes = this.subscriptions.get(connection);
+        if (scopes == null) {
+            return true;
+        }
+        final String scope;
+        try {
+            scope = frame.getScope();
+        } catch (final InvalidProtocolBufferException e) {
+            LOG.log(Level.FINE, "Unable to extract scope from frame. "
+                    + "Leaving the decision to the client.", e);
+            return true;
+        }
+        // test the scope and all its super-scopes
+        int end = scope.indexOf(Scope.COMPONENT_SEPARATOR);
+        while (end >= 0) {
+            if (scopes.contains(scope.substring(0, end + 1))) {
+                return true;
+            }
+            end = scope.indexOf(Scope.COMPONENT_SEPARATOR, end + 1);
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,53 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.socket;
+
+/**
+ * An enum indicating which kind of threads run the blocking loops of the
+ * socket transport, i.e. the acceptor of a {@link BusServer}, the receiving
+ * thread of each connection and the writer of each connection.
+ *
+ * @author jwienke
+ */
+public enum ThreadMode {
+
+    /**
+     * Classic platform threads, each with its own native thread and stack.
+     */
+    PLATFORM,
+
+    /**
+     * Virtual threads scheduled on a small set of carrier threads. Requires
+     * a Java runtime with virtual thread support (Java 21 or newer). On older
+     * runtimes, platform threads are used instead.
+     *
+     * @see SocketThreads#isVirtualAvailable()
+     */
+    VIRTUAL
+
+}
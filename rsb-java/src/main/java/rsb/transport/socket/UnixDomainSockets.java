@@ -0,0 +1,201 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.socket;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Access to Unix domain socket channels, which are available starting with
+ * Java 16. As this library is compiled for older Java versions, the
+ * respective API is accessed reflectively. Channels returned by this class
+ * behave like TCP channels apart from not having an associated
+ * {@link java.net.Socket}.
+ *
+ * @author jwienke
+ */
+public final class UnixDomainSockets {
+
+    private static final Logger LOG = Logger
+            .getLogger(UnixDomainSockets.class.getName());
+
+    private static final String OPEN_METHOD = "open";
+
+    private static final ProtocolFamily UNIX;
+    private static final Method CREATE_ADDRESS;
+    private static final Method OPEN_CHANNEL;
+    private static final Method OPEN_SERVER_CHANNEL;
+
+    static {
+        ProtocolFamily family = null;
+        Method createAddress = null;
+        Method openChannel = null;
+        Method openServerChannel = null;
+        try {
+            family = StandardProtocolFamily.valueOf("UNIX");
+            createAddress =
+                    Class.forName("java.net.UnixDomainSocketAddress")
+                            .getMethod("of", String.class);
+            openChannel =
+                    SocketChannel.class.getMethod(OPEN_METHOD, ProtocolFamily.class);
+            openServerChannel =
+                    ServerSocketChannel.class.getMethod(OPEN_METHOD,
+                            ProtocolFamily.class);
+        } catch (final IllegalArgumentException | ClassNotFoundException
+                | NoSuchMethodException e) {
+            LOG.log(Level.FINE, "Unix domain sockets are not supported.", e);
+        }
+        if (openServerChannel == null) {
+            family = null;
+        }
+        UNIX = family;
+        CREATE_ADDRESS = createAddress;
+        OPEN_CHANNEL = openChannel;
+        OPEN_SERVER_CHANNEL = openServerChannel;
+    }
+
+    private UnixDomainSockets() {
+        super();
+        // prevent instantiation of utility class
+    }
+
+    /**
+     * Indicates whether the running JVM supports Unix domain socket channels.
+     *
+     * @return <code>true</code> if supported
+     */
+    public static boolean isSupported() {
+        return UNIX != null;
+    }
+
+    /**
+     * Connects a new blocking channel to the server socket at the given path.
+     *
+     * @param path
+     *            path of the server socket
+     * @return connected channel
+     * @throws IOException
+     *             error connecting or Unix domain sockets are not supported
+     */
+    public static SocketChannel connect(final String path) throws IOException {
+        final SocketChannel channel =
+                (SocketChannel) invoke(OPEN_CHANNEL, null, UNIX);
+        try {
+            channel.connect(createAddress(path));
+        } catch (final IOException e) {
+            channel.close();
+            throw e;
+        }
+        return channel;
+    }
+
+    /**
+     * Creates a server channel listening at the given path. A socket file
+     * left behind by a terminated server is replaced. Active servers are not
+     * replaced.
+     *
+     * @param path
+     *            path of the server socket
+     * @return bound server channel in blocking mode
+     * @throws IOException
+     *             error binding or Unix domain sockets are not supported
+     */
+    public static ServerSocketChannel bind(final String path)
+            throws IOException {
+        if (Files.exists(Paths.get(path)) && !isListening(path)) {
+            LOG.log(Level.INFO, "Removing stale socket file {0}", path);
+            unlink(path);
+        }
+        final ServerSocketChannel channel =
+                (ServerSocketChannel) invoke(OPEN_SERVER_CHANNEL, null, UNIX);
+        try {
+            channel.bind(createAddress(path));
+        } catch (final IOException e) {
+            channel.close();
+            throw e;
+        }
+        return channel;
+    }
+
+    /**
+     * Removes the socket file of a closed server channel.
+     *
+     * @param path
+     *            path of the server socket
+     */
+    public static void unlink(final String path) {
+        try {
+            Files.deleteIfExists(Paths.get(path));
+        } catch (final IOException e) {
+            LOG.log(Level.WARNING, "Unable to remove socket file " + path, e);
+        }
+    }
+
+    private static boolean isListening(final String path) {
+        try {
+            connect(path).close();
+            return true;
+        } catch (final IOException e) {
+            return false;
+        }
+    }
+
+    private static SocketAddress createAddress(final String path)
+            throws IOException {
+        return (SocketAddress) invoke(CREATE_ADDRESS, null, path);
+    }
+
+    private static Object invoke(final Method method, final Object target,
+            final Object argument) throws IOException {
+        if (!isSupported()) {
+            throw new IOException("Unix domain sockets require Java 16 "
+                    + "or newer.");
+        }
+        try {
+            return method.invoke(target, argument);
+        } catch (final IllegalAccessException e) {
+            throw new IOException(e);
+        } catch (final InvocationTargetException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e);
+        }
+    }
+
+}
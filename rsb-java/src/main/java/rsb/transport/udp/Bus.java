@@ -0,0 +1,228 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.udp;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import rsb.RSBException;
+import rsb.protocol.NotificationType.Notification;
+import rsb.transport.NotificationBus;
+
+/**
+ * A bus exchanging notifications through UDP datagrams. Each process needs
+ * only a single instance per set of {@link UdpOptions}, which is shared by
+ * all connectors.
+ *
+ * Sending uses an unbound socket and never blocks on receivers. Receiving
+ * requires a socket bound to the configured port. It is only opened while
+ * {@link NotificationReceiver}s are registered so that processes which only
+ * send do not occupy the port. For unicast addresses, only a single process
+ * can receive on a port. Multicast groups can be joined by any number of
+ * processes.
+ *
+ * @author jwienke
+ */
+@SuppressWarnings("PMD.ShortClassName")
+public class Bus implements NotificationBus {
+
+    private static final Logger LOG = Logger.getLogger(Bus.class.getName());
+    private static final String NOT_ACTIVE = "Bus is not active";
+
+    private final UdpOptions options;
+    private final Set<NotificationReceiver> receivers =
+            new CopyOnWriteArraySet<NotificationReceiver>();
+
+    private volatile DatagramSocket sendSocket;
+    private int activations;
+    private DatagramReceiver receiver;
+    /**
+     * The receiving socket in case it joined the multicast group, else
+     * <code>null</code>.
+     */
+    private MulticastSocket groupSocket;
+
+    /**
+     * Creates a new bus.
+     *
+     * @param options
+     *            the options to use
+     */
+    public Bus(final UdpOptions options) {
+        this.options = options;
+    }
+
+    @Override
+    public void activate() throws RSBException {
+        synchronized (this) {
+            if (this.activations == 0) {
+                try {
+                    if (this.options.isMulticast()) {
+                        final MulticastSocket socket = new MulticastSocket();
+                        socket.setTimeToLive(this.options.getTtl());
+                        this.sendSocket = socket;
+                    } else {
+                        this.sendSocket = new DatagramSocket();
+                    }
+                } catch (final IOException e) {
+                    throw new RSBException("Unable to open UDP socket", e);
+                }
+            }
+            ++this.activations;
+        }
+    }
+
+    @Override
+    public void deactivate() throws InterruptedException {
+        synchronized (this) {
+            if (this.activations == 0) {
+                throw new IllegalStateException(NOT_ACTIVE);
+            }
+            --this.activations;
+            if (this.activations > 0) {
+                return;
+            }
+            stopReceiver();
+            this.sendSocket.close();
+            this.sendSocket = null;
+        }
+    }
+
+    @Override
+    public void publish(final Notification notification) throws RSBException {
+        final DatagramSocket socket = this.sendSocket;
+        if (socket == null) {
+            throw new IllegalStateException(NOT_ACTIVE);
+        }
+        final InetSocketAddress target = this.options.getSocketAddress();
+        try {
+            for (final byte[] fragment : Fragmenter.split(notification,
+                    this.options.getDatagramSize())) {
+                socket.send(new DatagramPacket(fragment, fragment.length,
+                        target));
+            }
+        } catch (final IllegalArgumentException e) {
+            throw new RSBException("Unable to split notification", e);
+        } catch (final IOException e) {
+            throw new RSBException("Unable to send datagram to " + target, e);
+        }
+    }
+
+    @Override
+    public void addReceiver(final NotificationReceiver notificationReceiver)
+            throws RSBException {
+        synchronized (this) {
+            if (this.activations == 0) {
+                throw new IllegalStateException(NOT_ACTIVE);
+            }
+            if (this.receiver == null) {
+                try {
+                    this.receiver =
+                            new DatagramReceiver(openReceiveSocket(),
+                                    this.options, this.receivers);
+                } catch (final IOException e) {
+                    throw new RSBException("Unable to receive on "
+                            + this.options.getSocketAddress(), e);
+                }
+                this.receiver.start();
+            }
+            this.receivers.add(notificationReceiver);
+        }
+    }
+
+    private DatagramSocket openReceiveSocket() throws IOException {
+        if (this.options.isMulticast()) {
+            final MulticastSocket socket =
+                    new MulticastSocket(this.options.getPort());
+            // null selects the interface configured for the socket
+            socket.joinGroup(this.options.getSocketAddress(), null);
+            this.groupSocket = socket;
+            return socket;
+        }
+        return new DatagramSocket(this.options.getSocketAddress());
+    }
+
+    @Override
+    public void removeReceiver(final NotificationReceiver notificationReceiver)
+            throws InterruptedException {
+        synchronized (this) {
+            this.receivers.remove(notificationReceiver);
+            if (this.receivers.isEmpty()) {
+                stopReceiver();
+            }
+        }
+    }
+
+    private void stopReceiver() throws InterruptedException {
+        if (this.receiver != null) {
+            leaveGroup();
+            this.receiver.shutdown();
+            // receivers may remove themselves from within the thread
+            if (!this.receiver.equals(Thread.currentThread())) {
+                this.receiver.join();
+            }
+            this.receiver = null;
+        }
+    }
+
+    private void leaveGroup() {
+        if (this.groupSocket == null) {
+            return;
+        }
+        try {
+            this.groupSocket.leaveGroup(this.options.getSocketAddress(), null);
+        } catch (final IOException e) {
+            // closing the socket leaves the group as well
+            LOG.log(Level.FINE, "Unable to leave multicast group "
+                    + this.options.getSocketAddress(), e);
+        }
+        this.groupSocket = null;
+    }
+
+    @Override
+    public URI getTransportUri() {
+        try {
+            return new URI("udp", null,
+                    this.options.getAddress().getHostAddress(),
+                    this.options.getPort(), null, null, null);
+        } catch (final URISyntaxException e) {
+            throw new IllegalStateException("Unable to create a URI for "
+                    + this.options, e);
+        }
+    }
+
+}
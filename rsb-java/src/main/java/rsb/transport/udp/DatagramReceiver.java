@@ -0,0 +1,143 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.udp;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import rsb.protocol.FragmentedNotificationType.FragmentedNotification;
+import rsb.protocol.NotificationType.Notification;
+import rsb.transport.NotificationBus.NotificationReceiver;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+
+/**
+ * Thread receiving datagrams, reassembling the contained notifications and
+ * dispatching complete ones.
+ *
+ * @author jwienke
+ */
+class DatagramReceiver extends Thread {
+
+    private static final Logger LOG = Logger.getLogger(DatagramReceiver.class
+            .getName());
+
+    private final DatagramSocket socket;
+    private final Iterable<NotificationReceiver> receivers;
+    private final Reassembler reassembler;
+    private volatile boolean running = true;
+
+    /**
+     * Constructor.
+     *
+     * @param socket
+     *            the bound socket to receive from. Closed by this instance.
+     * @param options
+     *            the options of the bus
+     * @param receivers
+     *            the receivers to dispatch to. Must be safe for iteration
+     *            while being modified.
+     */
+    DatagramReceiver(final DatagramSocket socket, final UdpOptions options,
+            final Iterable<NotificationReceiver> receivers) {
+        super("RSB UDP receiver " + options.getSocketAddress());
+        this.socket = socket;
+        this.receivers = receivers;
+        this.reassembler =
+                new Reassembler(options.getReassemblyTimeout(),
+                        options.getMaxReassemblyBytes());
+        setDaemon(true);
+    }
+
+    /**
+     * Requests the thread to terminate by closing the socket.
+     */
+    public void shutdown() {
+        this.running = false;
+        this.socket.close();
+    }
+
+    @Override
+    public void run() {
+        final byte[] buffer = new byte[UdpOptions.MAX_DATAGRAM_SIZE];
+        final DatagramPacket packet =
+                new DatagramPacket(buffer, buffer.length);
+        while (this.running) {
+            packet.setLength(buffer.length);
+            try {
+                this.socket.receive(packet);
+            } catch (final IOException e) {
+                if (this.running) {
+                    LOG.log(Level.WARNING, "Error receiving datagram", e);
+                }
+                continue;
+            }
+            handleDatagram(buffer, packet.getLength());
+        }
+    }
+
+    private void handleDatagram(final byte[] buffer, final int length) {
+        final Notification notification;
+        try {
+            // parsing copies the data, the buffer can be reused afterwards
+            final FragmentedNotification fragment =
+                    FragmentedNotification.parser().parseFrom(buffer, 0,
+                            length);
+            final long dropped = this.reassembler.getDropped();
+            notification = this.reassembler.add(fragment, System.nanoTime());
+            if (this.reassembler.getDropped() != dropped) {
+                LOG.log(Level.FINE, "Dropped {0} incomplete notifications",
+                        this.reassembler.getDropped() - dropped);
+            }
+        } catch (final InvalidProtocolBufferException
+                | IllegalArgumentException e) {
+            LOG.log(Level.FINE, "Ignoring invalid datagram", e);
+            return;
+        }
+        if (notification != null) {
+            dispatch(notification);
+        }
+    }
+
+    // we need to shield against user code terminating the receiving thread
+    @SuppressWarnings("PMD.AvoidCatchingGenericException")
+    private void dispatch(final Notification notification) {
+        try {
+            for (final NotificationReceiver receiver : this.receivers) {
+                receiver.handle(notification);
+            }
+        } catch (final RuntimeException e) {
+            LOG.log(Level.WARNING, "Error while dispatching notification. "
+                    + "Ignoring this.", e);
+        }
+    }
+
+}
@@ -0,0 +1,112 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.udp;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import rsb.protocol.FragmentedNotificationType.FragmentedNotification;
+import rsb.protocol.NotificationType.Notification;
+
+import com.google.protobuf.ByteString;
+
+/**
+ * Splits notifications into datagrams of a maximum size. Each datagram
+ * contains a {@link FragmentedNotification}. The first fragment carries all
+ * fields of the notification. All other fragments only carry the event id and
+ * their chunk of the payload. Notifications which fit into a single datagram
+ * are sent as a single fragment.
+ *
+ * @author jwienke
+ */
+public final class Fragmenter {
+
+    /**
+     * Upper bound for the bytes added by wrapping a chunk into a
+     * {@link FragmentedNotification}: tags and lengths of the nested
+     * notification and its data field plus the part numbers.
+     */
+    private static final int FRAGMENT_OVERHEAD = 32;
+
+    private Fragmenter() {
+        super();
+        // prevent instantiation of a helper class
+    }
+
+    /**
+     * Splits a notification into encoded datagrams.
+     *
+     * @param notification
+     *            the notification to split
+     * @param datagramSize
+     *            maximum size of each datagram in bytes
+     * @return encoded fragments in the order of their part numbers
+     * @throws IllegalArgumentException
+     *             the fields besides the payload do not fit into a single
+     *             datagram
+     */
+    public static List<byte[]> split(final Notification notification,
+            final int datagramSize) {
+
+        final ByteString data = notification.getData();
+        final int headerSize =
+                notification.getSerializedSize() - data.size();
+        final int chunkSize = datagramSize - headerSize - FRAGMENT_OVERHEAD;
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Notification header of "
+                    + headerSize + " bytes does not fit into datagrams of "
+                    + datagramSize + " bytes");
+        }
+
+        final int parts = Math.max(1, (data.size() + chunkSize - 1) / chunkSize);
+        final List<byte[]> fragments = new ArrayList<byte[]>(parts);
+        for (int index = 0; index < parts; ++index) {
+            final int start = index * chunkSize;
+            final ByteString chunk =
+                    data.substring(start,
+                            Math.min(data.size(), start + chunkSize));
+            final Notification.Builder part;
+            if (index == 0) {
+                part = notification.toBuilder();
+            } else {
+                part = Notification.newBuilder().setEventId(
+                        notification.getEventId());
+            }
+            final byte[] fragment =
+                    FragmentedNotification.newBuilder()
+                            .setNotification(part.setData(chunk))
+                            .setNumDataParts(parts).setDataPart(index)
+                            .build().toByteArray();
+            assert fragment.length <= datagramSize;
+            fragments.add(fragment);
+        }
+        return fragments;
+
+    }
+
+}
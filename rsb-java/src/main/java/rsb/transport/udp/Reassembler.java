@@ -0,0 +1,335 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.udp;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import rsb.protocol.EventIdType.EventId;
+import rsb.protocol.FragmentedNotificationType.FragmentedNotification;
+import rsb.protocol.NotificationType.Notification;
+
+import com.google.protobuf.ByteString;
+
+/**
+ * Reassembles notifications from {@link FragmentedNotification}s received in
+ * arbitrary order. Fragments of different notifications may interleave and an
+ * incomplete notification never delays complete ones. Notifications which are
+ * not complete within the reassembly timeout are dropped, as are the oldest
+ * ones in case too many are incomplete at the same time or their memory
+ * exceeds the reassembly limit. The memory of a notification comprises its
+ * received chunks and one slot per announced part. Fragments announcing more
+ * parts than could ever fit into the limit are rejected.
+ *
+ * Instances are not thread-safe.
+ *
+ * @author jwienke
+ */
+// false positive: methods of Reassembly are counted as well
+@SuppressWarnings("PMD.TooManyMethods")
+public class Reassembler {
+
+    /**
+     * Maximum number of notifications reassembled at the same time.
+     */
+    public static final int MAX_PENDING = 1024;
+
+    /**
+     * Bytes accounted for each announced part of a notification, i.e. the
+     * reference to its chunk.
+     */
+    private static final int SLOT_BYTES = 8;
+
+    private final long timeoutNanos;
+    private final long maxBytes;
+    private final Map<EventId, Reassembly> pending =
+            new LinkedHashMap<EventId, Reassembly>();
+    private long bytes;
+    private long dropped;
+
+    /**
+     * Creates a new instance with the default reassembly limit
+     * {@link UdpOptions#DEFAULT_REASSEMBLY_BYTES}.
+     *
+     * @param timeoutMillis
+     *            time in milliseconds after the first received fragment after
+     *            which incomplete notifications are dropped
+     */
+    public Reassembler(final long timeoutMillis) {
+        this(timeoutMillis, UdpOptions.DEFAULT_REASSEMBLY_BYTES);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param timeoutMillis
+     *            time in milliseconds after the first received fragment after
+     *            which incomplete notifications are dropped
+     * @param maxBytes
+     *            maximum memory in bytes held by all incomplete notifications
+     */
+    public Reassembler(final long timeoutMillis, final long maxBytes) {
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the number of notifications dropped so far because they were
+     * not completed in time.
+     *
+     * @return number of dropped notifications
+     */
+    public long getDropped() {
+        return this.dropped;
+    }
+
+    /**
+     * Returns the number of incomplete notifications.
+     *
+     * @return number of notifications waiting for fragments
+     */
+    public int getPending() {
+        return this.pending.size();
+    }
+
+    /**
+     * Returns the memory currently held by incomplete notifications.
+     *
+     * @return accounted bytes
+     */
+    public long getPendingBytes() {
+        return this.bytes;
+    }
+
+    /**
+     * Adds a received fragment.
+     *
+     * @param fragment
+     *            the fragment
+     * @param now
+     *            current time as returned by {@link System#nanoTime()}
+     * @return the complete notification in case this fragment completed it,
+     *         else <code>null</code>
+     * @throws IllegalArgumentException
+     *             the part numbers of the fragment are invalid
+     */
+    public Notification add(final FragmentedNotification fragment,
+            final long now) {
+
+        expire(now);
+
+        final int parts = fragment.getNumDataParts();
+        final int index = fragment.getDataPart();
+        validate(parts, index);
+        if (parts == 1) {
+            return fragment.getNotification();
+        }
+
+        final EventId eventId = fragment.getNotification().getEventId();
+        final Reassembly reassembly = findReassembly(eventId, parts, now);
+        // duplicated datagrams are ignored
+        if (reassembly == null || reassembly.contains(index)) {
+            return null;
+        }
+        final Notification part = fragment.getNotification();
+        if (!reserve(eventId, part.getData().size())) {
+            drop(eventId);
+            return null;
+        }
+        reassembly.add(index, part);
+        account(reassembly, part.getData().size());
+        if (!reassembly.isComplete()) {
+            return null;
+        }
+        this.pending.remove(eventId);
+        this.bytes -= reassembly.getBytes();
+        return reassembly.toNotification();
+
+    }
+
+    private void validate(final int parts, final int index) {
+        if (parts <= 0 || index < 0 || index >= parts) {
+            throw new IllegalArgumentException("Received invalid fragment "
+                    + index + " of " + parts + " parts.");
+        }
+        // every part occupies a slot and carries at least one byte
+        if (parts > this.maxBytes / (SLOT_BYTES + 1)) {
+            throw new IllegalArgumentException("Fragment announces " + parts
+                    + " parts, which exceeds the reassembly limit of "
+                    + this.maxBytes + " bytes.");
+        }
+    }
+
+    /**
+     * Returns the reassembly of a notification, starting a new one if
+     * required.
+     *
+     * @return the reassembly or <code>null</code> in case the slots for a new
+     *         one do not fit into the reassembly limit
+     */
+    private Reassembly findReassembly(final EventId eventId, final int parts,
+            final long now) {
+        final Reassembly existing = this.pending.get(eventId);
+        if (existing != null) {
+            if (existing.getParts() != parts) {
+                throw new IllegalArgumentException("Fragment claims " + parts
+                        + " parts instead of " + existing.getParts());
+            }
+            return existing;
+        }
+        if (this.pending.size() >= MAX_PENDING) {
+            dropOldest();
+        }
+        final long slots = (long) parts * SLOT_BYTES;
+        if (!reserve(eventId, slots)) {
+            ++this.dropped;
+            return null;
+        }
+        final Reassembly reassembly = new Reassembly(parts, now);
+        this.pending.put(eventId, reassembly);
+        account(reassembly, slots);
+        return reassembly;
+    }
+
+    /**
+     * Drops all incomplete notifications whose timeout has elapsed.
+     *
+     * @param now
+     *            current time as returned by {@link System#nanoTime()}
+     */
+    public void expire(final long now) {
+        // entries are ordered by their creation time
+        final Iterator<Reassembly> iterator = this.pending.values().iterator();
+        while (iterator.hasNext()) {
+            final Reassembly oldest = iterator.next();
+            if (now - oldest.getCreated() < this.timeoutNanos) {
+                return;
+            }
+            this.bytes -= oldest.getBytes();
+            iterator.remove();
+            ++this.dropped;
+        }
+    }
+
+    private void dropOldest() {
+        final Iterator<Reassembly> iterator = this.pending.values().iterator();
+        this.bytes -= iterator.next().getBytes();
+        iterator.remove();
+        ++this.dropped;
+    }
+
+    private void drop(final EventId eventId) {
+        final Reassembly removed = this.pending.remove(eventId);
+        if (removed != null) {
+            this.bytes -= removed.getBytes();
+            ++this.dropped;
+        }
+    }
+
+    private void account(final Reassembly reassembly, final long added) {
+        reassembly.bytes += added;
+        this.bytes += added;
+    }
+
+    /**
+     * Makes room for the given number of bytes by dropping the oldest
+     * incomplete notifications other than the one the bytes belong to.
+     */
+    private boolean reserve(final EventId eventId, final long required) {
+        final Iterator<Map.Entry<EventId, Reassembly>> oldest =
+                this.pending.entrySet().iterator();
+        while (this.bytes + required > this.maxBytes && oldest.hasNext()) {
+            final Map.Entry<EventId, Reassembly> entry = oldest.next();
+            if (!entry.getKey().equals(eventId)) {
+                this.bytes -= entry.getValue().getBytes();
+                oldest.remove();
+                ++this.dropped;
+            }
+        }
+        return this.bytes + required <= this.maxBytes;
+    }
+
+    /**
+     * The received fragments of a single notification.
+     *
+     * @author jwienke
+     */
+    private static class Reassembly {
+
+        private final long created;
+        private final ByteString[] chunks;
+        private Notification first;
+        private int received;
+        private long bytes;
+
+        Reassembly(final int parts, final long created) {
+            this.chunks = new ByteString[parts];
+            this.created = created;
+        }
+
+        public long getCreated() {
+            return this.created;
+        }
+
+        public int getParts() {
+            return this.chunks.length;
+        }
+
+        public long getBytes() {
+            return this.bytes;
+        }
+
+        public boolean contains(final int index) {
+            return this.chunks[index] != null;
+        }
+
+        public void add(final int index, final Notification part) {
+            this.chunks[index] = part.getData();
+            if (index == 0) {
+                this.first = part;
+            }
+            ++this.received;
+        }
+
+        public boolean isComplete() {
+            return this.received == this.chunks.length;
+        }
+
+        public Notification toNotification() {
+            ByteString data = ByteString.EMPTY;
+            for (final ByteString chunk : this.chunks) {
+                data = data.concat(chunk);
+            }
+            return this.first.toBuilder().setData(data).build();
+        }
+
+    }
+
+}
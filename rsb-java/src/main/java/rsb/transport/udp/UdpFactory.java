@@ -0,0 +1,166 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.udp;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import rsb.InitializeException;
+import rsb.converter.ConverterSelectionStrategy;
+import rsb.transport.InConnector;
+import rsb.transport.NotificationBusInConnector;
+import rsb.transport.NotificationBusOutConnector;
+import rsb.transport.OutConnector;
+import rsb.transport.TransportFactory;
+import rsb.util.Properties;
+
+/**
+ * A {@link TransportFactory} for the UDP transport. All connectors of a
+ * process with equal {@link UdpOptions} share one {@link Bus} instance.
+ *
+ * @author jwienke
+ */
+public class UdpFactory implements TransportFactory {
+
+    private static final String SCHEMA = "udp";
+
+    private static final String HOST_KEY = "transport.udp.host";
+    private static final String DEFAULT_HOST = "localhost";
+    private static final String PORT_KEY = "transport.udp.port";
+    private static final int DEFAULT_PORT = 55556;
+    private static final String DATAGRAM_SIZE_KEY =
+            "transport.udp.datagram.size";
+    private static final String TIMEOUT_KEY =
+            "transport.udp.reassembly.timeout";
+    private static final String TTL_KEY = "transport.udp.ttl";
+    private static final String REASSEMBLY_BYTES_KEY =
+            "transport.udp.reassembly.bytes";
+    private static final int MAX_TTL = 255;
+
+    private static final Map<UdpOptions, Bus> BUSES =
+            new HashMap<UdpOptions, Bus>();
+
+    @Override
+    public ConnectorInfo getInfo() {
+        final Set<String> schemas = new HashSet<String>();
+        schemas.add(SCHEMA);
+        final Set<String> options = new HashSet<String>();
+        options.add("host");
+        options.add("port");
+        options.add("datagram.size");
+        options.add("reassembly.timeout");
+        options.add("ttl");
+        options.add("reassembly.bytes");
+        return new ConnectorInfo(SCHEMA, schemas, options, true);
+    }
+
+    private static UdpOptions parseOptions(final Properties properties)
+            throws InitializeException {
+
+        final int port =
+                properties.getProperty(PORT_KEY, DEFAULT_PORT).asInteger();
+        if (port <= 0) {
+            throw new InitializeException("Port must be a number > 0");
+        }
+        final int datagramSize =
+                properties.getProperty(DATAGRAM_SIZE_KEY,
+                        UdpOptions.DEFAULT_DATAGRAM_SIZE).asInteger();
+        if (datagramSize <= 0 || datagramSize > UdpOptions.MAX_DATAGRAM_SIZE) {
+            throw new InitializeException("Datagram size must be a number "
+                    + "between 1 and " + UdpOptions.MAX_DATAGRAM_SIZE);
+        }
+        final long timeout =
+                properties.getProperty(TIMEOUT_KEY,
+                        UdpOptions.DEFAULT_TIMEOUT).asLong();
+        if (timeout <= 0) {
+            throw new InitializeException(
+                    "Reassembly timeout must be a number > 0");
+        }
+        final int ttl =
+                properties.getProperty(TTL_KEY, UdpOptions.DEFAULT_TTL)
+                        .asInteger();
+        if (ttl < 0 || ttl > MAX_TTL) {
+            throw new InitializeException("TTL must be a number between 0 "
+                    + "and " + MAX_TTL);
+        }
+
+        final long reassemblyBytes =
+                properties.getProperty(REASSEMBLY_BYTES_KEY,
+                        UdpOptions.DEFAULT_REASSEMBLY_BYTES).asLong();
+        if (reassemblyBytes <= 0) {
+            throw new InitializeException(
+                    "Reassembly limit must be a number > 0");
+        }
+
+        try {
+            return new UdpOptions(InetAddress.getByName(properties
+                    .getProperty(HOST_KEY, DEFAULT_HOST).asString()), port,
+                    datagramSize, timeout, ttl, reassemblyBytes);
+        } catch (final UnknownHostException e) {
+            throw new InitializeException("Unable to resolve hostname", e);
+        }
+
+    }
+
+    private static Bus getBus(final Properties properties)
+            throws InitializeException {
+        final UdpOptions options = parseOptions(properties);
+        synchronized (BUSES) {
+            Bus bus = BUSES.get(options);
+            if (bus == null) {
+                bus = new Bus(options);
+                BUSES.put(options, bus);
+            }
+            return bus;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public OutConnector createOutConnector(final Properties properties,
+            final ConverterSelectionStrategy<?> converters)
+            throws InitializeException {
+        return new NotificationBusOutConnector(getBus(properties),
+                (ConverterSelectionStrategy<ByteBuffer>) converters);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public InConnector createInConnector(final Properties properties,
+            final ConverterSelectionStrategy<?> converters)
+            throws InitializeException {
+        return new NotificationBusInConnector(getBus(properties),
+                (ConverterSelectionStrategy<ByteBuffer>) converters);
+    }
+
+}
@@ -0,0 +1,245 @@
+/**
+ * ============================================================
+ *
+ * This file is part of the rsb-java project
+ *
+ * Copyright (C) 2013 CoR-Lab, Bielefeld University
+ *
+ * This file may be licensed under the terms of the
+ * GNU Lesser General Public License Version 3 (the ``LGPL''),
+ * or (at your option) any later version.
+ *
+ * Software distributed under the License is distributed
+ * on an ``AS IS'' basis, WITHOUT WARRANTY OF ANY KIND, either
+ * express or implied. See the LGPL for the specific language
+ * governing rights and limitations.
+ *
+ * You should have received a copy of the LGPL along with this
+ * program. If not, go to http://www.gnu.org/licenses/lgpl.html
+ * or write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * The development of this software was supported by:
+ *   CoR-Lab, Research Institute for Cognition and Robotics
+ *     Bielefeld University
+ *
+ * ============================================================
+ */
+package rsb.transport.udp;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+/**
+ * A class representing the options of the UDP transport.
+ *
+ * @author jwienke
+ */
+public final class UdpOptions {
+
+    /**
+     * Default maximum size of a single datagram in bytes. Fits into the usual
+     * Ethernet MTU to avoid fragmentation on the IP level.
+     */
+    public static final int DEFAULT_DATAGRAM_SIZE = 1400;
+
+    /**
+     * Largest datagram size possible with IPv4.
+     */
+    public static final int MAX_DATAGRAM_SIZE = 65507;
+
+    /**
+     * Default time in milliseconds after which incomplete notifications are
+     * dropped.
+     */
+    public static final long DEFAULT_TIMEOUT = 1000;
+
+    /**
+     * Default time to live of multicast datagrams. Keeps them in the local
+     * network.
+     */
+    public static final int DEFAULT_TTL = 1;
+
+    /**
+     * Default maximum memory in bytes held by incomplete notifications.
+     */
+    public static final long DEFAULT_REASSEMBLY_BYTES = 64 * 1024 * 1024;
+
+    private final InetAddress address;
+    private final int port;
+    private final int datagramSize;
+    private final long reassemblyTimeout;
+    private final int ttl;
+    private final long maxReassemblyBytes;
+
+    /**
+     * Creates a new options instance.
+     *
+     * @param address
+     *            the address datagrams are sent to. For multicast addresses,
+     *            receivers join the group. Otherwise, receivers bind to this
+     *            address.
+     * @param port
+     *            the port datagrams are sent to and received on
+     * @param datagramSize
+     *            maximum size of a single datagram in bytes
+     * @param reassemblyTimeout
+     *            time in milliseconds after which incomplete notifications
+     *            are dropped
+     * @param ttl
+     *            time to live of multicast datagrams
+     */
+    public UdpOptions(final InetAddress address, final int port,
+            final int datagramSize, final long reassemblyTimeout,
+            final int ttl) {
+        this(address, port, datagramSize, reassemblyTimeout, ttl,
+                DEFAULT_REASSEMBLY_BYTES);
+    }
+
+    /**
+     * Creates a new options instance.
+     *
+     * @param address
+     *            the address datagrams are sent to. For multicast addresses,
+     *            receivers join the group. Otherwise, receivers bind to this
+     *            address.
+     * @param port
+     *            the port datagrams are sent to and received on
+     * @param datagramSize
+     *            maximum size of a single datagram in bytes
+     * @param reassemblyTimeout
+     *            time in milliseconds after which incomplete notifications
+     *            are dropped
+     * @param ttl
+     *            time to live of multicast datagrams
+     * @param maxReassemblyBytes
+     *            maximum memory in bytes held by incomplete notifications
+     */
+    public UdpOptions(final InetAddress address, final int port,
+            final int datagramSize, final long reassemblyTimeout,
+            final int ttl, final long maxReassemblyBytes) {
+        this.address = address;
+        this.port = port;
+        this.datagramSize = datagramSize;
+        this.reassemblyTimeout = reassemblyTimeout;
+        this.ttl = ttl;
+        this.maxReassemblyBytes = maxReassemblyBytes;
+    }
+
+    /**
+     * Returns the address datagrams are sent to.
+     *
+     * @return address, unicast or multicast
+     */
+    public InetAddress getAddress() {
+        return this.address;
+    }
+
+    /**
+     * Returns the port datagrams are sent to and received on.
+     *
+     * @return port number
+     */
+    public int getPort() {
+        return this.port;
+    }
+
+    /**
+     * Returns the address and port datagrams are sent to.
+     *
+     * @return socket address
+     */
+    public InetSocketAddress getSocketAddress() {
+        return new InetSocketAddress(this.address, this.port);
+    }
+
+    /**
+     * Indicates whether notifications are sent to a multicast group.
+     *
+     * @return <code>true</code> for multicast addresses
+     */
+    public boolean isMulticast() {
+        return this.address.isMulticastAddress();
+    }
+
+    /**
+     * Returns the maximum size of a single datagram.
+     *
+     * @return size in bytes
+     */
+    public int getDatagramSize() {
+        return this.datagramSize;
+    }
+
+    /**
+     * Returns the time after which incomplete notifications are dropped.
+     *
+     * @return timeout in milliseconds
+     */
+    public long getReassemblyTimeout() {
+        return this.reassemblyTimeout;
+    }
+
+    /**
+     * Returns the time to live of multicast datagrams.
+     *
+     * @return number of hops
+     */
+    public int getTtl() {
+        return this.ttl;
+    }
+
+    /**
+     * Returns the maximum memory held by incomplete notifications. The
+     * oldest incomplete notifications are dropped once it is exceeded.
+     *
+     * @return limit in bytes
+     */
+    public long getMaxReassemblyBytes() {
+        return this.maxReassemblyBytes;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+
+        if (!(obj instanceof UdpOptions)) {
+            return false;
+        }
+
+        final UdpOptions other = (UdpOptions) obj;
+
+        return this.address.equals(other.address) && this.port == other.port
+                && this.datagramSize == other.datagramSize
+                && this.reassemblyTimeout == other.reassemblyTimeout
+                && this.ttl == other.ttl
+                && this.maxReassemblyBytes == other.maxReassemblyBytes;
+
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 17;
+        int result = 1;
+        result = prime * result + this.address.hashCode();
+        result = prime * result + this.port;
+        result = prime * result + this.datagramSize;
+        result =
+                prime * result
+                        + Long.valueOf(this.reassemblyTimeout).hashCode();
+        result = prime * result + this.ttl;
+        result =
+                prime * result
+                        + Long.valueOf(this.maxReassemblyBytes).hashCode();
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getName() + "[address=" + this.address + ", port="
+                + this.port + ", datagramSize=" + this.datagramSize
+                + ", reassemblyTimeout=" + this.reassemblyTimeout + ", ttl="
+                + this.ttl + ", maxReassemblyBytes=" + this.maxReassemblyBytes
+                + "]";
+    }
+
+}
@@ -30,6 +30,7 @@ package rsb.util;
 import java.nio.ByteBuffer;
 
 import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
 
 /**
  * A class with helper methods to convert different byte array representations.
@@ -65,16 +66,19 @@ public final class ByteHelpers {
     }
 
     /**
-     * Converts a {@link ByteBuffer} to a {@link ByteString}.
+     * Converts a {@link ByteBuffer} to a {@link ByteString}. The remaining
+     * bytes of the buffer are wrapped without copying them. The position of
+     * the buffer is not changed.
      *
      * @param buffer
-     *            buffer to convert
+     *            buffer to convert. Must not be modified as long as the
+     *            returned instance is in use.
      * @return {@link ByteString} instance with the same contents. Might be
      *         coupled to the passed in {@link ByteBuffer} and reflect changes
      *         on that buffer.
      */
     public static ByteString buteBufferToByteString(final ByteBuffer buffer) {
-        return ByteString.copyFrom(buffer);
+        return UnsafeByteOperations.unsafeWrap(buffer);
     }
 
 }